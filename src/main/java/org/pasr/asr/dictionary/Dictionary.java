@@ -1,24 +1,54 @@
 package org.pasr.asr.dictionary;
 
+import org.apache.commons.io.IOUtils;
 import org.pasr.asr.Configuration;
 import org.pasr.prep.corpus.Word;
 import org.pasr.prep.corpus.WordSequence;
+import org.pasr.utilities.LRUCache;
+import org.pasr.utilities.SymbolTable;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
-import static org.apache.commons.lang3.StringUtils.getLevenshteinDistance;
-
 
 /**
  * @class Dictionary
  * @brief Implements a dictionary as it is defined by CMU Sphinx
  *
+ *        The alternate pronunciations of a word are stored under the keys "word(2)", "word(3)",
+ *        ... Besides the map of the entries, every base word is mapped to the list of its
+ *        pronunciations, each one also split into phone ids of the phone SymbolTable, so that
+ *        the alternates of a word are found without probing for keys. The entries must only be
+ *        modified through the methods of this class and not through the views of the map.
+ *
+ *        The phones of the words that are pronounced automatically and of whole WordSequence
+ *        objects are kept in bounded LRU caches which are cleared whenever the Dictionary is
+ *        modified.
+ *
+ *        Reading the phones from several threads is safe as long as no thread modifies the
+ *        Dictionary at the same time.
+ *
+ *        A dictionary file is parsed in parallel chunks by a DictionaryReader. A Dictionary can
+ *        also be written as a binary snapshot that holds the final entries together with their
+ *        phones, so that loading it again does not have to parse anything.
+ *
  * @see <a href="http://cmusphinx.sourceforge.net/wiki/tutorialdict">http://cmusphinx.sourceforge.net/wiki/tutorialdict</a>
  */
 public class Dictionary extends LinkedHashMap<String, String> {
@@ -27,34 +57,260 @@ public class Dictionary extends LinkedHashMap<String, String> {
      * @brief Default Constructor
      */
     public Dictionary () {
+        this(0);
+    }
+
+    /**
+     * @brief Constructor
+     *        Sizes the storage of the Dictionary so that it can hold the given number of entries
+     *        without growing.
+     *
+     * @param expectedSize
+     *     The expected number of entries
+     */
+    public Dictionary (int expectedSize) {
+        super(getCapacity(expectedSize));
+
         unknownWords_ = new ArrayList<>();
+        pronunciationsMap_ = new HashMap<>(getCapacity(expectedSize));
+        uniqueWords_ = new HashSet<>(getCapacity(expectedSize));
     }
 
     /**
      * @brief Creates a Dictionary from an InputStream
+     *        The whole InputStream is read and then parsed in parallel.
      *
      * @param inputStream
      *     The InputStream to read data from
      *
      * @return The loaded Dictionary
+     *
+     * @throws UncheckedIOException If an I/O error occurs while reading the InputStream
      */
     public static Dictionary createFromStream (InputStream inputStream) {
-        Dictionary dictionary = new Dictionary();
+        byte[] bytes;
+        try {
+            bytes = IOUtils.toByteArray(inputStream);
+            inputStream.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the dictionary.", e);
+        }
+
+        return createFromByteBuffer(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * @brief Creates a Dictionary from a dictionary file
+     *        The file is memory-mapped and parsed in parallel.
+     *
+     * @param file
+     *     The dictionary file
+     *
+     * @return The loaded Dictionary
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public static Dictionary createFromFile (File file) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = fileChannel.size();
 
-        Scanner scanner = new Scanner(inputStream);
-        while (scanner.hasNextLine()) {
-            String line = scanner.nextLine();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Dictionary file is too large: " + file.getPath());
+            }
 
-            int indexOfSeparation = line.indexOf(" ");
+            return createFromByteBuffer(
+                fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, size)
+            );
+        }
+    }
 
-            dictionary.put(line.substring(0, indexOfSeparation),
-                line.substring(indexOfSeparation + 1));
+    /**
+     * @brief Creates a Dictionary from a ByteBuffer holding a dictionary file
+     *        The lines are parsed in parallel and then put in order, so the result is the same as
+     *        putting them one by one.
+     *
+     * @param byteBuffer
+     *     The ByteBuffer
+     *
+     * @return The loaded Dictionary
+     */
+    private static Dictionary createFromByteBuffer (ByteBuffer byteBuffer) {
+        DictionaryReader dictionaryReader = new DictionaryReader(byteBuffer);
+        dictionaryReader.read(true);
+
+        int size = dictionaryReader.size();
+
+        Dictionary dictionary = new Dictionary(size);
+        for (int i = 0; i < size; i++) {
+            dictionary.put(dictionaryReader.getKey(i), dictionaryReader.getValue(i),
+                dictionaryReader.getPhoneIds(i));
         }
-        scanner.close();
 
         return dictionary;
     }
 
+    /**
+     * @brief Loads a Dictionary from a binary snapshot
+     *
+     * @param file
+     *     The binary snapshot as created by exportToBinaryFile
+     *
+     * @return The loaded Dictionary
+     *
+     * @throws IOException If an I/O error occurs or the file is not a binary snapshot
+     */
+    public static Dictionary createFromBinaryFile (File file) throws IOException {
+        return createFromBinaryFile(file, null);
+    }
+
+    /**
+     * @brief Loads a Dictionary from a binary snapshot of a dictionary file
+     *
+     * @param file
+     *     The binary snapshot as created by exportToBinaryFile(File, File)
+     * @param source
+     *     The dictionary file the snapshot must have been created from, or null to accept any
+     *     snapshot
+     *
+     * @return The loaded Dictionary
+     *
+     * @throws IOException If an I/O error occurs, the file is not a binary snapshot or the length
+     *                     or the modification time of the source differ from the ones recorded
+     *                     in the snapshot
+     */
+    static Dictionary createFromBinaryFile (File file, File source) throws IOException {
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(
+            new FileInputStream(file), SNAPSHOT_BUFFER_SIZE))) {
+
+            if (inputStream.readInt() != SNAPSHOT_MAGIC ||
+                inputStream.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Not a binary dictionary: " + file.getPath());
+            }
+
+            long sourceLength = inputStream.readLong();
+            long sourceLastModified = inputStream.readLong();
+            if (source != null &&
+                (sourceLength != source.length() || sourceLastModified != source.lastModified())) {
+                throw new IOException("Stale binary dictionary: " + file.getPath());
+            }
+
+            // The phones are stored as indices of the phones of the snapshot
+            int numberOfPhones = inputStream.readInt();
+            int[] phoneTable = new int[numberOfPhones];
+            for (int i = 0; i < numberOfPhones; i++) {
+                phoneTable[i] = PHONE_TABLE.getId(inputStream.readUTF());
+            }
+
+            int size = inputStream.readInt();
+
+            Dictionary dictionary = new Dictionary(size);
+            for (int i = 0; i < size; i++) {
+                String key = inputStream.readUTF();
+                String value = inputStream.readUTF();
+
+                int[] phoneIds = new int[inputStream.readUnsignedShort()];
+                for (int j = 0; j < phoneIds.length; j++) {
+                    int phone = inputStream.readUnsignedShort();
+
+                    if (phone >= numberOfPhones) {
+                        throw new IOException("Malformed binary dictionary: " + file.getPath());
+                    }
+
+                    phoneIds[j] = phoneTable[phone];
+                }
+
+                dictionary.putEntry(key, value, phoneIds);
+            }
+
+            return dictionary;
+        }
+    }
+
+    /**
+     * @brief Writes this Dictionary as a binary snapshot
+     *        The entries are written in order as they are, along with their phones. The unknown
+     *        words are not written.
+     *
+     * @param file
+     *     The binary file to create
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public void exportToBinaryFile (File file) throws IOException {
+        exportToBinaryFile(file, null);
+    }
+
+    /**
+     * @brief Writes this Dictionary as a binary snapshot of a dictionary file
+     *        The length and the modification time of the dictionary file are recorded so that a
+     *        snapshot of a replaced dictionary file is never loaded, even if the new file is older.
+     *
+     * @param file
+     *     The binary file to create
+     * @param source
+     *     The dictionary file this Dictionary was created from, or null
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    void exportToBinaryFile (File file, File source) throws IOException {
+        // Map the global phone ids to dense indices of the phones used by this Dictionary
+        Map<Integer, Integer> phoneMap = new LinkedHashMap<>();
+        for (String key : keySet()) {
+            for (int phoneId : getPhoneIds(key)) {
+                phoneMap.putIfAbsent(phoneId, phoneMap.size());
+            }
+        }
+
+        if (phoneMap.size() > MAX_SNAPSHOT_PHONES) {
+            throw new IOException("Too many distinct phones for a binary dictionary.");
+        }
+
+        try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream(file), SNAPSHOT_BUFFER_SIZE))) {
+
+            outputStream.writeInt(SNAPSHOT_MAGIC);
+            outputStream.writeInt(SNAPSHOT_VERSION);
+
+            outputStream.writeLong(source != null ? source.length() : - 1);
+            outputStream.writeLong(source != null ? source.lastModified() : - 1);
+
+            outputStream.writeInt(phoneMap.size());
+            for (int phoneId : phoneMap.keySet()) {
+                outputStream.writeUTF(PHONE_TABLE.getSymbol(phoneId));
+            }
+
+            outputStream.writeInt(size());
+            for (Map.Entry<String, String> entry : entrySet()) {
+                int[] phoneIds = getPhoneIds(entry.getKey());
+
+                if (phoneIds.length > MAX_SNAPSHOT_PHONES) {
+                    throw new IOException("Too many phones for a binary dictionary entry: " +
+                        entry.getKey());
+                }
+
+                outputStream.writeUTF(entry.getKey());
+                outputStream.writeUTF(entry.getValue());
+                outputStream.writeShort(phoneIds.length);
+                for (int phoneId : phoneIds) {
+                    outputStream.writeShort(phoneMap.get(phoneId));
+                }
+            }
+        }
+    }
+
+    /**
+     * @brief Returns the initial capacity of a hash table that holds the given number of entries
+     *        without growing
+     *
+     * @param expectedSize
+     *     The expected number of entries
+     *
+     * @return The initial capacity
+     */
+    private static int getCapacity (int expectedSize) {
+        return Math.max(16, (int) (expectedSize / 0.75f) + 1);
+    }
+
     /**
      * @brief Returns the phones of a single word
      *
@@ -64,14 +320,106 @@ public class Dictionary extends LinkedHashMap<String, String> {
      * @return The phones of the given word
      */
     private List<String> getPhones (String string) {
-        String phones = get(string);
+        int[] phoneIds = getPhoneIds(string);
 
-        if (phones == null) {
-            return autoPronounce(string);
+        List<String> phones = new ArrayList<>(phoneIds.length);
+        for (int phoneId : phoneIds) {
+            phones.add(PHONE_TABLE.getSymbol(phoneId));
+        }
+
+        return phones;
+    }
+
+    /**
+     * @brief Returns the phone ids of a single word
+     *        The ids are those of SymbolTable.getPhoneTable(). The returned array is shared and
+     *        must not be modified.
+     *
+     * @param string
+     *     The word String
+     *
+     * @return The phone ids of the given word
+     */
+    public int[] getPhoneIds (String string) {
+        int[] phoneIds = null;
+
+        int variantStart = getVariantStart(string);
+        if (variantStart < 0) {
+            Pronunciations pronunciations = pronunciationsMap_.get(string);
+
+            if (pronunciations != null) {
+                phoneIds = pronunciations.getPhoneIds(1);
+            }
         }
         else {
-            return Arrays.asList(phones.trim().split(" "));
+            Pronunciations pronunciations = pronunciationsMap_.get(
+                string.substring(0, variantStart)
+            );
+
+            if (pronunciations != null) {
+                phoneIds = pronunciations.getPhoneIds(getVariant(string, variantStart));
+            }
         }
+
+        return phoneIds != null ? phoneIds :
+            wordCache_.get(string, word -> PHONE_TABLE.getIds(autoPronounce(word)));
+    }
+
+    /**
+     * @brief Returns a List containing the phone ids of each word in the WordSequence
+     *
+     * @param wordSequence
+     *     The WordSequence
+     *
+     * @return A List containing the phone ids of each word in the WordSequence
+     */
+    public List<int[]> getPhoneIds (WordSequence wordSequence) {
+        List<int[]> list = new ArrayList<>(wordSequence.size());
+
+        for (Word word : wordSequence) {
+            list.add(getPhoneIds(word.toString()));
+        }
+
+        return list;
+    }
+
+    /**
+     * @brief Returns the phone ids of a WordSequence in a single array
+     *        The returned array is shared and must not be modified.
+     *
+     * @param wordSequence
+     *     The WordSequence
+     *
+     * @return The array containing the phone ids of the given WordSequence
+     */
+    public int[] getPhoneIdsInLine (WordSequence wordSequence) {
+        return phraseCache_.get(wordSequence.toString(), phrase -> joinPhoneIds(wordSequence));
+    }
+
+    /**
+     * @brief Concatenates the phone ids of the words of a WordSequence
+     *
+     * @param wordSequence
+     *     The WordSequence
+     *
+     * @return The array containing the phone ids of the given WordSequence
+     */
+    private int[] joinPhoneIds (WordSequence wordSequence) {
+        List<int[]> wordPhoneIdList = getPhoneIds(wordSequence);
+
+        int length = 0;
+        for (int[] wordPhoneIds : wordPhoneIdList) {
+            length += wordPhoneIds.length;
+        }
+
+        int[] phoneIds = new int[length];
+        int position = 0;
+        for (int[] wordPhoneIds : wordPhoneIdList) {
+            System.arraycopy(wordPhoneIds, 0, phoneIds, position, wordPhoneIds.length);
+            position += wordPhoneIds.length;
+        }
+
+        return phoneIds;
     }
 
     /**
@@ -109,14 +457,43 @@ public class Dictionary extends LinkedHashMap<String, String> {
      * @return The List containing the phones of the given WordSequence
      */
     public List<String> getPhonesInLine (WordSequence wordSequence) {
-        List<String> list = new ArrayList<>();
+        int[] phoneIds = getPhoneIdsInLine(wordSequence);
 
-        getPhones(wordSequence).stream()
-            .forEach(list:: addAll);
+        List<String> list = new ArrayList<>(phoneIds.length);
+        for (int phoneId : phoneIds) {
+            list.add(PHONE_TABLE.getSymbol(phoneId));
+        }
 
         return list;
     }
 
+    /**
+     * @brief Returns the number of phone lookups answered by the caches of this Dictionary
+     *
+     * @return The number of cache hits
+     */
+    public long getCacheHitCount () {
+        return wordCache_.getHitCount() + phraseCache_.getHitCount();
+    }
+
+    /**
+     * @brief Returns the number of phone lookups that the caches of this Dictionary could not
+     *        answer
+     *
+     * @return The number of cache misses
+     */
+    public long getCacheMissCount () {
+        return wordCache_.getMissCount() + phraseCache_.getMissCount();
+    }
+
+    /**
+     * @brief Clears the phone caches of this Dictionary
+     */
+    private void invalidateCaches () {
+        wordCache_.clear();
+        phraseCache_.clear();
+    }
+
     /**
      * @brief Returns the phones of all the entries of the given word
      *
@@ -133,13 +510,10 @@ public class Dictionary extends LinkedHashMap<String, String> {
         LinkedHashMap<String, String> entryMap = new LinkedHashMap<>();
         entryMap.put(key, get(key));
 
-        int index = 2;
-        String currentKey = key + "(" + index + ")";
-        while (containsKey(currentKey)) {
-            entryMap.put(currentKey, get(currentKey));
-
-            index++;
-            currentKey = key + "(" + index + ")";
+        Pronunciations pronunciations = pronunciationsMap_.get(key);
+        for (int variant = 2; pronunciations != null && pronunciations.get(variant) != null;
+             variant++) {
+            entryMap.put(key + "(" + variant + ")", pronunciations.get(variant));
         }
 
         return entryMap;
@@ -156,48 +530,41 @@ public class Dictionary extends LinkedHashMap<String, String> {
 
     /**
      * @brief Returns a Set of the unique words inside this Dictionary
+     *        The Set is a view that is kept up to date as entries are put and removed.
      *
      * @return a Set of the unique words of this Dictionary
      */
     private Set<String> getUniqueWords () {
-        return keySet().stream().
-            filter(entry -> ! entry.contains("(")).
-            collect(Collectors.toSet());
+        return Collections.unmodifiableSet(uniqueWords_);
     }
 
     /**
      * @brief Applies fuzzy matching on a given word
      *        Fuzzy matching will find words that are similar and not necessarily exactly the same
      *        the given word. The matching is done using the Levenshtein distance as a similarity
-     *        metric.
+     *        metric, on a FuzzyWordIndex over the unique words that is built the first time it is
+     *        needed.
      *
      * @param string
      *     The word to use for fuzzy matching
      * @param count
      *     The number of words to return
      *
-     * @return A List with the matching words
+     * @return A List with up to count matching words, sorted by their distance from the given
+     *         word and then alphabetically
      */
     private List<String> fuzzyMatch (String string, int count) {
-        String[] bestMatches = new String[count];
-        double[] bestDistances = new double[count];
-        for (int i = 0; i < count; i++) {
-            bestDistances[i] = Double.POSITIVE_INFINITY;
-        }
-
-        for (String word : getUniqueWords()) {
-            double distance = getLevenshteinDistance(string, word);
+        FuzzyWordIndex fuzzyWordIndex;
 
-            for (int i = 0; i < count; i++) {
-                if (distance < bestDistances[i]) {
-                    bestDistances[i] = distance;
-                    bestMatches[i] = word;
-                    break;
-                }
+        synchronized (this) {
+            if (fuzzyWordIndex_ == null) {
+                fuzzyWordIndex_ = new FuzzyWordIndex(getUniqueWords());
             }
+
+            fuzzyWordIndex = fuzzyWordIndex_;
         }
 
-        return Arrays.asList(bestMatches);
+        return fuzzyWordIndex.getClosest(string, count);
     }
 
     /**
@@ -224,28 +591,113 @@ public class Dictionary extends LinkedHashMap<String, String> {
      */
     @Override
     public String put (String key, String value) {
+        return put(key, value, toPhoneIds(value));
+    }
+
+    /**
+     * @brief Puts an entry on this Dictionary given its phone ids
+     *
+     * @param key
+     *     The word of the entry
+     * @param value
+     *     The phone sequence of the entry
+     * @param phoneIds
+     *     The phone ids of the phone sequence
+     *
+     * @return null
+     */
+    private String put (String key, String value, int[] phoneIds) {
         if (! containsKey(key)) {
-            super.put(key, value);
+            putEntry(key, value, phoneIds);
             return null;
         }
 
-        int index = 2;
-        String currentKey = key + "(" + index + ")";
-        while (containsKey(currentKey)) {
+        Pronunciations pronunciations = pronunciationsMap_.get(key);
+
+        int variant = 2;
+        while (pronunciations != null && pronunciations.get(variant) != null) {
             // if the given value already exists inside the dictionary, don't put it again
-            if (get(currentKey).equals(value)) {
+            if (pronunciations.get(variant).equals(value)) {
                 return null;
             }
 
-            index++;
-            currentKey = key + "(" + index + ")";
+            variant++;
         }
 
-        super.put(currentKey, value);
+        putEntry(key + "(" + variant + ")", value, phoneIds);
 
         return null;
     }
 
+    /**
+     * @brief Puts the given entries on this Dictionary as they are
+     *        Unlike put, an existing entry with the same key is replaced.
+     *
+     * @param map
+     *     The entries to put
+     */
+    @Override
+    public void putAll (Map<? extends String, ? extends String> map) {
+        for (Map.Entry<? extends String, ? extends String> entry : map.entrySet()) {
+            putEntry(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * @brief Puts a single entry on this Dictionary together with its phone ids
+     *
+     * @param key
+     *     The key of the entry
+     * @param value
+     *     The phone sequence of the entry
+     */
+    private void putEntry (String key, String value) {
+        putEntry(key, value, toPhoneIds(value));
+    }
+
+    /**
+     * @brief Puts a single entry on this Dictionary given its phone ids
+     *
+     * @param key
+     *     The key of the entry
+     * @param value
+     *     The phone sequence of the entry
+     * @param phoneIds
+     *     The phone ids of the phone sequence
+     */
+    private void putEntry (String key, String value, int[] phoneIds) {
+        super.put(key, value);
+
+        int variantStart = getVariantStart(key);
+        String baseWord = variantStart < 0 ? key : key.substring(0, variantStart);
+
+        pronunciationsMap_.computeIfAbsent(baseWord, word -> new Pronunciations()).set(
+            variantStart < 0 ? 1 : getVariant(key, variantStart),
+            value,
+            phoneIds
+        );
+
+        if (! key.contains("(")) {
+            if (uniqueWords_.add(key) && fuzzyWordIndex_ != null) {
+                fuzzyWordIndex_.add(key);
+            }
+        }
+
+        invalidateCaches();
+    }
+
+    /**
+     * @brief Splits a phone sequence into phone ids
+     *
+     * @param value
+     *     The phone sequence
+     *
+     * @return The ids of the phones of the SymbolTable of the phones
+     */
+    static int[] toPhoneIds (String value) {
+        return PHONE_TABLE.getIds(Arrays.asList(value.trim().split(" ")));
+    }
+
     /**
      * @brief Adds the given word as an unknown word
      *
@@ -256,6 +708,8 @@ public class Dictionary extends LinkedHashMap<String, String> {
         if (! unknownWords_.contains(word)) {
             unknownWords_.add(word);
         }
+
+        invalidateCaches();
     }
 
     /**
@@ -265,14 +719,61 @@ public class Dictionary extends LinkedHashMap<String, String> {
      *     The word the entries of which to remove
      */
     public void remove (String key) {
-        if (super.remove(key) == null) {
+        if (remove((Object) key) == null) {
             return;
         }
 
-        int index = 2;
-        while (super.remove(key + "(" + index + ")") != null) {
-            index++;
+        Pronunciations pronunciations = pronunciationsMap_.get(key);
+        for (int variant = 2; pronunciations != null && pronunciations.get(variant) != null;
+             variant++) {
+            remove((Object) (key + "(" + variant + ")"));
+        }
+    }
+
+    /**
+     * @brief Removes a single entry
+     *
+     * @param key
+     *     The key of the entry
+     *
+     * @return The phone sequence of the removed entry or null if there was no such entry
+     */
+    @Override
+    public String remove (Object key) {
+        String value = super.remove(key);
+
+        if (value != null) {
+            String string = (String) key;
+
+            int variantStart = getVariantStart(string);
+            String baseWord = variantStart < 0 ? string : string.substring(0, variantStart);
+
+            Pronunciations pronunciations = pronunciationsMap_.get(baseWord);
+            pronunciations.set(variantStart < 0 ? 1 : getVariant(string, variantStart), null, null);
+            if (pronunciations.isEmpty()) {
+                pronunciationsMap_.remove(baseWord);
+            }
+
+            if (uniqueWords_.remove(string) && fuzzyWordIndex_ != null) {
+                fuzzyWordIndex_.remove(string);
+            }
+
+            invalidateCaches();
         }
+
+        return value;
+    }
+
+    /**
+     * @brief Removes all the entries of this Dictionary
+     */
+    @Override
+    public void clear () {
+        super.clear();
+        pronunciationsMap_.clear();
+        uniqueWords_.clear();
+        fuzzyWordIndex_ = null;
+        invalidateCaches();
     }
 
     /**
@@ -287,15 +788,47 @@ public class Dictionary extends LinkedHashMap<String, String> {
 
     /**
      * @brief Returns the default Dictionary based on the default ASR Configuration
+     *        A binary snapshot is kept next to the dictionary file. It is used if it was created
+     *        from a file with the length and the modification time of the dictionary file.
+     *        Otherwise the dictionary file is parsed and the snapshot is written again so that the
+     *        next load is faster.
      *
      * @return The default Dictionary based on the default ASR Configuration
      *
      * @throws FileNotFoundException If the default Dictionary file is not found
      */
     public static Dictionary getDefaultDictionary () throws FileNotFoundException {
-        return Dictionary.createFromStream(new FileInputStream(
-            Configuration.getDefaultConfiguration().getDictionaryPath()
-        ));
+        String path = Configuration.getDefaultConfiguration().getDictionaryPath();
+
+        File file = new File(path);
+        if (! file.isFile()) {
+            throw new FileNotFoundException("Dictionary doesn't exist: " + path);
+        }
+
+        File binaryFile = new File(path + SNAPSHOT_EXTENSION);
+        if (binaryFile.isFile()) {
+            try {
+                return createFromBinaryFile(binaryFile, file);
+            } catch (IOException e) {
+                logger_.warning("Could not open " + binaryFile.getPath() +
+                    ". The dictionary file will be used instead.");
+            }
+        }
+
+        Dictionary dictionary;
+        try {
+            dictionary = createFromFile(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the dictionary: " + path, e);
+        }
+
+        try {
+            dictionary.exportToBinaryFile(binaryFile, file);
+        } catch (IOException e) {
+            logger_.warning("Could not write " + binaryFile.getPath());
+        }
+
+        return dictionary;
     }
 
     /**
@@ -306,10 +839,27 @@ public class Dictionary extends LinkedHashMap<String, String> {
      */
     public void exportToStream (OutputStream outputStream) {
         // Sort the entries of the dictionary based on the key length. This will ensure that
-        // "the(1)" is below "the" when the dictionary is saved to the file.
-        List<Map.Entry<String, String>> entries = new ArrayList<>(entrySet());
+        // "the(1)" is below "the" when the dictionary is saved to the file. The sort is a stable
+        // counting sort, so entries with keys of the same length keep their insertion order.
+        int maxLength = 0;
+        for (String key : keySet()) {
+            maxLength = Math.max(maxLength, key.length());
+        }
 
-        Collections.sort(entries, (e1, e2) -> e1.getKey().length() - e2.getKey().length());
+        int[] starts = new int[maxLength + 2];
+        for (String key : keySet()) {
+            starts[key.length() + 1]++;
+        }
+        for (int length = 1; length <= maxLength + 1; length++) {
+            starts[length] += starts[length - 1];
+        }
+
+        List<Map.Entry<String, String>> entries = new ArrayList<>(
+            Collections.nCopies(size(), null)
+        );
+        for (Map.Entry<String, String> entry : entrySet()) {
+            entries.set(starts[entry.getKey().length()]++, entry);
+        }
 
         PrintWriter printWriter = new PrintWriter(outputStream);
         for (Map.Entry<String, String> entry : entries) {
@@ -318,6 +868,126 @@ public class Dictionary extends LinkedHashMap<String, String> {
         printWriter.close();
     }
 
+    /**
+     * @brief Returns the index of the parenthesis that starts the variant number of a key
+     *        The key of the n-th pronunciation of a word, where n is at least 2, is "word(n)".
+     *
+     * @param key
+     *     The key
+     *
+     * @return The index of the opening parenthesis or -1 if the key is a base word
+     */
+    private static int getVariantStart (String key) {
+        int length = key.length();
+        if (length < 4 || key.charAt(length - 1) != ')') {
+            return - 1;
+        }
+
+        int index = length - 2;
+        while (index > 0 && Character.isDigit(key.charAt(index))) {
+            index--;
+        }
+
+        int numberOfDigits = length - 2 - index;
+        if (key.charAt(index) != '(' || index == 0 || numberOfDigits == 0 || numberOfDigits > 9 ||
+            key.charAt(index + 1) == '0' || (numberOfDigits == 1 && key.charAt(index + 1) == '1')) {
+            return - 1;
+        }
+
+        return index;
+    }
+
+    /**
+     * @brief Returns the variant number of a key that is not a base word
+     *
+     * @param key
+     *     The key
+     * @param variantStart
+     *     The index returned by getVariantStart
+     *
+     * @return The variant number
+     */
+    private static int getVariant (String key, int variantStart) {
+        return Integer.parseInt(key.substring(variantStart + 1, key.length() - 1));
+    }
+
+    /**
+     * @class Pronunciations
+     * @brief Holds the pronunciations of a base word indexed by their variant number
+     *        The base word itself is variant 1. Missing variants are null.
+     */
+    private static final class Pronunciations {
+
+        /**
+         * @brief Returns the pronunciation of a variant
+         *
+         * @param variant
+         *     The variant number
+         *
+         * @return The pronunciation or null if there is no such variant
+         */
+        String get (int variant) {
+            return variant <= values_.length ? values_[variant - 1] : null;
+        }
+
+        /**
+         * @brief Returns the phone ids of a variant
+         *
+         * @param variant
+         *     The variant number
+         *
+         * @return The phone ids or null if there is no such variant
+         */
+        int[] getPhoneIds (int variant) {
+            return variant <= phoneIds_.length ? phoneIds_[variant - 1] : null;
+        }
+
+        /**
+         * @brief Sets the pronunciation of a variant
+         *
+         * @param variant
+         *     The variant number
+         * @param value
+         *     The pronunciation or null to remove the variant
+         * @param phoneIds
+         *     The phone ids of the pronunciation
+         */
+        void set (int variant, String value, int[] phoneIds) {
+            if (variant > values_.length) {
+                if (value == null) {
+                    return;
+                }
+
+                values_ = Arrays.copyOf(values_, variant);
+                phoneIds_ = Arrays.copyOf(phoneIds_, variant);
+            }
+
+            if (values_[variant - 1] == null && value != null) {
+                size_++;
+            }
+            else if (values_[variant - 1] != null && value == null) {
+                size_--;
+            }
+
+            values_[variant - 1] = value;
+            phoneIds_[variant - 1] = phoneIds;
+        }
+
+        /**
+         * @brief Returns true if there are no pronunciations
+         *
+         * @return True if there are no pronunciations
+         */
+        boolean isEmpty () {
+            return size_ == 0;
+        }
+
+        private String[] values_ = new String[1]; //!< The pronunciation of each variant
+        private int[][] phoneIds_ = new int[1][]; //!< The phone ids of each variant
+        private int size_ = 0; //!< The number of variants that exist
+
+    }
+
     /**
      * @brief Creates the phones for the given word
      *
@@ -337,5 +1007,30 @@ public class Dictionary extends LinkedHashMap<String, String> {
     }
 
     private final List<String> unknownWords_; //!< The unknown words for this Dictionary
+    private final Map<String, Pronunciations> pronunciationsMap_; //!< The pronunciations of each
+                                                                  //!< base word
+    private final Set<String> uniqueWords_; //!< The keys that contain no "("
+    private FuzzyWordIndex fuzzyWordIndex_; //!< The index over the unique words used by fuzzyMatch,
+                                            //!< null until it is first needed
+
+    private final LRUCache<String, int[]> wordCache_ = new LRUCache<>(CACHE_CAPACITY); //!< The
+                                                   //!< phone ids of automatically pronounced words
+    private final LRUCache<String, int[]> phraseCache_ = new LRUCache<>(CACHE_CAPACITY); //!< The
+                                                     //!< phone ids of whole WordSequence objects
+
+    private static final int CACHE_CAPACITY = 4096; //!< The maximum number of entries of each cache
+
+    private static final SymbolTable PHONE_TABLE = SymbolTable.getPhoneTable(); //!< The phone ids
+
+    private static final String SNAPSHOT_EXTENSION = ".bin"; //!< The extension of the binary
+                                                              //!< snapshot of a dictionary file
+    private static final int SNAPSHOT_MAGIC = 0x50534443; //!< "PSDC"
+    private static final int SNAPSHOT_VERSION = 2; //!< Version 2 records the source file
+    private static final int SNAPSHOT_BUFFER_SIZE = 1 << 16; //!< The buffer size used for the
+                                                             //!< binary snapshots
+    private static final int MAX_SNAPSHOT_PHONES = 0xFFFF; //!< The maximum number of distinct
+                                                           //!< phones and of phones per entry
+
+    private static final Logger logger_ = Logger.getLogger(Dictionary.class.getName());
 
 }
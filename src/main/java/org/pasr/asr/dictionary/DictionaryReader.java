@@ -0,0 +1,272 @@
+package org.pasr.asr.dictionary;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+
+/**
+ * @class DictionaryReader
+ * @brief Implements a reader for dictionaries in the CMU Sphinx format
+ *        The bytes of the dictionary are split into chunks at line boundaries and the chunks are
+ *        parsed in parallel. Each line is split into its key and its value and the value is also
+ *        split into phone ids, which is most of the work of loading a dictionary. The entries are
+ *        returned in the order of the lines so that they can be put on a Dictionary exactly as if
+ *        the lines had been read one by one.
+ *
+ * @see <a href="http://cmusphinx.sourceforge.net/wiki/tutorialdict">http://cmusphinx.sourceforge.net/wiki/tutorialdict</a>
+ */
+class DictionaryReader {
+
+    /**
+     * @brief Constructor
+     *
+     * @param buffer
+     *     The ByteBuffer holding the dictionary. Only absolute reads are done on it so its
+     *     position is not modified.
+     */
+    DictionaryReader (ByteBuffer buffer) {
+        buffer_ = buffer;
+    }
+
+    /**
+     * @brief Reads the dictionary
+     *
+     * @param parallel
+     *     Whether the chunks should be parsed in parallel
+     */
+    void read (boolean parallel) {
+        int end = buffer_.limit();
+
+        int numberOfChunks = 1;
+        if (parallel) {
+            numberOfChunks = (int) Math.max(1, Math.min(
+                Runtime.getRuntime().availableProcessors() * 4L, end / MIN_CHUNK_SIZE
+            ));
+        }
+
+        // Chunk boundaries are moved right after the next new line
+        int[] boundaries = new int[numberOfChunks + 1];
+        boundaries[numberOfChunks] = end;
+        for (int i = 1; i < numberOfChunks; i++) {
+            int boundary = (int) (((long) end) * i / numberOfChunks);
+            boundary = Math.max(boundary, boundaries[i - 1]);
+            boundaries[i] = Math.min(indexOf((byte) '\n', boundary, end) + 1, end);
+        }
+
+        IntStream chunkIndices = IntStream.range(0, numberOfChunks);
+        if (numberOfChunks > 1) {
+            chunkIndices = chunkIndices.parallel();
+        }
+
+        List<Chunk> chunks = chunkIndices
+            .mapToObj(i -> readChunk(boundaries[i], boundaries[i + 1]))
+            .collect(Collectors.toList());
+
+        for (Chunk chunk : chunks) {
+            size_ += chunk.size_;
+        }
+
+        keys_ = new String[size_];
+        values_ = new String[size_];
+        phoneIds_ = new int[size_][];
+
+        int position = 0;
+        for (Chunk chunk : chunks) {
+            System.arraycopy(chunk.keys_, 0, keys_, position, chunk.size_);
+            System.arraycopy(chunk.values_, 0, values_, position, chunk.size_);
+            System.arraycopy(chunk.phoneIds_, 0, phoneIds_, position, chunk.size_);
+            position += chunk.size_;
+        }
+    }
+
+    /**
+     * @brief Returns the number of entries that were read
+     *
+     * @return The number of entries that were read
+     */
+    int size () {
+        return size_;
+    }
+
+    /**
+     * @brief Returns the key of an entry
+     *
+     * @param index
+     *     The index of the entry
+     *
+     * @return The key of the entry
+     */
+    String getKey (int index) {
+        return keys_[index];
+    }
+
+    /**
+     * @brief Returns the value of an entry
+     *
+     * @param index
+     *     The index of the entry
+     *
+     * @return The value of the entry
+     */
+    String getValue (int index) {
+        return values_[index];
+    }
+
+    /**
+     * @brief Returns the phone ids of the value of an entry
+     *
+     * @param index
+     *     The index of the entry
+     *
+     * @return The phone ids of the value of the entry
+     */
+    int[] getPhoneIds (int index) {
+        return phoneIds_[index];
+    }
+
+    /**
+     * @brief Reads the entries found in a byte range
+     *
+     * @param start
+     *     The start of the range (inclusive)
+     * @param end
+     *     The end of the range (exclusive)
+     *
+     * @return The parsed Chunk
+     */
+    private Chunk readChunk (int start, int end) {
+        byte[] bytes = new byte[end - start];
+
+        // A duplicate shares the content of the buffer but has its own position
+        ByteBuffer buffer = buffer_.duplicate();
+        buffer.position(start);
+        buffer.get(bytes);
+
+        Chunk chunk = new Chunk(bytes.length / EXPECTED_LINE_LENGTH + 16);
+
+        int lineStart = 0;
+        while (lineStart < bytes.length) {
+            int lineEnd = lineStart;
+            while (lineEnd < bytes.length && bytes[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            int nextLineStart = lineEnd + 1;
+
+            if (lineEnd > lineStart && bytes[lineEnd - 1] == '\r') {
+                lineEnd--;
+            }
+
+            if (lineEnd > lineStart) {
+                int separator = lineStart;
+                while (separator < lineEnd && bytes[separator] != ' ') {
+                    separator++;
+                }
+
+                if (separator == lineEnd) {
+                    throw new IllegalArgumentException("Malformed dictionary line: " +
+                        new String(bytes, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8));
+                }
+
+                String value = new String(bytes, separator + 1, lineEnd - separator - 1,
+                    StandardCharsets.UTF_8);
+
+                chunk.add(
+                    new String(bytes, lineStart, separator - lineStart, StandardCharsets.UTF_8),
+                    value,
+                    Dictionary.toPhoneIds(value)
+                );
+            }
+
+            lineStart = nextLineStart;
+        }
+
+        return chunk;
+    }
+
+    /**
+     * @brief Returns the index of a byte inside a range of the buffer
+     *
+     * @param b
+     *     The byte
+     * @param start
+     *     The start of the range (inclusive)
+     * @param end
+     *     The end of the range (exclusive)
+     *
+     * @return The index of the byte or end if it is not found
+     */
+    private int indexOf (byte b, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (buffer_.get(i) == b) {
+                return i;
+            }
+        }
+
+        return end;
+    }
+
+    /**
+     * @class Chunk
+     * @brief Holds the entries parsed from a range of the dictionary
+     */
+    private static final class Chunk {
+
+        /**
+         * @brief Constructor
+         *
+         * @param expectedSize
+         *     The expected number of entries
+         */
+        Chunk (int expectedSize) {
+            keys_ = new String[expectedSize];
+            values_ = new String[expectedSize];
+            phoneIds_ = new int[expectedSize][];
+        }
+
+        /**
+         * @brief Adds an entry
+         *
+         * @param key
+         *     The key of the entry
+         * @param value
+         *     The value of the entry
+         * @param phoneIds
+         *     The phone ids of the value
+         */
+        void add (String key, String value, int[] phoneIds) {
+            if (size_ == keys_.length) {
+                int capacity = size_ * 2;
+
+                keys_ = Arrays.copyOf(keys_, capacity);
+                values_ = Arrays.copyOf(values_, capacity);
+                phoneIds_ = Arrays.copyOf(phoneIds_, capacity);
+            }
+
+            keys_[size_] = key;
+            values_[size_] = value;
+            phoneIds_[size_] = phoneIds;
+            size_++;
+        }
+
+        private String[] keys_; //!< The key of each entry
+        private String[] values_; //!< The value of each entry
+        private int[][] phoneIds_; //!< The phone ids of each value
+        private int size_ = 0; //!< The number of entries
+
+    }
+
+    private final ByteBuffer buffer_; //!< The ByteBuffer holding the dictionary
+
+    private String[] keys_; //!< The key of each entry
+    private String[] values_; //!< The value of each entry
+    private int[][] phoneIds_; //!< The phone ids of each value
+    private int size_ = 0; //!< The number of entries
+
+    private static final int MIN_CHUNK_SIZE = 1 << 16; //!< The minimum size of a chunk in bytes
+    private static final int EXPECTED_LINE_LENGTH = 20; //!< Used to pre-size the chunks
+
+}
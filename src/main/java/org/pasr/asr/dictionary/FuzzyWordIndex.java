@@ -0,0 +1,412 @@
+package org.pasr.asr.dictionary;
+
+import org.pasr.utilities.LevenshteinDistance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+
+/**
+ * @class FuzzyWordIndex
+ * @brief Implements an index over words for finding the words closest to a given one
+ *        The words are kept sorted and compared with the query using Myers' bit-parallel
+ *        algorithm, where the query is the pattern and each word is the text. The state of the
+ *        algorithm after every character of a word is kept, so a word is only processed after the
+ *        prefix that it shares with the previous one. Since consecutive words share long prefixes,
+ *        a query costs a few operations for every node of the trie of the words, without building
+ *        the trie. The scan runs over a front coded Snapshot of the words, which is created again
+ *        the first time it is needed after a word is added or removed.
+ *
+ *        Every word is compared, thus the result is exact. Queries longer than 64 characters fall
+ *        back to comparing each word separately.
+ */
+class FuzzyWordIndex {
+
+    /**
+     * @brief Constructor
+     *
+     * @param words
+     *     The words to index
+     */
+    FuzzyWordIndex (Collection<String> words) {
+        words_ = words.toArray(new String[words.size()]);
+        Arrays.sort(words_);
+
+        for (String word : words_) {
+            if (size_ == 0 || ! word.equals(words_[size_ - 1])) {
+                words_[size_++] = word;
+            }
+        }
+    }
+
+    /**
+     * @brief Adds a word to this index
+     *
+     * @param word
+     *     The word to add
+     */
+    synchronized void add (String word) {
+        int index = Arrays.binarySearch(words_, 0, size_, word);
+        if (index >= 0) {
+            return;
+        }
+        index = - index - 1;
+
+        if (size_ == words_.length) {
+            words_ = Arrays.copyOf(words_, Math.max(16, size_ * 2));
+        }
+
+        System.arraycopy(words_, index, words_, index + 1, size_ - index);
+        words_[index] = word;
+        size_++;
+
+        snapshot_ = null;
+    }
+
+    /**
+     * @brief Removes a word from this index
+     *
+     * @param word
+     *     The word to remove
+     */
+    synchronized void remove (String word) {
+        int index = Arrays.binarySearch(words_, 0, size_, word);
+        if (index < 0) {
+            return;
+        }
+
+        System.arraycopy(words_, index + 1, words_, index, size_ - index - 1);
+        words_[--size_] = null;
+
+        snapshot_ = null;
+    }
+
+    /**
+     * @brief Returns the words closest to the given one
+     *
+     * @param word
+     *     The word to look up
+     * @param count
+     *     The maximum number of words to return
+     *
+     * @return Up to count words sorted by their Levenshtein Distance from the given word and then
+     *         alphabetically
+     */
+    List<String> getClosest (String word, int count) {
+        Snapshot snapshot = getSnapshot();
+        String[] words = snapshot.words_;
+
+        if (count <= 0 || words.length == 0) {
+            return new ArrayList<>();
+        }
+
+        // The worst of the best matches found so far is at the head. The words are visited in
+        // alphabetical order, so a word replaces the worst match only if it is strictly closer.
+        PriorityQueue<Match> bestMatches = new PriorityQueue<>(count + 1,
+            Collections.reverseOrder());
+
+        if (word.isEmpty() || word.length() > Long.SIZE) {
+            int[] characters = toCharacters(word);
+
+            for (int i = 0; i < words.length; i++) {
+                offer(bestMatches, count,
+                    LevenshteinDistance.getDistance(characters, toCharacters(words[i])), i);
+            }
+        }
+        else {
+            snapshot.scan(word, count, bestMatches);
+        }
+
+        Match[] matches = bestMatches.toArray(new Match[bestMatches.size()]);
+        Arrays.sort(matches);
+
+        List<String> closestWords = new ArrayList<>(matches.length);
+        for (Match match : matches) {
+            closestWords.add(words[match.index_]);
+        }
+
+        return closestWords;
+    }
+
+    /**
+     * @brief Returns the number of indexed words
+     *
+     * @return The number of indexed words
+     */
+    synchronized int size () {
+        return size_;
+    }
+
+    /**
+     * @brief Returns the Snapshot of the current words, creating it if needed
+     *
+     * @return The Snapshot of the current words
+     */
+    private synchronized Snapshot getSnapshot () {
+        if (snapshot_ == null) {
+            snapshot_ = new Snapshot(Arrays.copyOf(words_, size_));
+        }
+
+        return snapshot_;
+    }
+
+    /**
+     * @brief Offers a word to the best matches found so far
+     *
+     * @param bestMatches
+     *     The best matches found so far
+     * @param count
+     *     The maximum number of matches
+     * @param distance
+     *     The distance of the word from the query
+     * @param index
+     *     The index of the word
+     */
+    private static void offer (PriorityQueue<Match> bestMatches, int count, int distance,
+                               int index) {
+        if (bestMatches.size() < count) {
+            bestMatches.add(new Match(distance, index));
+        }
+        else if (distance < bestMatches.peek().distance_) {
+            bestMatches.poll();
+            bestMatches.add(new Match(distance, index));
+        }
+    }
+
+    /**
+     * @brief Returns the index of a character inside the first size characters of an array
+     *
+     * @param characters
+     *     The array
+     * @param size
+     *     The number of characters to search
+     * @param character
+     *     The character
+     *
+     * @return The index of the character or - 1 if it is not found
+     */
+    private static int indexOf (char[] characters, int size, char character) {
+        for (int i = 0; i < size; i++) {
+            if (characters[i] == character) {
+                return i;
+            }
+        }
+
+        return - 1;
+    }
+
+    /**
+     * @brief Returns the characters of a word as an int array
+     *
+     * @param word
+     *     The word
+     *
+     * @return The characters of the word
+     */
+    private static int[] toCharacters (String word) {
+        int[] characters = new int[word.length()];
+
+        for (int i = 0, n = characters.length; i < n; i++) {
+            characters[i] = word.charAt(i);
+        }
+
+        return characters;
+    }
+
+    /**
+     * @class Snapshot
+     * @brief Holds the sorted words front coded, ready to be scanned
+     *        Only the part of each word after the prefix that it shares with the previous word is
+     *        kept, and all these parts are stored one after the other inside a single array. Thus
+     *        a scan reads memory sequentially instead of following a reference for every word.
+     */
+    private static final class Snapshot {
+
+        /**
+         * @brief Constructor
+         *
+         * @param words
+         *     The sorted words
+         */
+        Snapshot (String[] words) {
+            int numberOfWords = words.length;
+
+            words_ = words;
+            sharedLengths_ = new int[numberOfWords];
+            suffixStarts_ = new int[numberOfWords + 1];
+
+            int numberOfCharacters = 0;
+            String previousWord = "";
+            for (int w = 0; w < numberOfWords; w++) {
+                String word = words[w];
+
+                int shared = 0;
+                int maxShared = Math.min(word.length(), previousWord.length());
+                while (shared < maxShared && word.charAt(shared) == previousWord.charAt(shared)) {
+                    shared++;
+                }
+
+                sharedLengths_[w] = shared;
+                suffixStarts_[w] = numberOfCharacters;
+                numberOfCharacters += word.length() - shared;
+
+                maxLength_ = Math.max(maxLength_, word.length());
+                previousWord = word;
+            }
+            suffixStarts_[numberOfWords] = numberOfCharacters;
+
+            suffixes_ = new char[numberOfCharacters];
+            for (int w = 0; w < numberOfWords; w++) {
+                words[w].getChars(sharedLengths_[w], words[w].length(), suffixes_,
+                    suffixStarts_[w]);
+            }
+        }
+
+        /**
+         * @brief Compares every word with a query, sharing the work on common prefixes
+         *
+         * @param query
+         *     The query. Must have between 1 and 64 characters
+         * @param count
+         *     The maximum number of matches
+         * @param bestMatches
+         *     The best matches found so far
+         */
+        void scan (String query, int count, PriorityQueue<Match> bestMatches) {
+            int m = query.length();
+
+            // The match bit vector of every character of the query
+            long[] asciiMatches = new long[ASCII_SIZE];
+            char[] otherCharacters = new char[m];
+            long[] otherMatches = new long[m];
+            int numberOfOtherCharacters = 0;
+            for (int i = 0; i < m; i++) {
+                char character = query.charAt(i);
+
+                if (character < ASCII_SIZE) {
+                    asciiMatches[character] |= 1L << i;
+                }
+                else {
+                    int index = indexOf(otherCharacters, numberOfOtherCharacters, character);
+                    if (index < 0) {
+                        index = numberOfOtherCharacters++;
+                        otherCharacters[index] = character;
+                    }
+                    otherMatches[index] |= 1L << i;
+                }
+            }
+
+            // The state of the algorithm after each prefix of the current word
+            long[] positiveVerticals = new long[maxLength_ + 1];
+            long[] negativeVerticals = new long[maxLength_ + 1];
+            int[] distances = new int[maxLength_ + 1];
+            positiveVerticals[0] = m == Long.SIZE ? - 1L : (1L << m) - 1;
+            negativeVerticals[0] = 0;
+            distances[0] = m;
+
+            long lastBit = 1L << (m - 1);
+
+            char[] suffixes = suffixes_;
+            for (int w = 0, numberOfWords = words_.length; w < numberOfWords; w++) {
+                int depth = sharedLengths_[w];
+
+                long positiveVertical = positiveVerticals[depth];
+                long negativeVertical = negativeVerticals[depth];
+                int distance = distances[depth];
+
+                for (int k = suffixStarts_[w], end = suffixStarts_[w + 1]; k < end; k++) {
+                    char character = suffixes[k];
+
+                    long match;
+                    if (character < ASCII_SIZE) {
+                        match = asciiMatches[character];
+                    }
+                    else {
+                        int index = indexOf(otherCharacters, numberOfOtherCharacters, character);
+                        match = index < 0 ? 0 : otherMatches[index];
+                    }
+
+                    long xVertical = match | negativeVertical;
+                    long xHorizontal = (((match & positiveVertical) + positiveVertical) ^
+                        positiveVertical) | match;
+
+                    long positiveHorizontal = negativeVertical |
+                        ~ (xHorizontal | positiveVertical);
+                    long negativeHorizontal = positiveVertical & xHorizontal;
+
+                    if ((positiveHorizontal & lastBit) != 0) {
+                        distance++;
+                    }
+                    else if ((negativeHorizontal & lastBit) != 0) {
+                        distance--;
+                    }
+
+                    // The first row of the matrix grows by one in each column
+                    positiveHorizontal = (positiveHorizontal << 1) | 1;
+                    negativeHorizontal <<= 1;
+
+                    positiveVertical = negativeHorizontal | ~ (xVertical | positiveHorizontal);
+                    negativeVertical = positiveHorizontal & xVertical;
+
+                    depth++;
+                    positiveVerticals[depth] = positiveVertical;
+                    negativeVerticals[depth] = negativeVertical;
+                    distances[depth] = distance;
+                }
+
+                offer(bestMatches, count, distance, w);
+            }
+        }
+
+        private final String[] words_; //!< The sorted words
+        private final int[] sharedLengths_; //!< The length of the prefix that each word shares
+                                            //!< with the previous one
+        private final int[] suffixStarts_; //!< The position of the rest of each word inside
+                                           //!< suffixes_, followed by the length of suffixes_
+        private final char[] suffixes_; //!< The rest of every word after its shared prefix
+        private int maxLength_ = 0; //!< The length of the longest word
+
+    }
+
+    /**
+     * @class Match
+     * @brief Holds the index of a word and its distance from the query
+     *        Matches are ordered by distance and then by index, that is alphabetically.
+     */
+    private static final class Match implements Comparable<Match> {
+
+        /**
+         * @brief Constructor
+         *
+         * @param distance
+         *     The distance from the query
+         * @param index
+         *     The index of the word
+         */
+        Match (int distance, int index) {
+            distance_ = distance;
+            index_ = index;
+        }
+
+        @Override
+        public int compareTo (Match match) {
+            return distance_ != match.distance_ ? Integer.compare(distance_, match.distance_) :
+                Integer.compare(index_, match.index_);
+        }
+
+        private final int distance_; //!< The distance from the query
+        private final int index_; //!< The index of the word
+
+    }
+
+    private String[] words_; //!< The sorted words
+    private int size_ = 0; //!< The number of words
+    private Snapshot snapshot_; //!< The Snapshot of the current words or null if they changed
+
+    private static final int ASCII_SIZE = 128; //!< The number of ASCII characters
+
+}
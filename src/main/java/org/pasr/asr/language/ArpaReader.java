@@ -0,0 +1,789 @@
+package org.pasr.asr.language;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+
+/**
+ * @class ArpaReader
+ * @brief Implements a reader for language models in the ARPA-standard format
+ *        The reader works directly on the bytes of a ByteBuffer (usually a memory-mapped file).
+ *        The counts of the \data\ header are used to pre-size the storage, the numbers are parsed
+ *        without creating any String objects and the words of the 2-gram and 3-gram sections are
+ *        resolved to their Vocabulary ids by comparing bytes against the words of the 1-gram
+ *        section. The 2-gram and 3-gram sections can optionally be split into chunks that are
+ *        parsed in parallel.
+ *
+ * @see <a href="http://cmusphinx.sourceforge.net/wiki/tutoriallm">http://cmusphinx.sourceforge.net/wiki/tutoriallm</a>
+ */
+class ArpaReader {
+
+    /**
+     * @brief Constructor
+     *
+     * @param buffer
+     *     The ByteBuffer holding the ARPA file. Only absolute reads are done on it so its
+     *     position is not modified.
+     */
+    ArpaReader (ByteBuffer buffer) {
+        buffer_ = buffer;
+    }
+
+    /**
+     * @brief Reads the ARPA file
+     *
+     * @param parallel
+     *     Whether the 2-gram and 3-gram sections should be parsed in parallel
+     */
+    void read (boolean parallel) {
+        locateSections();
+
+        vocabulary_ = new Vocabulary(counts_[1]);
+        nGramStore_ = new NGramStore(counts_[1], 0, 0);
+
+        readUnigrams();
+        createWordTable();
+
+        List<Chunk> bigramChunks = readSection(2, parallel);
+        List<Chunk> trigramChunks = readSection(3, parallel);
+
+        Chunk bigrams = Chunk.merge(bigramChunks);
+        nGramStore_.setBigrams(
+            bigrams.keys_, bigrams.probabilities_, bigrams.backOffWeights_, bigrams.size_
+        );
+
+        Chunk trigrams = Chunk.merge(trigramChunks);
+        nGramStore_.setTrigrams(trigrams.keys_, trigrams.probabilities_, trigrams.size_);
+
+        nGramStore_.compact();
+    }
+
+    /**
+     * @brief Returns the Vocabulary that was read
+     *
+     * @return The Vocabulary that was read
+     */
+    Vocabulary getVocabulary () {
+        return vocabulary_;
+    }
+
+    /**
+     * @brief Returns the NGramStore that was read
+     *
+     * @return The NGramStore that was read
+     */
+    NGramStore getNGramStore () {
+        return nGramStore_;
+    }
+
+    /**
+     * @brief Finds the \data\ header counts and the byte range of each n-gram section
+     */
+    private void locateSections () {
+        int limit = buffer_.limit();
+
+        boolean inHeader = false;
+        int currentOrder = 0;
+
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int lineEnd = indexOf((byte) '\n', lineStart, limit);
+
+            if (buffer_.get(lineStart) == '\\') {
+                if (currentOrder > 0) {
+                    sectionEnds_[currentOrder] = lineStart;
+                    currentOrder = 0;
+                }
+
+                if (lineEquals(lineStart, lineEnd, "\\data\\")) {
+                    inHeader = true;
+                }
+                else if (lineEquals(lineStart, lineEnd, "\\end\\")) {
+                    break;
+                }
+                else {
+                    inHeader = false;
+
+                    int order = buffer_.get(lineStart + 1) - '0';
+                    if (order >= 1 && order <= 3 &&
+                        lineEquals(lineStart, lineEnd, "\\" + order + "-grams:")) {
+                        currentOrder = order;
+                        sectionStarts_[order] = Math.min(lineEnd + 1, limit);
+                    }
+                }
+            }
+            else if (inHeader && lineStartsWith(lineStart, lineEnd, "ngram ")) {
+                readCount(lineStart + 6, lineEnd);
+            }
+
+            lineStart = lineEnd + 1;
+        }
+
+        if (currentOrder > 0) {
+            sectionEnds_[currentOrder] = limit;
+        }
+    }
+
+    /**
+     * @brief Reads an "N=count" entry of the \data\ header
+     *
+     * @param start
+     *     The index after "ngram "
+     * @param end
+     *     The end of the line
+     */
+    private void readCount (int start, int end) {
+        int order = 0;
+        int count = 0;
+        boolean afterEquals = false;
+
+        for (int i = start; i < end; i++) {
+            byte b = buffer_.get(i);
+
+            if (b == '=') {
+                afterEquals = true;
+            }
+            else if (b >= '0' && b <= '9') {
+                if (afterEquals) {
+                    count = count * 10 + (b - '0');
+                }
+                else {
+                    order = order * 10 + (b - '0');
+                }
+            }
+        }
+
+        if (order >= 1 && order <= 3) {
+            counts_[order] = count;
+        }
+    }
+
+    /**
+     * @brief Reads the 1-gram section creating the Vocabulary
+     */
+    private void readUnigrams () {
+        int start = sectionStarts_[1];
+        int end = sectionEnds_[1];
+
+        wordOffsets_ = new int[Math.max(counts_[1], 16)];
+        wordLengths_ = new int[Math.max(counts_[1], 16)];
+
+        SectionParser parser = new SectionParser(start, end);
+        byte[] scratch = new byte[64];
+
+        while (parser.hasNext()) {
+            if (! parser.nextLine()) {
+                continue;
+            }
+
+            double logProbability = parser.parseNumber();
+
+            parser.nextToken();
+            int wordStart = parser.tokenStart_;
+            int wordLength = parser.tokenEnd_ - wordStart;
+
+            if (wordLength > scratch.length) {
+                scratch = new byte[wordLength * 2];
+            }
+            for (int i = 0; i < wordLength; i++) {
+                scratch[i] = buffer_.get(wordStart + i);
+            }
+
+            int size = vocabulary_.size();
+            int id = vocabulary_.add(new String(scratch, 0, wordLength, StandardCharsets.UTF_8));
+
+            if (id == size) {
+                if (id == wordOffsets_.length) {
+                    wordOffsets_ = Arrays.copyOf(wordOffsets_, id * 2);
+                    wordLengths_ = Arrays.copyOf(wordLengths_, id * 2);
+                }
+
+                wordOffsets_[id] = wordStart;
+                wordLengths_[id] = wordLength;
+            }
+
+            nGramStore_.addUnigram(id, logProbability, parser.parseOptionalNumber());
+
+            parser.skipLine();
+        }
+    }
+
+    /**
+     * @brief Creates an open addressing hash table from the bytes of each 1-gram word to its id
+     */
+    private void createWordTable () {
+        int numberOfWords = vocabulary_.size();
+
+        int capacity = Integer.highestOneBit(Math.max(numberOfWords, 8) * 2) << 1;
+        wordTable_ = new int[capacity];
+        Arrays.fill(wordTable_, Vocabulary.UNKNOWN_ID);
+
+        int mask = capacity - 1;
+        for (int id = 0; id < numberOfWords; id++) {
+            int slot = hash(wordOffsets_[id], wordOffsets_[id] + wordLengths_[id]) & mask;
+
+            while (wordTable_[slot] != Vocabulary.UNKNOWN_ID) {
+                slot = (slot + 1) & mask;
+            }
+
+            wordTable_[slot] = id;
+        }
+    }
+
+    /**
+     * @brief Returns the Vocabulary id of the word found in the given byte range
+     *        Words that do not appear in the 1-gram section are added to the Vocabulary.
+     *
+     * @param start
+     *     The start of the word (inclusive)
+     * @param end
+     *     The end of the word (exclusive)
+     *
+     * @return The Vocabulary id of the word
+     */
+    private int getId (int start, int end) {
+        int mask = wordTable_.length - 1;
+        int length = end - start;
+
+        int slot = hash(start, end) & mask;
+        int id;
+        while ((id = wordTable_[slot]) != Vocabulary.UNKNOWN_ID) {
+            if (wordLengths_[id] == length && bytesEqual(wordOffsets_[id], start, length)) {
+                return id;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        // A word that is not a 1-gram. This should not happen for a valid ARPA file.
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer_.get(start + i);
+        }
+
+        synchronized (vocabulary_) {
+            return vocabulary_.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * @brief Reads a 2-gram or a 3-gram section
+     *
+     * @param order
+     *     The order of the section
+     * @param parallel
+     *     Whether the section should be split into chunks parsed in parallel
+     *
+     * @return The parsed chunks in the order they appear inside the section
+     */
+    private List<Chunk> readSection (int order, boolean parallel) {
+        int start = sectionStarts_[order];
+        int end = sectionEnds_[order];
+
+        int numberOfChunks = 1;
+        if (parallel) {
+            numberOfChunks = (int) Math.max(1, Math.min(
+                Runtime.getRuntime().availableProcessors() * 4L, (end - start) / MIN_CHUNK_SIZE
+            ));
+        }
+
+        // Chunk boundaries are moved right after the next new line
+        int[] boundaries = new int[numberOfChunks + 1];
+        boundaries[0] = start;
+        boundaries[numberOfChunks] = end;
+        for (int i = 1; i < numberOfChunks; i++) {
+            int boundary = (int) (start + ((long) (end - start)) * i / numberOfChunks);
+            boundary = Math.max(boundary, boundaries[i - 1]);
+            boundaries[i] = Math.min(indexOf((byte) '\n', boundary, end) + 1, end);
+        }
+
+        int expectedChunkSize = counts_[order] / numberOfChunks + 16;
+
+        IntStream chunkIndices = IntStream.range(0, numberOfChunks);
+        if (numberOfChunks > 1) {
+            chunkIndices = chunkIndices.parallel();
+        }
+
+        return chunkIndices
+            .mapToObj(i -> readChunk(order, boundaries[i], boundaries[i + 1], expectedChunkSize))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * @brief Reads the n-grams found in a byte range of a section
+     *
+     * @param order
+     *     The order of the section
+     * @param start
+     *     The start of the range (inclusive)
+     * @param end
+     *     The end of the range (exclusive)
+     * @param expectedSize
+     *     The expected number of n-grams in the range
+     *
+     * @return The parsed Chunk
+     */
+    private Chunk readChunk (int order, int start, int end, int expectedSize) {
+        Chunk chunk = new Chunk(expectedSize, order == 2);
+        SectionParser parser = new SectionParser(start, end);
+
+        while (parser.hasNext()) {
+            if (! parser.nextLine()) {
+                continue;
+            }
+
+            double logProbability = parser.parseNumber();
+
+            parser.nextToken();
+            int word1 = getId(parser.tokenStart_, parser.tokenEnd_);
+            parser.nextToken();
+            int word2 = getId(parser.tokenStart_, parser.tokenEnd_);
+
+            if (order == 2) {
+                chunk.add(NGramStore.key(word1, word2), logProbability,
+                    parser.parseOptionalNumber());
+            }
+            else {
+                parser.nextToken();
+                int word3 = getId(parser.tokenStart_, parser.tokenEnd_);
+
+                chunk.add(NGramStore.key(word1, word2, word3), logProbability, 0);
+            }
+
+            parser.skipLine();
+        }
+
+        return chunk;
+    }
+
+    /**
+     * @brief Returns the index of the first occurrence of a byte
+     *
+     * @param b
+     *     The byte to search for
+     * @param from
+     *     The index to start from (inclusive)
+     * @param to
+     *     The index to stop at (exclusive)
+     *
+     * @return The index of the byte or to if it was not found
+     */
+    private int indexOf (byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer_.get(i) == b) {
+                return i;
+            }
+        }
+
+        return to;
+    }
+
+    private boolean lineEquals (int lineStart, int lineEnd, String string) {
+        while (lineEnd > lineStart && isSpace(buffer_.get(lineEnd - 1))) {
+            lineEnd--;
+        }
+
+        return lineEnd - lineStart == string.length() &&
+            lineStartsWith(lineStart, lineEnd, string);
+    }
+
+    private boolean lineStartsWith (int lineStart, int lineEnd, String string) {
+        int length = string.length();
+
+        if (lineEnd - lineStart < length) {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (buffer_.get(lineStart + i) != string.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean bytesEqual (int offset1, int offset2, int length) {
+        for (int i = 0; i < length; i++) {
+            if (buffer_.get(offset1 + i) != buffer_.get(offset2 + i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @brief Returns the FNV-1a hash of a byte range
+     *
+     * @param start
+     *     The start of the range (inclusive)
+     * @param end
+     *     The end of the range (exclusive)
+     *
+     * @return The hash of the byte range
+     */
+    private int hash (int start, int end) {
+        int hash = 0x811C9DC5;
+
+        for (int i = start; i < end; i++) {
+            hash = (hash ^ buffer_.get(i)) * 0x01000193;
+        }
+
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean isSpace (byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    /**
+     * @class SectionParser
+     * @brief Implements a cursor over a byte range of a section
+     *        Each thread uses its own SectionParser.
+     */
+    private class SectionParser {
+
+        /**
+         * @brief Constructor
+         *
+         * @param start
+         *     The start of the range (inclusive)
+         * @param end
+         *     The end of the range (exclusive)
+         */
+        SectionParser (int start, int end) {
+            position_ = start;
+            end_ = end;
+        }
+
+        /**
+         * @brief Returns true if there are more bytes to parse
+         *
+         * @return True if there are more bytes to parse
+         */
+        boolean hasNext () {
+            return position_ < end_;
+        }
+
+        /**
+         * @brief Moves to the first token of the current line
+         *
+         * @return False if the line is empty, in which case the line is also skipped
+         */
+        boolean nextLine () {
+            skipSpaces();
+
+            if (position_ >= end_) {
+                return false;
+            }
+
+            if (buffer_.get(position_) == '\n') {
+                position_++;
+                return false;
+            }
+
+            return true;
+        }
+
+        /**
+         * @brief Moves after the end of the current line
+         */
+        void skipLine () {
+            position_ = indexOf((byte) '\n', position_, end_) + 1;
+        }
+
+        /**
+         * @brief Moves to the next token and stores its range in tokenStart_ and tokenEnd_
+         */
+        void nextToken () {
+            skipSpaces();
+
+            tokenStart_ = position_;
+            while (position_ < end_) {
+                byte b = buffer_.get(position_);
+
+                if (isSpace(b) || b == '\n') {
+                    break;
+                }
+
+                position_++;
+            }
+            tokenEnd_ = position_;
+        }
+
+        /**
+         * @brief Parses the next token as a number if it exists on the current line
+         *
+         * @return The number or NGramStore.MISSING if the current line has no more tokens
+         */
+        double parseOptionalNumber () {
+            skipSpaces();
+
+            if (position_ >= end_ || buffer_.get(position_) == '\n') {
+                return NGramStore.MISSING;
+            }
+
+            return parseNumber();
+        }
+
+        /**
+         * @brief Parses the next token as a decimal number
+         *        Numbers with up to 15 significant digits and a small exponent are parsed
+         *        directly from the bytes giving the same result as Double.parseDouble. Any other
+         *        number falls back to Double.parseDouble.
+         *
+         * @return The parsed number
+         */
+        double parseNumber () {
+            nextToken();
+
+            int i = tokenStart_;
+            int end = tokenEnd_;
+
+            boolean negative = false;
+            if (i < end && (buffer_.get(i) == '-' || buffer_.get(i) == '+')) {
+                negative = buffer_.get(i) == '-';
+                i++;
+            }
+
+            long mantissa = 0;
+            int digits = 0;
+            int exponent = 0;
+            boolean seenDigit = false;
+            boolean seenPoint = false;
+
+            for (; i < end; i++) {
+                byte b = buffer_.get(i);
+
+                if (b >= '0' && b <= '9') {
+                    seenDigit = true;
+
+                    if (mantissa != 0 || b != '0') {
+                        mantissa = mantissa * 10 + (b - '0');
+                        digits++;
+                    }
+
+                    if (seenPoint) {
+                        exponent--;
+                    }
+
+                    if (digits > MAX_FAST_DIGITS) {
+                        return parseSlow();
+                    }
+                }
+                else if (b == '.' && ! seenPoint) {
+                    seenPoint = true;
+                }
+                else {
+                    break;
+                }
+            }
+
+            if (! seenDigit) {
+                return parseSlow();
+            }
+
+            if (i < end) {
+                byte b = buffer_.get(i);
+
+                if (b != 'e' && b != 'E') {
+                    return parseSlow();
+                }
+                i++;
+
+                boolean negativeExponent = false;
+                if (i < end && (buffer_.get(i) == '-' || buffer_.get(i) == '+')) {
+                    negativeExponent = buffer_.get(i) == '-';
+                    i++;
+                }
+
+                int explicitExponent = 0;
+                if (i == end) {
+                    return parseSlow();
+                }
+                for (; i < end; i++) {
+                    b = buffer_.get(i);
+
+                    if (b < '0' || b > '9' || explicitExponent > 1000) {
+                        return parseSlow();
+                    }
+
+                    explicitExponent = explicitExponent * 10 + (b - '0');
+                }
+
+                exponent += negativeExponent ? - explicitExponent : explicitExponent;
+            }
+
+            double value;
+            if (mantissa == 0) {
+                value = 0;
+            }
+            else if (exponent < 0 && exponent >= - MAX_EXACT_POWER) {
+                value = mantissa / POWERS_OF_TEN[- exponent];
+            }
+            else if (exponent >= 0 && exponent <= MAX_EXACT_POWER) {
+                value = mantissa * POWERS_OF_TEN[exponent];
+            }
+            else {
+                return parseSlow();
+            }
+
+            return negative ? - value : value;
+        }
+
+        /**
+         * @brief Parses the current token using Double.parseDouble
+         *
+         * @return The parsed number
+         */
+        private double parseSlow () {
+            byte[] bytes = new byte[tokenEnd_ - tokenStart_];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = buffer_.get(tokenStart_ + i);
+            }
+
+            String token = new String(bytes, StandardCharsets.US_ASCII);
+            String lowerCaseToken = token.toLowerCase();
+
+            if (lowerCaseToken.startsWith("-inf")) {
+                return Double.NEGATIVE_INFINITY;
+            }
+            else if (lowerCaseToken.startsWith("inf") || lowerCaseToken.startsWith("+inf")) {
+                return Double.POSITIVE_INFINITY;
+            }
+
+            return Double.parseDouble(token);
+        }
+
+        private void skipSpaces () {
+            while (position_ < end_ && isSpace(buffer_.get(position_))) {
+                position_++;
+            }
+        }
+
+        private int position_; //!< The current position
+        private final int end_; //!< The end of the range (exclusive)
+
+        private int tokenStart_; //!< The start of the last token (inclusive)
+        private int tokenEnd_; //!< The end of the last token (exclusive)
+
+    }
+
+    /**
+     * @class Chunk
+     * @brief Holds the n-grams parsed from a part of a section
+     */
+    private static class Chunk {
+
+        /**
+         * @brief Constructor
+         *
+         * @param capacity
+         *     The initial capacity
+         * @param hasBackOffWeights
+         *     Whether back-off weights should be stored
+         */
+        Chunk (int capacity, boolean hasBackOffWeights) {
+            keys_ = new long[capacity];
+            probabilities_ = new double[capacity];
+            backOffWeights_ = hasBackOffWeights ? new double[capacity] : null;
+        }
+
+        /**
+         * @brief Adds an n-gram
+         *
+         * @param key
+         *     The n-gram key
+         * @param logProbability
+         *     The log10 probability
+         * @param logBackOffWeight
+         *     The log10 back-off weight (ignored if back-off weights are not stored)
+         */
+        void add (long key, double logProbability, double logBackOffWeight) {
+            if (size_ == keys_.length) {
+                int newLength = Math.max(16, size_ * 2);
+
+                keys_ = Arrays.copyOf(keys_, newLength);
+                probabilities_ = Arrays.copyOf(probabilities_, newLength);
+                if (backOffWeights_ != null) {
+                    backOffWeights_ = Arrays.copyOf(backOffWeights_, newLength);
+                }
+            }
+
+            keys_[size_] = key;
+            probabilities_[size_] = logProbability;
+            if (backOffWeights_ != null) {
+                backOffWeights_[size_] = logBackOffWeight;
+            }
+            size_++;
+        }
+
+        /**
+         * @brief Concatenates the given Chunk objects
+         *
+         * @param chunkList
+         *     The Chunk objects in order
+         *
+         * @return A single Chunk with all the n-grams
+         */
+        static Chunk merge (List<Chunk> chunkList) {
+            if (chunkList.size() == 1) {
+                return chunkList.get(0);
+            }
+
+            int size = chunkList.stream()
+                .mapToInt(chunk -> chunk.size_)
+                .sum();
+
+            Chunk merged = new Chunk(size, chunkList.get(0).backOffWeights_ != null);
+            for (Chunk chunk : chunkList) {
+                System.arraycopy(chunk.keys_, 0, merged.keys_, merged.size_, chunk.size_);
+                System.arraycopy(
+                    chunk.probabilities_, 0, merged.probabilities_, merged.size_, chunk.size_
+                );
+                if (merged.backOffWeights_ != null) {
+                    System.arraycopy(
+                        chunk.backOffWeights_, 0, merged.backOffWeights_, merged.size_, chunk.size_
+                    );
+                }
+
+                merged.size_ += chunk.size_;
+            }
+
+            return merged;
+        }
+
+        private long[] keys_; //!< The n-gram keys
+        private double[] probabilities_; //!< The n-gram log10 probabilities
+        private double[] backOffWeights_; //!< The n-gram log10 back-off weights or null
+        private int size_ = 0; //!< The number of n-grams
+
+    }
+
+    private final ByteBuffer buffer_; //!< The bytes of the ARPA file
+
+    private final int[] counts_ = new int[4]; //!< The n-gram counts of the \data\ header
+    private final int[] sectionStarts_ = new int[4]; //!< The first byte of each n-gram section
+    private final int[] sectionEnds_ = new int[4]; //!< The byte after each n-gram section
+
+    private int[] wordOffsets_; //!< The offset of each 1-gram word inside the buffer
+    private int[] wordLengths_; //!< The length of each 1-gram word inside the buffer
+    private int[] wordTable_; //!< Open addressing hash table from word bytes to word id
+
+    private Vocabulary vocabulary_; //!< The Vocabulary being read
+    private NGramStore nGramStore_; //!< The NGramStore being read
+
+    private static final int MIN_CHUNK_SIZE = 1 << 20; //!< The minimum number of bytes of a chunk
+    private static final int MAX_FAST_DIGITS = 15;
+    private static final int MAX_EXACT_POWER = 22;
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+}
@@ -0,0 +1,430 @@
+package org.pasr.asr.language;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+
+/**
+ * @class BinaryModel
+ * @brief Implements a compiled, memory-mapped 3-gram language model
+ *        The file holds a header, a vocabulary table with a hash index, the codebooks of the
+ *        quantized log10 values and the sorted n-gram blocks of an NGramStore. Opening a file
+ *        only maps it and creates views over its blocks, so it takes constant time and the pages
+ *        are shared between every process that maps the same file. All the blocks are written in
+ *        big-endian order and aligned to 8 bytes.
+ */
+class BinaryModel implements WordIndex, NGramLookup {
+
+    /**
+     * @brief Constructor
+     *        Maps the given file
+     *
+     * @param file
+     *     The compiled language model file
+     *
+     * @throws IOException If an I/O error occurs or the file is not a compiled language model
+     */
+    BinaryModel (File file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = fileChannel.size();
+
+            if (size > Integer.MAX_VALUE || size < HEADER_SIZE) {
+                throw new IOException("Malformed binary language model: " + file.getPath());
+            }
+
+            buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        int[] header = new int[HEADER_LENGTH];
+        for (int i = 0; i < HEADER_LENGTH; i++) {
+            header[i] = buffer.getInt(4 * i);
+        }
+
+        if (header[0] != MAGIC || header[1] != VERSION) {
+            throw new IOException("Not a binary language model: " + file.getPath());
+        }
+
+        int[] offsets = layout(header);
+        if (offsets[offsets.length - 1] != buffer.limit()) {
+            throw new IOException("Malformed binary language model: " + file.getPath());
+        }
+
+        vocabularySize_ = header[2];
+        unigramCount_ = header[3];
+        bigramCount_ = header[4];
+        trigramCount_ = header[5];
+
+        wordOffsets_ = view(buffer, offsets[0]).asIntBuffer();
+        wordCharacters_ = view(buffer, offsets[1]).asCharBuffer();
+        wordTable_ = view(buffer, offsets[2]).asIntBuffer();
+        wordTableMask_ = header[6] - 1;
+
+        unigramProbabilityCodebook_ = view(buffer, offsets[3]).asDoubleBuffer();
+        unigramBackOffWeightCodebook_ = view(buffer, offsets[4]).asDoubleBuffer();
+        bigramProbabilityCodebook_ = view(buffer, offsets[5]).asDoubleBuffer();
+        bigramBackOffWeightCodebook_ = view(buffer, offsets[6]).asDoubleBuffer();
+        trigramProbabilityCodebook_ = view(buffer, offsets[7]).asDoubleBuffer();
+
+        unigramProbabilities_ = view(buffer, offsets[8]).asShortBuffer();
+        unigramBackOffWeights_ = view(buffer, offsets[9]).asShortBuffer();
+        bigramKeys_ = view(buffer, offsets[10]).asLongBuffer();
+        bigramProbabilities_ = view(buffer, offsets[11]).asShortBuffer();
+        bigramBackOffWeights_ = view(buffer, offsets[12]).asShortBuffer();
+        trigramKeys_ = view(buffer, offsets[13]).asLongBuffer();
+        trigramProbabilities_ = view(buffer, offsets[14]).asShortBuffer();
+    }
+
+    /**
+     * @brief Writes a compiled language model file
+     *
+     * @param vocabulary
+     *     The Vocabulary of the language model
+     * @param nGramStore
+     *     The compacted NGramStore of the language model
+     * @param file
+     *     The file to write
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    static void write (Vocabulary vocabulary, NGramStore nGramStore, File file)
+        throws IOException {
+
+        int vocabularySize = vocabulary.size();
+        int unigramCount = nGramStore.getUnigramCount();
+        int bigramCount = nGramStore.getBigramCount();
+        int trigramCount = nGramStore.getTrigramCount();
+
+        // Vocabulary table
+        int[] wordOffsets = new int[vocabularySize + 1];
+        for (int id = 0; id < vocabularySize; id++) {
+            wordOffsets[id + 1] = wordOffsets[id] + vocabulary.getWord(id).length();
+        }
+
+        int wordTableSize = Integer.highestOneBit(Math.max(vocabularySize, 8) * 2) << 1;
+        int[] wordTable = new int[wordTableSize];
+        Arrays.fill(wordTable, Vocabulary.UNKNOWN_ID);
+        for (int id = 0; id < vocabularySize; id++) {
+            int slot = hash(vocabulary.getWord(id)) & (wordTableSize - 1);
+
+            while (wordTable[slot] != Vocabulary.UNKNOWN_ID) {
+                slot = (slot + 1) & (wordTableSize - 1);
+            }
+
+            wordTable[slot] = id;
+        }
+
+        Quantizer[] quantizers = {
+            new Quantizer(nGramStore.getUnigramProbabilities(), unigramCount),
+            new Quantizer(nGramStore.getUnigramBackOffWeights(), unigramCount),
+            new Quantizer(nGramStore.getBigramProbabilities(), bigramCount),
+            new Quantizer(nGramStore.getBigramBackOffWeights(), bigramCount),
+            new Quantizer(nGramStore.getTrigramProbabilities(), trigramCount)
+        };
+
+        int[] header = {
+            MAGIC, VERSION, vocabularySize, unigramCount, bigramCount, trigramCount,
+            wordTableSize, wordOffsets[vocabularySize],
+            quantizers[0].getCodebook().length, quantizers[1].getCodebook().length,
+            quantizers[2].getCodebook().length, quantizers[3].getCodebook().length,
+            quantizers[4].getCodebook().length
+        };
+        int[] offsets = layout(header);
+
+        try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream(file), 1 << 16))) {
+
+            for (int value : header) {
+                outputStream.writeInt(value);
+            }
+
+            pad(outputStream, offsets[0]);
+            for (int wordOffset : wordOffsets) {
+                outputStream.writeInt(wordOffset);
+            }
+
+            pad(outputStream, offsets[1]);
+            for (int id = 0; id < vocabularySize; id++) {
+                outputStream.writeChars(vocabulary.getWord(id));
+            }
+
+            pad(outputStream, offsets[2]);
+            for (int id : wordTable) {
+                outputStream.writeInt(id);
+            }
+
+            for (int i = 0; i < quantizers.length; i++) {
+                pad(outputStream, offsets[3 + i]);
+                for (double value : quantizers[i].getCodebook()) {
+                    outputStream.writeDouble(value);
+                }
+            }
+
+            pad(outputStream, offsets[8]);
+            writeCodes(outputStream, quantizers[0], nGramStore.getUnigramProbabilities(),
+                unigramCount);
+            pad(outputStream, offsets[9]);
+            writeCodes(outputStream, quantizers[1], nGramStore.getUnigramBackOffWeights(),
+                unigramCount);
+
+            pad(outputStream, offsets[10]);
+            long[] bigramKeys = nGramStore.getBigramKeys();
+            for (int i = 0; i < bigramCount; i++) {
+                outputStream.writeLong(bigramKeys[i]);
+            }
+            pad(outputStream, offsets[11]);
+            writeCodes(outputStream, quantizers[2], nGramStore.getBigramProbabilities(),
+                bigramCount);
+            pad(outputStream, offsets[12]);
+            writeCodes(outputStream, quantizers[3], nGramStore.getBigramBackOffWeights(),
+                bigramCount);
+
+            pad(outputStream, offsets[13]);
+            long[] trigramKeys = nGramStore.getTrigramKeys();
+            for (int i = 0; i < trigramCount; i++) {
+                outputStream.writeLong(trigramKeys[i]);
+            }
+            pad(outputStream, offsets[14]);
+            writeCodes(outputStream, quantizers[4], nGramStore.getTrigramProbabilities(),
+                trigramCount);
+
+            pad(outputStream, offsets[15]);
+        }
+    }
+
+    @Override
+    public int getId (String word) {
+        int length = word.length();
+
+        int slot = hash(word) & wordTableMask_;
+        int id;
+        while ((id = wordTable_.get(slot)) != Vocabulary.UNKNOWN_ID) {
+            int offset = wordOffsets_.get(id);
+
+            if (wordOffsets_.get(id + 1) - offset == length) {
+                int i = 0;
+                while (i < length && wordCharacters_.get(offset + i) == word.charAt(i)) {
+                    i++;
+                }
+
+                if (i == length) {
+                    return id;
+                }
+            }
+
+            slot = (slot + 1) & wordTableMask_;
+        }
+
+        return Vocabulary.UNKNOWN_ID;
+    }
+
+    @Override
+    public String getWord (int id) {
+        int offset = wordOffsets_.get(id);
+        char[] characters = new char[wordOffsets_.get(id + 1) - offset];
+
+        for (int i = 0; i < characters.length; i++) {
+            characters[i] = wordCharacters_.get(offset + i);
+        }
+
+        return new String(characters);
+    }
+
+    @Override
+    public int size () {
+        return vocabularySize_;
+    }
+
+    @Override
+    public double getProbability (int word) {
+        if (word < 0 || word >= unigramCount_) {
+            return NGramStore.MISSING;
+        }
+
+        return decode(unigramProbabilityCodebook_, unigramProbabilities_.get(word));
+    }
+
+    @Override
+    public double getProbability (int word1, int word2) {
+        if (word1 < 0 || word2 < 0) {
+            return NGramStore.MISSING;
+        }
+
+        int index = binarySearch(bigramKeys_, bigramCount_, NGramStore.key(word1, word2));
+
+        return index < 0 ?
+            NGramStore.MISSING : decode(bigramProbabilityCodebook_, bigramProbabilities_.get(index));
+    }
+
+    @Override
+    public double getProbability (int word1, int word2, int word3) {
+        if (word1 < 0 || word2 < 0 || word3 < 0) {
+            return NGramStore.MISSING;
+        }
+
+        int index = binarySearch(trigramKeys_, trigramCount_, NGramStore.key(word1, word2, word3));
+
+        return index < 0 ? NGramStore.MISSING :
+            decode(trigramProbabilityCodebook_, trigramProbabilities_.get(index));
+    }
+
+    @Override
+    public double getBackOffWeight (int word) {
+        if (word < 0 || word >= unigramCount_) {
+            return NGramStore.MISSING;
+        }
+
+        return decode(unigramBackOffWeightCodebook_, unigramBackOffWeights_.get(word));
+    }
+
+    @Override
+    public double getBackOffWeight (int word1, int word2) {
+        if (word1 < 0 || word2 < 0) {
+            return NGramStore.MISSING;
+        }
+
+        int index = binarySearch(bigramKeys_, bigramCount_, NGramStore.key(word1, word2));
+
+        return index < 0 ? NGramStore.MISSING :
+            decode(bigramBackOffWeightCodebook_, bigramBackOffWeights_.get(index));
+    }
+
+    /**
+     * @brief Computes the byte offset of every block of the file given its header
+     *
+     * @param header
+     *     The header values
+     *
+     * @return The offset of each block followed by the total size of the file
+     */
+    private static int[] layout (int[] header) {
+        int vocabularySize = header[2];
+        int unigramCount = header[3];
+        int bigramCount = header[4];
+        int trigramCount = header[5];
+
+        long[] blockSizes = {
+            4L * (vocabularySize + 1), // word offsets
+            2L * header[7], // word characters
+            4L * header[6], // word table
+            8L * header[8], 8L * header[9], 8L * header[10], 8L * header[11], 8L * header[12],
+            2L * unigramCount, 2L * unigramCount,
+            8L * bigramCount, 2L * bigramCount, 2L * bigramCount,
+            8L * trigramCount, 2L * trigramCount
+        };
+
+        int[] offsets = new int[blockSizes.length + 1];
+        long offset = align(HEADER_SIZE);
+        for (int i = 0; i < blockSizes.length; i++) {
+            offsets[i] = (int) offset;
+            offset = align(offset + blockSizes[i]);
+
+            if (offset > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Language model is too large.");
+            }
+        }
+        offsets[blockSizes.length] = (int) offset;
+
+        return offsets;
+    }
+
+    private static long align (long offset) {
+        return (offset + 7) & ~ 7L;
+    }
+
+    private static void pad (DataOutputStream outputStream, int offset) throws IOException {
+        while (outputStream.size() < offset) {
+            outputStream.writeByte(0);
+        }
+    }
+
+    private static void writeCodes (DataOutputStream outputStream, Quantizer quantizer,
+                                    double[] values, int size) throws IOException {
+        for (int i = 0; i < size; i++) {
+            outputStream.writeShort(quantizer.encode(values[i]));
+        }
+    }
+
+    private static ByteBuffer view (ByteBuffer buffer, int offset) {
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(offset);
+
+        return duplicate.slice();
+    }
+
+    private static double decode (DoubleBuffer codebook, short code) {
+        int index = code & 0xFFFF;
+
+        return index == Quantizer.MISSING_CODE ? NGramStore.MISSING : codebook.get(index);
+    }
+
+    private static int binarySearch (LongBuffer keys, int size, long key) {
+        int low = 0;
+        int high = size - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleKey = keys.get(middle);
+
+            if (middleKey < key) {
+                low = middle + 1;
+            }
+            else if (middleKey > key) {
+                high = middle - 1;
+            }
+            else {
+                return middle;
+            }
+        }
+
+        return - (low + 1);
+    }
+
+    private static int hash (String word) {
+        int hash = word.hashCode();
+
+        return hash ^ (hash >>> 16);
+    }
+
+    private final int vocabularySize_; //!< The number of words
+    private final int unigramCount_; //!< The number of 1-gram slots
+    private final int bigramCount_; //!< The number of 2-grams
+    private final int trigramCount_; //!< The number of 3-grams
+
+    private final IntBuffer wordOffsets_; //!< The offset of each word inside wordCharacters_
+    private final CharBuffer wordCharacters_; //!< The characters of all the words
+    private final IntBuffer wordTable_; //!< Open addressing hash table from word to id
+    private final int wordTableMask_; //!< The mask applied on the hash of a word
+
+    private final DoubleBuffer unigramProbabilityCodebook_;
+    private final DoubleBuffer unigramBackOffWeightCodebook_;
+    private final DoubleBuffer bigramProbabilityCodebook_;
+    private final DoubleBuffer bigramBackOffWeightCodebook_;
+    private final DoubleBuffer trigramProbabilityCodebook_;
+
+    private final ShortBuffer unigramProbabilities_; //!< The quantized 1-gram probabilities
+    private final ShortBuffer unigramBackOffWeights_; //!< The quantized 1-gram back-off weights
+    private final LongBuffer bigramKeys_; //!< The sorted 2-gram keys
+    private final ShortBuffer bigramProbabilities_; //!< The quantized 2-gram probabilities
+    private final ShortBuffer bigramBackOffWeights_; //!< The quantized 2-gram back-off weights
+    private final LongBuffer trigramKeys_; //!< The sorted 3-gram keys
+    private final ShortBuffer trigramProbabilities_; //!< The quantized 3-gram probabilities
+
+    private static final int MAGIC = 0x50534C4D; //!< "PSLM"
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 13; //!< The number of int values in the header
+    private static final int HEADER_SIZE = 4 * HEADER_LENGTH;
+
+}
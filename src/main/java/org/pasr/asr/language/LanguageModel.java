@@ -1,18 +1,25 @@
 package org.pasr.asr.language;
 
 
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
 import org.pasr.prep.corpus.WordSequence;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
-import java.util.Hashtable;
-import java.util.Scanner;
-
-import static org.apache.commons.lang3.math.NumberUtils.isNumber;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
 
 
 /**
  * @class LanguageModel
  * @brief Implements of a 3-gram language model in the ARPA-standard format
+ *        The words are mapped to Vocabulary ids and the n-grams are kept inside an NGramStore so
+ *        that scoring a WordSequence does not create any intermediate String objects.
  *
  * @see <a href="http://cmusphinx.sourceforge.net/wiki/tutoriallm">http://cmusphinx.sourceforge.net/wiki/tutoriallm</a>
  */
@@ -23,15 +30,14 @@ public class LanguageModel {
      *        Made private to prevent direct instantiation. To create a LanguageModel
      *        createFromInputStream method should be used
      *
-     * @param probabilities
-     *     The probabilities map
-     * @param backOffWeights
-     *     The back-off weights map
+     * @param vocabulary
+     *     The WordIndex of the language model
+     * @param nGramStore
+     *     The NGramLookup holding the probabilities and the back-off weights
      */
-    private LanguageModel (Hashtable<String, Double> probabilities,
-                           Hashtable<String, Double> backOffWeights) {
-        probabilities_ = probabilities;
-        backOffWeights_ = backOffWeights;
+    private LanguageModel (WordIndex vocabulary, NGramLookup nGramStore) {
+        vocabulary_ = vocabulary;
+        nGramStore_ = nGramStore;
     }
 
     /**
@@ -41,61 +47,165 @@ public class LanguageModel {
      *     The InputStream to read from
      *
      * @return The created Language Model
+     *
+     * @throws UncheckedIOException If an I/O error occurs while reading the InputStream
      */
     public static LanguageModel createFromInputStream (InputStream inputStream) {
-        Hashtable<String, Double> probabilities = new Hashtable<>();
-        Hashtable<String, Double> backOffWeights = new Hashtable<>();
+        byte[] bytes;
+        try {
+            bytes = IOUtils.toByteArray(inputStream);
+            inputStream.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the language model.", e);
+        }
+
+        return createFromByteBuffer(ByteBuffer.wrap(bytes), true);
+    }
+
+    /**
+     * @brief Creates a Language Model from an ARPA file
+     *        The file is memory-mapped and its 2-gram and 3-gram sections are parsed in parallel.
+     *
+     * @param file
+     *     The ARPA file
+     *
+     * @return The created Language Model
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public static LanguageModel createFromFile (File file) throws IOException {
+        return createFromFile(file, true);
+    }
+
+    /**
+     * @brief Creates a Language Model from an ARPA file
+     *        The file is memory-mapped.
+     *
+     * @param file
+     *     The ARPA file
+     * @param parallel
+     *     Whether the 2-gram and 3-gram sections should be parsed in parallel
+     *
+     * @return The created Language Model
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public static LanguageModel createFromFile (File file, boolean parallel) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = fileChannel.size();
 
-        Scanner scanner = new Scanner(inputStream);
-        while (scanner.hasNextLine()) {
-            if (scanner.nextLine().equals("\\data\\")) {
-                break;
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Language model file is too large: " + file.getPath());
             }
+
+            return createFromByteBuffer(
+                fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, size), parallel
+            );
         }
+    }
 
-        boolean save = false;
-        while (scanner.hasNextLine()) {
-            String line = scanner.nextLine();
+    /**
+     * @brief Opens a compiled Language Model
+     *        The file is memory-mapped and used in place so opening it takes constant time.
+     *
+     * @param file
+     *     The compiled Language Model file as created by exportToBinaryFile
+     *
+     * @return The opened Language Model
+     *
+     * @throws IOException If an I/O error occurs or the file is not a compiled Language Model
+     */
+    public static LanguageModel createFromBinaryFile (File file) throws IOException {
+        BinaryModel binaryModel = new BinaryModel(file);
 
-            if (line.equals("\\1-grams:")) {
-                save = true;
-                continue;
-            }
+        return new LanguageModel(binaryModel, binaryModel);
+    }
 
-            if (line.equals("") || line.equals("\\2-grams:") || line.equals("\\3-grams:")) {
-                continue;
-            }
+    /**
+     * @brief Compiles an ARPA file into a binary Language Model file
+     *
+     * @param arpaFile
+     *     The ARPA file
+     * @param binaryFile
+     *     The binary file to create
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public static void compile (File arpaFile, File binaryFile) throws IOException {
+        createFromFile(arpaFile).exportToBinaryFile(binaryFile);
+    }
 
-            if (line.equals("\\end\\")) {
-                save = false;
-            }
+    /**
+     * @brief Converts the ARPA files given as arguments into binary Language Model files
+     *        Each ARPA file is paired with a binary file of the same name and the extension .bin
+     *
+     * @param args
+     *     The paths of the ARPA files
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public static void main (String[] args) throws IOException {
+        for (String path : args) {
+            File arpaFile = new File(path);
+            File binaryFile = new File(
+                arpaFile.getParentFile(), FilenameUtils.getBaseName(path) + ".bin"
+            );
+
+            compile(arpaFile, binaryFile);
+        }
+    }
 
-            if (save) {
-                String[] tokens = line.replaceAll("\\t", " ").split(" ");
-
-                // 1-gram
-                if (tokens.length == 3) {
-                    probabilities.put(tokens[1], Math.pow(10, Double.parseDouble(tokens[0])));
-                    backOffWeights.put(tokens[1], Math.pow(10, Double.parseDouble(tokens[2])));
-                }
-                else {
-                    // 2-gram
-                    if (isNumber(tokens[tokens.length - 1])) {
-                        String key = String.join(" ", tokens[1], tokens[2]);
-
-                        probabilities.put(key, Math.pow(10, Double.parseDouble(tokens[0])));
-                        backOffWeights.put(key, Math.pow(10, Double.parseDouble(tokens[3])));
-                    }
-                    else { // 3-gram
-                        probabilities.put(String.join(" ", tokens[1], tokens[2], tokens[3]),
-                            Math.pow(10, Double.parseDouble(tokens[0])));
-                    }
-                }
-            }
+    /**
+     * @brief Writes this Language Model as a binary file
+     *        The log10 values are quantized to 16 bits (without any loss if there are less than
+     *        65536 distinct values of each kind). Only a Language Model loaded from an ARPA file
+     *        or estimated by a LanguageModelBuilder can be exported.
+     *
+     * @param file
+     *     The binary file to create
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public void exportToBinaryFile (File file) throws IOException {
+        if (! (vocabulary_ instanceof Vocabulary) || ! (nGramStore_ instanceof NGramStore)) {
+            throw new UnsupportedOperationException(
+                "Only a language model loaded from an ARPA file or estimated from counts can be" +
+                    " exported."
+            );
         }
-        scanner.close();
 
-        return new LanguageModel(probabilities, backOffWeights);
+        BinaryModel.write((Vocabulary) vocabulary_, (NGramStore) nGramStore_, file);
+    }
+
+    /**
+     * @brief Creates a Language Model over the given words and n-grams
+     *
+     * @param vocabulary
+     *     The WordIndex of the language model
+     * @param nGramStore
+     *     The NGramLookup holding the probabilities and the back-off weights
+     *
+     * @return The created Language Model
+     */
+    static LanguageModel create (WordIndex vocabulary, NGramLookup nGramStore) {
+        return new LanguageModel(vocabulary, nGramStore);
+    }
+
+    /**
+     * @brief Creates a Language Model from a ByteBuffer holding an ARPA file
+     *
+     * @param byteBuffer
+     *     The ByteBuffer
+     * @param parallel
+     *     Whether the 2-gram and 3-gram sections should be parsed in parallel
+     *
+     * @return The created Language Model
+     */
+    private static LanguageModel createFromByteBuffer (ByteBuffer byteBuffer, boolean parallel) {
+        ArpaReader arpaReader = new ArpaReader(byteBuffer);
+        arpaReader.read(parallel);
+
+        return new LanguageModel(arpaReader.getVocabulary(), arpaReader.getNGramStore());
     }
 
     /**
@@ -107,119 +217,367 @@ public class LanguageModel {
      * @return The probability of the given WordSequence
      */
     public double getProbability (WordSequence wordSequence) {
+        return Math.pow(10, getLogProbability(wordSequence));
+    }
+
+    /**
+     * @brief Returns the log10 probability of the given WordSequence
+     *        The log10 values of the n-grams and of the back-off weights are added so that long
+     *        WordSequence objects do not underflow. For a WordSequence of up to three words, only
+     *        the n-gram of the whole sequence is scored, exactly like getProbability does.
+     *
+     * @param wordSequence
+     *     The WordSequence
+     *
+     * @return The log10 probability of the given WordSequence or Double.NEGATIVE_INFINITY if the
+     *         probability is zero
+     */
+    public double getLogProbability (WordSequence wordSequence) {
         if (wordSequence == null) {
-            return 0;
+            return Double.NEGATIVE_INFINITY;
         }
 
-        String[] words = wordSequence.getWordTextList().stream()
-            .toArray(String[] ::new);
+        int[] words = vocabulary_.getIds(wordSequence.getWordTextList());
 
         int numberOfWords = words.length;
 
         if (numberOfWords == 0) {
-            return 0;
+            return Double.NEGATIVE_INFINITY;
         }
         else if (numberOfWords == 1) {
-            return p1(words);
+            return logP1(words[0]);
         }
         else if (numberOfWords == 2) {
-            return p2(words);
+            return logP2(words[0], words[1]);
         }
         else if (numberOfWords == 3) {
-            return p3(words);
+            return logP3(words[0], words[1], words[2]);
         }
         else {
-            double probability = p1(words[0]) * p2(words[0], words[1]);
+            double logProbability = logP1(words[0]) + logP2(words[0], words[1]);
 
             for (int i = 2; i < numberOfWords; i++) {
-                probability *= p3(words[i - 2], words[i - 1], words[i]);
+                logProbability += logP3(words[i - 2], words[i - 1], words[i]);
+            }
+
+            return logProbability;
+        }
+    }
+
+    /**
+     * @brief Returns the log10 score of each word of the given WordSequence given the words on
+     *        its left
+     *        The first word is scored with its 1-gram, the second with its 2-gram and every other
+     *        word with its 3-gram. The sum of the scores is the log10 probability of the whole
+     *        WordSequence.
+     *
+     * @param wordSequence
+     *     The WordSequence
+     *
+     * @return An array with the log10 score of each word of the given WordSequence
+     */
+    public double[] getWordLogProbabilities (WordSequence wordSequence) {
+        if (wordSequence == null) {
+            return new double[0];
+        }
+
+        int[] words = vocabulary_.getIds(wordSequence.getWordTextList());
+
+        int numberOfWords = words.length;
+        double[] scores = new double[numberOfWords];
+
+        if (numberOfWords > 0) {
+            scores[0] = logP1(words[0]);
+        }
+        if (numberOfWords > 1) {
+            scores[1] = logP2(words[0], words[1]);
+        }
+        for (int i = 2; i < numberOfWords; i++) {
+            scores[i] = logP3(words[i - 2], words[i - 1], words[i]);
+        }
+
+        return scores;
+    }
+
+    /**
+     * @brief Returns the State of an empty context
+     *
+     * @return The State of an empty context
+     */
+    public State getInitialState () {
+        return INITIAL_STATE;
+    }
+
+    /**
+     * @brief Returns the State reached after scoring every word of the given context
+     *
+     * @param context
+     *     The WordSequence of the context
+     *
+     * @return The State reached after scoring the given context
+     */
+    public State getState (WordSequence context) {
+        State state = INITIAL_STATE;
+
+        if (context != null) {
+            for (String word : context.getWordTextList()) {
+                state = append(state, word);
             }
+        }
+
+        return state;
+    }
+
+    /**
+     * @brief Returns the id of a word that can be passed to append(State, int)
+     *
+     * @param word
+     *     The word
+     *
+     * @return The id of the word or Vocabulary.UNKNOWN_ID if the word is unknown
+     */
+    public int getWordId (String word) {
+        return vocabulary_.getId(word);
+    }
+
+    /**
+     * @brief Scores a word given a context State
+     *
+     * @param state
+     *     The context State
+     * @param word
+     *     The word to append
+     *
+     * @return The new State. Its log probability is the log10 score of the appended word
+     */
+    public State append (State state, String word) {
+        return append(state, vocabulary_.getId(word));
+    }
 
-            return probability;
+    /**
+     * @brief Scores a word given a context State
+     *        The first word of a context is scored with its 1-gram, the second with its 2-gram and
+     *        every other word with its 3-gram, exactly like getWordLogProbabilities does.
+     *
+     * @param state
+     *     The context State
+     * @param word
+     *     The id of the word to append as returned by getWordId
+     *
+     * @return The new State. Its log probability is the log10 score of the appended word
+     */
+    public State append (State state, int word) {
+        double logProbability;
+
+        if (state.length_ == 0) {
+            logProbability = logP1(word);
+        }
+        else if (state.length_ == 1) {
+            logProbability = logP2(state.word2_, word);
+        }
+        else {
+            logProbability = logP3(state.word1_, state.word2_, word);
+        }
+
+        return new State(state.word2_, word, state.length_ + 1, logProbability,
+            state.totalLogProbability_ + logProbability);
+    }
+
+    /**
+     * @brief Scores many candidate WordSequence objects that follow the same left context
+     *        The left context is scored once and only the words of each candidate are scored
+     *        after that.
+     *
+     * @param leftContext
+     *     The WordSequence on the left of every candidate
+     * @param candidates
+     *     The candidate WordSequence objects
+     *
+     * @return The log10 score of each candidate given the left context
+     */
+    public double[] getLogProbabilities (WordSequence leftContext,
+                                         List<WordSequence> candidates) {
+        State contextState = getState(leftContext);
+
+        double[] scores = new double[candidates.size()];
+        for (int i = 0, n = scores.length; i < n; i++) {
+            State state = contextState;
+
+            for (String word : candidates.get(i).getWordTextList()) {
+                state = append(state, word);
+            }
+
+            scores[i] = state.totalLogProbability_ - contextState.totalLogProbability_;
         }
+
+        return scores;
     }
 
     /**
-     * @brief Returns the 1-gram probability of the given word sequence
+     * @brief Returns the 1-gram log10 probability of the given word
      *
-     * @param words
-     *     The sequence of words
+     * @param word
+     *     The id of the word
      *
-     * @return The 1-gram probability of the given word sequence
+     * @return The 1-gram log10 probability of the given word
      */
-    private double p1 (String... words) {
+    private double logP1 (int word) {
         // Search for the 1-gram probability.
-        Double probability = probabilities_.get(words[0]);
+        double logProbability = nGramStore_.getProbability(word);
 
-        // If the 1-gram probability doesn't exist, return 0.
-        return (probability == null ? 0 : probability);
+        // If the 1-gram probability doesn't exist, the probability is 0.
+        return (isMissing(logProbability) ? Double.NEGATIVE_INFINITY : logProbability);
     }
 
     /**
-     * Returns the 2-gram probability of the given word sequence
+     * Returns the 2-gram log10 probability of the given word sequence
      *
-     * @param words
-     *     The sequence of words
+     * @param word1
+     *     The id of the first word
+     * @param word2
+     *     The id of the second word
      *
-     * @return The 2-gram probability of the given word sequence
+     * @return The 2-gram log10 probability of the given word sequence
      */
-    private double p2 (String... words) {
+    private double logP2 (int word1, int word2) {
         // Search for the 2-gram probability.
-        Double probability = probabilities_.get(String.join(" ", (CharSequence[]) words));
+        double logProbability = nGramStore_.getProbability(word1, word2);
 
         // If the 2-gram doesn't exist, use the back-off weight according to the formula:
         // p(wd2|wd1) = bo_wt_1(wd1)*p_1(wd2)
-        if (probability == null) {
-            Double backOffWeight = backOffWeights_.get(words[0]);
-            probability = probabilities_.get(words[1]);
+        if (isMissing(logProbability)) {
+            double logBackOffWeight = nGramStore_.getBackOffWeight(word1);
+            logProbability = nGramStore_.getProbability(word2);
 
-            if (backOffWeight == null || probability == null) {
-                return 0;
+            if (isMissing(logBackOffWeight) || isMissing(logProbability)) {
+                return Double.NEGATIVE_INFINITY;
             }
             else {
-                return backOffWeight * probability;
+                return logBackOffWeight + logProbability;
             }
         }
         else {
-            return probability;
+            return logProbability;
         }
     }
 
     /**
-     * Returns the 3-gram probability of the given word sequence
+     * Returns the 3-gram log10 probability of the given word sequence
      *
-     * @param words
-     *     The sequence of words
+     * @param word1
+     *     The id of the first word
+     * @param word2
+     *     The id of the second word
+     * @param word3
+     *     The id of the third word
      *
-     * @return The 3-gram probability of the given word sequence
+     * @return The 3-gram log10 probability of the given word sequence
      */
-    private double p3 (String... words) {
+    private double logP3 (int word1, int word2, int word3) {
         // Search for the 3-gram probability.
-        Double probability = probabilities_.get(String.join(" ", (CharSequence[]) words));
+        double logProbability = nGramStore_.getProbability(word1, word2, word3);
 
         // If the 3-gram probability doesn't exist, use the back-off weight according to the
         // formula:
         // p(wd3|wd1,wd2) = bo_wt_2(w1,w2)*p(wd3|wd2)
-        if (probability == null) {
-            Double backOffWeight = backOffWeights_.get(String.join(" ", words[0], words[1]));
-            probability = p2(words[1], words[2]);
+        if (isMissing(logProbability)) {
+            double logBackOffWeight = nGramStore_.getBackOffWeight(word1, word2);
+            logProbability = logP2(word2, word3);
 
-            if (backOffWeight == null) {
-                return probability;
+            if (isMissing(logBackOffWeight)) {
+                return logProbability;
             }
             else {
-                return backOffWeight * probability;
+                return logBackOffWeight + logProbability;
             }
         }
         else {
-            return probability;
+            return logProbability;
         }
     }
 
-    private Hashtable<String, Double> probabilities_ = new Hashtable<>(); //!< The probabilities of
-                                                                          //!< this language model
-    private Hashtable<String, Double> backOffWeights_ = new Hashtable<>(); //!< The back-off weights
-                                                                           //!< of this language
-                                                                           //!< model
+    /**
+     * @brief Returns true if the given value denotes a missing n-gram
+     *
+     * @param value
+     *     The value returned by the NGramStore
+     *
+     * @return True if the given value denotes a missing n-gram
+     */
+    private static boolean isMissing (double value) {
+        return Double.isNaN(value);
+    }
+
+    /**
+     * @class State
+     * @brief Holds the context of an incremental scoring
+     *        A State is immutable so it can be shared between candidates that have the same
+     *        prefix.
+     */
+    public static final class State {
+
+        /**
+         * @brief Constructor
+         *
+         * @param word1
+         *     The id of the word before the last word
+         * @param word2
+         *     The id of the last word
+         * @param length
+         *     The number of words scored so far
+         * @param logProbability
+         *     The log10 score of the last word
+         * @param totalLogProbability
+         *     The sum of the log10 scores of all the words scored so far
+         */
+        private State (int word1, int word2, int length, double logProbability,
+                       double totalLogProbability) {
+            word1_ = word1;
+            word2_ = word2;
+            length_ = length;
+            logProbability_ = logProbability;
+            totalLogProbability_ = totalLogProbability;
+        }
+
+        /**
+         * @brief Returns the log10 score of the last appended word
+         *
+         * @return The log10 score of the last appended word
+         */
+        public double getLogProbability () {
+            return logProbability_;
+        }
+
+        /**
+         * @brief Returns the sum of the log10 scores of all the words scored so far
+         *
+         * @return The sum of the log10 scores of all the words scored so far
+         */
+        public double getTotalLogProbability () {
+            return totalLogProbability_;
+        }
+
+        /**
+         * @brief Returns the number of words scored so far
+         *
+         * @return The number of words scored so far
+         */
+        public int getLength () {
+            return length_;
+        }
+
+        private final int word1_; //!< The id of the word before the last word
+        private final int word2_; //!< The id of the last word
+        private final int length_; //!< The number of words scored so far
+        private final double logProbability_; //!< The log10 score of the last word
+        private final double totalLogProbability_; //!< The sum of the log10 scores so far
+    }
+
+    private final WordIndex vocabulary_; //!< The vocabulary of this language model
+    private final NGramLookup nGramStore_; //!< The n-grams of this language model
+
+    private static final State INITIAL_STATE = new State(
+        Vocabulary.UNKNOWN_ID, Vocabulary.UNKNOWN_ID, 0, 0, 0
+    ); //!< The State of an empty context
 
 }
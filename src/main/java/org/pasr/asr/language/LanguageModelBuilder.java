@@ -0,0 +1,951 @@
+package org.pasr.asr.language;
+
+import org.pasr.utilities.LongIntHashMap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+
+/**
+ * @class LanguageModelBuilder
+ * @brief Estimates a 3-gram language model from NGramCounts
+ *        Interpolated Kneser-Ney smoothing is used. The highest order is discounted on the raw
+ *        counts while the lower orders are discounted on continuation counts (the number of
+ *        distinct words preceding an n-gram). The discount of each order is estimated from its
+ *        count-of-counts as D = n1 / (n1 + 2 * n2).
+ *
+ *        Since the model is interpolated, the probability of a seen n-gram already includes its
+ *        lower order share and the back-off weight of a history is its interpolation weight. This
+ *        is exactly what the ARPA format expects, so the result can be written as an ARPA file
+ *        and read by any ARPA reader.
+ *
+ *        Once estimated, the language model follows its NGramCounts. After sentences are added to
+ *        or removed from them, only the n-grams that are new, whose history has changed or whose
+ *        lower order has been estimated again are estimated; every other n-gram keeps its
+ *        probability and back-off weight. The discounts and the continuation total, on which
+ *        every n-gram depends, are kept up to date as well and the language model is estimated
+ *        from scratch once they drift more than MAXIMUM_DRIFT from their values at the last full
+ *        estimation. An estimation saved with writeToFile is continued by createFromFile.
+ *
+ * @see <a href="http://www.speech.sri.com/projects/srilm/manpages/ngram-discount.7.html">http://www.speech.sri.com/projects/srilm/manpages/ngram-discount.7.html</a>
+ */
+public class LanguageModelBuilder {
+
+    /**
+     * @brief Constructor
+     *
+     * @param nGramCounts
+     *     The NGramCounts to estimate the language model from
+     */
+    public LanguageModelBuilder (NGramCounts nGramCounts) {
+        nGramCounts_ = nGramCounts;
+    }
+
+    /**
+     * @brief Creates a LanguageModelBuilder that continues an estimation saved with writeToFile
+     *        The NGramCounts start recording their changes, so that the next language model only
+     *        estimates again the n-grams that the changes affect.
+     *
+     * @param nGramCounts
+     *     The NGramCounts of the saved estimation, as they were when it was saved
+     * @param file
+     *     The file created by writeToFile
+     *
+     * @return The LanguageModelBuilder
+     *
+     * @throws IOException If an I/O error occurs or the file does not hold an estimation of the
+     *                     given NGramCounts
+     */
+    public static LanguageModelBuilder createFromFile (NGramCounts nGramCounts, File file)
+        throws IOException {
+
+        LanguageModelBuilder languageModelBuilder = new LanguageModelBuilder(nGramCounts);
+
+        try (DataInputStream inputStream = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+
+            if (inputStream.readInt() != MAGIC || inputStream.readInt() != VERSION) {
+                throw new IOException("Not a language model estimation file: " + file.getPath());
+            }
+
+            if (inputStream.readInt() != nGramCounts.getVocabulary().size() ||
+                inputStream.readInt() != nGramCounts.getNumberOfSentences() ||
+                inputStream.readInt() != nGramCounts.getUnigramCounts().size() ||
+                inputStream.readInt() != nGramCounts.getBigramCounts().size() ||
+                inputStream.readInt() != nGramCounts.getTrigramCounts().size()) {
+
+                throw new IOException("The estimation does not match the n-gram counts: " +
+                    file.getPath());
+            }
+
+            languageModelBuilder.readEstimation(inputStream);
+        }
+
+        nGramCounts.recordChanges();
+
+        return languageModelBuilder;
+    }
+
+    /**
+     * @brief Returns the estimated Language Model
+     *
+     * @return The estimated Language Model
+     */
+    public LanguageModel build () {
+        return LanguageModel.create(nGramCounts_.getVocabulary(), getNGramStore());
+    }
+
+    /**
+     * @brief Writes the estimated language model as an ARPA file
+     *        The words are written in lexicographic order, each n-gram section sorted by its words.
+     *
+     * @param file
+     *     The ARPA file to create
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public void writeArpaFile (File file) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+            Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8), 1 << 16)) {
+
+            writeArpa(writer);
+        }
+    }
+
+    /**
+     * @brief Writes the estimated language model in the ARPA format
+     *
+     * @param writer
+     *     The Writer to write to
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public void writeArpa (Writer writer) throws IOException {
+        NGramStore nGramStore = getNGramStore();
+        Vocabulary vocabulary = nGramCounts_.getVocabulary();
+
+        // Rank the words lexicographically
+        int[] wordsByRank = IntStream.range(0, vocabulary.size())
+            .filter(id -> ! Double.isNaN(nGramStore.getProbability(id)))
+            .boxed()
+            .sorted(Comparator.comparing(vocabulary:: getWord))
+            .mapToInt(Integer:: intValue)
+            .toArray();
+
+        int[] rankOfWord = new int[vocabulary.size()];
+        for (int rank = 0; rank < wordsByRank.length; rank++) {
+            rankOfWord[wordsByRank[rank]] = rank;
+        }
+
+        long[] bigramKeys = Arrays.copyOf(
+            nGramStore.getBigramKeys(), nGramStore.getBigramCount()
+        );
+        for (int i = 0; i < bigramKeys.length; i++) {
+            bigramKeys[i] = NGramStore.key(
+                rankOfWord[word(bigramKeys[i], 1, 2)], rankOfWord[word(bigramKeys[i], 2, 2)]
+            );
+        }
+        Arrays.sort(bigramKeys);
+
+        long[] trigramKeys = Arrays.copyOf(
+            nGramStore.getTrigramKeys(), nGramStore.getTrigramCount()
+        );
+        for (int i = 0; i < trigramKeys.length; i++) {
+            trigramKeys[i] = NGramStore.key(
+                rankOfWord[word(trigramKeys[i], 1, 3)],
+                rankOfWord[word(trigramKeys[i], 2, 3)],
+                rankOfWord[word(trigramKeys[i], 3, 3)]
+            );
+        }
+        Arrays.sort(trigramKeys);
+
+        StringBuilder line = new StringBuilder(128);
+
+        writer.write("\\data\\\n");
+        writer.write("ngram 1=" + wordsByRank.length + "\n");
+        writer.write("ngram 2=" + bigramKeys.length + "\n");
+        writer.write("ngram 3=" + trigramKeys.length + "\n");
+
+        writer.write("\n\\1-grams:\n");
+        for (int word : wordsByRank) {
+            line.setLength(0);
+            appendLog10(line, nGramStore.getProbability(word))
+                .append(' ').append(vocabulary.getWord(word)).append(' ');
+            appendLog10(line, nGramStore.getBackOffWeight(word)).append('\n');
+
+            writer.append(line);
+        }
+
+        writer.write("\n\\2-grams:\n");
+        for (long rankKey : bigramKeys) {
+            int word1 = wordsByRank[word(rankKey, 1, 2)];
+            int word2 = wordsByRank[word(rankKey, 2, 2)];
+
+            line.setLength(0);
+            appendLog10(line, nGramStore.getProbability(word1, word2))
+                .append(' ').append(vocabulary.getWord(word1))
+                .append(' ').append(vocabulary.getWord(word2)).append(' ');
+            appendLog10(line, nGramStore.getBackOffWeight(word1, word2)).append('\n');
+
+            writer.append(line);
+        }
+
+        writer.write("\n\\3-grams:\n");
+        for (long rankKey : trigramKeys) {
+            int word1 = wordsByRank[word(rankKey, 1, 3)];
+            int word2 = wordsByRank[word(rankKey, 2, 3)];
+            int word3 = wordsByRank[word(rankKey, 3, 3)];
+
+            line.setLength(0);
+            appendLog10(line, nGramStore.getProbability(word1, word2, word3))
+                .append(' ').append(vocabulary.getWord(word1))
+                .append(' ').append(vocabulary.getWord(word2))
+                .append(' ').append(vocabulary.getWord(word3)).append('\n');
+
+            writer.append(line);
+        }
+
+        writer.write("\n\\end\\\n");
+    }
+
+    /**
+     * @brief Writes the estimation so that it can be continued by createFromFile
+     *        Along with the estimated n-grams, the continuation counts and the count-of-counts
+     *        they were estimated from are written.
+     *
+     * @param file
+     *     The file to create
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public void writeToFile (File file) throws IOException {
+        NGramStore nGramStore = getNGramStore();
+        int vocabularySize = nGramCounts_.getVocabulary().size();
+
+        try (DataOutputStream outputStream = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+
+            outputStream.writeInt(MAGIC);
+            outputStream.writeInt(VERSION);
+
+            outputStream.writeInt(vocabularySize);
+            outputStream.writeInt(nGramCounts_.getNumberOfSentences());
+            outputStream.writeInt(nGramCounts_.getUnigramCounts().size());
+            outputStream.writeInt(nGramCounts_.getBigramCounts().size());
+            outputStream.writeInt(nGramCounts_.getTrigramCounts().size());
+
+            outputStream.writeDouble(bigramDiscount_);
+            outputStream.writeDouble(trigramDiscount_);
+            outputStream.writeLong(estimatedUnigramContinuationTotal_);
+            outputStream.writeLong(unigramContinuationTotal_);
+            outputStream.writeInt(bigramCountOfCounts_[1]);
+            outputStream.writeInt(bigramCountOfCounts_[2]);
+            outputStream.writeInt(trigramCountOfCounts_[1]);
+            outputStream.writeInt(trigramCountOfCounts_[2]);
+
+            for (int word = 0; word < vocabularySize; word++) {
+                outputStream.writeDouble(nGramStore.getProbability(word));
+                outputStream.writeDouble(nGramStore.getBackOffWeight(word));
+                outputStream.writeInt(unigramContinuationCounts_[word]);
+            }
+
+            long[] bigramKeys = nGramStore.getBigramKeys();
+            double[] bigramProbabilities = nGramStore.getBigramProbabilities();
+            double[] bigramBackOffWeights = nGramStore.getBigramBackOffWeights();
+
+            outputStream.writeInt(nGramStore.getBigramCount());
+            for (int i = 0, n = nGramStore.getBigramCount(); i < n; i++) {
+                outputStream.writeLong(bigramKeys[i]);
+                outputStream.writeDouble(bigramProbabilities[i]);
+                outputStream.writeDouble(bigramBackOffWeights[i]);
+                outputStream.writeInt(bigramContinuationCounts_.get(bigramKeys[i]));
+            }
+
+            long[] trigramKeys = nGramStore.getTrigramKeys();
+            double[] trigramProbabilities = nGramStore.getTrigramProbabilities();
+
+            outputStream.writeInt(nGramStore.getTrigramCount());
+            for (int i = 0, n = nGramStore.getTrigramCount(); i < n; i++) {
+                outputStream.writeLong(trigramKeys[i]);
+                outputStream.writeDouble(trigramProbabilities[i]);
+            }
+        }
+    }
+
+    /**
+     * @brief Returns the estimated NGramStore
+     *        The NGramStore is estimated on the first call and the n-grams affected by the changes
+     *        of the NGramCounts are estimated again on any later call.
+     *
+     * @return The estimated NGramStore
+     */
+    NGramStore getNGramStore () {
+        if (nGramStore_ == null) {
+            estimate();
+            nGramCounts_.recordChanges();
+        }
+        else if (nGramCounts_.hasChanges()) {
+            update();
+            nGramCounts_.recordChanges();
+        }
+
+        return nGramStore_;
+    }
+
+    /**
+     * @brief Returns the number of n-grams that were estimated the last time the NGramStore was
+     *        estimated
+     *
+     * @return The number of estimated n-grams
+     */
+    int getNumberOfEstimatedNGrams () {
+        return numberOfEstimatedNGrams_;
+    }
+
+    /**
+     * @brief Reads an estimation written by writeToFile, after its header
+     *
+     * @param inputStream
+     *     The DataInputStream to read from
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    private void readEstimation (DataInputStream inputStream) throws IOException {
+        int vocabularySize = nGramCounts_.getVocabulary().size();
+
+        bigramDiscount_ = inputStream.readDouble();
+        trigramDiscount_ = inputStream.readDouble();
+        estimatedUnigramContinuationTotal_ = inputStream.readLong();
+        unigramContinuationTotal_ = inputStream.readLong();
+        bigramCountOfCounts_ = new int[] {0, inputStream.readInt(), inputStream.readInt()};
+        trigramCountOfCounts_ = new int[] {0, inputStream.readInt(), inputStream.readInt()};
+
+        NGramStore nGramStore = new NGramStore(vocabularySize, 0, 0);
+
+        unigramContinuationCounts_ = new int[vocabularySize];
+        for (int word = 0; word < vocabularySize; word++) {
+            double probability = inputStream.readDouble();
+            double backOffWeight = inputStream.readDouble();
+            unigramContinuationCounts_[word] = inputStream.readInt();
+
+            if (! Double.isNaN(probability)) {
+                nGramStore.addUnigram(word, probability, backOffWeight);
+            }
+        }
+
+        int bigramCount = inputStream.readInt();
+        long[] bigramKeys = new long[bigramCount];
+        double[] bigramProbabilities = new double[bigramCount];
+        double[] bigramBackOffWeights = new double[bigramCount];
+        bigramContinuationCounts_ = new LongIntHashMap(bigramCount);
+        for (int i = 0; i < bigramCount; i++) {
+            bigramKeys[i] = inputStream.readLong();
+            bigramProbabilities[i] = inputStream.readDouble();
+            bigramBackOffWeights[i] = inputStream.readDouble();
+            bigramContinuationCounts_.put(bigramKeys[i], inputStream.readInt());
+        }
+
+        int trigramCount = inputStream.readInt();
+        long[] trigramKeys = new long[trigramCount];
+        double[] trigramProbabilities = new double[trigramCount];
+        for (int i = 0; i < trigramCount; i++) {
+            trigramKeys[i] = inputStream.readLong();
+            trigramProbabilities[i] = inputStream.readDouble();
+        }
+
+        nGramStore.setBigrams(bigramKeys, bigramProbabilities, bigramBackOffWeights, bigramCount);
+        nGramStore.setTrigrams(trigramKeys, trigramProbabilities, trigramCount);
+        nGramStore.compact();
+
+        nGramStore_ = nGramStore;
+    }
+
+    /**
+     * @brief Estimates the log10 probabilities and back-off weights of every counted n-gram
+     *        The continuation counts and the count-of-counts are counted from scratch and become
+     *        the reference for the drift of the following updates.
+     */
+    private void estimate () {
+        int sentenceStart = nGramCounts_.getSentenceStartId();
+
+        LongIntHashMap bigramCounts = nGramCounts_.getBigramCounts();
+        LongIntHashMap trigramCounts = nGramCounts_.getTrigramCounts();
+
+        // 2-gram level: continuation counts, except for the 2-grams starting with SENTENCE_START
+        // that can not be preceded by any word and keep their raw count
+        LongIntHashMap bigramContinuationCounts = new LongIntHashMap(bigramCounts.size());
+
+        trigramCounts.forEach((key, count) -> bigramContinuationCounts.add(key & BIGRAM_MASK, 1));
+
+        bigramCounts.forEach((key, count) -> {
+            if (word(key, 1, 2) == sentenceStart) {
+                bigramContinuationCounts.add(key, count);
+            }
+        });
+
+        // 1-gram level: continuation counts
+        int[] unigramContinuationCounts = new int[nGramCounts_.getVocabulary().size()];
+        bigramCounts.forEach((key, count) -> unigramContinuationCounts[word(key, 2, 2)]++);
+
+        bigramContinuationCounts_ = bigramContinuationCounts;
+        unigramContinuationCounts_ = unigramContinuationCounts;
+        unigramContinuationTotal_ = bigramCounts.size();
+
+        bigramCountOfCounts_ = countOfCounts(bigramContinuationCounts);
+        trigramCountOfCounts_ = countOfCounts(trigramCounts);
+
+        estimate(null, null, null, null);
+
+        bigramDiscount_ = discount(bigramCountOfCounts_);
+        trigramDiscount_ = discount(trigramCountOfCounts_);
+        estimatedUnigramContinuationTotal_ = unigramContinuationTotal_;
+    }
+
+    /**
+     * @brief Estimates again the n-grams affected by the changes of the NGramCounts
+     *        The continuation counts and the count-of-counts are updated from the recorded
+     *        changes. If the discounts or the 1-gram continuation total have drifted too much,
+     *        every n-gram is estimated instead.
+     */
+    private void update () {
+        int sentenceStart = nGramCounts_.getSentenceStartId();
+        int vocabularySize = nGramCounts_.getVocabulary().size();
+
+        LongIntHashMap bigramCounts = nGramCounts_.getBigramCounts();
+        LongIntHashMap trigramCounts = nGramCounts_.getTrigramCounts();
+
+        if (unigramContinuationCounts_.length < vocabularySize) {
+            unigramContinuationCounts_ = Arrays.copyOf(unigramContinuationCounts_, vocabularySize);
+        }
+
+        // A 3-gram that appears or disappears changes the continuation count of its lower order
+        LongIntHashMap continuationChanges = new LongIntHashMap();
+        LongIntHashMap changedTrigramHistories = new LongIntHashMap();
+        nGramCounts_.getTrigramChanges().forEach((key, change) -> {
+            int count = trigramCounts.get(key);
+
+            updateCountOfCounts(trigramCountOfCounts_, count - change, count);
+            changedTrigramHistories.put(key >>> NGramStore.BITS_PER_WORD, 1);
+
+            if (count - change == 0) {
+                continuationChanges.add(key & BIGRAM_MASK, 1);
+            }
+            else if (count == 0) {
+                continuationChanges.add(key & BIGRAM_MASK, - 1);
+            }
+        });
+
+        // A 2-gram that appears or disappears changes the continuation count of its last word
+        boolean[] changedUnigrams = new boolean[vocabularySize];
+        nGramCounts_.getBigramChanges().forEach((key, change) -> {
+            int count = bigramCounts.get(key);
+
+            if (word(key, 1, 2) == sentenceStart) {
+                continuationChanges.add(key, change);
+            }
+
+            if (count - change == 0 || count == 0) {
+                int word = word(key, 2, 2);
+                int delta = count == 0 ? - 1 : 1;
+
+                unigramContinuationCounts_[word] += delta;
+                unigramContinuationTotal_ += delta;
+                changedUnigrams[word] = true;
+            }
+        });
+
+        boolean[] changedBigramHistories = new boolean[vocabularySize];
+        continuationChanges.forEach((key, change) -> {
+            int count = bigramContinuationCounts_.add(key, change);
+
+            updateCountOfCounts(bigramCountOfCounts_, count - change, count);
+            changedBigramHistories[word(key, 1, 2)] = true;
+        });
+
+        if (drift(discount(bigramCountOfCounts_), bigramDiscount_) > MAXIMUM_DRIFT ||
+            drift(discount(trigramCountOfCounts_), trigramDiscount_) > MAXIMUM_DRIFT ||
+            drift(unigramContinuationTotal_, estimatedUnigramContinuationTotal_) > MAXIMUM_DRIFT) {
+
+            estimate();
+        }
+        else {
+            estimate(nGramStore_, changedUnigrams, changedBigramHistories, changedTrigramHistories);
+        }
+    }
+
+    /**
+     * @brief Estimates the n-grams from the current continuation counts and count-of-counts
+     *        Without a previous NGramStore every n-gram is estimated. Otherwise, only the n-grams
+     *        that are new, whose history has changed or whose lower order is estimated are
+     *        estimated and every other n-gram is copied from the previous NGramStore.
+     *
+     * @param previous
+     *     The previous NGramStore or null to estimate every n-gram
+     * @param changedUnigrams
+     *     The words whose continuation count has changed, by word id
+     * @param changedBigramHistories
+     *     The words whose 2-gram continuations have changed, by word id
+     * @param changedTrigramHistories
+     *     The 2-grams whose 3-gram continuations have changed, keyed by NGramStore key
+     */
+    private void estimate (NGramStore previous, boolean[] changedUnigrams,
+                           boolean[] changedBigramHistories,
+                           LongIntHashMap changedTrigramHistories) {
+
+        boolean full = previous == null;
+        int vocabularySize = nGramCounts_.getVocabulary().size();
+
+        LongIntHashMap unigramCounts = nGramCounts_.getUnigramCounts();
+        LongIntHashMap bigramCounts = nGramCounts_.getBigramCounts();
+        LongIntHashMap trigramCounts = nGramCounts_.getTrigramCounts();
+
+        double bigramDiscount = discount(bigramCountOfCounts_);
+        double trigramDiscount = discount(trigramCountOfCounts_);
+
+        int numberOfEstimatedNGrams = 0;
+
+        // 1-grams, their back-off weights are estimated along with the 2-grams
+        double[] unigramProbabilities = new double[vocabularySize];
+        double[] unigramBackOffWeights = new double[vocabularySize];
+        boolean[] estimatedUnigrams = new boolean[vocabularySize];
+        for (int word = 0; word < vocabularySize; word++) {
+            if (unigramCounts.get(word) <= 0) {
+                continue;
+            }
+
+            if (full || changedUnigrams[word] || Double.isNaN(previous.getProbability(word))) {
+                unigramProbabilities[word] = unigramContinuationTotal_ == 0 ? 0 :
+                    (double) unigramContinuationCounts_[word] / unigramContinuationTotal_;
+
+                estimatedUnigrams[word] = true;
+                numberOfEstimatedNGrams++;
+            }
+            else {
+                unigramProbabilities[word] = Math.pow(10, previous.getProbability(word));
+            }
+
+            if (! full && ! changedBigramHistories[word]) {
+                double backOffWeight = previous.getBackOffWeight(word);
+
+                unigramBackOffWeights[word] = Double.isNaN(backOffWeight) ? 0 : backOffWeight;
+            }
+        }
+
+        // 2-grams, grouped by history
+        long[] bigramKeys = full ? bigramCounts.sortedKeys() : mergeKeys(
+            previous.getBigramKeys(), previous.getBigramCount(),
+            bigramCounts, nGramCounts_.getBigramChanges()
+        );
+        int[] previousBigramIndices = full ? null :
+            indexOf(bigramKeys, previous.getBigramKeys(), previous.getBigramCount());
+
+        // The linear probabilities of the estimated 2-grams, NaN for the copied ones
+        double[] bigramLinearProbabilities = new double[bigramKeys.length];
+        double[] bigramProbabilities = new double[bigramKeys.length];
+        double[] bigramBackOffWeights = new double[bigramKeys.length];
+        Arrays.fill(bigramLinearProbabilities, Double.NaN);
+
+        LongIntHashMap estimatedBigrams = new LongIntHashMap();
+        for (int start = 0, end; start < bigramKeys.length; start = end) {
+            int history = word(bigramKeys[start], 1, 2);
+            boolean changedHistory = full || changedBigramHistories[history];
+
+            boolean estimateGroup = changedHistory;
+            for (end = start; end < bigramKeys.length &&
+                word(bigramKeys[end], 1, 2) == history; end++) {
+
+                estimateGroup = estimateGroup || previousBigramIndices[end] < 0 ||
+                    estimatedUnigrams[word(bigramKeys[end], 2, 2)];
+            }
+
+            long historyTotal = 0;
+            if (estimateGroup) {
+                for (int i = start; i < end; i++) {
+                    historyTotal += bigramContinuationCounts_.get(bigramKeys[i]);
+                }
+            }
+
+            double interpolationWeight = historyTotal == 0 ? 1 :
+                bigramDiscount * (end - start) / historyTotal;
+
+            if (changedHistory) {
+                unigramBackOffWeights[history] = log10(interpolationWeight);
+            }
+
+            for (int i = start; i < end; i++) {
+                long key = bigramKeys[i];
+                int word2 = word(key, 2, 2);
+
+                int previousIndex = full ? - 1 : previousBigramIndices[i];
+                bigramBackOffWeights[i] = previousIndex < 0 ? 0 :
+                    previous.getBigramBackOffWeights()[previousIndex];
+
+                if (changedHistory || estimatedUnigrams[word2] || previousIndex < 0) {
+                    bigramLinearProbabilities[i] = Math.max(
+                        bigramContinuationCounts_.get(key) - bigramDiscount, 0
+                    ) / historyTotal + interpolationWeight * unigramProbabilities[word2];
+
+                    bigramProbabilities[i] = log10(bigramLinearProbabilities[i]);
+
+                    if (! full) {
+                        estimatedBigrams.put(key, 1);
+                    }
+                    numberOfEstimatedNGrams++;
+                }
+                else {
+                    bigramProbabilities[i] = previous.getBigramProbabilities()[previousIndex];
+                }
+            }
+        }
+
+        // 3-grams, grouped by history
+        if (! full) {
+            changedTrigramHistories.forEach((history, value) -> {
+                int index = Arrays.binarySearch(bigramKeys, history);
+
+                if (index >= 0) {
+                    bigramBackOffWeights[index] = 0;
+                }
+            });
+        }
+
+        long[] trigramKeys = full ? trigramCounts.sortedKeys() : mergeKeys(
+            previous.getTrigramKeys(), previous.getTrigramCount(),
+            trigramCounts, nGramCounts_.getTrigramChanges()
+        );
+        int[] previousTrigramIndices = full ? null :
+            indexOf(trigramKeys, previous.getTrigramKeys(), previous.getTrigramCount());
+
+        double[] trigramProbabilities = new double[trigramKeys.length];
+        for (int start = 0, end; start < trigramKeys.length; start = end) {
+            long history = trigramKeys[start] >>> NGramStore.BITS_PER_WORD;
+            boolean changedHistory = full || changedTrigramHistories.containsKey(history);
+
+            boolean estimateGroup = changedHistory;
+            for (end = start; end < trigramKeys.length &&
+                trigramKeys[end] >>> NGramStore.BITS_PER_WORD == history; end++) {
+
+                estimateGroup = estimateGroup || previousTrigramIndices[end] < 0 ||
+                    estimatedBigrams.containsKey(trigramKeys[end] & BIGRAM_MASK);
+            }
+
+            long historyTotal = 0;
+            if (estimateGroup) {
+                for (int i = start; i < end; i++) {
+                    historyTotal += trigramCounts.get(trigramKeys[i]);
+                }
+            }
+
+            double interpolationWeight = estimateGroup ?
+                trigramDiscount * (end - start) / historyTotal : 0;
+
+            if (changedHistory) {
+                bigramBackOffWeights[Arrays.binarySearch(bigramKeys, history)] =
+                    log10(interpolationWeight);
+            }
+
+            for (int i = start; i < end; i++) {
+                long key = trigramKeys[i];
+                long lowerOrder = key & BIGRAM_MASK;
+
+                if (changedHistory || previousTrigramIndices[i] < 0 ||
+                    estimatedBigrams.containsKey(lowerOrder)) {
+
+                    int lowerOrderIndex = Arrays.binarySearch(bigramKeys, lowerOrder);
+                    double lowerOrderProbability = bigramLinearProbabilities[lowerOrderIndex];
+                    if (Double.isNaN(lowerOrderProbability)) {
+                        lowerOrderProbability = Math.pow(10, bigramProbabilities[lowerOrderIndex]);
+                    }
+
+                    trigramProbabilities[i] = log10(
+                        Math.max(trigramCounts.get(key) - trigramDiscount, 0) / historyTotal +
+                            interpolationWeight * lowerOrderProbability
+                    );
+                    numberOfEstimatedNGrams++;
+                }
+                else {
+                    trigramProbabilities[i] =
+                        previous.getTrigramProbabilities()[previousTrigramIndices[i]];
+                }
+            }
+        }
+
+        NGramStore nGramStore = new NGramStore(
+            vocabularySize, bigramKeys.length, trigramKeys.length
+        );
+
+        for (int word = 0; word < vocabularySize; word++) {
+            if (unigramCounts.get(word) <= 0) {
+                continue;
+            }
+
+            nGramStore.addUnigram(word, estimatedUnigrams[word] ?
+                log10(unigramProbabilities[word]) : previous.getProbability(word),
+                unigramBackOffWeights[word]
+            );
+        }
+
+        nGramStore.setBigrams(
+            bigramKeys, bigramProbabilities, bigramBackOffWeights, bigramKeys.length
+        );
+        nGramStore.setTrigrams(trigramKeys, trigramProbabilities, trigramKeys.length);
+        nGramStore.compact();
+
+        nGramStore_ = nGramStore;
+        numberOfEstimatedNGrams_ = numberOfEstimatedNGrams;
+    }
+
+    /**
+     * @brief Returns the sorted keys of the counted n-grams of an order, given their previous keys
+     *        and the changes since then
+     *        Only the changed keys are looked up in the counts.
+     *
+     * @param previousKeys
+     *     The sorted previous keys
+     * @param previousSize
+     *     The number of previous keys
+     * @param counts
+     *     The counts of the order
+     * @param changes
+     *     The count changes of the order since the previous keys
+     *
+     * @return The sorted keys of the counted n-grams
+     */
+    private static long[] mergeKeys (long[] previousKeys, int previousSize,
+                                     LongIntHashMap counts, LongIntHashMap changes) {
+
+        LongIntHashMap newKeys = new LongIntHashMap();
+        changes.forEach((key, change) -> {
+            if (counts.get(key) == change) {
+                newKeys.put(key, 1);
+            }
+        });
+        long[] sortedNewKeys = newKeys.sortedKeys();
+
+        long[] keys = new long[counts.size()];
+        int size = 0;
+        for (int i = 0, j = 0; i < previousSize || j < sortedNewKeys.length; ) {
+            if (j == sortedNewKeys.length ||
+                (i < previousSize && previousKeys[i] < sortedNewKeys[j])) {
+
+                long key = previousKeys[i++];
+                if (! changes.containsKey(key) || counts.containsKey(key)) {
+                    keys[size++] = key;
+                }
+            }
+            else {
+                keys[size++] = sortedNewKeys[j++];
+            }
+        }
+
+        return keys;
+    }
+
+    /**
+     * @brief Returns the index of each key inside the previous keys
+     *
+     * @param keys
+     *     The sorted keys
+     * @param previousKeys
+     *     The sorted previous keys
+     * @param previousSize
+     *     The number of previous keys
+     *
+     * @return The index of each key inside the previous keys or - 1 if it is new
+     */
+    private static int[] indexOf (long[] keys, long[] previousKeys, int previousSize) {
+        int[] indices = new int[keys.length];
+
+        for (int i = 0, j = 0; i < keys.length; i++) {
+            while (j < previousSize && previousKeys[j] < keys[i]) {
+                j++;
+            }
+
+            indices[i] = j < previousSize && previousKeys[j] == keys[i] ? j : - 1;
+        }
+
+        return indices;
+    }
+
+    /**
+     * @brief Returns the count-of-counts of an order
+     *
+     * @param counts
+     *     The counts of the order
+     *
+     * @return The number of counts equal to 1 and 2, at the indices 1 and 2
+     */
+    private static int[] countOfCounts (LongIntHashMap counts) {
+        int[] countOfCounts = new int[3];
+
+        counts.forEach((key, count) -> updateCountOfCounts(countOfCounts, 0, count));
+
+        return countOfCounts;
+    }
+
+    /**
+     * @brief Updates a count-of-counts after a count has changed
+     *
+     * @param countOfCounts
+     *     The count-of-counts to update
+     * @param previousCount
+     *     The previous count
+     * @param count
+     *     The new count
+     */
+    private static void updateCountOfCounts (int[] countOfCounts, int previousCount, int count) {
+        if (previousCount == 1 || previousCount == 2) {
+            countOfCounts[previousCount]--;
+        }
+
+        if (count == 1 || count == 2) {
+            countOfCounts[count]++;
+        }
+    }
+
+    /**
+     * @brief Estimates the Kneser-Ney discount of an order from its count-of-counts
+     *        If the counts are too few for the estimation, DEFAULT_DISCOUNT is returned.
+     *
+     * @param countOfCounts
+     *     The count-of-counts of the order
+     *
+     * @return The discount of the order
+     */
+    private static double discount (int[] countOfCounts) {
+        if (countOfCounts[1] == 0 || countOfCounts[2] == 0) {
+            return DEFAULT_DISCOUNT;
+        }
+
+        return (double) countOfCounts[1] / (countOfCounts[1] + 2 * countOfCounts[2]);
+    }
+
+    /**
+     * @brief Returns the relative change of a value from a reference value
+     *
+     * @param value
+     *     The value
+     * @param reference
+     *     The reference value
+     *
+     * @return The relative change
+     */
+    private static double drift (double value, double reference) {
+        return value == reference ? 0 : Math.abs(value - reference) / Math.abs(reference);
+    }
+
+    /**
+     * @brief Returns a word id packed inside an NGramStore key
+     *
+     * @param key
+     *     The key
+     * @param position
+     *     The position of the word inside the n-gram (starting from 1)
+     * @param order
+     *     The order of the n-gram
+     *
+     * @return The word id
+     */
+    private static int word (long key, int position, int order) {
+        return (int) (key >>> ((order - position) * NGramStore.BITS_PER_WORD)) & NGramStore.MAX_ID;
+    }
+
+    /**
+     * @brief Returns the log10 of a probability, using LOG10_ZERO for zero
+     *
+     * @param probability
+     *     The probability
+     *
+     * @return The log10 of the probability
+     */
+    private static double log10 (double probability) {
+        return probability > 0 ? Math.log10(probability) : LOG10_ZERO;
+    }
+
+    /**
+     * @brief Appends a log10 value with four decimal digits
+     *        This avoids String.format that dominates the writing time of large models.
+     *
+     * @param stringBuilder
+     *     The StringBuilder to append to
+     * @param value
+     *     The value
+     *
+     * @return The given StringBuilder
+     */
+    private static StringBuilder appendLog10 (StringBuilder stringBuilder, double value) {
+        if (Double.isNaN(value)) {
+            value = 0;
+        }
+
+        long scaled = Math.round(Math.max(value, LOG10_ZERO) * 10000);
+        if (scaled < 0) {
+            stringBuilder.append('-');
+            scaled = - scaled;
+        }
+
+        long fraction = scaled % 10000;
+        stringBuilder.append(scaled / 10000).append('.');
+        if (fraction < 1000) {
+            stringBuilder.append('0');
+        }
+        if (fraction < 100) {
+            stringBuilder.append('0');
+        }
+        if (fraction < 10) {
+            stringBuilder.append('0');
+        }
+
+        return stringBuilder.append(fraction);
+    }
+
+    private final NGramCounts nGramCounts_; //!< The counts to estimate the language model from
+    private NGramStore nGramStore_ = null; //!< The estimated n-grams
+    private int numberOfEstimatedNGrams_ = 0; //!< The number of n-grams estimated the last time
+
+    private LongIntHashMap bigramContinuationCounts_; //!< The 2-gram continuation counts
+    private int[] unigramContinuationCounts_; //!< The 1-gram continuation counts by word id
+    private long unigramContinuationTotal_; //!< The sum of the 1-gram continuation counts
+
+    private int[] bigramCountOfCounts_; //!< The number of 2-gram continuation counts equal to 1
+                                        //!< and 2, at the indices 1 and 2
+    private int[] trigramCountOfCounts_; //!< The number of 3-gram counts equal to 1 and 2, at
+                                         //!< the indices 1 and 2
+
+    private double bigramDiscount_; //!< The 2-gram discount of the last full estimation
+    private double trigramDiscount_; //!< The 3-gram discount of the last full estimation
+    private long estimatedUnigramContinuationTotal_; //!< The 1-gram continuation total of the
+                                                     //!< last full estimation
+
+    //! Keeps the last 2 words of an NGramStore key
+    private static final long BIGRAM_MASK = (1L << (2 * NGramStore.BITS_PER_WORD)) - 1;
+
+    private static final double DEFAULT_DISCOUNT = 0.5; //!< The discount used when there are too
+                                                        //!< few counts to estimate one
+
+    //! The relative change of a discount or of the 1-gram continuation total after which the
+    //! language model is estimated from scratch. The probabilities of the n-grams that are not
+    //! estimated again are off by at most about as much, relatively.
+    private static final double MAXIMUM_DRIFT = 1e-03;
+
+    private static final int MAGIC = 0x50534B4E; //!< The first bytes of an estimation file ("PSKN")
+    private static final int VERSION = 1; //!< The version of the estimation file format
+
+    private static final double LOG10_ZERO = - 99; //!< The log10 written for a zero probability,
+                                                   //!< as CMU-CLMTK does for SENTENCE_START
+
+}
@@ -0,0 +1,512 @@
+package org.pasr.asr.language;
+
+import org.pasr.prep.corpus.WordSequence;
+import org.pasr.utilities.LongIntHashMap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+
+/**
+ * @class NGramCounts
+ * @brief Holds the 1-gram, 2-gram and 3-gram counts of a set of sentences
+ *        Every sentence is wrapped inside SENTENCE_START and SENTENCE_END, exactly as the
+ *        sentences.txt file of a corpus is written, and n-grams never cross sentence boundaries.
+ *        The words are mapped to Vocabulary ids and each n-gram is counted under its NGramStore
+ *        key so that no object is created per n-gram.
+ */
+public class NGramCounts {
+
+    /**
+     * @brief Default Constructor
+     */
+    public NGramCounts () {
+        this(new Vocabulary());
+    }
+
+    /**
+     * @brief Constructor
+     *
+     * @param vocabulary
+     *     The Vocabulary to use. SENTENCE_START and SENTENCE_END are added to it if missing
+     */
+    NGramCounts (Vocabulary vocabulary) {
+        vocabulary_ = vocabulary;
+
+        sentenceStartId_ = vocabulary_.add(SENTENCE_START);
+        sentenceEndId_ = vocabulary_.add(SENTENCE_END);
+    }
+
+    /**
+     * @brief Counts the n-grams of the given sentences
+     *        The words are first mapped to ids and then the sentences are split into chunks that
+     *        are counted in parallel, each inside its own maps. The per-chunk maps are merged at
+     *        the end.
+     *
+     * @param sentences
+     *     The sentences to count
+     *
+     * @return The NGramCounts of the given sentences
+     */
+    public static NGramCounts count (List<WordSequence> sentences) {
+        NGramCounts nGramCounts = new NGramCounts();
+
+        int size = sentences.size();
+
+        int[][] sentenceIds = new int[size][];
+        for (int i = 0; i < size; i++) {
+            sentenceIds[i] = nGramCounts.toIds(sentences.get(i).getWordTextList());
+        }
+
+        int numberOfChunks = Math.max(1, Math.min(
+            size / MINIMUM_CHUNK_SIZE, Runtime.getRuntime().availableProcessors() * 4
+        ));
+
+        NGramCounts merged = IntStream.range(0, numberOfChunks).parallel()
+            .mapToObj(chunk -> {
+                NGramCounts chunkCounts = new NGramCounts(nGramCounts.vocabulary_);
+
+                int from = (int) ((long) size * chunk / numberOfChunks);
+                int to = (int) ((long) size * (chunk + 1) / numberOfChunks);
+                for (int i = from; i < to; i++) {
+                    chunkCounts.add(sentenceIds[i], 1);
+                }
+
+                return chunkCounts;
+            })
+            .reduce((counts1, counts2) -> {
+                counts1.addAll(counts2);
+                return counts1;
+            })
+            .orElse(nGramCounts);
+
+        merged.numberOfSentences_ = size;
+
+        return merged;
+    }
+
+    /**
+     * @brief Adds the n-grams of a sentence
+     *
+     * @param sentence
+     *     The words of the sentence, without SENTENCE_START and SENTENCE_END
+     */
+    public void add (List<String> sentence) {
+        add(toIds(sentence), 1);
+        numberOfSentences_++;
+    }
+
+    /**
+     * @brief Removes the n-grams of a sentence that was previously added
+     *
+     * @param sentence
+     *     The words of the sentence, without SENTENCE_START and SENTENCE_END
+     *
+     * @throws IllegalArgumentException If the sentence contains a word that was never added
+     */
+    public void remove (List<String> sentence) {
+        int[] ids = new int[sentence.size()];
+
+        for (int i = 0, n = ids.length; i < n; i++) {
+            ids[i] = vocabulary_.getId(sentence.get(i));
+
+            if (ids[i] == Vocabulary.UNKNOWN_ID) {
+                throw new IllegalArgumentException("Unknown word: " + sentence.get(i));
+            }
+        }
+
+        add(ids, - 1);
+        numberOfSentences_--;
+    }
+
+    /**
+     * @brief Applies the difference between two versions of the same sentences
+     *        Sentences are compared by their text. Only the sentences that exist in one version
+     *        but not in the other are removed or added, so the cost is proportional to the size of
+     *        the edit and not to the size of the corpus.
+     *
+     * @param oldSentences
+     *     The sentences these NGramCounts were counted from
+     * @param newSentences
+     *     The edited sentences
+     *
+     * @return The number of sentences that were removed or added
+     */
+    public int update (List<WordSequence> oldSentences, List<WordSequence> newSentences) {
+        Map<String, Integer> remaining = new HashMap<>();
+        for (WordSequence sentence : oldSentences) {
+            remaining.merge(sentence.toString(), 1, Integer:: sum);
+        }
+
+        List<WordSequence> addedSentences = new ArrayList<>();
+        for (WordSequence sentence : newSentences) {
+            Integer count = remaining.get(sentence.toString());
+
+            if (count == null) {
+                addedSentences.add(sentence);
+            }
+            else if (count == 1) {
+                remaining.remove(sentence.toString());
+            }
+            else {
+                remaining.put(sentence.toString(), count - 1);
+            }
+        }
+
+        int changes = addedSentences.size();
+
+        for (WordSequence sentence : oldSentences) {
+            Integer count = remaining.get(sentence.toString());
+
+            if (count != null) {
+                remove(sentence.getWordTextList());
+                changes++;
+
+                if (count == 1) {
+                    remaining.remove(sentence.toString());
+                }
+                else {
+                    remaining.put(sentence.toString(), count - 1);
+                }
+            }
+        }
+
+        for (WordSequence sentence : addedSentences) {
+            add(sentence.getWordTextList());
+        }
+
+        return changes;
+    }
+
+    /**
+     * @brief Writes these NGramCounts to a file
+     *
+     * @param file
+     *     The file to create
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public void writeToFile (File file) throws IOException {
+        try (DataOutputStream outputStream = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+
+            outputStream.writeInt(MAGIC);
+            outputStream.writeInt(VERSION);
+
+            outputStream.writeInt(vocabulary_.size());
+            for (int id = 0, n = vocabulary_.size(); id < n; id++) {
+                outputStream.writeUTF(vocabulary_.getWord(id));
+            }
+
+            outputStream.writeInt(numberOfSentences_);
+
+            for (LongIntHashMap counts : Arrays.asList(
+                unigramCounts_, bigramCounts_, trigramCounts_)) {
+
+                outputStream.writeInt(counts.size());
+                for (long key : counts.sortedKeys()) {
+                    outputStream.writeLong(key);
+                    outputStream.writeInt(counts.get(key));
+                }
+            }
+        }
+    }
+
+    /**
+     * @brief Reads NGramCounts from a file written by writeToFile
+     *
+     * @param file
+     *     The file to read
+     *
+     * @return The NGramCounts read
+     *
+     * @throws IOException If an I/O error occurs or the file is not an NGramCounts file
+     */
+    public static NGramCounts createFromFile (File file) throws IOException {
+        try (DataInputStream inputStream = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+
+            if (inputStream.readInt() != MAGIC || inputStream.readInt() != VERSION) {
+                throw new IOException("Not an n-gram counts file: " + file.getPath());
+            }
+
+            int vocabularySize = inputStream.readInt();
+            Vocabulary vocabulary = new Vocabulary(vocabularySize);
+            for (int id = 0; id < vocabularySize; id++) {
+                vocabulary.add(inputStream.readUTF());
+            }
+
+            NGramCounts nGramCounts = new NGramCounts(vocabulary);
+            nGramCounts.numberOfSentences_ = inputStream.readInt();
+
+            for (LongIntHashMap counts : Arrays.asList(nGramCounts.unigramCounts_,
+                nGramCounts.bigramCounts_, nGramCounts.trigramCounts_)) {
+
+                for (int i = 0, n = inputStream.readInt(); i < n; i++) {
+                    counts.add(inputStream.readLong(), inputStream.readInt());
+                }
+            }
+
+            return nGramCounts;
+        }
+    }
+
+    /**
+     * @brief Returns the count of an n-gram
+     *
+     * @param words
+     *     The words of the n-gram (1 to 3 words)
+     *
+     * @return The count of the n-gram
+     *
+     * @throws IllegalArgumentException If the number of words is not between 1 and 3
+     */
+    public int getCount (String... words) {
+        if (words.length < 1 || words.length > 3) {
+            throw new IllegalArgumentException("Only 1-grams, 2-grams and 3-grams are counted.");
+        }
+
+        int[] ids = new int[words.length];
+        for (int i = 0; i < words.length; i++) {
+            ids[i] = vocabulary_.getId(words[i]);
+
+            if (ids[i] == Vocabulary.UNKNOWN_ID) {
+                return 0;
+            }
+        }
+
+        switch (ids.length) {
+            case 1:
+                return unigramCounts_.get(ids[0]);
+            case 2:
+                return bigramCounts_.get(NGramStore.key(ids[0], ids[1]));
+            default:
+                return trigramCounts_.get(NGramStore.key(ids[0], ids[1], ids[2]));
+        }
+    }
+
+    /**
+     * @brief Returns the number of sentences counted
+     *
+     * @return The number of sentences counted
+     */
+    public int getNumberOfSentences () {
+        return numberOfSentences_;
+    }
+
+    /**
+     * @brief Returns the Vocabulary of these NGramCounts
+     *        The Vocabulary may contain words whose count has dropped to zero.
+     *
+     * @return The Vocabulary of these NGramCounts
+     */
+    public Vocabulary getVocabulary () {
+        return vocabulary_;
+    }
+
+    /**
+     * @brief Starts recording the changes of the 2-gram and 3-gram counts
+     *        From now on, every sentence that is added or removed also adds its weight to the
+     *        change of each 2-gram and 3-gram it contains. Calling this method again discards the
+     *        changes recorded so far.
+     */
+    void recordChanges () {
+        bigramChanges_ = new LongIntHashMap();
+        trigramChanges_ = new LongIntHashMap();
+    }
+
+    /**
+     * @brief Returns true if any 2-gram or 3-gram count has changed since recordChanges was called
+     *
+     * @return True if any 2-gram or 3-gram count has changed
+     */
+    boolean hasChanges () {
+        return bigramChanges_ != null && (bigramChanges_.size() > 0 || trigramChanges_.size() > 0);
+    }
+
+    /**
+     * @brief Returns the change of each 2-gram count since recordChanges was called
+     *        The 2-grams whose count is the same as before are not included.
+     *
+     * @return The 2-gram count changes keyed by NGramStore key or null if no changes are recorded
+     */
+    LongIntHashMap getBigramChanges () {
+        return bigramChanges_;
+    }
+
+    /**
+     * @brief Returns the change of each 3-gram count since recordChanges was called
+     *        The 3-grams whose count is the same as before are not included.
+     *
+     * @return The 3-gram count changes keyed by NGramStore key or null if no changes are recorded
+     */
+    LongIntHashMap getTrigramChanges () {
+        return trigramChanges_;
+    }
+
+    /**
+     * @brief Returns the id of SENTENCE_START
+     *
+     * @return The id of SENTENCE_START
+     */
+    int getSentenceStartId () {
+        return sentenceStartId_;
+    }
+
+    /**
+     * @brief Returns the id of SENTENCE_END
+     *
+     * @return The id of SENTENCE_END
+     */
+    int getSentenceEndId () {
+        return sentenceEndId_;
+    }
+
+    /**
+     * @brief Returns the 1-gram counts keyed by word id
+     *
+     * @return The 1-gram counts
+     */
+    LongIntHashMap getUnigramCounts () {
+        return unigramCounts_;
+    }
+
+    /**
+     * @brief Returns the 2-gram counts keyed by NGramStore key
+     *
+     * @return The 2-gram counts
+     */
+    LongIntHashMap getBigramCounts () {
+        return bigramCounts_;
+    }
+
+    /**
+     * @brief Returns the 3-gram counts keyed by NGramStore key
+     *
+     * @return The 3-gram counts
+     */
+    LongIntHashMap getTrigramCounts () {
+        return trigramCounts_;
+    }
+
+    /**
+     * @brief Maps the words of a sentence to ids, adding them to the Vocabulary if needed
+     *
+     * @param sentence
+     *     The words of the sentence
+     *
+     * @return The ids of the words
+     *
+     * @throws IllegalArgumentException If the Vocabulary grows beyond NGramStore.MAX_ID words
+     */
+    private int[] toIds (List<String> sentence) {
+        int[] ids = new int[sentence.size()];
+
+        for (int i = 0, n = ids.length; i < n; i++) {
+            ids[i] = vocabulary_.add(sentence.get(i));
+
+            if (ids[i] > NGramStore.MAX_ID) {
+                throw new IllegalArgumentException(
+                    "Vocabulary size exceeds " + (NGramStore.MAX_ID + 1) + " words."
+                );
+            }
+        }
+
+        return ids;
+    }
+
+    /**
+     * @brief Adds the n-grams of a sentence, given as word ids, with the given weight
+     *
+     * @param sentence
+     *     The ids of the words of the sentence, without SENTENCE_START and SENTENCE_END
+     * @param weight
+     *     The weight to add to each n-gram (1 to add the sentence, -1 to remove it)
+     */
+    private void add (int[] sentence, int weight) {
+        int word1 = - 1;
+        int word2 = sentenceStartId_;
+
+        unigramCounts_.add(word2, weight);
+
+        for (int i = 0, n = sentence.length; i <= n; i++) {
+            int word3 = i < n ? sentence[i] : sentenceEndId_;
+
+            unigramCounts_.add(word3, weight);
+            add(bigramCounts_, bigramChanges_, NGramStore.key(word2, word3), weight);
+            if (word1 >= 0) {
+                add(trigramCounts_, trigramChanges_, NGramStore.key(word1, word2, word3), weight);
+            }
+
+            word1 = word2;
+            word2 = word3;
+        }
+    }
+
+    /**
+     * @brief Adds a weight to the count of an n-gram, recording the change if needed
+     *
+     * @param counts
+     *     The counts of the order of the n-gram
+     * @param changes
+     *     The recorded changes of the order of the n-gram or null if none are recorded
+     * @param key
+     *     The NGramStore key of the n-gram
+     * @param weight
+     *     The weight to add
+     */
+    private static void add (LongIntHashMap counts, LongIntHashMap changes, long key, int weight) {
+        counts.add(key, weight);
+
+        if (changes != null) {
+            changes.add(key, weight);
+        }
+    }
+
+    /**
+     * @brief Adds the counts of other NGramCounts sharing the same Vocabulary
+     *
+     * @param other
+     *     The NGramCounts to add
+     */
+    private void addAll (NGramCounts other) {
+        unigramCounts_.addAll(other.unigramCounts_);
+        bigramCounts_.addAll(other.bigramCounts_);
+        trigramCounts_.addAll(other.trigramCounts_);
+    }
+
+    private final Vocabulary vocabulary_; //!< The Vocabulary of the counted words
+    private final int sentenceStartId_; //!< The id of SENTENCE_START
+    private final int sentenceEndId_; //!< The id of SENTENCE_END
+
+    private final LongIntHashMap unigramCounts_ = new LongIntHashMap(); //!< The 1-gram counts
+    private final LongIntHashMap bigramCounts_ = new LongIntHashMap(); //!< The 2-gram counts
+    private final LongIntHashMap trigramCounts_ = new LongIntHashMap(); //!< The 3-gram counts
+
+    private LongIntHashMap bigramChanges_ = null; //!< The recorded 2-gram count changes
+    private LongIntHashMap trigramChanges_ = null; //!< The recorded 3-gram count changes
+
+    private int numberOfSentences_ = 0; //!< The number of sentences counted
+
+    public static final String SENTENCE_START = "<s>"; //!< The token that starts every sentence
+    public static final String SENTENCE_END = "</s>"; //!< The token that ends every sentence
+
+    private static final int MAGIC = 0x50534E43; //!< The first bytes of a counts file ("PSNC")
+    private static final int VERSION = 1; //!< The version of the counts file format
+
+    private static final int MINIMUM_CHUNK_SIZE = 1000; //!< The minimum number of sentences
+                                                         //!< counted by each parallel task
+
+}
@@ -0,0 +1,71 @@
+package org.pasr.asr.language;
+
+
+/**
+ * @interface NGramLookup
+ * @brief Defines the API for looking up the log10 probabilities and back-off weights of the
+ *        n-grams of a 3-gram language model
+ *        Words are referenced by their WordIndex id. Any n-gram that does not exist is reported
+ *        with NGramStore.MISSING.
+ */
+interface NGramLookup {
+
+    /**
+     * @brief Returns the log10 probability of a 1-gram
+     *
+     * @param word
+     *     The id of the word
+     *
+     * @return The log10 probability of the 1-gram or NGramStore.MISSING
+     */
+    double getProbability (int word);
+
+    /**
+     * @brief Returns the log10 probability of a 2-gram
+     *
+     * @param word1
+     *     The id of the first word
+     * @param word2
+     *     The id of the second word
+     *
+     * @return The log10 probability of the 2-gram or NGramStore.MISSING
+     */
+    double getProbability (int word1, int word2);
+
+    /**
+     * @brief Returns the log10 probability of a 3-gram
+     *
+     * @param word1
+     *     The id of the first word
+     * @param word2
+     *     The id of the second word
+     * @param word3
+     *     The id of the third word
+     *
+     * @return The log10 probability of the 3-gram or NGramStore.MISSING
+     */
+    double getProbability (int word1, int word2, int word3);
+
+    /**
+     * @brief Returns the log10 back-off weight of a 1-gram
+     *
+     * @param word
+     *     The id of the word
+     *
+     * @return The log10 back-off weight of the 1-gram or NGramStore.MISSING
+     */
+    double getBackOffWeight (int word);
+
+    /**
+     * @brief Returns the log10 back-off weight of a 2-gram
+     *
+     * @param word1
+     *     The id of the first word
+     * @param word2
+     *     The id of the second word
+     *
+     * @return The log10 back-off weight of the 2-gram or NGramStore.MISSING
+     */
+    double getBackOffWeight (int word1, int word2);
+
+}
@@ -0,0 +1,525 @@
+package org.pasr.asr.language;
+
+import java.util.Arrays;
+
+
+/**
+ * @class NGramStore
+ * @brief Implements a compact storage for the 1-grams, 2-grams and 3-grams of a language model
+ *        Words are referenced by their Vocabulary id. 1-grams are stored directly at the index of
+ *        their id while 2-grams and 3-grams are packed into a single long key (21 bits per word)
+ *        and kept in sorted primitive arrays. Lookups are done with binary search and never
+ *        allocate. Probabilities and back-off weights are kept in the log10 domain, as they are
+ *        found inside an ARPA file.
+ *
+ *        The n-grams are first added with the add methods and then compact must be called
+ *        before any lookup.
+ */
+class NGramStore implements NGramLookup {
+
+    /**
+     * @brief Constructor
+     *
+     * @param unigramCount
+     *     The expected number of 1-grams
+     * @param bigramCount
+     *     The expected number of 2-grams
+     * @param trigramCount
+     *     The expected number of 3-grams
+     */
+    NGramStore (int unigramCount, int bigramCount, int trigramCount) {
+        unigramProbabilities_ = new double[Math.max(unigramCount, 1)];
+        unigramBackOffWeights_ = new double[Math.max(unigramCount, 1)];
+        Arrays.fill(unigramProbabilities_, MISSING);
+        Arrays.fill(unigramBackOffWeights_, MISSING);
+
+        bigramKeys_ = new long[Math.max(bigramCount, 1)];
+        bigramProbabilities_ = new double[Math.max(bigramCount, 1)];
+        bigramBackOffWeights_ = new double[Math.max(bigramCount, 1)];
+
+        trigramKeys_ = new long[Math.max(trigramCount, 1)];
+        trigramProbabilities_ = new double[Math.max(trigramCount, 1)];
+    }
+
+    /**
+     * @brief Adds a 1-gram
+     *
+     * @param word
+     *     The id of the word
+     * @param probability
+     *     The probability of the 1-gram
+     * @param backOffWeight
+     *     The back-off weight of the 1-gram or MISSING
+     */
+    void addUnigram (int word, double probability, double backOffWeight) {
+        checkId(word);
+
+        if (word >= unigramProbabilities_.length) {
+            int newLength = Math.max(word + 1, unigramProbabilities_.length * 2);
+
+            int oldLength = unigramProbabilities_.length;
+            unigramProbabilities_ = Arrays.copyOf(unigramProbabilities_, newLength);
+            unigramBackOffWeights_ = Arrays.copyOf(unigramBackOffWeights_, newLength);
+            Arrays.fill(unigramProbabilities_, oldLength, newLength, MISSING);
+            Arrays.fill(unigramBackOffWeights_, oldLength, newLength, MISSING);
+        }
+
+        unigramProbabilities_[word] = probability;
+        unigramBackOffWeights_[word] = backOffWeight;
+        unigramSize_ = Math.max(unigramSize_, word + 1);
+    }
+
+    /**
+     * @brief Adds a 2-gram
+     *
+     * @param word1
+     *     The id of the first word
+     * @param word2
+     *     The id of the second word
+     * @param probability
+     *     The probability of the 2-gram
+     * @param backOffWeight
+     *     The back-off weight of the 2-gram or MISSING
+     */
+    void addBigram (int word1, int word2, double probability, double backOffWeight) {
+        checkId(word1);
+        checkId(word2);
+
+        if (bigramSize_ == bigramKeys_.length) {
+            int newLength = bigramSize_ * 2;
+
+            bigramKeys_ = Arrays.copyOf(bigramKeys_, newLength);
+            bigramProbabilities_ = Arrays.copyOf(bigramProbabilities_, newLength);
+            bigramBackOffWeights_ = Arrays.copyOf(bigramBackOffWeights_, newLength);
+        }
+
+        bigramKeys_[bigramSize_] = key(word1, word2);
+        bigramProbabilities_[bigramSize_] = probability;
+        bigramBackOffWeights_[bigramSize_] = backOffWeight;
+        bigramSize_++;
+    }
+
+    /**
+     * @brief Adds a 3-gram
+     *
+     * @param word1
+     *     The id of the first word
+     * @param word2
+     *     The id of the second word
+     * @param word3
+     *     The id of the third word
+     * @param probability
+     *     The probability of the 3-gram
+     */
+    void addTrigram (int word1, int word2, int word3, double probability) {
+        checkId(word1);
+        checkId(word2);
+        checkId(word3);
+
+        if (trigramSize_ == trigramKeys_.length) {
+            int newLength = trigramSize_ * 2;
+
+            trigramKeys_ = Arrays.copyOf(trigramKeys_, newLength);
+            trigramProbabilities_ = Arrays.copyOf(trigramProbabilities_, newLength);
+        }
+
+        trigramKeys_[trigramSize_] = key(word1, word2, word3);
+        trigramProbabilities_[trigramSize_] = probability;
+        trigramSize_++;
+    }
+
+    /**
+     * @brief Replaces the 2-grams of this NGramStore with the given arrays
+     *        The arrays are used as they are and not copied.
+     *
+     * @param keys
+     *     The 2-gram keys as created by key(int, int)
+     * @param probabilities
+     *     The 2-gram probabilities
+     * @param backOffWeights
+     *     The 2-gram back-off weights
+     * @param size
+     *     The number of valid elements inside the arrays
+     */
+    void setBigrams (long[] keys, double[] probabilities, double[] backOffWeights, int size) {
+        bigramKeys_ = keys;
+        bigramProbabilities_ = probabilities;
+        bigramBackOffWeights_ = backOffWeights;
+        bigramSize_ = size;
+    }
+
+    /**
+     * @brief Replaces the 3-grams of this NGramStore with the given arrays
+     *        The arrays are used as they are and not copied.
+     *
+     * @param keys
+     *     The 3-gram keys as created by key(int, int, int)
+     * @param probabilities
+     *     The 3-gram probabilities
+     * @param size
+     *     The number of valid elements inside the arrays
+     */
+    void setTrigrams (long[] keys, double[] probabilities, int size) {
+        trigramKeys_ = keys;
+        trigramProbabilities_ = probabilities;
+        trigramSize_ = size;
+    }
+
+    /**
+     * @brief Sorts the 2-grams and the 3-grams and releases any unused capacity
+     *        Must be called after all the n-grams have been added and before any lookup.
+     */
+    void compact () {
+        sort(bigramKeys_, bigramProbabilities_, bigramBackOffWeights_, bigramSize_);
+        sort(trigramKeys_, trigramProbabilities_, null, trigramSize_);
+
+        unigramProbabilities_ = Arrays.copyOf(unigramProbabilities_, unigramSize_);
+        unigramBackOffWeights_ = Arrays.copyOf(unigramBackOffWeights_, unigramSize_);
+
+        bigramKeys_ = Arrays.copyOf(bigramKeys_, bigramSize_);
+        bigramProbabilities_ = Arrays.copyOf(bigramProbabilities_, bigramSize_);
+        bigramBackOffWeights_ = Arrays.copyOf(bigramBackOffWeights_, bigramSize_);
+
+        trigramKeys_ = Arrays.copyOf(trigramKeys_, trigramSize_);
+        trigramProbabilities_ = Arrays.copyOf(trigramProbabilities_, trigramSize_);
+    }
+
+    /**
+     * @brief Returns the probability of a 1-gram
+     *
+     * @param word
+     *     The id of the word
+     *
+     * @return The probability of the 1-gram or MISSING if it does not exist
+     */
+    @Override
+    public double getProbability (int word) {
+        return isStoredUnigram(word) ? unigramProbabilities_[word] : MISSING;
+    }
+
+    /**
+     * @brief Returns the probability of a 2-gram
+     *
+     * @param word1
+     *     The id of the first word
+     * @param word2
+     *     The id of the second word
+     *
+     * @return The probability of the 2-gram or MISSING if it does not exist
+     */
+    @Override
+    public double getProbability (int word1, int word2) {
+        if (word1 < 0 || word2 < 0) {
+            return MISSING;
+        }
+
+        int index = Arrays.binarySearch(bigramKeys_, 0, bigramSize_, key(word1, word2));
+
+        return index < 0 ? MISSING : bigramProbabilities_[index];
+    }
+
+    /**
+     * @brief Returns the probability of a 3-gram
+     *
+     * @param word1
+     *     The id of the first word
+     * @param word2
+     *     The id of the second word
+     * @param word3
+     *     The id of the third word
+     *
+     * @return The probability of the 3-gram or MISSING if it does not exist
+     */
+    @Override
+    public double getProbability (int word1, int word2, int word3) {
+        if (word1 < 0 || word2 < 0 || word3 < 0) {
+            return MISSING;
+        }
+
+        int index = Arrays.binarySearch(
+            trigramKeys_, 0, trigramSize_, key(word1, word2, word3)
+        );
+
+        return index < 0 ? MISSING : trigramProbabilities_[index];
+    }
+
+    /**
+     * @brief Returns the back-off weight of a 1-gram
+     *
+     * @param word
+     *     The id of the word
+     *
+     * @return The back-off weight of the 1-gram or MISSING if it does not exist
+     */
+    @Override
+    public double getBackOffWeight (int word) {
+        return isStoredUnigram(word) ? unigramBackOffWeights_[word] : MISSING;
+    }
+
+    /**
+     * @brief Returns the back-off weight of a 2-gram
+     *
+     * @param word1
+     *     The id of the first word
+     * @param word2
+     *     The id of the second word
+     *
+     * @return The back-off weight of the 2-gram or MISSING if it does not exist
+     */
+    @Override
+    public double getBackOffWeight (int word1, int word2) {
+        if (word1 < 0 || word2 < 0) {
+            return MISSING;
+        }
+
+        int index = Arrays.binarySearch(bigramKeys_, 0, bigramSize_, key(word1, word2));
+
+        return index < 0 ? MISSING : bigramBackOffWeights_[index];
+    }
+
+    /**
+     * @brief Returns the number of 1-gram slots, which is one more than the largest 1-gram id
+     *
+     * @return The number of 1-gram slots
+     */
+    int getUnigramCount () {
+        return unigramSize_;
+    }
+
+    /**
+     * @brief Returns the number of 2-grams
+     *
+     * @return The number of 2-grams
+     */
+    int getBigramCount () {
+        return bigramSize_;
+    }
+
+    /**
+     * @brief Returns the number of 3-grams
+     *
+     * @return The number of 3-grams
+     */
+    int getTrigramCount () {
+        return trigramSize_;
+    }
+
+    /**
+     * @brief Returns the 1-gram log10 probabilities indexed by word id
+     *
+     * @return The 1-gram log10 probabilities
+     */
+    double[] getUnigramProbabilities () {
+        return unigramProbabilities_;
+    }
+
+    /**
+     * @brief Returns the 1-gram log10 back-off weights indexed by word id
+     *
+     * @return The 1-gram log10 back-off weights
+     */
+    double[] getUnigramBackOffWeights () {
+        return unigramBackOffWeights_;
+    }
+
+    /**
+     * @brief Returns the sorted 2-gram keys
+     *
+     * @return The sorted 2-gram keys
+     */
+    long[] getBigramKeys () {
+        return bigramKeys_;
+    }
+
+    /**
+     * @brief Returns the 2-gram log10 probabilities in key order
+     *
+     * @return The 2-gram log10 probabilities
+     */
+    double[] getBigramProbabilities () {
+        return bigramProbabilities_;
+    }
+
+    /**
+     * @brief Returns the 2-gram log10 back-off weights in key order
+     *
+     * @return The 2-gram log10 back-off weights
+     */
+    double[] getBigramBackOffWeights () {
+        return bigramBackOffWeights_;
+    }
+
+    /**
+     * @brief Returns the sorted 3-gram keys
+     *
+     * @return The sorted 3-gram keys
+     */
+    long[] getTrigramKeys () {
+        return trigramKeys_;
+    }
+
+    /**
+     * @brief Returns the 3-gram log10 probabilities in key order
+     *
+     * @return The 3-gram log10 probabilities
+     */
+    double[] getTrigramProbabilities () {
+        return trigramProbabilities_;
+    }
+
+    /**
+     * @brief Returns the number of bytes used by the primitive arrays of this NGramStore
+     *
+     * @return The number of bytes used by the primitive arrays of this NGramStore
+     */
+    long sizeInBytes () {
+        return 8L * (unigramProbabilities_.length + unigramBackOffWeights_.length +
+            bigramKeys_.length + bigramProbabilities_.length + bigramBackOffWeights_.length +
+            trigramKeys_.length + trigramProbabilities_.length);
+    }
+
+    /**
+     * @brief Returns true if the given id can reference a stored 1-gram
+     *
+     * @param word
+     *     The id
+     *
+     * @return True if the given id can reference a stored 1-gram
+     */
+    private boolean isStoredUnigram (int word) {
+        return word >= 0 && word < unigramSize_;
+    }
+
+    /**
+     * @brief Throws an IllegalArgumentException if the given id cannot be packed into a key
+     *
+     * @param word
+     *     The id
+     */
+    private static void checkId (int word) {
+        if (word < 0 || word > MAX_ID) {
+            throw new IllegalArgumentException("Word id out of range: " + word);
+        }
+    }
+
+    /**
+     * @brief Packs a 2-gram into a long key
+     *
+     * @param word1
+     *     The id of the first word
+     * @param word2
+     *     The id of the second word
+     *
+     * @return The key of the 2-gram
+     */
+    static long key (int word1, int word2) {
+        return ((long) word1 << BITS_PER_WORD) | word2;
+    }
+
+    /**
+     * @brief Packs a 3-gram into a long key
+     *
+     * @param word1
+     *     The id of the first word
+     * @param word2
+     *     The id of the second word
+     * @param word3
+     *     The id of the third word
+     *
+     * @return The key of the 3-gram
+     */
+    static long key (int word1, int word2, int word3) {
+        return ((long) word1 << (2 * BITS_PER_WORD)) | ((long) word2 << BITS_PER_WORD) | word3;
+    }
+
+    /**
+     * @brief Sorts the first size keys in ascending order moving the values along with them
+     *        Heap sort is used so that no auxiliary arrays are needed.
+     *
+     * @param keys
+     *     The keys
+     * @param values1
+     *     The first value array
+     * @param values2
+     *     The second value array (may be null)
+     * @param size
+     *     The number of elements to sort
+     */
+    private static void sort (long[] keys, double[] values1, double[] values2, int size) {
+        // ARPA files are usually written in id order so there is often nothing to do
+        boolean sorted = true;
+        for (int i = 1; i < size && sorted; i++) {
+            sorted = keys[i - 1] <= keys[i];
+        }
+        if (sorted) {
+            return;
+        }
+
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(keys, values1, values2, i, size);
+        }
+
+        for (int end = size - 1; end > 0; end--) {
+            swap(keys, values1, values2, 0, end);
+            siftDown(keys, values1, values2, 0, end);
+        }
+    }
+
+    private static void siftDown (long[] keys, double[] values1, double[] values2,
+                                  int root, int size) {
+        while (true) {
+            int child = 2 * root + 1;
+
+            if (child >= size) {
+                return;
+            }
+
+            if (child + 1 < size && keys[child + 1] > keys[child]) {
+                child++;
+            }
+
+            if (keys[root] >= keys[child]) {
+                return;
+            }
+
+            swap(keys, values1, values2, root, child);
+            root = child;
+        }
+    }
+
+    private static void swap (long[] keys, double[] values1, double[] values2, int i, int j) {
+        long key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+
+        double value = values1[i];
+        values1[i] = values1[j];
+        values1[j] = value;
+
+        if (values2 != null) {
+            value = values2[i];
+            values2[i] = values2[j];
+            values2[j] = value;
+        }
+    }
+
+    private double[] unigramProbabilities_; //!< The 1-gram probabilities indexed by word id
+    private double[] unigramBackOffWeights_; //!< The 1-gram back-off weights indexed by word id
+    private int unigramSize_ = 0; //!< One more than the largest 1-gram word id
+
+    private long[] bigramKeys_; //!< The sorted 2-gram keys
+    private double[] bigramProbabilities_; //!< The 2-gram probabilities
+    private double[] bigramBackOffWeights_; //!< The 2-gram back-off weights
+    private int bigramSize_ = 0; //!< The number of 2-grams
+
+    private long[] trigramKeys_; //!< The sorted 3-gram keys
+    private double[] trigramProbabilities_; //!< The 3-gram probabilities
+    private int trigramSize_ = 0; //!< The number of 3-grams
+
+    static final double MISSING = Double.NaN; //!< Value returned for n-grams that do not exist
+
+    static final int BITS_PER_WORD = 21;
+    static final int MAX_ID = (1 << BITS_PER_WORD) - 1; //!< The largest word id that can be
+                                                        //!< stored
+
+}
@@ -0,0 +1,105 @@
+package org.pasr.asr.language;
+
+import java.util.Arrays;
+
+
+/**
+ * @class Quantizer
+ * @brief Implements a 16-bit codebook quantizer for the log10 values of a language model
+ *        If the values have at most MAX_CODES distinct values, each value gets its own code and
+ *        the quantization is lossless. Otherwise, the sorted values are split into MAX_CODES bins
+ *        of equal population and each bin is represented by its mean. NGramStore.MISSING is
+ *        always encoded as MISSING_CODE.
+ */
+class Quantizer {
+
+    /**
+     * @brief Constructor
+     *
+     * @param values
+     *     The values to build the codebook from
+     * @param size
+     *     The number of valid elements inside values
+     */
+    Quantizer (double[] values, int size) {
+        double[] sorted = new double[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (! Double.isNaN(values[i])) {
+                sorted[count++] = values[i];
+            }
+        }
+        Arrays.sort(sorted, 0, count);
+
+        // Keep the distinct values
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || Double.compare(sorted[distinct - 1], sorted[i]) != 0) {
+                sorted[distinct++] = sorted[i];
+            }
+        }
+
+        if (distinct <= MAX_CODES) {
+            codebook_ = Arrays.copyOf(sorted, distinct);
+        }
+        else {
+            // Equal population bins over the distinct values
+            codebook_ = new double[MAX_CODES];
+            for (int bin = 0; bin < MAX_CODES; bin++) {
+                int from = (int) ((long) distinct * bin / MAX_CODES);
+                int to = (int) ((long) distinct * (bin + 1) / MAX_CODES);
+
+                double sum = 0;
+                for (int i = from; i < to; i++) {
+                    sum += sorted[i];
+                }
+                codebook_[bin] = sum / (to - from);
+            }
+        }
+    }
+
+    /**
+     * @brief Returns the code of a value
+     *
+     * @param value
+     *     The value
+     *
+     * @return The code of the codebook entry nearest to the given value
+     */
+    short encode (double value) {
+        if (Double.isNaN(value) || codebook_.length == 0) {
+            return (short) MISSING_CODE;
+        }
+
+        int index = Arrays.binarySearch(codebook_, value);
+        if (index >= 0) {
+            return (short) index;
+        }
+
+        int insertionPoint = - index - 1;
+        if (insertionPoint == 0) {
+            return 0;
+        }
+        if (insertionPoint == codebook_.length) {
+            return (short) (codebook_.length - 1);
+        }
+
+        return (short) (value - codebook_[insertionPoint - 1] <= codebook_[insertionPoint] - value ?
+            insertionPoint - 1 : insertionPoint);
+    }
+
+    /**
+     * @brief Returns the codebook of this Quantizer
+     *
+     * @return The codebook of this Quantizer
+     */
+    double[] getCodebook () {
+        return codebook_;
+    }
+
+    private final double[] codebook_; //!< The sorted codebook values
+
+    static final int MISSING_CODE = 0xFFFF; //!< The code of NGramStore.MISSING
+    static final int MAX_CODES = 0xFFFF; //!< The maximum number of codebook entries
+
+}
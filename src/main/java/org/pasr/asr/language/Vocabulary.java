@@ -0,0 +1,100 @@
+package org.pasr.asr.language;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * @class Vocabulary
+ * @brief Implements a mapping between the words of a language model and dense integer ids
+ *        The ids are assigned in insertion order starting from zero.
+ */
+public class Vocabulary implements WordIndex {
+
+    /**
+     * @brief Default Constructor
+     */
+    public Vocabulary () {
+        this(16);
+    }
+
+    /**
+     * @brief Constructor
+     *
+     * @param expectedSize
+     *     The expected number of words, used to pre-size the storage
+     */
+    public Vocabulary (int expectedSize) {
+        idMap_ = new HashMap<>(Math.max(16, (int) (expectedSize / 0.75f) + 1));
+        wordList_ = new ArrayList<>(expectedSize);
+    }
+
+    /**
+     * @brief Adds a word to this Vocabulary
+     *        If the word already exists, its id is returned and nothing is added.
+     *
+     * @param word
+     *     The word to add
+     *
+     * @return The id of the word
+     */
+    public int add (String word) {
+        Integer id = idMap_.get(word);
+
+        if (id != null) {
+            return id;
+        }
+
+        int newId = wordList_.size();
+        idMap_.put(word, newId);
+        wordList_.add(word);
+
+        return newId;
+    }
+
+    /**
+     * @brief Returns the id of a word
+     *
+     * @param word
+     *     The word
+     *
+     * @return The id of the word or UNKNOWN_ID if the word does not exist in this Vocabulary
+     */
+    @Override
+    public int getId (String word) {
+        Integer id = idMap_.get(word);
+
+        return id == null ? UNKNOWN_ID : id;
+    }
+
+    /**
+     * @brief Returns the word with the given id
+     *
+     * @param id
+     *     The id
+     *
+     * @return The word with the given id
+     */
+    @Override
+    public String getWord (int id) {
+        return wordList_.get(id);
+    }
+
+    /**
+     * @brief Returns the number of words in this Vocabulary
+     *
+     * @return The number of words in this Vocabulary
+     */
+    @Override
+    public int size () {
+        return wordList_.size();
+    }
+
+    private final Map<String, Integer> idMap_; //!< Maps each word to its id
+    private final List<String> wordList_; //!< Holds each word at the index of its id
+
+    public static final int UNKNOWN_ID = - 1; //!< The id returned for words that do not exist
+
+}
@@ -0,0 +1,57 @@
+package org.pasr.asr.language;
+
+import java.util.List;
+
+
+/**
+ * @interface WordIndex
+ * @brief Defines the API of a mapping between words and dense integer ids
+ */
+interface WordIndex {
+
+    /**
+     * @brief Returns the id of a word
+     *
+     * @param word
+     *     The word
+     *
+     * @return The id of the word or Vocabulary.UNKNOWN_ID if the word does not exist
+     */
+    int getId (String word);
+
+    /**
+     * @brief Returns the word with the given id
+     *
+     * @param id
+     *     The id
+     *
+     * @return The word with the given id
+     */
+    String getWord (int id);
+
+    /**
+     * @brief Returns the number of words
+     *
+     * @return The number of words
+     */
+    int size ();
+
+    /**
+     * @brief Returns the ids of the given words
+     *
+     * @param words
+     *     The words
+     *
+     * @return An array with the id of each word. Unknown words get Vocabulary.UNKNOWN_ID
+     */
+    default int[] getIds (List<String> words) {
+        int[] ids = new int[words.size()];
+
+        for (int i = 0, n = ids.length; i < n; i++) {
+            ids[i] = getId(words.get(i));
+        }
+
+        return ids;
+    }
+
+}
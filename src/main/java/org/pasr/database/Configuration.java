@@ -153,6 +153,17 @@ public class Configuration {
         return idngram2lmPath;
     }
 
+    /**
+     * @brief Returns the language model builder
+     *        Either "cmuclmtk" for the CMU-CLMTK executables or "java" for the in-process
+     *        LanguageModelBuilder
+     *
+     * @return The language model builder
+     */
+    public String getLanguageModelBuilder () {
+        return languageModelBuilder;
+    }
+
     /**
      * @brief Returns the sphinxFe executable path
      *
@@ -218,6 +229,8 @@ public class Configuration {
     private String text2idngramPath; //!< The path to the text2idngram executable
     private String idngram2lmPath; //!< The path to the idngram2lm executable
 
+    private String languageModelBuilder; //!< The builder used to create the language models
+
     private String sphinxFePath; //!< The path to the sphinxFe executable
     private String bwPath; //!< The path to the bw executable
     private String mllrSolvePath; //!< The path to the mllrSolve executable
@@ -2,23 +2,31 @@ package org.pasr.database;
 
 import org.apache.commons.io.FileUtils;
 import org.pasr.asr.dictionary.Dictionary;
+import org.pasr.asr.language.LanguageModel;
+import org.pasr.asr.language.LanguageModelBuilder;
+import org.pasr.asr.language.NGramCounts;
 import org.pasr.database.corpus.Index;
 import org.pasr.database.processes.AcousticModelProcess;
 import org.pasr.database.processes.LanguageModelProcess;
+import org.pasr.prep.corpus.CompactCorpus;
 import org.pasr.prep.corpus.Corpus;
+import org.pasr.prep.corpus.SuffixArray;
 import org.pasr.prep.corpus.WordSequence;
 import org.pasr.prep.recorder.Recorder;
 
 import javax.sound.sampled.AudioFileFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
+import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -26,6 +34,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -50,6 +60,30 @@ public class DataBase {
         corpusIndex_ = org.pasr.database.corpus.Index.getInstance();
         arcticIndex_ = org.pasr.database.arctic.Index.getInstance();
         audioIndex_ = org.pasr.database.audio.Index.getInstance();
+
+        deleteStreamedCorpusDirectories();
+    }
+
+    /**
+     * @brief Deletes the directories left behind by Corpora that were being streamed to disk
+     *        A streamed directory that never became a Corpus entry, for example because the
+     *        application exited before the Corpus was saved, is of no use anymore.
+     */
+    private void deleteStreamedCorpusDirectories () {
+        File[] directories = new File(configuration_.getCorpusDirectoryPath()).listFiles(
+            file -> file.isDirectory() &&
+                file.getName().startsWith(STREAMED_CORPUS_DIRECTORY_PREFIX)
+        );
+
+        if (directories == null) {
+            return;
+        }
+
+        for (File directory : directories) {
+            if (! FileUtils.deleteQuietly(directory)) {
+                logger_.warning("Could not delete directory: " + directory.getPath());
+            }
+        }
     }
 
     /**
@@ -114,19 +148,34 @@ public class DataBase {
      * @throws IOException If the Corpus does not exist or at least one of its files is corrupted
      */
     public Corpus getCorpusById (int corpusId) throws IOException {
+        Corpus corpus = getCompactCorpusById(corpusId).toCorpus();
+
+        corpus.setId(corpusId);
+
+        return corpus;
+    }
+
+    /**
+     * @brief Returns a CompactCorpus given the id of its Corpus
+     *        Uses far less memory than getCorpusById for large corpora, but the CompactCorpus
+     *        cannot be edited.
+     *
+     * @param corpusId
+     *     The id of the Corpus
+     *
+     * @return The CompactCorpus with the given id
+     *
+     * @throws IOException If the Corpus does not exist or at least one of its files is corrupted
+     */
+    public CompactCorpus getCompactCorpusById (int corpusId) throws IOException {
         if (! corpusIndex_.containsId(corpusId)) {
             throw new IllegalArgumentException("Id does not exist.");
         }
 
-        Corpus corpus;
         try {
-            corpus = loadCorpusFromDirectory(
+            return loadCorpusFromDirectory(
                 new File(configuration_.getCorpusDirectoryPath(), String.valueOf(corpusId))
             );
-
-            corpus.setId(corpusId);
-
-            return corpus;
         } catch (FileNotFoundException e) {
             corpusIndex_.removeById(corpusId);
 
@@ -140,7 +189,7 @@ public class DataBase {
         }
     }
 
-    private Corpus loadCorpusFromDirectory (File directory) throws IOException {
+    private CompactCorpus loadCorpusFromDirectory (File directory) throws IOException {
         Map<Long, String> documentTitleMap = new HashMap<>();
 
         try {
@@ -158,7 +207,7 @@ public class DataBase {
             throw new FileNotFoundException("document_titles.txt");
         }
 
-        ArrayList<WordSequence> sentences = new ArrayList<>();
+        CompactCorpus corpus = new CompactCorpus();
 
         Pattern sentencePattern = Pattern.compile("<s> (.*) </s>");
 
@@ -188,7 +237,7 @@ public class DataBase {
                 }
 
                 if (documentTitleMap.containsKey(documentId)) {
-                    sentences.add(new WordSequence(
+                    corpus.add(new WordSequence(
                         matcher.group(1), documentId, documentTitleMap.get(documentId)
                     ));
                 }
@@ -201,7 +250,19 @@ public class DataBase {
         sentencesScanner.close();
         documentIdsScanner.close();
 
-        return new Corpus(sentences);
+        corpus.trimToSize();
+
+        File suffixArrayFile = new File(directory, SUFFIX_ARRAY_FILE_NAME);
+        if (suffixArrayFile.isFile()) {
+            try {
+                corpus.setSuffixArray(SuffixArray.createFromFile(suffixArrayFile));
+            } catch (IOException | IllegalArgumentException e) {
+                logger_.warning("Could not load " + suffixArrayFile.getPath() +
+                    ". It will be built again.");
+            }
+        }
+
+        return corpus;
     }
 
     /**
@@ -262,6 +323,58 @@ public class DataBase {
         return path;
     }
 
+    /**
+     * @brief Returns a LanguageModel given its id
+     *        The compiled binary language model is used if it is not older than the ARPA file.
+     *        Otherwise the ARPA file is loaded and compiled so that the next load is faster.
+     *
+     * @param id
+     *     The id of the LanguageModel
+     *
+     * @return The LanguageModel with the given id
+     *
+     * @throws IOException If the LanguageModel doesn't exist or cannot be loaded
+     */
+    public LanguageModel getLanguageModelById (int id) throws IOException {
+        File file = new File(getLanguageModelPathById(id));
+
+        File binaryFile = new File(configuration_.getCorpusDirectoryPath() +
+            String.valueOf(id) + "/language_model.bin");
+
+        if (binaryFile.isFile() && binaryFile.lastModified() >= file.lastModified()) {
+            try {
+                return LanguageModel.createFromBinaryFile(binaryFile);
+            } catch (IOException e) {
+                logger_.warning("Could not open " + binaryFile.getPath() +
+                    ". The ARPA language model will be used instead.");
+            }
+        }
+
+        LanguageModel languageModel = LanguageModel.createFromFile(file);
+
+        try {
+            languageModel.exportToBinaryFile(binaryFile);
+        } catch (IOException e) {
+            logger_.warning("Could not write " + binaryFile.getPath());
+        }
+
+        return languageModel;
+    }
+
+    /**
+     * @brief Returns the path of the file that caches the POS tags of a Corpus given its id
+     *        The file does not exist until a POSDetector has tagged the Corpus.
+     *
+     * @param id
+     *     The id of the Corpus
+     *
+     * @return The path of the POS tags file
+     */
+    public String getPOSTagsPathById (int id) {
+        return configuration_.getCorpusDirectoryPath() +
+            String.valueOf(id) + "/" + POS_TAGS_FILE_NAME;
+    }
+
     /**
      * @brief Returns the path to the acoustic model
      *
@@ -323,39 +436,313 @@ public class DataBase {
         corpus.setId(newCorpusId);
 
         File newCorpusDirectory = new File(corpusDirectory, String.valueOf(newCorpusId));
-        if (newCorpusDirectory.exists()) {
-            if (newCorpusDirectory.isFile()) {
-                if (! newCorpusDirectory.delete()) {
-                    throw new IOException("Could not delete file: " + newCorpusDirectory.getPath());
+        deleteIfExists(newCorpusDirectory);
+
+        if (! newCorpusDirectory.mkdir()) {
+            throw new IOException("Could not create directory: " + newCorpusDirectory.getPath());
+        }
+
+        saveCorpusToDirectory(corpus, newCorpusDirectory);
+
+        saveDictionaryToDirectory(dictionary, newCorpusDirectory);
+
+        // Create language model for this corpus. The n-gram counts are saved whatever the
+        // language model builder, updateCorpusEntry updates them when the Corpus is edited.
+        NGramCounts nGramCounts = NGramCounts.count(corpus);
+        saveNGramCountsToDirectory(nGramCounts, newCorpusDirectory);
+
+        createLanguageModel(new LanguageModelBuilder(nGramCounts), newCorpusDirectory);
+
+        corpusIndex_.add(new Index.Entry(newCorpusId, corpus.getName()));
+
+        return newCorpusId;
+    }
+
+    /**
+     * @brief Creates an empty directory for a Corpus that is streamed to disk
+     *        The directory lives next to the Corpus entries but is not an entry itself until it is
+     *        passed to newCorpusEntry(File, String, Dictionary).
+     *
+     * @return The new directory
+     *
+     * @throws IOException If the directory cannot be created
+     */
+    public File newStreamedCorpusDirectory () throws IOException {
+        return Files.createTempDirectory(
+            Paths.get(configuration_.getCorpusDirectoryPath()), STREAMED_CORPUS_DIRECTORY_PREFIX
+        ).toFile();
+    }
+
+    /**
+     * @brief Creates a new Corpus entry from a directory that a CorpusWriter has written
+     *        The sentences of the directory are read once, line by line, to collect the unique
+     *        words and the n-gram counts, so the Corpus is never loaded in memory. The reduced
+     *        Dictionary, the n-gram counts and the language model are then saved inside the
+     *        directory, which is moved into place as the new entry.
+     *
+     * @param directory
+     *     The directory, created by newStreamedCorpusDirectory, with the sentences.txt,
+     *     document_ids.txt and document_titles.txt files of the Corpus
+     * @param name
+     *     The name of the Corpus
+     * @param dictionary
+     *     The Dictionary to look the words of the Corpus up in, usually the default Dictionary
+     *
+     * @return The id of the newly created Corpus
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public int newCorpusEntry (File directory, String name, Dictionary dictionary)
+        throws IOException {
+
+        if (! directory.isDirectory()) {
+            throw new IllegalArgumentException("Not a directory: " + directory.getPath());
+        }
+
+        NGramCounts nGramCounts = new NGramCounts();
+
+        // Sorted as the unique words of Corpus.process
+        Set<String> uniqueWords = new TreeSet<>();
+
+        Pattern sentencePattern = Pattern.compile("<s> (.*) </s>");
+
+        try (BufferedReader sentencesReader = new BufferedReader(
+            new FileReader(new File(directory, "sentences.txt")))) {
+
+            String line;
+            while ((line = sentencesReader.readLine()) != null) {
+                Matcher matcher = sentencePattern.matcher(line);
+
+                if (matcher.matches()) {
+                    // The words are the ones of the WordSequence loadCorpusFromDirectory creates
+                    List<String> words = new WordSequence(matcher.group(1)).getWordTextList();
+
+                    uniqueWords.addAll(words);
+                    nGramCounts.add(words);
                 }
             }
-            else if (newCorpusDirectory.isDirectory()) {
-                try {
-                    FileUtils.deleteDirectory(newCorpusDirectory);
-                } catch (IOException e) {
-                    throw new IOException(
-                        "Could not delete directory: " + newCorpusDirectory.getPath()
-                    );
-                }
+        } catch (FileNotFoundException e) {
+            throw new FileNotFoundException("sentences.txt");
+        }
+
+        saveDictionaryToDirectory(reduceDictionary(dictionary, uniqueWords), directory);
+
+        saveNGramCountsToDirectory(nGramCounts, directory);
+
+        createLanguageModel(new LanguageModelBuilder(nGramCounts), directory);
+
+        int newCorpusId = corpusIndex_.nextId();
+
+        File newCorpusDirectory = new File(
+            configuration_.getCorpusDirectoryPath(), String.valueOf(newCorpusId)
+        );
+        deleteIfExists(newCorpusDirectory);
+
+        try {
+            Files.move(directory.toPath(), newCorpusDirectory.toPath());
+        } catch (IOException e) {
+            throw new IOException("Could not move directory: " + directory.getPath() + "\n" +
+                "Exception Message: " + e.getMessage());
+        }
+
+        corpusIndex_.add(new Index.Entry(newCorpusId, name));
+
+        return newCorpusId;
+    }
+
+    /**
+     * @brief Returns a Dictionary with the entries of the given words
+     *        The words without any entry become the unknown words of the returned Dictionary, as
+     *        in Corpus.process.
+     *
+     * @param dictionary
+     *     The Dictionary to look the words up in
+     * @param words
+     *     The words
+     *
+     * @return The reduced Dictionary
+     */
+    private static Dictionary reduceDictionary (Dictionary dictionary, Set<String> words) {
+        List<String> wordList = new ArrayList<>(words);
+
+        // Null entries mark the unknown words
+        List<Map<String, String>> entriesList = wordList.parallelStream()
+            .map(dictionary:: getEntriesByKey)
+            .collect(Collectors.toList());
+
+        Dictionary reducedDictionary = new Dictionary(wordList.size());
+        for (int i = 0, n = wordList.size(); i < n; i++) {
+            Map<String, String> entries = entriesList.get(i);
+            if (entries == null) {
+                reducedDictionary.addUnknownWord(wordList.get(i));
             }
             else {
-                throw new IOException("Unknown file type: " + newCorpusDirectory.getPath());
+                reducedDictionary.putAll(entries);
             }
         }
 
-        if (! newCorpusDirectory.mkdir()) {
-            throw new IOException("Could not create directory: " + newCorpusDirectory.getPath());
+        return reducedDictionary;
+    }
+
+    /**
+     * @brief Deletes a file or a directory if it exists
+     *
+     * @param file
+     *     The file or directory
+     *
+     * @throws IOException If the file or directory exists and cannot be deleted
+     */
+    private static void deleteIfExists (File file) throws IOException {
+        if (! file.exists()) {
+            return;
         }
 
-        saveCorpusToDirectory(corpus, newCorpusDirectory);
+        if (file.isFile()) {
+            if (! file.delete()) {
+                throw new IOException("Could not delete file: " + file.getPath());
+            }
+        }
+        else if (file.isDirectory()) {
+            try {
+                FileUtils.deleteDirectory(file);
+            } catch (IOException e) {
+                throw new IOException("Could not delete directory: " + file.getPath());
+            }
+        }
+        else {
+            throw new IOException("Unknown file type: " + file.getPath());
+        }
+    }
 
-        saveDictionaryToDirectory(dictionary, newCorpusDirectory);
+    /**
+     * @brief Updates an existing Corpus entry after its Corpus has been edited
+     *        The n-gram counts saved with the entry are updated only with the sentences that were
+     *        added, removed or changed. The language model is then updated in process, whatever
+     *        the language model builder, by continuing the estimation saved with the entry, so
+     *        that only the n-grams affected by the edit are estimated again.
+     *
+     * @param corpus
+     *     The edited Corpus. Its id must be the id of an existing entry
+     * @param dictionary
+     *     The Dictionary of the Corpus
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public void updateCorpusEntry (Corpus corpus, Dictionary dictionary) throws IOException {
+        int corpusId = corpus.getId();
+
+        if (! corpusIndex_.containsId(corpusId)) {
+            throw new IllegalArgumentException("Id does not exist.");
+        }
+
+        File corpusDirectory = new File(
+            configuration_.getCorpusDirectoryPath(), String.valueOf(corpusId)
+        );
+
+        CompactCorpus oldCorpus = loadCorpusFromDirectory(corpusDirectory);
+
+        NGramCounts nGramCounts;
+        try {
+            nGramCounts = NGramCounts.createFromFile(
+                new File(corpusDirectory, N_GRAM_COUNTS_FILE_NAME)
+            );
+        } catch (IOException e) {
+            logger_.warning("Could not read the n-gram counts of corpus with id: " + corpusId +
+                ". They will be counted again.");
+
+            nGramCounts = NGramCounts.count(oldCorpus);
+        }
+
+        LanguageModelBuilder languageModelBuilder;
+        try {
+            languageModelBuilder = LanguageModelBuilder.createFromFile(
+                nGramCounts, new File(corpusDirectory, LANGUAGE_MODEL_ESTIMATE_FILE_NAME)
+            );
+        } catch (IOException e) {
+            logger_.warning("Could not read the language model estimate of corpus with id: " +
+                corpusId + ". It will be estimated again.");
+
+            languageModelBuilder = new LanguageModelBuilder(nGramCounts);
+        }
+
+        saveCorpusToDirectory(corpus, corpusDirectory);
+
+        saveDictionaryToDirectory(dictionary, corpusDirectory);
+
+        if (nGramCounts.update(oldCorpus, corpus) > 0) {
+            saveNGramCountsToDirectory(nGramCounts, corpusDirectory);
+
+            writeLanguageModel(languageModelBuilder, corpusDirectory);
+
+            saveLanguageModelEstimateToDirectory(languageModelBuilder, corpusDirectory);
+        }
+    }
+
+    /**
+     * @brief Creates the language model of a Corpus inside its directory
+     *        The configured language model builder is used. The in-process builder estimates the
+     *        language model from the n-gram counts while CMU-CLMTK builds it from sentences.txt
+     *        which must already be saved inside the directory. Either way, the in-process
+     *        estimate is saved as well so that updateCorpusEntry can continue it.
+     *
+     * @param languageModelBuilder
+     *     The LanguageModelBuilder of the n-gram counts of the Corpus
+     * @param directory
+     *     The directory of the Corpus
+     *
+     * @throws IOException If the language model can not be created
+     */
+    private void createLanguageModel (LanguageModelBuilder languageModelBuilder, File directory)
+        throws IOException {
+
+        if (JAVA_LANGUAGE_MODEL_BUILDER.equals(configuration_.getLanguageModelBuilder())) {
+            writeLanguageModel(languageModelBuilder, directory);
+        }
+        else {
+            runLanguageModelProcess(directory);
+        }
+
+        saveLanguageModelEstimateToDirectory(languageModelBuilder, directory);
+    }
+
+    /**
+     * @brief Writes the language model estimated in process inside the directory of a Corpus
+     *
+     * @param languageModelBuilder
+     *     The LanguageModelBuilder of the n-gram counts of the Corpus
+     * @param directory
+     *     The directory of the Corpus
+     *
+     * @throws IOException If the language model can not be written
+     */
+    private void writeLanguageModel (LanguageModelBuilder languageModelBuilder, File directory)
+        throws IOException {
+
+        try {
+            languageModelBuilder.writeArpaFile(new File(directory, "language_model.lm"));
+            languageModelBuilder.build().exportToBinaryFile(
+                new File(directory, "language_model.bin")
+            );
+        } catch (IOException e) {
+            throw new IOException("Could not create language model.\n" +
+                "Exception Message: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @brief Builds the language model of a Corpus with CMU-CLMTK from its sentences.txt
+     *
+     * @param directory
+     *     The directory of the Corpus
+     *
+     * @throws IOException If the language model can not be created
+     */
+    private void runLanguageModelProcess (File directory) throws IOException {
 
-        // Create language model for this corpus
         try {
             new LanguageModelProcess(
-                Paths.get(newCorpusDirectory.getPath(), "sentences.txt"),
-                Paths.get(newCorpusDirectory.getPath(), "language_model.lm"),
+                Paths.get(directory.getPath(), "sentences.txt"),
+                Paths.get(directory.getPath(), "language_model.lm"),
                 3
             ).startAndWaitFor();
         } catch (IOException | InterruptedException e) {
@@ -363,9 +750,43 @@ public class DataBase {
                 "Exception Message: " + e.getMessage());
         }
 
-        corpusIndex_.add(new Index.Entry(newCorpusId, corpus.getName()));
+        // Compile the language model so that it can be memory-mapped when loaded. The binary file
+        // is only a cache, getLanguageModelById will compile it again if it is missing or stale.
+        try {
+            LanguageModel.compile(
+                new File(directory, "language_model.lm"),
+                new File(directory, "language_model.bin")
+            );
+        } catch (IOException e) {
+            logger_.warning("Could not compile the language model.\n" +
+                "Exception Message: " + e.getMessage());
+        }
+    }
 
-        return newCorpusId;
+    private void saveLanguageModelEstimateToDirectory (LanguageModelBuilder languageModelBuilder,
+                                                       File directory) {
+
+        // The estimate is only a cache, updateCorpusEntry estimates the language model again from
+        // the n-gram counts if it is missing.
+        try {
+            languageModelBuilder.writeToFile(
+                new File(directory, LANGUAGE_MODEL_ESTIMATE_FILE_NAME)
+            );
+        } catch (IOException e) {
+            logger_.warning("Could not save the language model estimate.\n" +
+                "Exception Message: " + e.getMessage());
+        }
+    }
+
+    private void saveNGramCountsToDirectory (NGramCounts nGramCounts, File directory)
+        throws IOException {
+
+        try {
+            nGramCounts.writeToFile(new File(directory, N_GRAM_COUNTS_FILE_NAME));
+        } catch (IOException e) {
+            throw new IOException("Could not save the n-gram counts.\n" +
+                "Exception Message: " + e.getMessage());
+        }
     }
 
     private void saveCorpusToDirectory (Corpus corpus, File directory)
@@ -424,6 +845,14 @@ public class DataBase {
             );
 
         documentTitlesPrintWriter.close();
+
+        // The suffix array is only a cache of the sentences, failing to save it is not fatal
+        try {
+            corpus.getSuffixArray().writeToFile(new File(directory, SUFFIX_ARRAY_FILE_NAME));
+        } catch (IOException e) {
+            logger_.warning("Could not save the suffix array of the corpus.\n" +
+                "Exception Message: " + e.getMessage());
+        }
     }
 
     private void saveDictionaryToDirectory (Dictionary dictionary, File directory)
@@ -566,4 +995,22 @@ public class DataBase {
 
     private final Logger logger_ = Logger.getLogger(DataBase.class.getName()); //!< The logger
 
+    //! The name of the file holding the suffix array of a Corpus
+    private static final String SUFFIX_ARRAY_FILE_NAME = "suffix_array.bin";
+
+    //! The name of the file holding the POS tags of the sentences of a Corpus
+    private static final String POS_TAGS_FILE_NAME = "pos_tags.bin";
+
+    //! The name of the file holding the n-gram counts of a Corpus
+    private static final String N_GRAM_COUNTS_FILE_NAME = "ngram_counts.bin";
+
+    //! The name of the file holding the in-process language model estimate of a Corpus
+    private static final String LANGUAGE_MODEL_ESTIMATE_FILE_NAME = "language_model_estimate.bin";
+
+    //! The Configuration value selecting the in-process LanguageModelBuilder
+    private static final String JAVA_LANGUAGE_MODEL_BUILDER = "java";
+
+    //! The prefix of the name of a directory that a Corpus is streamed into
+    private static final String STREAMED_CORPUS_DIRECTORY_PREFIX = "streamed_";
+
 }
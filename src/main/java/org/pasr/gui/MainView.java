@@ -3,6 +3,8 @@ package org.pasr.gui;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.stage.Stage;
+import org.apache.commons.io.FileUtils;
+import org.pasr.asr.dictionary.Dictionary;
 import org.pasr.database.DataBase;
 import org.pasr.gui.console.Console;
 import org.pasr.gui.controllers.scene.DictateController;
@@ -11,7 +13,10 @@ import org.pasr.gui.controllers.scene.IntermediateController;
 import org.pasr.gui.controllers.scene.LDAController;
 import org.pasr.gui.controllers.scene.MainController;
 import org.pasr.gui.controllers.scene.RecordController;
+import org.pasr.gui.dialog.CorpusNameDialog;
+import org.pasr.gui.dialog.YesNoDialog;
 import org.pasr.prep.corpus.Corpus;
+import org.pasr.prep.corpus.CorpusWriter;
 import org.pasr.prep.corpus.Document;
 import org.pasr.prep.email.fetchers.Email;
 import org.pasr.prep.email.fetchers.EmailFetcher;
@@ -21,6 +26,7 @@ import org.pasr.utilities.logging.PrettyFormatter;
 import javax.mail.AuthenticationFailedException;
 import javax.mail.MessagingException;
 import javax.mail.NoSuchProviderException;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Set;
@@ -65,12 +71,18 @@ public class MainView extends Application implements MainController.API,
     private String emailAddress_;
     private String password_;
 
+    // Every fetched e-mail is streamed into this directory so that a corpus can be created from
+    // all of them without keeping them in memory
+    private CorpusWriter corpusWriter_;
+    private File corpusWriterDirectory_;
+
     private Corpus corpus_;
 
     private String intermediateMessage_ = "Please wait...";
 
     private enum IntermediateMessages {
-        NEW_ACOUSTIC_MODEL("Please wait while the acoustic model is being adapted...");
+        NEW_ACOUSTIC_MODEL("Please wait while the acoustic model is being adapted..."),
+        NEW_CORPUS("Please wait while your corpus is being created...");
 
         IntermediateMessages (String message) {
             message_ = message;
@@ -84,8 +96,13 @@ public class MainView extends Application implements MainController.API,
         private String message_;
     }
 
+    private NewCorpusThread newCorpusThread_;
+
     private NewAcousticModelThread newAcousticModelThread_;
 
+    private static final String YES_NO_DIALOG_PROMPT_TEXT = "Record voice samples for acoustic" +
+        " model adaptation?";
+
     public static void main (String[] args) {
         logger_.info("Initializing logger...");
 
@@ -146,6 +163,11 @@ public class MainView extends Application implements MainController.API,
 
     @Override
     public void initialScene () {
+        discardCorpusWriter();
+
+        // A Corpus left by the LDA scene might have unsaved edits
+        corpus_ = null;
+
         try {
             primaryStage_.setScene(sceneFactory_.create(SceneFactory.Scenes.MAIN_SCENE, this));
         } catch (IOException e) {
@@ -202,6 +224,8 @@ public class MainView extends Application implements MainController.API,
             return;
         }
 
+        startCorpusWriter();
+
         try {
             primaryStage_.setScene(
                 sceneFactory_.create(SceneFactory.Scenes.EMAIL_LIST_SCENE, this)
@@ -220,6 +244,8 @@ public class MainView extends Application implements MainController.API,
         logger_.info("Creating new EmailFetcher.");
 
         // Before create a new fetcher, make sure any old one is dead
+        discardCorpusWriter();
+
         if (emailFetcher_ != null) {
             emailFetcher_.terminate();
         }
@@ -279,6 +305,42 @@ public class MainView extends Application implements MainController.API,
         return true;
     }
 
+    private void startCorpusWriter () {
+        try {
+            corpusWriterDirectory_ = dataBase_.newStreamedCorpusDirectory();
+            corpusWriter_ = new CorpusWriter(corpusWriterDirectory_);
+        } catch (IOException e) {
+            logger_.log(Level.WARNING, "Could not create a directory for the fetched e-mails.\n" +
+                "A corpus will only be created from chosen e-mails.", e);
+
+            discardCorpusWriter();
+            return;
+        }
+
+        emailFetcher_.addObserver(corpusWriter_);
+    }
+
+    private void discardCorpusWriter () {
+        if (corpusWriter_ != null) {
+            emailFetcher_.deleteObserver(corpusWriter_);
+
+            try {
+                corpusWriter_.close();
+            } catch (IOException e) {
+                logger_.warning("Could not close the CorpusWriter.\n" +
+                    "Exception Message: " + e.getMessage());
+            }
+
+            corpusWriter_ = null;
+        }
+
+        if (corpusWriterDirectory_ != null) {
+            FileUtils.deleteQuietly(corpusWriterDirectory_);
+
+            corpusWriterDirectory_ = null;
+        }
+    }
+
     @Override
     public EmailFetcher getEmailFetcher () {
         return emailFetcher_;
@@ -288,11 +350,27 @@ public class MainView extends Application implements MainController.API,
     public void processEmail (Set<Email> emails) {
         emailFetcher_.terminate();
 
+        // Only the chosen e-mails are used
+        discardCorpusWriter();
+
         corpus_ = new Corpus();
         corpus_.setDocuments(emails.stream()
             .map(email -> new Document(email.getId(), email.getSubject(), email.getBody()))
             .collect(Collectors.toList()));
 
+        showLDAScene();
+    }
+
+    @Override
+    public void edit (int corpusId) {
+        setCorpus(corpusId);
+
+        if (corpus_ != null) {
+            showLDAScene();
+        }
+    }
+
+    private void showLDAScene () {
         try {
             primaryStage_.setScene(sceneFactory_.create(SceneFactory.Scenes.LDA_SCENE, this));
         } catch (IOException e) {
@@ -305,13 +383,135 @@ public class MainView extends Application implements MainController.API,
         }
     }
 
+    @Override
+    public void processAllEmail () {
+        if (corpusWriter_ == null) {
+            console_.postMessage("The fetched e-mails could not be saved.\n" +
+                "Please, choose the e-mails to use instead.");
+            return;
+        }
+
+        if (corpusWriter_.getNumberOfSentences() == 0) {
+            console_.postMessage("You must fetch at least one e-mail before moving on!");
+            return;
+        }
+
+        String name;
+        try {
+            CorpusNameDialog corpusNameDialog = new CorpusNameDialog("corpus_" +
+                String.valueOf(dataBase_.getNumberOfCorpora() + 1)
+            );
+            corpusNameDialog.showAndWait();
+
+            name = corpusNameDialog.getValue();
+        } catch (IOException e) {
+            logger_.severe("Could not load resource:/fxml/dialog/corpus_name.fxml\n" +
+                "The file might be missing or be corrupted.\n" +
+                "Application will terminate.\n" +
+                "Exception Message: " + e.getMessage());
+            Platform.exit();
+            return;
+        }
+
+        // The e-mails fetched until now make up the corpus
+        emailFetcher_.terminate();
+        emailFetcher_.deleteObserver(corpusWriter_);
+
+        try {
+            corpusWriter_.close();
+        } catch (IOException e) {
+            console_.postMessage("Could not save the fetched e-mails.\n" +
+                "Exception Message: " + e.getMessage());
+
+            initialScene();
+            return;
+        }
+
+        File directory = corpusWriterDirectory_;
+        corpusWriter_ = null;
+        corpusWriterDirectory_ = null;
+
+        setIntermediateMessage(IntermediateMessages.NEW_CORPUS);
+        showIntermediateScene();
+
+        newCorpusThread_ = new NewCorpusThread(directory, name);
+        newCorpusThread_.start();
+    }
+
+    private class NewCorpusThread extends Thread {
+        NewCorpusThread (File directory, String name) {
+            directory_ = directory;
+            name_ = name;
+
+            setDaemon(true);
+        }
+
+        @Override
+        public void run () {
+            logger_.info("NewCorpusThread started!");
+
+            int corpusId;
+            try {
+                corpusId = dataBase_.newCorpusEntry(
+                    directory_, name_, Dictionary.getDefaultDictionary()
+                );
+            } catch (IOException e) {
+                console_.postMessage("There was an error trying to save the corpus.\n" +
+                    "Check the permissions inside the directory: " +
+                    dataBase_.getConfiguration().getDataBaseDirectoryPath() + "\n" +
+                    "Exception Message: " + e.getMessage());
+
+                Platform.runLater(MainView.this :: initialScene);
+
+                logger_.info("NewCorpusThread shut down gracefully!");
+                return;
+            } finally {
+                // A saved corpus has moved the directory, so this only cleans up after a failure
+                FileUtils.deleteQuietly(directory_);
+            }
+
+            if (! isInterrupted()) {
+                Platform.runLater(() -> recordOrDictate(corpusId));
+            }
+
+            logger_.info("NewCorpusThread shut down gracefully!");
+        }
+
+        private final File directory_;
+        private final String name_;
+
+        private Logger logger_ = Logger.getLogger(getClass().getName());
+    }
+
+    @Override
+    public void recordOrDictate (int corpusId) {
+        YesNoDialog yesNoDialog;
+        try {
+            yesNoDialog = new YesNoDialog(true, YES_NO_DIALOG_PROMPT_TEXT);
+            yesNoDialog.showAndWait();
+        } catch (IOException e) {
+            logger_.severe("Could not load resource:/fxml/dialog/yes_no.fxml\n" +
+                "The file might be missing or be corrupted.\n" +
+                "Application will terminate.\n" +
+                "Exception Message: " + e.getMessage());
+            Platform.exit();
+            return;
+        }
+
+        if (yesNoDialog.getValue()) {
+            record(corpusId);
+        }
+        else {
+            dictate(corpusId);
+        }
+    }
+
     @Override
     public Corpus getCorpus () {
         return corpus_;
     }
 
-    @Override
-    public void record (int corpusId) {
+    private void record (int corpusId) {
         setCorpus(corpusId);
 
         try {
@@ -441,6 +641,19 @@ public class MainView extends Application implements MainController.API,
             emailFetcher_.terminate();
         }
 
+        discardCorpusWriter();
+
+        if (newCorpusThread_ != null && newCorpusThread_.isAlive()) {
+            newCorpusThread_.interrupt();
+            try {
+                // Give the thread the chance to delete its directory. Whatever is left behind is
+                // deleted the next time the DataBase is created.
+                newCorpusThread_.join(3000);
+            } catch (InterruptedException e) {
+                logger_.warning("Interrupted while joining newCorpusThread.");
+            }
+        }
+
         if (newAcousticModelThread_ != null && newAcousticModelThread_.isAlive()) {
             newAcousticModelThread_.interrupt();
             try {
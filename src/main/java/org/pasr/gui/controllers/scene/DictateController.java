@@ -23,6 +23,7 @@ import org.pasr.gui.console.Console;
 import org.pasr.gui.corpus.CorpusPane;
 import org.pasr.postp.correctors.Corrector;
 import org.pasr.postp.detectors.POSDetector;
+import org.pasr.prep.corpus.CompactCorpus;
 import org.pasr.prep.corpus.Corpus;
 import org.pasr.prep.recorder.BufferedRecorder;
 
@@ -260,11 +261,14 @@ public class DictateController extends Controller implements Observer {
             }
 
             try {
-                Corpus corpus = dataBase_.getCorpusById(id_);
+                // The Corpus is never edited here so the compact, read-only form is enough
+                CompactCorpus compactCorpus = dataBase_.getCompactCorpusById(id_);
 
-                corrector_ = new Corrector(corpus, dictionary);
+                corrector_ = new Corrector(compactCorpus, dictionary);
                 try {
-                    corrector_.addDetector(new POSDetector(corpus));
+                    corrector_.addDetector(new POSDetector(
+                        compactCorpus, new File(dataBase_.getPOSTagsPathById(id_))
+                    ));
                 } catch (IOException e) {
                     logger_.log(Level.SEVERE, "Missing POSDetector model.\n" +
                         "Application will terminate.", e);
@@ -273,7 +277,7 @@ public class DictateController extends Controller implements Observer {
                     return;
                 }
                 // TODO Improve OccurrenceDetector before using it
-                // corrector_.addDetector(new OccurrenceDetector(corpus));
+                // corrector_.addDetector(new OccurrenceDetector(compactCorpus));
             } catch (IOException e) {
                 Console.getInstance().postMessage("Could not load the selected corpus.\n" +
                     "Corrector will not be available.");
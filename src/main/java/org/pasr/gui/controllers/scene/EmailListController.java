@@ -4,6 +4,7 @@ import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
 import javafx.scene.control.TextArea;
+import javafx.scene.control.Tooltip;
 import org.pasr.gui.console.Console;
 import org.pasr.gui.email.tree.EmailTreePane;
 import org.pasr.gui.email.tree.EmailValue;
@@ -50,8 +51,11 @@ public class EmailListController extends Controller {
         );
 
         backButton.setOnAction(this :: backButtonOnAction);
+        allButton.setOnAction(this :: allButtonOnAction);
         doneButton.setOnAction(this :: doneButtonOnAction);
 
+        allButton.setTooltip(new Tooltip(ALL_BUTTON_TOOLTIP));
+
         emailFetcher.fetch(emailTreePane.getFieldValue());
     }
 
@@ -101,6 +105,10 @@ public class EmailListController extends Controller {
         ((API) api_).initialScene();
     }
 
+    private void allButtonOnAction (ActionEvent actionEvent) {
+        ((API) api_).processAllEmail();
+    }
+
     private void doneButtonOnAction (ActionEvent actionEvent) {
         Set<Email> selectedEmailSet = emailTreePane.getSelectedEmails();
 
@@ -119,6 +127,8 @@ public class EmailListController extends Controller {
         void initialScene ();
 
         void processEmail (Set<Email> emailList);
+
+        void processAllEmail ();
     }
 
     @FXML
@@ -133,6 +143,11 @@ public class EmailListController extends Controller {
     @FXML
     private Button backButton;
 
+    @FXML
+    private Button allButton;
+    private static final String ALL_BUTTON_TOOLTIP = "Create a corpus from all the fetched" +
+        " e-mails without choosing them";
+
     @FXML
     private Button doneButton;
 
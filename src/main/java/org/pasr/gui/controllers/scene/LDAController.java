@@ -15,7 +15,6 @@ import org.pasr.gui.console.Console;
 import org.pasr.gui.dialog.CorpusNameDialog;
 import org.pasr.gui.dialog.LDAInteractDialog;
 import org.pasr.gui.dialog.ListDialog;
-import org.pasr.gui.dialog.YesNoDialog;
 import org.pasr.prep.corpus.Corpus;
 import org.pasr.prep.corpus.Document;
 import org.pasr.prep.lda.LDA;
@@ -241,6 +240,22 @@ public class LDAController extends Controller {
                 }
             }
         }
+        else if (corpus_.getId() != - 1) {
+            // A stored corpus is being edited, so its entry is updated instead of a new one created
+            try {
+                database.updateCorpusEntry(corpus_, dictionary_);
+            } catch (IOException e) {
+                Console.getInstance().postMessage("There was an error trying to save the" +
+                    " corpus.\n" +
+                    "Check the permissions inside the directory: " +
+                    database.getConfiguration().getDataBaseDirectoryPath() + "\n" +
+                    "Exception Message: " + e.getMessage());
+
+                return;
+            }
+
+            corpusInformation.put(corpus_.getId(), corpus_.getName());
+        }
         else {
             try {
                 CorpusNameDialog corpusNameDialog = new CorpusNameDialog("corpus_" +
@@ -274,20 +289,6 @@ public class LDAController extends Controller {
             }
         }
 
-        YesNoDialog yesNoDialog;
-        try {
-            yesNoDialog = new YesNoDialog(true, YES_NO_DIALOG_PROMPT_TEXT);
-            yesNoDialog.showAndWait();
-        } catch (IOException e) {
-            getLogger().severe("Could not load resource:/fxml/dialog/yes_no.fxml\n" +
-                "The file might be missing or be corrupted.\n" +
-                "Application will terminate.\n" +
-                "Exception Message: " + e.getMessage());
-
-            Platform.exit();
-            return;
-        }
-
         if (corpusInformation.size() == 0) {
             getLogger().severe("Corpus information is empty");
 
@@ -330,16 +331,9 @@ public class LDAController extends Controller {
             }
         }
 
-        if (yesNoDialog.getValue()) {
-            terminate();
-
-            ((API) api_).record(selectedCorpusID);
-        }
-        else {
-            terminate();
+        terminate();
 
-            ((API) api_).dictate(selectedCorpusID);
-        }
+        ((API) api_).recordOrDictate(selectedCorpusID);
     }
 
     private class DictionaryThread extends Thread {
@@ -563,9 +557,7 @@ public class LDAController extends Controller {
 
         void initialScene ();
 
-        void record (int corpusID);
-
-        void dictate (int corpusID);
+        void recordOrDictate (int corpusID);
     }
 
     @FXML
@@ -645,9 +637,6 @@ public class LDAController extends Controller {
 
     private MultiValuedMap<String, List<Long>> ldaResults_;
 
-    private static final String YES_NO_DIALOG_PROMPT_TEXT = "Record voice samples for acoustic" +
-        " model adaptation?";
-
     private static final String CORPUS_CHOOSE_DIALOG_PROMPT_TEXT = "Choose the corpus to use";
 
 }
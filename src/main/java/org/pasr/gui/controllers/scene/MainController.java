@@ -32,13 +32,13 @@ public class MainController extends Controller {
     public void initialize () {
         corpusPane.addSelectionListener((observable, oldValue, newValue) -> {
             if (newValue == null) {
-                dictateButtonAccessHandling(false);
+                corpusButtonsAccessHandling(false);
             }
             else {
-                dictateButtonAccessHandling(true);
+                corpusButtonsAccessHandling(true);
             }
         });
-        dictateButtonAccessHandling(false);
+        corpusButtonsAccessHandling(false);
 
         String emailAddress = ((API) api_).getEmailAddress();
         String password = ((API) api_).getPassword();
@@ -55,16 +55,20 @@ public class MainController extends Controller {
         newCorpusButton.setTooltip(new Tooltip(NewCorpusButtonMessages.TOOLTIP.getMessage()));
         newCorpusButton.setOnAction(this :: newCorpusButtonOnAction);
 
+        editButton.setOnAction(this :: editButtonOnAction);
         dictateButton.setOnAction(this :: dictateButtonOnAction);
     }
 
-    private void dictateButtonAccessHandling (boolean corpusSelected) {
+    private void corpusButtonsAccessHandling (boolean corpusSelected) {
         if (corpusSelected) {
+            editButton.setDisable(false);
+            editButton.setTooltip(new Tooltip(EditButtonMessages.ENABLED.getMessage()));
             dictateButton.setDisable(false);
             dictateButton.setTooltip(new Tooltip(DictateButtonMessages.ENABLED.getMessage()));
             dictateLabel.setVisible(false);
         }
         else {
+            editButton.setDisable(true);
             dictateButton.setDisable(true);
             dictateLabel.setVisible(true);
             dictateLabel.setText(DictateButtonMessages.DISABLED.getMessage());
@@ -91,6 +95,12 @@ public class MainController extends Controller {
         }
     }
 
+    private void editButtonOnAction (ActionEvent actionEvent) {
+        // There is no need to check if the provided id is valid since editButton can be fired
+        // only when a valid corpus is chosen
+        ((API) api_).edit(corpusPane.getSelectedCorpusId());
+    }
+
     private void dictateButtonOnAction (ActionEvent actionEvent) {
         // There is no need to check if the provided id is valid since dictateButton can be fired
         // only when a valid corpus is chosen
@@ -104,6 +114,8 @@ public class MainController extends Controller {
 
         void newCorpus (String emailAddress, String password);
 
+        void edit (int corpusID);
+
         void dictate (int corpusID);
     }
 
@@ -137,6 +149,23 @@ public class MainController extends Controller {
         private String message_;
     }
 
+    @FXML
+    private Button editButton;
+
+    private enum EditButtonMessages {
+        ENABLED("Correct the unknown words of the chosen corpus.");
+
+        EditButtonMessages (String message) {
+            message_ = message;
+        }
+
+        public String getMessage () {
+            return message_;
+        }
+
+        private String message_;
+    }
+
     @FXML
     private Button dictateButton;
 
@@ -144,7 +173,7 @@ public class MainController extends Controller {
     private Label dictateLabel;
 
     private enum DictateButtonMessages {
-        DISABLED("Note: You must create and select a corpus in order to dictate."),
+        DISABLED("Note: You must create and select a corpus in order to edit or dictate."),
         ENABLED("Use the chosen corpus for speech recognition.");
 
         DictateButtonMessages (String message) {
@@ -2,20 +2,23 @@ package org.pasr.postp.correctors;
 
 import org.pasr.asr.dictionary.Dictionary;
 import org.pasr.postp.detectors.Detector;
+import org.pasr.prep.corpus.CompactCorpus;
 import org.pasr.prep.corpus.Corpus;
+import org.pasr.prep.corpus.CorpusIndex;
+import org.pasr.prep.corpus.PhoneticIndex;
+import org.pasr.prep.corpus.SuffixArray;
 import org.pasr.prep.corpus.Word;
 import org.pasr.prep.corpus.WordSequence;
-import org.pasr.utilities.LevenshteinMatrix;
+import org.pasr.utilities.LevenshteinDistance;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static java.lang.Integer.min;
@@ -24,6 +27,8 @@ import static java.lang.Integer.min;
 /**
  * @class Corrector
  * @brief Implements a corrector using a Corpus and a Dictionary
+ *        The indexes over the Corpus are built again whenever the Corpus has been changed since
+ *        they were built, which is detected by its SuffixArray having been built again.
  */
 public class Corrector {
 
@@ -36,6 +41,33 @@ public class Corrector {
      *     The Dictionary to be used
      */
     public Corrector (Corpus corpus, Dictionary dictionary) {
+        this(corpus, corpus != null ? corpus:: getSuffixArray : null, dictionary);
+    }
+
+    /**
+     * @brief Constructor
+     *
+     * @param corpus
+     *     The CompactCorpus to be used
+     * @param dictionary
+     *     The Dictionary to be used
+     */
+    public Corrector (CompactCorpus corpus, Dictionary dictionary) {
+        this(corpus, corpus != null ? corpus:: getSuffixArray : null, dictionary);
+    }
+
+    /**
+     * @brief Constructor
+     *
+     * @param corpus
+     *     The sentences of the corpus to be used
+     * @param suffixArraySupplier
+     *     Supplies the SuffixArray of the corpus
+     * @param dictionary
+     *     The Dictionary to be used
+     */
+    private Corrector (List<WordSequence> corpus, Supplier<SuffixArray> suffixArraySupplier,
+                       Dictionary dictionary) {
         if (corpus == null) {
             throw new IllegalArgumentException("corpus must not be null!");
         }
@@ -45,11 +77,36 @@ public class Corrector {
         }
 
         corpus_ = corpus;
+        suffixArraySupplier_ = suffixArraySupplier;
         dictionary_ = dictionary;
 
+        updateIndexes();
+
         detectorList_ = new ArrayList<>();
     }
 
+    /**
+     * @brief Builds the indexes over the corpus again if the corpus has been changed
+     *        The SuffixArray of a Corpus or CompactCorpus is replaced every time that it is
+     *        changed, so a SuffixArray different from the one the indexes were built with means
+     *        that they are stale. The PhoneticIndex is dropped to be created again when it is
+     *        needed.
+     *
+     * @return The current SuffixArray of the corpus
+     */
+    private SuffixArray updateIndexes () {
+        SuffixArray suffixArray = suffixArraySupplier_.get();
+
+        if (suffixArray != indexedSuffixArray_) {
+            corpusIndex_ = new CorpusIndex(corpus_);
+            phoneticIndex_ = null;
+
+            indexedSuffixArray_ = suffixArray;
+        }
+
+        return suffixArray;
+    }
+
     /**
      * @brief Adds a Detector to this Corrector Detector list
      *
@@ -100,7 +157,7 @@ public class Corrector {
         }
 
         // If the input is contained inside the corpus as is, consider it correct.
-        if (corpus_.contains(input)) {
+        if (updateIndexes().contains(new WordSequence(input).getWordTextList())) {
             return input;
         }
 
@@ -265,55 +322,36 @@ public class Corrector {
             return replaceWithoutContext(changeablePart);
         }
 
-        String[] changeablePartPhones = dictionary_.getPhonesInLine(changeablePart).stream()
-            .toArray(String[] ::new);
+        int[] changeablePartPhones = dictionary_.getPhoneIdsInLine(changeablePart);
 
         // String: replacing part (part candidate to replace the changeable part)
-        // String: regular expression
-        // Double: sum of scores of the replacing part on the matched word patterns of the
-        //         regular expression
-        Map<String, Map<String, Double>> scoreMap = new HashMap<>();
-        Map<String, Integer> contextMap = buildContextMap(onTheLeft, onTheRight);
+        // Context: the context the replacing part was found in
+        // Double: sum of scores of the replacing part on the matched spans of the context
+        Map<String, Map<Context, Double>> scoreMap = new HashMap<>();
+        Map<Context, Integer> contextMap = buildContextMap(onTheLeft, onTheRight);
         // Add the changeable part number of phones to each context entry number of phones.
         contextMap.entrySet().stream()
             .forEach(entry -> entry.setValue(entry.getValue() + changeablePartPhones.length));
         Map<String, Double> candidateScoreMap = new HashMap<>();
 
-        // for each regular expression in the context map
-        for (String regExp : contextMap.keySet()) {
-            // for each sentence inside the corpus
-            for (WordSequence wordSequence : corpus_) {
-                // match the regular expression on the sentence
-                Matcher matcher = Pattern.compile(regExp)
-                    .matcher(wordSequence.toString());
-                // score each match and store it
-                while (matcher.find()) {
-                    String candidate = matcher.group();
-
-                    if (scoreMap.containsKey(candidate)) {
-                        Map<String, Double> candidateMap = scoreMap.get(candidate);
-
-                        if (candidateMap.containsKey(regExp)) {
-                            candidateMap.put(
-                                regExp,
-                                candidateMap.get(regExp) + candidateScoreMap.get(candidate)
-                            );
-                        }
-                        else {
-                            candidateMap.put(regExp, candidateScoreMap.get(candidate));
-                        }
-                    }
-                    else {
-                        Map<String, Double> candidateMap = new HashMap<>();
-                        double candidateScore = score(
-                            new WordSequence(candidate),
-                            changeablePartPhones
-                        );
-                        candidateMap.put(regExp, candidateScore);
-                        candidateScoreMap.put(candidate, candidateScore);
-
-                        scoreMap.put(candidate, candidateMap);
-                    }
+        // for each context in the context map
+        for (Context context : contextMap.keySet()) {
+            // for each sentence of the corpus that has a span inside the context
+            for (CorpusIndex.Span span : corpusIndex_.find(context.getLeft(),
+                context.getRight())) {
+
+                String candidate = corpus_.get(span.getSentenceIndex())
+                    .subSequence(span.getBegin(), span.getEnd()).toString();
+
+                addCandidate(candidate, context, scoreMap, candidateScoreMap,
+                    changeablePartPhones);
+
+                // A context with only words on the right was matched with the regular expression
+                // "(.*)(?= right)" which also matched the empty String right before the right
+                // words. The empty candidate, that keeps the changeable part as is, is still
+                // scored to leave the choice of the best candidate unchanged.
+                if (context.getLeft() == null) {
+                    addCandidate("", context, scoreMap, candidateScoreMap, changeablePartPhones);
                 }
             }
         }
@@ -321,11 +359,11 @@ public class Corrector {
         // Choose the best candidate based on its score
         double bestScore = Double.NEGATIVE_INFINITY;
         String chosenCandidate = "";
-        for (Map.Entry<String, Map<String, Double>> candidateEntry : scoreMap.entrySet()) {
-            Map<String, Double> candidateMap = candidateEntry.getValue();
+        for (Map.Entry<String, Map<Context, Double>> candidateEntry : scoreMap.entrySet()) {
+            Map<Context, Double> candidateMap = candidateEntry.getValue();
 
             double candidateScore = 0;
-            for (Map.Entry<String, Double> candidateMapEntry : candidateMap.entrySet()) {
+            for (Map.Entry<Context, Double> candidateMapEntry : candidateMap.entrySet()) {
                 candidateScore += 1 -
                     (candidateMapEntry.getValue() / contextMap.get(candidateMapEntry.getKey()));
             }
@@ -339,6 +377,38 @@ public class Corrector {
         return chosenCandidate.isEmpty() ? changeablePart : new WordSequence(chosenCandidate);
     }
 
+    /**
+     * @brief Adds the score of a candidate found inside a context to the score map
+     *        Each candidate is scored only once, the first time it is found.
+     *
+     * @param candidate
+     *     The candidate
+     * @param context
+     *     The context the candidate was found in
+     * @param scoreMap
+     *     The score map of scoreAndReplace
+     * @param candidateScoreMap
+     *     The score of each candidate found so far
+     * @param changeablePartPhones
+     *     The phones of the changeable part
+     */
+    private void addCandidate (String candidate, Context context,
+                               Map<String, Map<Context, Double>> scoreMap,
+                               Map<String, Double> candidateScoreMap,
+                               int[] changeablePartPhones) {
+        if (scoreMap.containsKey(candidate)) {
+            scoreMap.get(candidate).merge(context, candidateScoreMap.get(candidate), Double:: sum);
+        }
+        else {
+            Map<Context, Double> candidateMap = new HashMap<>();
+            double candidateScore = score(new WordSequence(candidate), changeablePartPhones);
+            candidateMap.put(context, candidateScore);
+            candidateScoreMap.put(candidate, candidateScore);
+
+            scoreMap.put(candidate, candidateMap);
+        }
+    }
+
     /**
      * @brief Returns the replacing WordSequence for the given changeable part
      *
@@ -352,58 +422,44 @@ public class Corrector {
             return new WordSequence("");
         }
 
-        List<String> changeablePartPhones = dictionary_.getPhonesInLine(changeablePart);
-
-        int minDistance = Integer.MAX_VALUE;
-        WordSequence bestMatch = null;
+        if (phoneticIndex_ == null) {
+            phoneticIndex_ = new PhoneticIndex(corpus_, dictionary_);
+        }
 
-        // Check which sub-part of every sentence inside the corpus matches better with the given
+        // Find which sub-part of every sentence inside the corpus matches better with the given
         // changeable part.
-        for (WordSequence wordSequence : corpus_) {
-            List<List<String>> wordSequenceWordPhoneList = dictionary_.getPhones(wordSequence);
-
-            for (int i = 0, n = wordSequenceWordPhoneList.size(); i < n; i++) {
-                for (int j = i + 1; j <= n; j++) {
-                    List<String> candidate = new ArrayList<>();
-                    wordSequenceWordPhoneList.subList(i, j).stream()
-                        .forEach(candidate:: addAll);
-
-                    int currentDistance = LevenshteinMatrix.getDistance(
-                        changeablePartPhones, candidate
-                    );
-
-                    if (currentDistance < minDistance) {
-                        minDistance = currentDistance;
-
-                        bestMatch = wordSequence.subSequence(i, j);
-                    }
-                }
-            }
-        }
+        CorpusIndex.Span span = phoneticIndex_.findClosest(
+            dictionary_.getPhoneIdsInLine(changeablePart)
+        );
 
-        return bestMatch == null ? new WordSequence("") : bestMatch;
+        return span == null ? new WordSequence("") : corpus_.get(span.getSentenceIndex())
+            .subSequence(span.getBegin(), span.getEnd());
     }
 
     /**
      * @brief Builds the context map given the WordSequence on the left and the one on the right
-     *        The context map contains all the regular expressions that should be matched on the
-     *        corpus in order to find the best replacement for a changeable part. For example:
+     *        The context map contains all the contexts that should be looked up inside the corpus
+     *        in order to find the best replacement for a changeable part. For example:
      *
      *        onTheLeft = wl1,wl2,wl3,wl4,wl5
      *        onTheRight = wr1,wr2,wr3,wr4,wr5
      *
      *        contextMap = {
-     *            "(?<=wl1 )(.*)": numberOfPhones(wl1),
-     *            "(?<=wl1wl2 )(.*)": numberOfPhones(wl1) + numberOfPhones(wl2),
+     *            (wl5, -): numberOfPhones(wl5),
+     *            (wl4 wl5, -): numberOfPhones(wl4) + numberOfPhones(wl5),
      *            ...
-     *            "(.*)(?= wr1)": numberOfPhones(wr1),
-     *            "(.*)(?= wr1wr2)": numberOfPhones(wr1) + numberOfPhones(wr2),
+     *            (-, wr1): numberOfPhones(wr1),
+     *            (-, wr1 wr2): numberOfPhones(wr1) + numberOfPhones(wr2),
      *            ...
-     *            "(?<=wl1 )(.*)(?= wr1)": numberOfPhones(wl1) + numberOfPhones(wr1),
-     *            "(?<=wl1wl2 )(.*)(?= wr1)": numberOfPhones(wl1) + numberOfPhones(wl2) + numberOfPhones(wr1),
+     *            (wl5, wr1): numberOfPhones(wl5) + numberOfPhones(wr1),
+     *            (wl4 wl5, wr1): numberOfPhones(wl4) + numberOfPhones(wl5) + numberOfPhones(wr1),
      *            ...
      *        }
      *
+     *        where "-" denotes a side without any context (see CorpusIndex.find). When there are
+     *        words on both sides, the contexts with no words on one side still require at least
+     *        one word on that side.
+     *
      * @param onTheLeft
      *     The WordSequence on the left
      * @param onTheRight
@@ -411,92 +467,53 @@ public class Corrector {
      *
      * @return The context map
      */
-    private Map<String, Integer> buildContextMap (WordSequence onTheLeft, WordSequence onTheRight) {
-        Map<String, Integer> contextMap = new HashMap<>();
-
-        String[] onTheLeftWords = onTheLeft.stream()
-            .map(Word:: toString)
-            .toArray(String[] ::new);
+    private Map<Context, Integer> buildContextMap (WordSequence onTheLeft,
+                                                   WordSequence onTheRight) {
+        Map<Context, Integer> contextMap = new HashMap<>();
 
-        String[] onTheRightWords = onTheRight.stream()
-            .map(Word:: toString)
-            .toArray(String[] ::new);
+        List<String> onTheLeftWords = onTheLeft.getWordTextList();
+        List<String> onTheRightWords = onTheRight.getWordTextList();
 
         int sizeOnTheLeft = onTheLeft.size();
-        int n = min(sizeOnTheLeft, REGULAR_EXPRESSION_SPAN);
-        int m = min(onTheRight.size(), REGULAR_EXPRESSION_SPAN);
+        int n = min(sizeOnTheLeft, CONTEXT_SPAN);
+        int m = min(onTheRight.size(), CONTEXT_SPAN);
 
         if (n == 0 && m == 0) {
             return contextMap;
         }
         else if (n == 0) {
             for (int j = 1; j <= m; j++) {
-                String arg2 = String.join(" ",
-                    (CharSequence[]) Arrays.copyOfRange(onTheRightWords, 0, j)
-                );
+                List<String> right = onTheRightWords.subList(0, j);
 
-                String contextKey = REGULAR_EXPRESSION_TEMPLATE +
-                    REGULAR_EXPRESSION_TEMPLATE_RIGHT.replace("ARG2", arg2);
-
-                int contextValue = 0;
-                contextValue += dictionary_.getPhonesInLine(new WordSequence(arg2)).stream()
-                    .toArray(String[] ::new).length;
-
-                contextMap.put(contextKey, contextValue);
+                contextMap.put(new Context(null, right), getNumberOfPhones(right));
             }
 
             return contextMap;
         }
         else if (m == 0) {
             for (int i = 1; i <= n; i++) {
-                String arg1 = String.join(
-                    " ",
-                    (CharSequence[]) Arrays.copyOfRange(
-                        onTheLeftWords, sizeOnTheLeft - i, sizeOnTheLeft
-                    )
-                );
-
-                String contextKey = REGULAR_EXPRESSION_TEMPLATE_LEFT.replace("ARG1", arg1) +
-                    REGULAR_EXPRESSION_TEMPLATE;
+                List<String> left = onTheLeftWords.subList(sizeOnTheLeft - i, sizeOnTheLeft);
 
-                int contextValue = 0;
-                contextValue += dictionary_.getPhonesInLine(new WordSequence(arg1)).stream()
-                    .toArray(String[] ::new).length;
-
-                contextMap.put(contextKey, contextValue);
+                contextMap.put(new Context(left, null), getNumberOfPhones(left));
             }
 
             return contextMap;
         }
         else {
             for (int i = 0; i <= n; i++) {
-                String arg1 = String.join(
-                    " ",
-                    (CharSequence[]) Arrays.copyOfRange(
-                        onTheLeftWords, sizeOnTheLeft - i, sizeOnTheLeft
-                    )
-                );
+                List<String> left = onTheLeftWords.subList(sizeOnTheLeft - i, sizeOnTheLeft);
 
                 for (int j = 0; j <= m; j++) {
                     if (i == 0 && j == 0) {
                         continue;
                     }
 
-                    String arg2 = String.join(" ",
-                        (CharSequence[]) Arrays.copyOfRange(onTheRightWords, 0, j)
-                    );
-
-                    String contextKey = REGULAR_EXPRESSION_TEMPLATE_LEFT.replace("ARG1", arg1) +
-                        REGULAR_EXPRESSION_TEMPLATE +
-                        REGULAR_EXPRESSION_TEMPLATE_RIGHT.replace("ARG2", arg2);
-
-                    int contextValue = 0;
-                    contextValue += dictionary_.getPhonesInLine(new WordSequence(arg1)).stream()
-                        .toArray(String[] ::new).length;
-                    contextValue += dictionary_.getPhonesInLine(new WordSequence(arg2)).stream()
-                        .toArray(String[] ::new).length;
+                    List<String> right = onTheRightWords.subList(0, j);
 
-                    contextMap.put(contextKey, contextValue);
+                    contextMap.put(
+                        new Context(left, right),
+                        getNumberOfPhones(left) + getNumberOfPhones(right)
+                    );
                 }
             }
 
@@ -504,23 +521,37 @@ public class Corrector {
         }
     }
 
+    /**
+     * @brief Returns the number of phones of the given words
+     *
+     * @param words
+     *     The words
+     *
+     * @return The number of phones of the given words
+     */
+    private int getNumberOfPhones (List<String> words) {
+        int numberOfPhones = 0;
+        for (String word : words) {
+            numberOfPhones += dictionary_.getPhoneIds(word).length;
+        }
+
+        return numberOfPhones;
+    }
+
     /**
      * @brief Scores a replacing candidate against the phones of a changeable part
      *
      * @param candidate
      *     The candidate to replace the changeable part
      * @param changeablePartPhoneArray
-     *     The phone array of the changeable part
+     *     The phone id array of the changeable part
      *
      * @return The score of the candidate
      */
-    private double score (WordSequence candidate, String[] changeablePartPhoneArray) {
-        String[] candidatePhoneArray = dictionary_.getPhonesInLine(candidate).stream()
-            .toArray(String[] ::new);
-
-        return LevenshteinMatrix.getDistance(
-            Arrays.asList(candidatePhoneArray),
-            Arrays.asList(changeablePartPhoneArray)
+    private double score (WordSequence candidate, int[] changeablePartPhoneArray) {
+        return LevenshteinDistance.getDistance(
+            dictionary_.getPhoneIdsInLine(candidate),
+            changeablePartPhoneArray
         );
     }
 
@@ -575,14 +606,74 @@ public class Corrector {
         private final int right_; //!< The second value of this Range
     }
 
-    private Corpus corpus_; //!< The corpus of this corrector
+    /**
+     * @class Context
+     * @brief Holds the words on the left and on the right of a changeable part
+     *        A null side has no context at all while an empty side requires at least one word.
+     */
+    private static class Context {
+        /**
+         * @brief Constructor
+         *
+         * @param left
+         *     The words on the left
+         * @param right
+         *     The words on the right
+         */
+        Context (List<String> left, List<String> right) {
+            left_ = left;
+            right_ = right;
+        }
+
+        /**
+         * @brief Returns the words on the left
+         *
+         * @return The words on the left
+         */
+        List<String> getLeft () {
+            return left_;
+        }
+
+        /**
+         * @brief Returns the words on the right
+         *
+         * @return The words on the right
+         */
+        List<String> getRight () {
+            return right_;
+        }
+
+        @Override
+        public boolean equals (Object object) {
+            if (! (object instanceof Context)) {
+                return false;
+            }
+
+            Context context = (Context) object;
+            return Objects.equals(left_, context.left_) && Objects.equals(right_, context.right_);
+        }
+
+        @Override
+        public int hashCode () {
+            return Objects.hash(left_, right_);
+        }
+
+        private final List<String> left_; //!< The words on the left
+        private final List<String> right_; //!< The words on the right
+    }
+
+    private List<WordSequence> corpus_; //!< The sentences of the corpus of this corrector
+    private Supplier<SuffixArray> suffixArraySupplier_; //!< Supplies the SuffixArray of the corpus
+    private SuffixArray indexedSuffixArray_; //!< The SuffixArray of the corpus when the indexes
+                                             //!< were built
+    private CorpusIndex corpusIndex_; //!< The index over the sentences of the corpus
+    private PhoneticIndex phoneticIndex_; //!< The index over the phones of the corpus, created the
+                                          //!< first time it is needed
     private Dictionary dictionary_; //!< The dictionary of this corrector
 
     private List<Detector> detectorList_; //!< The List of detectors of this corrector
 
-    private static final String REGULAR_EXPRESSION_TEMPLATE_LEFT = "(?<=ARG1 )";
-    private static final String REGULAR_EXPRESSION_TEMPLATE = "(.*)";
-    private static final String REGULAR_EXPRESSION_TEMPLATE_RIGHT = "(?= ARG2)";
-    private static final int REGULAR_EXPRESSION_SPAN = 5;
+    private static final int CONTEXT_SPAN = 5; //!< The maximum number of words on each side of a
+                                               //!< context
 
 }
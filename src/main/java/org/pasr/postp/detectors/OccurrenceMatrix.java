@@ -0,0 +1,353 @@
+package org.pasr.postp.detectors;
+
+import org.pasr.prep.corpus.CompactCorpus;
+import org.pasr.prep.corpus.WordSequence;
+import org.pasr.utilities.LongIntHashMap;
+import org.pasr.utilities.SymbolTable;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+
+/**
+ * @class OccurrenceMatrix
+ * @brief Holds, for each word of a corpus, the words that occur most often in the same sentences
+ *        with it
+ *        The co-occurrences of every pair of words inside a sentence are counted with word ids.
+ *        The sentences are split into chunks that are counted in parallel, each inside its own
+ *        LongIntHashMap, and the per-chunk maps are merged at the end. For each word only the
+ *        listSize - 1 words with the most co-occurrences are kept, followed by the word itself, in
+ *        compressed sparse rows: the lists of all the words are stored one after the other in a
+ *        single int array along with the start of each list. Each list is sorted by local id so
+ *        that the intersection of two lists is a merge.
+ *
+ *        The co-occurrences of two words are divided by the occurrences of the first word to
+ *        rank them, so ranking by the counts gives the same lists. Ties are broken by the text of
+ *        the words.
+ */
+class OccurrenceMatrix {
+
+    /**
+     * @brief Constructor
+     *
+     * @param sentences
+     *     The sentences of the corpus
+     * @param listSize
+     *     The size of the list of each word, including the word itself
+     */
+    OccurrenceMatrix (List<WordSequence> sentences, int listSize) {
+        if (listSize < 1) {
+            throw new IllegalArgumentException("listSize must be positive!");
+        }
+
+        int numberOfSentences = sentences.size();
+
+        // Map the words to dense ids, local to this matrix
+        int[][] sentenceIds = new int[numberOfSentences][];
+        int[] localIds = new int[0];
+        int[] words = new int[16];
+        int numberOfWords = 0;
+        for (int i = 0; i < numberOfSentences; i++) {
+            // A CompactCorpus already holds the word ids, without creating a WordSequence
+            int[] ids = sentences instanceof CompactCorpus ?
+                ((CompactCorpus) sentences).getWordIds(i) : sentences.get(i).getWordIds();
+
+            for (int j = 0, n = ids.length; j < n; j++) {
+                int id = ids[j];
+
+                if (id >= localIds.length) {
+                    int length = localIds.length;
+                    localIds = Arrays.copyOf(localIds, Math.max(id + 1, length * 2));
+                    Arrays.fill(localIds, length, localIds.length, - 1);
+                }
+
+                if (localIds[id] == - 1) {
+                    if (numberOfWords == words.length) {
+                        words = Arrays.copyOf(words, numberOfWords * 2);
+                    }
+                    words[numberOfWords] = id;
+                    localIds[id] = numberOfWords++;
+                }
+
+                ids[j] = localIds[id];
+            }
+
+            sentenceIds[i] = ids;
+        }
+
+        localIds_ = localIds;
+        words_ = Arrays.copyOf(words, numberOfWords);
+
+        LongIntHashMap counts = count(sentenceIds);
+
+        // Group the counts by their first word
+        int[] rowStarts = new int[numberOfWords + 1];
+        counts.forEach((key, value) -> rowStarts[(int) (key >>> 32) + 1]++);
+        for (int row = 0; row < numberOfWords; row++) {
+            rowStarts[row + 1] += rowStarts[row];
+        }
+
+        int[] columns = new int[counts.size()];
+        int[] values = new int[counts.size()];
+        int[] positions = Arrays.copyOf(rowStarts, numberOfWords);
+        counts.forEach((key, value) -> {
+            int position = positions[(int) (key >>> 32)]++;
+
+            columns[position] = (int) key;
+            values[position] = value;
+        });
+
+        // Keep the top listSize - 1 columns of each row followed by the word of the row
+        SymbolTable wordTable = SymbolTable.getWordTable();
+        String[] texts = new String[numberOfWords];
+        for (int i = 0; i < numberOfWords; i++) {
+            texts[i] = wordTable.getSymbol(words_[i]);
+        }
+
+        int[][] lists = IntStream.range(0, numberOfWords).parallel()
+            .mapToObj(row -> getTopColumns(row, rowStarts[row], rowStarts[row + 1], columns,
+                values, texts, listSize))
+            .toArray(int[][] ::new);
+
+        listStarts_ = new int[numberOfWords + 1];
+        for (int row = 0; row < numberOfWords; row++) {
+            listStarts_[row + 1] = listStarts_[row] + lists[row].length;
+        }
+
+        // The lists are kept sorted so that two lists are intersected with a single merge
+        lists_ = new int[listStarts_[numberOfWords]];
+        for (int row = 0; row < numberOfWords; row++) {
+            Arrays.sort(lists[row]);
+            System.arraycopy(lists[row], 0, lists_, listStarts_[row], lists[row].length);
+        }
+    }
+
+    /**
+     * @brief Counts the co-occurrences of every pair of words inside the same sentence
+     *        The key of a pair is the id of its first word on the high 32 bits and the id of its
+     *        second word on the low 32 bits. Both orders of a pair are counted, so a word that
+     *        appears twice in a sentence co-occurs twice with itself.
+     *
+     * @param sentenceIds
+     *     The local word ids of each sentence
+     *
+     * @return The co-occurrences of every pair of words
+     */
+    private static LongIntHashMap count (int[][] sentenceIds) {
+        int size = sentenceIds.length;
+
+        int numberOfChunks = Math.max(1, Math.min(
+            size / MINIMUM_CHUNK_SIZE, Runtime.getRuntime().availableProcessors() * 4
+        ));
+
+        return IntStream.range(0, numberOfChunks).parallel()
+            .mapToObj(chunk -> {
+                LongIntHashMap chunkCounts = new LongIntHashMap();
+
+                int from = (int) ((long) size * chunk / numberOfChunks);
+                int to = (int) ((long) size * (chunk + 1) / numberOfChunks);
+                for (int s = from; s < to; s++) {
+                    int[] ids = sentenceIds[s];
+
+                    for (int i = 0, n = ids.length; i < n; i++) {
+                        for (int j = i + 1; j < n; j++) {
+                            chunkCounts.add(((long) ids[i] << 32) | ids[j], 1);
+                            chunkCounts.add(((long) ids[j] << 32) | ids[i], 1);
+                        }
+                    }
+                }
+
+                return chunkCounts;
+            })
+            .reduce((counts1, counts2) -> {
+                if (counts1.size() < counts2.size()) {
+                    counts2.addAll(counts1);
+                    return counts2;
+                }
+
+                counts1.addAll(counts2);
+                return counts1;
+            })
+            .orElseGet(LongIntHashMap:: new);
+    }
+
+    /**
+     * @brief Returns the list of a word
+     *
+     * @param row
+     *     The local id of the word
+     * @param from
+     *     The start of the co-occurrences of the word inside columns and values (inclusive)
+     * @param to
+     *     The end of the co-occurrences of the word inside columns and values (exclusive)
+     * @param columns
+     *     The local id of the other word of each co-occurrence
+     * @param values
+     *     The count of each co-occurrence
+     * @param texts
+     *     The text of each local id
+     * @param listSize
+     *     The size of the list, including the word itself
+     *
+     * @return The listSize - 1 words with the most co-occurrences followed by the word itself
+     */
+    private static int[] getTopColumns (int row, int from, int to, int[] columns, int[] values,
+                                        String[] texts, int listSize) {
+        int capacity = listSize - 1;
+
+        int[] top = new int[Math.min(capacity, to - from) + 1];
+        int size = 0;
+        for (int i = from; i < to; i++) {
+            int column = columns[i];
+            int value = values[i];
+
+            // Find the position of the column, keeping the list sorted
+            int position = size;
+            while (position > 0 && isBefore(value, texts[column], values[top[position - 1]],
+                texts[columns[top[position - 1]]])) {
+                position--;
+            }
+
+            if (position < capacity) {
+                int end = Math.min(size, capacity - 1);
+                System.arraycopy(top, position, top, position + 1, end - position);
+                top[position] = i;
+
+                size = Math.min(size + 1, capacity);
+            }
+        }
+
+        // top holds indices of columns, turn them into local ids
+        for (int i = 0; i < size; i++) {
+            top[i] = columns[top[i]];
+        }
+        top[size] = row;
+
+        return top;
+    }
+
+    /**
+     * @brief Returns true if a co-occurrence ranks before another one
+     *
+     * @param value
+     *     The count of the first co-occurrence
+     * @param text
+     *     The text of the other word of the first co-occurrence
+     * @param otherValue
+     *     The count of the second co-occurrence
+     * @param otherText
+     *     The text of the other word of the second co-occurrence
+     *
+     * @return True if the first co-occurrence ranks before the second one
+     */
+    private static boolean isBefore (int value, String text, int otherValue, String otherText) {
+        return value > otherValue || (value == otherValue && text.compareTo(otherText) < 0);
+    }
+
+    /**
+     * @brief Returns the local id of a word
+     *
+     * @param word
+     *     The word
+     *
+     * @return The local id of the word or NOT_FOUND if the word is not in the corpus
+     */
+    int getRow (String word) {
+        int id = SymbolTable.getWordTable().getIdIfPresent(word);
+
+        return id >= 0 && id < localIds_.length ? localIds_[id] : NOT_FOUND;
+    }
+
+    /**
+     * @brief Returns the size of the list of a word
+     *
+     * @param row
+     *     The local id of the word or NOT_FOUND
+     *
+     * @return The size of the list of the word, zero for NOT_FOUND
+     */
+    int getListSize (int row) {
+        return row == NOT_FOUND ? 0 : listStarts_[row + 1] - listStarts_[row];
+    }
+
+    /**
+     * @brief Returns the number of entries of the first list that are also in the second
+     *        The sorted lists are merged, so the cost is linear in their sizes. An entry that
+     *        appears twice in the first list is counted twice.
+     *
+     * @param row1
+     *     The local id of the word of the first list or NOT_FOUND
+     * @param row2
+     *     The local id of the word of the second list or NOT_FOUND
+     *
+     * @return The number of entries of the first list that are also in the second
+     */
+    int intersectionSize (int row1, int row2) {
+        if (row1 == NOT_FOUND || row2 == NOT_FOUND) {
+            return 0;
+        }
+
+        int[] lists = lists_;
+
+        int size = 0;
+        int i = listStarts_[row1];
+        int n = listStarts_[row1 + 1];
+        int j = listStarts_[row2];
+        int m = listStarts_[row2 + 1];
+        while (i < n && j < m) {
+            int word1 = lists[i];
+            int word2 = lists[j];
+
+            if (word1 < word2) {
+                i++;
+            }
+            else if (word1 > word2) {
+                j++;
+            }
+            else {
+                // Only the first list moves on, so duplicates of the first list are counted
+                size++;
+                i++;
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * @brief Returns the list of a word
+     *
+     * @param word
+     *     The word
+     *
+     * @return The words of the list of the given word, in no particular order, or an empty array if
+     *         the word is not in the corpus
+     */
+    String[] getList (String word) {
+        int row = getRow(word);
+
+        String[] list = new String[getListSize(row)];
+
+        SymbolTable wordTable = SymbolTable.getWordTable();
+        for (int i = 0, n = list.length; i < n; i++) {
+            list[i] = wordTable.getSymbol(words_[lists_[listStarts_[row] + i]]);
+        }
+
+        return list;
+    }
+
+    private final int[] localIds_; //!< The local id of each id of SymbolTable.getWordTable() or
+                                   //!< - 1 for words that are not in the corpus
+    private final int[] words_; //!< The id of SymbolTable.getWordTable() of each local id
+
+    private final int[] listStarts_; //!< The start of the list of each word inside lists_
+                                     //!< followed by the length of lists_
+    private final int[] lists_; //!< The lists of all the words, one after the other
+
+    static final int NOT_FOUND = - 1; //!< The row of a word that is not in the corpus
+
+    private static final int MINIMUM_CHUNK_SIZE = 1000; //!< The minimum number of sentences
+                                                         //!< counted by each parallel task
+
+}
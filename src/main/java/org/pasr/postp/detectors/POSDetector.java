@@ -2,12 +2,17 @@ package org.pasr.postp.detectors;
 
 import opennlp.tools.postag.POSModel;
 import opennlp.tools.postag.POSTaggerME;
-import org.pasr.prep.corpus.Corpus;
 import org.pasr.prep.corpus.Word;
 import org.pasr.prep.corpus.WordSequence;
-import org.pasr.utilities.LevenshteinMatrix;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -15,10 +20,10 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
-import static org.apache.commons.collections4.ListUtils.longestCommonSubsequence;
 import static org.pasr.utilities.Utilities.getResourceStream;
 
 
@@ -33,11 +38,28 @@ public class POSDetector implements Detector {
      * @brief Constructor
      *
      * @param corpus
-     *     The Corpus to be used
+     *     The sentences of the Corpus to be used, for example a Corpus or a CompactCorpus
      *
      * @throws IOException If the Apache Open NLP Tag model cannot be loaded
      */
-    public POSDetector (Corpus corpus) throws IOException {
+    public POSDetector (List<WordSequence> corpus) throws IOException {
+        this(corpus, null);
+    }
+
+    /**
+     * @brief Constructor
+     *        The POS patterns of the Corpus are read from the given file if it holds the patterns
+     *        of the same sentences. Otherwise the Corpus is tagged and its POS patterns are written
+     *        to the file, so that the next POSDetector of the same Corpus does not tag it again.
+     *
+     * @param corpus
+     *     The sentences of the Corpus to be used, for example a Corpus or a CompactCorpus
+     * @param tagsFile
+     *     The file that caches the POS patterns of the Corpus. May be null
+     *
+     * @throws IOException If the Apache Open NLP Tag model cannot be loaded
+     */
+    public POSDetector (List<WordSequence> corpus, File tagsFile) throws IOException {
         if (corpus == null) {
             throw new IllegalArgumentException("corpus must not be null!");
         }
@@ -50,9 +72,11 @@ public class POSDetector implements Detector {
                     " returned null.");
         }
 
-        tagger_ = new POSTaggerME(new POSModel(inputStream));
+        POSModel model = new POSModel(inputStream);
+
+        tagger_ = new POSTaggerME(model);
 
-        createPOSPatterns(corpus);
+        createPOSPatterns(corpus, model, tagsFile);
     }
 
     /**
@@ -60,12 +84,198 @@ public class POSDetector implements Detector {
      *
      * @param corpus
      *     The Corpus to be used
+     * @param model
+     *     The Apache Open NLP Tag model
+     * @param tagsFile
+     *     The file that caches the POS patterns of the Corpus. May be null
      */
-    private void createPOSPatterns (Corpus corpus) {
-        corpusMap_ = new HashMap<>();
+    private void createPOSPatterns (List<WordSequence> corpus, POSModel model, File tagsFile) {
+        List<List<String>> sentences = corpus.stream()
+            .map(WordSequence:: getWordTextList)
+            .collect(Collectors.toList());
+
+        long fingerprint = getFingerprint(sentences);
+
+        byte[][] tags = null;
+        if (tagsFile != null && tagsFile.isFile()) {
+            try {
+                tags = readTags(tagsFile, sentences, fingerprint);
+            } catch (IOException e) {
+                logger_.warning("Could not load " + tagsFile.getPath() +
+                    ". The corpus will be tagged again.");
+            }
+        }
+
+        if (tags == null) {
+            tags = tag(sentences, model);
+
+            // The tags are only a cache of the corpus, failing to save them is not fatal
+            if (tagsFile != null) {
+                try {
+                    writeTags(tagsFile, tags, fingerprint);
+                } catch (IOException e) {
+                    logger_.warning("Could not save the POS tags of the corpus.\n" +
+                        "Exception Message: " + e.getMessage());
+                }
+            }
+        }
 
-        for (WordSequence wordSequence : corpus) {
-            corpusMap_.put(wordSequence.getWordTextList(), tag(wordSequence));
+        Map<List<String>, byte[]> corpusMap = new HashMap<>();
+        for (int i = 0, n = sentences.size(); i < n; i++) {
+            corpusMap.put(sentences.get(i), tags[i]);
+        }
+
+        // The index keeps the order of the map, so ties are resolved as they were when the map
+        // was scanned
+        List<List<String>> patternSentences = new ArrayList<>(corpusMap.size());
+        List<byte[]> patterns = new ArrayList<>(corpusMap.size());
+        for (Map.Entry<List<String>, byte[]> entry : corpusMap.entrySet()) {
+            patternSentences.add(entry.getKey());
+            patterns.add(entry.getValue());
+        }
+
+        patternIndex_ = new PatternIndex(patternSentences, patterns);
+    }
+
+    /**
+     * @brief Tags the sentences of a Corpus
+     *        The sentences are split into chunks that are tagged in parallel. A POSTaggerME is not
+     *        thread safe, so each chunk creates its own from the shared model.
+     *
+     * @param sentences
+     *     The words of each sentence
+     * @param model
+     *     The Apache Open NLP Tag model
+     *
+     * @return The ordinals of the Tags of each sentence
+     */
+    static byte[][] tag (List<List<String>> sentences, POSModel model) {
+        int size = sentences.size();
+
+        byte[][] tags = new byte[size][];
+
+        int numberOfChunks = Math.max(1, Math.min(
+            size / MINIMUM_CHUNK_SIZE, Runtime.getRuntime().availableProcessors() * 4
+        ));
+
+        IntStream.range(0, numberOfChunks).parallel()
+            .forEach(chunk -> {
+                POSTaggerME tagger = new POSTaggerME(model);
+
+                int from = (int) ((long) size * chunk / numberOfChunks);
+                int to = (int) ((long) size * (chunk + 1) / numberOfChunks);
+                for (int i = from; i < to; i++) {
+                    List<String> sentence = sentences.get(i);
+
+                    tags[i] = Tags.toOrdinals(
+                        tagger.tag(sentence.toArray(new String[sentence.size()]))
+                    );
+                }
+            });
+
+        return tags;
+    }
+
+    /**
+     * @brief Returns a fingerprint of the words of the sentences of a Corpus
+     *        Used to tell whether a tags file belongs to the same sentences.
+     *
+     * @param sentences
+     *     The words of each sentence
+     *
+     * @return The fingerprint of the sentences
+     */
+    static long getFingerprint (List<List<String>> sentences) {
+        long fingerprint = sentences.size();
+
+        for (List<String> sentence : sentences) {
+            for (String word : sentence) {
+                fingerprint = fingerprint * 31 + word.hashCode();
+            }
+            fingerprint = fingerprint * 31 + sentence.size();
+        }
+
+        return fingerprint;
+    }
+
+    /**
+     * @brief Writes the POS tags of a Corpus to a file
+     *        The ordinals of the Tags of all the sentences are written one after the other, one
+     *        byte each.
+     *
+     * @param file
+     *     The file to create
+     * @param tags
+     *     The ordinals of the Tags of each sentence
+     * @param fingerprint
+     *     The fingerprint of the sentences
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    static void writeTags (File file, byte[][] tags, long fingerprint) throws IOException {
+        try (DataOutputStream outputStream = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+
+            outputStream.writeInt(MAGIC);
+            outputStream.writeInt(VERSION);
+            outputStream.writeLong(fingerprint);
+
+            outputStream.writeInt(tags.length);
+            for (byte[] sentenceTags : tags) {
+                outputStream.write(sentenceTags);
+            }
+        }
+    }
+
+    /**
+     * @brief Reads the POS tags of a Corpus from a file written by writeTags
+     *
+     * @param file
+     *     The file to read
+     * @param sentences
+     *     The words of each sentence
+     * @param fingerprint
+     *     The fingerprint of the sentences
+     *
+     * @return The ordinals of the Tags of each sentence or null if the file holds the tags of
+     *         other sentences
+     *
+     * @throws IOException If an I/O error occurs or the file is not a tags file
+     */
+    static byte[][] readTags (File file, List<List<String>> sentences, long fingerprint)
+        throws IOException {
+
+        try (DataInputStream inputStream = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+
+            if (inputStream.readInt() != MAGIC || inputStream.readInt() != VERSION) {
+                throw new IOException("Not a tags file: " + file.getPath());
+            }
+
+            if (inputStream.readLong() != fingerprint ||
+                inputStream.readInt() != sentences.size()) {
+                return null;
+            }
+
+            int numberOfTags = Tags.values().length;
+
+            byte[][] tags = new byte[sentences.size()][];
+            for (int i = 0, n = tags.length; i < n; i++) {
+                tags[i] = new byte[sentences.get(i).size()];
+                inputStream.readFully(tags[i]);
+
+                for (byte tag : tags[i]) {
+                    if (tag < 0 || tag >= numberOfTags) {
+                        throw new IOException("Malformed tags file: " + file.getPath());
+                    }
+                }
+            }
+
+            if (inputStream.read() != - 1) {
+                throw new IOException("Malformed tags file: " + file.getPath());
+            }
+
+            return tags;
         }
     }
 
@@ -75,16 +285,15 @@ public class POSDetector implements Detector {
      * @param wordSequence
      *     The WordSequence to tag
      *
-     * @return A List with the corresponding Tag for each Word in the given WordSequence
+     * @return The ordinal of the corresponding Tag for each Word in the given WordSequence
      */
-    private List<Tags> tag (WordSequence wordSequence) {
-        return Tags.tag(
-            tagger_.tag(
-                wordSequence.stream()
-                    .map(Word:: toString)
-                    .toArray(String[] ::new)
-            )
-        );
+    private byte[] tag (WordSequence wordSequence) {
+        String[] words = new String[wordSequence.size()];
+        for (int i = 0, n = words.length; i < n; i++) {
+            words[i] = wordSequence.get(i).toString();
+        }
+
+        return Tags.toOrdinals(tagger_.tag(words));
     }
 
     /**
@@ -102,18 +311,18 @@ public class POSDetector implements Detector {
         }
 
         if (wordSequence.isEmpty()) {
-            new ArrayList<>();
+            return new ArrayList<>();
         }
 
-        List<Tags> bestPattern = getBestPattern(wordSequence);
+        byte[] pattern = tag(wordSequence);
+
+        byte[] bestPattern = getBestPattern(wordSequence, pattern);
 
         if (bestPattern == null) {
             return new ArrayList<>();
         }
 
-        return findErrorWords(bestPattern, tag(wordSequence)).stream()
-            .map(wordSequence:: get)
-            .collect(Collectors.toList());
+        return findErrorWords(wordSequence, bestPattern, pattern);
     }
 
     /**
@@ -123,85 +332,160 @@ public class POSDetector implements Detector {
      *
      * @param wordSequence
      *     The WordSequence
+     * @param pattern
+     *     The POS pattern of the WordSequence as Tags ordinals
      *
-     * @return The best matching Tag List
+     * @return The Tags ordinals of the best matching pattern
      */
-    private List<Tags> getBestPattern (WordSequence wordSequence) {
-        List<Tags> wordSequenceTagList = tag(wordSequence);
-        List<String> wordSequenceWordTextList = wordSequence.getWordTextList();
-
-        double minDistance = Double.POSITIVE_INFINITY;
-        List<Tags> bestPattern = null;
-
-        double currentDistance;
-        for (Map.Entry<List<String>, List<Tags>> corpusMapEntry : corpusMap_.entrySet()) {
-            currentDistance = LevenshteinMatrix.getDistance(
-                wordSequenceTagList,
-                corpusMapEntry.getValue()
-            );
-
-            currentDistance = 0.5 * currentDistance + 0.5 * LevenshteinMatrix.getDistance(
-                wordSequenceWordTextList,
-                corpusMapEntry.getKey()
-            );
-
-            if (currentDistance < minDistance) {
-                minDistance = currentDistance;
-                bestPattern = corpusMapEntry.getValue();
-            }
-        }
+    private byte[] getBestPattern (WordSequence wordSequence, byte[] pattern) {
+        SearchStatistics searchStatistics = new SearchStatistics();
+
+        byte[] bestPattern = patternIndex_.getBestPattern(
+            wordSequence.getWordTextList(), pattern, searchStatistics
+        );
+
+        lastSearchStatistics_ = searchStatistics;
 
         return bestPattern;
     }
 
     /**
-     * @brief Returns a List with the indices of the error words
-     *        The two given patterns are aligned and each Tag of the hypothesis pattern that does
-     *        not match any of the Tags of the reference pattern is considered an error.
+     * @brief Returns the counters of the last search for the best POS pattern
+     *
+     * @return The counters of the last search or null if detect has not been called yet
+     */
+    public SearchStatistics getLastSearchStatistics () {
+        return lastSearchStatistics_;
+    }
+
+    /**
+     * @brief Returns a List with the error words
+     *        The two given patterns are aligned along their longest common subsequence and each
+     *        Tag of the hypothesis pattern that is not part of it is considered an error.
      *
+     * @param wordSequence
+     *     The WordSequence of the hypothesis pattern
      * @param referencePattern
      *     The reference pattern considered as the target
      * @param hypothesisPattern
      *     The hypothesis pattern
      *
-     * @return A List with the indices of the error words
+     * @return A List with the error words
      */
-    private List<Integer> findErrorWords (List<Tags> referencePattern,
-                                          List<Tags> hypothesisPattern) {
-        List<Tags> matchingTags = longestCommonSubsequence(referencePattern, hypothesisPattern);
+    private List<Word> findErrorWords (WordSequence wordSequence, byte[] referencePattern,
+                                       byte[] hypothesisPattern) {
+        if (errorWordIndices_.length < hypothesisPattern.length) {
+            errorWordIndices_ = new int[Math.max(
+                hypothesisPattern.length, errorWordIndices_.length * 2
+            )];
+        }
 
-        if (matchingTags == null || matchingTags.size() == 0) {
-            return IntStream.range(0, hypothesisPattern.size())
-                .boxed()
-                .collect(Collectors.toList());
+        int numberOfErrorWords = patternAligner_.findUnmatched(
+            referencePattern, hypothesisPattern, errorWordIndices_
+        );
+
+        List<Word> errorWords = new ArrayList<>(numberOfErrorWords);
+        for (int i = 0; i < numberOfErrorWords; i++) {
+            errorWords.add(wordSequence.get(errorWordIndices_[i]));
         }
 
-        List<Integer> errorWordIndexList = new ArrayList<>();
+        return errorWords;
+    }
 
-        int matchingTagsSize = matchingTags.size();
-        int hypothesisPatternSize = hypothesisPattern.size();
+    /**
+     * @class SearchStatistics
+     * @brief Holds the counters of a search for the best POS pattern
+     */
+    public static final class SearchStatistics {
+
+        /**
+         * @brief Sets the counters
+         *
+         * @param numberOfPatterns
+         *     The number of patterns in the corpus
+         * @param numberOfCandidates
+         *     The number of patterns whose sentence shares at least one word with the hypothesis
+         * @param numberOfVisits
+         *     The number of patterns visited
+         * @param numberOfComparisons
+         *     The number of patterns whose distance was calculated
+         */
+        void set (int numberOfPatterns, int numberOfCandidates, int numberOfVisits,
+                  int numberOfComparisons) {
+            numberOfPatterns_ = numberOfPatterns;
+            numberOfCandidates_ = numberOfCandidates;
+            numberOfVisits_ = numberOfVisits;
+            numberOfComparisons_ = numberOfComparisons;
+        }
 
-        int matchingTagsIndex = 0;
-        int hypothesisIndex = 0;
+        /**
+         * @brief Returns the number of patterns in the corpus
+         *
+         * @return The number of patterns in the corpus
+         */
+        public int getNumberOfPatterns () {
+            return numberOfPatterns_;
+        }
 
-        for (; hypothesisIndex < hypothesisPatternSize; hypothesisIndex++) {
-            if (hypothesisPattern.get(hypothesisIndex) == matchingTags.get(matchingTagsIndex)) {
-                matchingTagsIndex++;
+        /**
+         * @brief Returns the number of patterns whose sentence shares at least one word with the
+         *        hypothesis
+         *
+         * @return The number of patterns whose sentence shares at least one word with the
+         *         hypothesis
+         */
+        public int getNumberOfCandidates () {
+            return numberOfCandidates_;
+        }
 
-                if (matchingTagsIndex == matchingTagsSize) {
-                    hypothesisIndex++;
-                    break;
-                }
-            }
-            else {
-                errorWordIndexList.add(hypothesisIndex);
-            }
+        /**
+         * @brief Returns the number of patterns visited
+         *        The patterns that were not visited were pruned by their length and the words
+         *        they have in common with the hypothesis.
+         *
+         * @return The number of patterns visited
+         */
+        public int getNumberOfVisits () {
+            return numberOfVisits_;
         }
-        for (int i = hypothesisIndex; i < hypothesisPatternSize; i++) {
-            errorWordIndexList.add(i);
+
+        /**
+         * @brief Returns the number of patterns whose distance was calculated
+         *        The visited patterns whose distance was not calculated were pruned by the tags
+         *        they have in common with the hypothesis.
+         *
+         * @return The number of patterns whose distance was calculated
+         */
+        public int getNumberOfComparisons () {
+            return numberOfComparisons_;
         }
 
-        return errorWordIndexList;
+        /**
+         * @brief Returns the number of patterns whose distance was not calculated
+         *
+         * @return The number of pruned patterns
+         */
+        public int getNumberOfPrunedPatterns () {
+            return numberOfPatterns_ - numberOfComparisons_;
+        }
+
+        /**
+         * @brief Returns the String of these SearchStatistics
+         *
+         * @return The String of these SearchStatistics
+         */
+        @Override
+        public String toString () {
+            return "patterns: " + numberOfPatterns_ + ", candidates: " + numberOfCandidates_ +
+                ", visits: " + numberOfVisits_ + ", comparisons: " + numberOfComparisons_;
+        }
+
+        private int numberOfPatterns_; //!< The number of patterns in the corpus
+        private int numberOfCandidates_; //!< The number of patterns sharing a word
+        private int numberOfVisits_; //!< The number of patterns visited
+        private int numberOfComparisons_; //!< The number of patterns whose distance was
+                                          //!< calculated
+
     }
 
     /**
@@ -277,22 +561,7 @@ public class POSDetector implements Detector {
          * @return The Tag object this String maps to
          */
         public static Tags tag (String tagString) {
-            for (Tags tag : Tags.values()) {
-                if (tag.toString().equals(tagString)) {
-                    return tag;
-                }
-            }
-
-            // PRP_DS is a replacement for PRP$ to avoid using the $ (Dollar Symbol).
-            // WP_DS is a replacement for WP$ to avoid using the $ (Dollar Symbol).
-            if (tagString.equals("PRP$")) {
-                return PRP_DS;
-            }
-            else if (tagString.equals("WP$")) {
-                return WP_DS;
-            }
-
-            return UNK;
+            return TAG_MAP.getOrDefault(tagString, UNK);
         }
 
         /**
@@ -309,14 +578,59 @@ public class POSDetector implements Detector {
                 .collect(Collectors.toList());
         }
 
+        /**
+         * @brief Maps an array of String objects to the ordinals of their corresponding Tag
+         *        objects
+         *
+         * @param tagStringArray
+         *     The array of String objects
+         *
+         * @return The ordinals of the corresponding Tag objects
+         */
+        static byte[] toOrdinals (String[] tagStringArray) {
+            byte[] ordinals = new byte[tagStringArray.length];
+
+            for (int i = 0, n = tagStringArray.length; i < n; i++) {
+                ordinals[i] = (byte) tag(tagStringArray[i]).ordinal();
+            }
+
+            return ordinals;
+        }
+
         private final String partOfSpeech_; //!< The part of speech this Tag represents
+
+        private static final Map<String, Tags> TAG_MAP = new HashMap<>(); //!< The Tag of each
+                                                                           //!< tagger String
+
+        static {
+            for (Tags tag : values()) {
+                TAG_MAP.put(tag.toString(), tag);
+            }
+
+            // PRP_DS is a replacement for PRP$ to avoid using the $ (Dollar Symbol).
+            // WP_DS is a replacement for WP$ to avoid using the $ (Dollar Symbol).
+            TAG_MAP.put("PRP$", PRP_DS);
+            TAG_MAP.put("WP$", WP_DS);
+        }
     }
 
-    private Map<List<String>, List<Tags>> corpusMap_; //!< Contains an entry for each sentence in
-                                                      //!< the given corpus. The key is a list with
-                                                      //!< every word in the corpus and the value is
-                                                      //!< a list with the corresponding tags
+    private PatternIndex patternIndex_; //!< Contains an entry for each distinct sentence in the
+                                        //!< given corpus along with its POS pattern
+    private SearchStatistics lastSearchStatistics_; //!< The counters of the last search
 
     private POSTaggerME tagger_; //!< The Apache OpenNLP POS Tagger of this Detector
 
+    private final PatternAligner patternAligner_ = new PatternAligner(); //!< Aligns the patterns
+                                                                         //!< in findErrorWords
+    private int[] errorWordIndices_ = new int[16]; //!< The indices of the error words found by
+                                                   //!< findErrorWords
+
+    private static final int MINIMUM_CHUNK_SIZE = 100; //!< The minimum number of sentences tagged
+                                                       //!< by each parallel task
+
+    private static final int MAGIC = 0x50535054; //!< The first bytes of a tags file ("PSPT")
+    private static final int VERSION = 1; //!< The version of the tags file format
+
+    private static final Logger logger_ = Logger.getLogger(POSDetector.class.getName());
+
 }
@@ -0,0 +1,206 @@
+package org.pasr.postp.detectors;
+
+import org.pasr.postp.detectors.POSDetector.Tags;
+
+import java.util.Arrays;
+
+
+/**
+ * @class PatternAligner
+ * @brief Aligns the POS pattern of a hypothesis to a reference POS pattern along a longest common
+ *        subsequence of their tags
+ *        The patterns are arrays of Tags ordinals, so the alphabet has a few tens of symbols and
+ *        the match bit vector of every tag is kept in a plain array indexed by the ordinal:
+ *        - If the reference has at most 64 tags, the lengths of the longest common subsequences of
+ *          all the suffixes of the patterns are calculated with the bit-parallel algorithm of
+ *          Allison and Dix, one long for each tag of the hypothesis.
+ *        - Otherwise, they are calculated with dynamic programming.
+ *
+ *        Among the longest common subsequences, the one that matches the earliest tags of the
+ *        hypothesis is used, each matched to the earliest possible tag of the reference.
+ *
+ *        The buffers are kept between calls, so once they have grown to the longest patterns,
+ *        aligning does not allocate memory. This class is not thread safe.
+ */
+class PatternAligner {
+
+    /**
+     * @brief Finds the tags of the hypothesis that are not part of the longest common subsequence
+     *
+     * @param reference
+     *     The reference pattern
+     * @param hypothesis
+     *     The hypothesis pattern
+     * @param unmatched
+     *     Receives the indices of the unmatched tags of the hypothesis in increasing order. Must
+     *     have room for every tag of the hypothesis
+     *
+     * @return The number of unmatched tags of the hypothesis
+     */
+    int findUnmatched (byte[] reference, byte[] hypothesis, int[] unmatched) {
+        if (unmatched.length < hypothesis.length) {
+            throw new IllegalArgumentException("unmatched must have room for every tag!");
+        }
+
+        if (reference.length <= Long.SIZE) {
+            return findUnmatchedBitParallel(reference, hypothesis, unmatched);
+        }
+
+        return findUnmatchedDynamic(reference, hypothesis, unmatched);
+    }
+
+    /**
+     * @brief Finds the unmatched tags of the hypothesis with bit vectors
+     *        Bit k of a vector stands for the tag n - 1 - k of the reference, so that the low bits
+     *        hold the suffixes of the reference. After the suffix of the hypothesis that starts at
+     *        j has been processed, the number of zeros in the low n - i bits of the vector is the
+     *        length of the longest common subsequence of the suffixes that start at i and j.
+     *
+     * @param reference
+     *     The reference pattern. Must have at most 64 tags
+     * @param hypothesis
+     *     The hypothesis pattern
+     * @param unmatched
+     *     Receives the indices of the unmatched tags of the hypothesis
+     *
+     * @return The number of unmatched tags of the hypothesis
+     */
+    private int findUnmatchedBitParallel (byte[] reference, byte[] hypothesis, int[] unmatched) {
+        int n = reference.length;
+        int m = hypothesis.length;
+
+        long[] matches = matches_;
+        for (int k = 0; k < n; k++) {
+            matches[reference[n - 1 - k]] |= 1L << k;
+        }
+
+        if (rows_.length < m + 1) {
+            rows_ = new long[Math.max(m + 1, rows_.length * 2)];
+        }
+        long[] rows = rows_;
+
+        // The carries only move towards the high bits, which are never counted
+        long row = - 1L;
+        rows[m] = row;
+        for (int j = m - 1; j >= 0; j--) {
+            long match = row & matches[hypothesis[j]];
+
+            row = (row + match) | (row - match);
+            rows[j] = row;
+        }
+
+        int numberOfUnmatched = 0;
+        int i = 0;
+        for (int j = 0; j < m; j++) {
+            int length = n - i;
+
+            // The first occurrence of the tag in the suffix of the reference is the highest bit
+            long candidates = matches[hypothesis[j]] & getLowBits(length);
+            if (candidates != 0) {
+                int next = n - (Long.SIZE - 1 - Long.numberOfLeadingZeros(candidates));
+
+                if (getLength(rows[j], length) == getLength(rows[j + 1], n - next) + 1) {
+                    i = next;
+                    continue;
+                }
+            }
+
+            unmatched[numberOfUnmatched++] = j;
+        }
+
+        for (int k = 0; k < n; k++) {
+            matches[reference[k]] = 0;
+        }
+
+        return numberOfUnmatched;
+    }
+
+    /**
+     * @brief Returns the length of the longest common subsequence encoded in a bit vector
+     *
+     * @param row
+     *     The bit vector
+     * @param length
+     *     The length of the suffix of the reference
+     *
+     * @return The number of zeros in the low length bits of the vector
+     */
+    private static int getLength (long row, int length) {
+        return length - Long.bitCount(row & getLowBits(length));
+    }
+
+    /**
+     * @brief Returns a long with the given number of low bits set
+     *
+     * @param length
+     *     The number of low bits, between 0 and 64
+     *
+     * @return A long with the given number of low bits set
+     */
+    private static long getLowBits (int length) {
+        return length == Long.SIZE ? - 1L : (1L << length) - 1;
+    }
+
+    /**
+     * @brief Finds the unmatched tags of the hypothesis with dynamic programming
+     *        Entry (i, j) of the table is the length of the longest common subsequence of the
+     *        suffixes of the reference and the hypothesis that start at i and j.
+     *
+     * @param reference
+     *     The reference pattern
+     * @param hypothesis
+     *     The hypothesis pattern
+     * @param unmatched
+     *     Receives the indices of the unmatched tags of the hypothesis
+     *
+     * @return The number of unmatched tags of the hypothesis
+     */
+    private int findUnmatchedDynamic (byte[] reference, byte[] hypothesis, int[] unmatched) {
+        int n = reference.length;
+        int m = hypothesis.length;
+        int width = m + 1;
+
+        int size = (n + 1) * width;
+        if (table_.length < size) {
+            table_ = new int[Math.max(size, table_.length * 2)];
+        }
+        int[] table = table_;
+
+        Arrays.fill(table, n * width, size, 0);
+        for (int i = n - 1; i >= 0; i--) {
+            int row = i * width;
+
+            table[row + m] = 0;
+            for (int j = m - 1; j >= 0; j--) {
+                table[row + j] = reference[i] == hypothesis[j] ?
+                    table[row + width + j + 1] + 1 :
+                    Math.max(table[row + width + j], table[row + j + 1]);
+            }
+        }
+
+        int numberOfUnmatched = 0;
+        int i = 0;
+        for (int j = 0; j < m; j++) {
+            int next = i;
+            while (next < n && reference[next] != hypothesis[j]) {
+                next++;
+            }
+
+            if (next < n && table[i * width + j] == table[(next + 1) * width + j + 1] + 1) {
+                i = next + 1;
+                continue;
+            }
+
+            unmatched[numberOfUnmatched++] = j;
+        }
+
+        return numberOfUnmatched;
+    }
+
+    private final long[] matches_ = new long[Tags.values().length]; //!< The match bit vector of
+                                                                     //!< each tag, zero between
+                                                                     //!< calls
+    private long[] rows_ = new long[16]; //!< The bit vector of each suffix of the hypothesis
+    private int[] table_ = new int[0]; //!< The dynamic programming table
+
+}
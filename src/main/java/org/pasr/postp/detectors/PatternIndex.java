@@ -0,0 +1,473 @@
+package org.pasr.postp.detectors;
+
+import org.pasr.postp.detectors.POSDetector.Tags;
+import org.pasr.utilities.LevenshteinDistance;
+import org.pasr.utilities.SymbolTable;
+
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * @class PatternIndex
+ * @brief Implements an index over the sentences of a corpus and their POS patterns that finds the
+ *        sentence closest to a hypothesis
+ *        The distance of a sentence from the hypothesis is the mean of the Levenshtein Distance of
+ *        their POS patterns and the Levenshtein Distance of their words. Since every match of an
+ *        alignment pairs two equal symbols, the distance of two sequences is at least the length
+ *        of the longer one minus the number of symbols they have in common. With c the number of
+ *        words in common, twice the distance is thus at least 2 * max(n, m) - min(n, m) - c.
+ *
+ *        The number of words each sentence has in common with the hypothesis is counted through
+ *        an inverted index of the words. The sentences are then visited in the order of their
+ *        lower bound and the search stops as soon as the lower bound reaches the best distance
+ *        found so far. The sentences that share no word with the hypothesis are grouped by length
+ *        and are only visited if their common lower bound allows it. Before calculating the
+ *        distances of a sentence, the bound is tightened with the number of tags in common.
+ *
+ *        Sentences are identified by their position in the Lists the index was created from and,
+ *        when two sentences have the same distance, the first one is returned, exactly like a
+ *        linear scan that keeps the first best sentence.
+ *
+ *        This class is not thread safe.
+ */
+class PatternIndex {
+
+    /**
+     * @brief Constructor
+     *
+     * @param sentences
+     *     The words of each sentence
+     * @param patterns
+     *     The POS pattern of each sentence as Tags ordinals. Must have the same size as the
+     *     sentence
+     */
+    PatternIndex (List<List<String>> sentences, List<byte[]> patterns) {
+        int numberOfSentences = sentences.size();
+        if (patterns.size() != numberOfSentences) {
+            throw new IllegalArgumentException("There must be a pattern for each sentence!");
+        }
+
+        SymbolTable wordTable = SymbolTable.getWordTable();
+
+        patterns_ = patterns;
+        words_ = new int[numberOfSentences][];
+        tags_ = new int[numberOfSentences][];
+
+        int maximumLength = 0;
+        for (int i = 0; i < numberOfSentences; i++) {
+            words_[i] = wordTable.getIds(sentences.get(i));
+            tags_[i] = toTagIds(patterns.get(i));
+
+            if (words_[i].length != tags_[i].length) {
+                throw new IllegalArgumentException("A pattern does not match its sentence!");
+            }
+
+            maximumLength = Math.max(maximumLength, words_[i].length);
+        }
+
+        // Group the sentences by length, keeping their order inside each group
+        lengthStarts_ = new int[maximumLength + 2];
+        for (int[] words : words_) {
+            lengthStarts_[words.length + 1]++;
+        }
+        for (int length = 0; length <= maximumLength; length++) {
+            lengthStarts_[length + 1] += lengthStarts_[length];
+        }
+
+        sentencesByLength_ = new int[numberOfSentences];
+        int[] positions = Arrays.copyOf(lengthStarts_, maximumLength + 1);
+        for (int i = 0; i < numberOfSentences; i++) {
+            sentencesByLength_[positions[words_[i].length]++] = i;
+        }
+
+        // Map the words to dense local ids and count the occurrences of each word in each
+        // sentence
+        localIds_ = new int[wordTable.size()];
+        Arrays.fill(localIds_, - 1);
+        int numberOfWords = 0;
+        for (int[] words : words_) {
+            for (int word : words) {
+                if (localIds_[word] == - 1) {
+                    localIds_[word] = numberOfWords++;
+                }
+            }
+        }
+
+        postingStarts_ = new int[numberOfWords + 1];
+        for (int i = 0; i < numberOfSentences; i++) {
+            int[] words = words_[i];
+
+            for (int j = 0, n = words.length; j < n; j++) {
+                if (indexOf(words, words[j]) == j) {
+                    postingStarts_[localIds_[words[j]] + 1]++;
+                }
+            }
+        }
+        for (int word = 0; word < numberOfWords; word++) {
+            postingStarts_[word + 1] += postingStarts_[word];
+        }
+
+        postingSentences_ = new int[postingStarts_[numberOfWords]];
+        postingCounts_ = new int[postingStarts_[numberOfWords]];
+        positions = Arrays.copyOf(postingStarts_, numberOfWords);
+        for (int i = 0; i < numberOfSentences; i++) {
+            int[] words = words_[i];
+
+            for (int j = 0, n = words.length; j < n; j++) {
+                if (indexOf(words, words[j]) == j) {
+                    int position = positions[localIds_[words[j]]]++;
+
+                    postingSentences_[position] = i;
+                    postingCounts_[position] = count(words, words[j]);
+                }
+            }
+        }
+
+        commonWords_ = new int[numberOfSentences];
+        touchedSentences_ = new int[16];
+    }
+
+    /**
+     * @brief Returns the POS pattern of the sentence closest to a hypothesis
+     *
+     * @param words
+     *     The words of the hypothesis
+     * @param pattern
+     *     The POS pattern of the hypothesis as Tags ordinals
+     * @param statistics
+     *     Receives the counters of the search. May be null
+     *
+     * @return The POS pattern of the closest sentence or null if the index is empty
+     */
+    byte[] getBestPattern (List<String> words, byte[] pattern,
+                           POSDetector.SearchStatistics statistics) {
+        int n = words.size();
+
+        int[] tagIds = toTagIds(pattern);
+        int[] wordIds = toWordIds(words);
+
+        // Count the words in common with every sentence that shares at least one word
+        int numberOfTouchedSentences = countCommonWords(wordIds);
+
+        long[] candidates = new long[numberOfTouchedSentences];
+        for (int i = 0; i < numberOfTouchedSentences; i++) {
+            int sentence = touchedSentences_[i];
+
+            int m = words_[sentence].length;
+
+            candidates[i] = ((long) getLowerBound(n, m, commonWords_[sentence], Math.min(n, m))
+                << 32) | sentence;
+        }
+        Arrays.sort(candidates);
+
+        // The lengths of the sentences that share no word, in the order of their lower bound
+        int numberOfLengths = lengthStarts_.length - 1;
+        long[] lengths = new long[numberOfLengths];
+        for (int length = 0; length < numberOfLengths; length++) {
+            lengths[length] = ((long) getLowerBound(n, length, 0, Math.min(n, length)) << 32) |
+                length;
+        }
+        Arrays.sort(lengths);
+
+        Search search = new Search(tagIds, wordIds);
+
+        int candidateIndex = 0;
+        int lengthIndex = 0;
+        while (candidateIndex < candidates.length || lengthIndex < lengths.length) {
+            boolean isCandidate = lengthIndex == lengths.length ||
+                (candidateIndex < candidates.length &&
+                    candidates[candidateIndex] >>> 32 <= lengths[lengthIndex] >>> 32);
+
+            long next = isCandidate ? candidates[candidateIndex++] : lengths[lengthIndex++];
+            int lowerBound = (int) (next >>> 32);
+            int value = (int) next;
+
+            if (lowerBound > search.bestDistance_) {
+                break;
+            }
+
+            if (isCandidate) {
+                search.visit(value, commonWords_[value]);
+            }
+            else {
+                for (int i = lengthStarts_[value], end = lengthStarts_[value + 1]; i < end; i++) {
+                    int sentence = sentencesByLength_[i];
+
+                    // Sentences that share words have been visited as candidates
+                    if (commonWords_[sentence] == 0) {
+                        if (lowerBound == search.bestDistance_ &&
+                            sentence > search.bestSentence_) {
+                            break;
+                        }
+
+                        search.visit(sentence, 0);
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < numberOfTouchedSentences; i++) {
+            commonWords_[touchedSentences_[i]] = 0;
+        }
+
+        if (statistics != null) {
+            statistics.set(words_.length, numberOfTouchedSentences, search.numberOfVisits_,
+                search.numberOfComparisons_);
+        }
+
+        return search.bestSentence_ == - 1 ? null : patterns_.get(search.bestSentence_);
+    }
+
+    /**
+     * @brief Counts the words each sentence has in common with the hypothesis
+     *        The counts are left in commonWords_ and the sentences with a non zero count in
+     *        touchedSentences_.
+     *
+     * @param wordIds
+     *     The ids of the words of the hypothesis
+     *
+     * @return The number of sentences with a non zero count
+     */
+    private int countCommonWords (int[] wordIds) {
+        int numberOfTouchedSentences = 0;
+
+        for (int j = 0, n = wordIds.length; j < n; j++) {
+            int word = wordIds[j];
+
+            if (word < 0 || indexOf(wordIds, word) != j) {
+                continue;
+            }
+
+            int count = count(wordIds, word);
+
+            int localId = localIds_[word];
+            for (int i = postingStarts_[localId], end = postingStarts_[localId + 1]; i < end;
+                 i++) {
+                int sentence = postingSentences_[i];
+
+                if (commonWords_[sentence] == 0) {
+                    if (numberOfTouchedSentences == touchedSentences_.length) {
+                        touchedSentences_ = Arrays.copyOf(
+                            touchedSentences_, numberOfTouchedSentences * 2
+                        );
+                    }
+                    touchedSentences_[numberOfTouchedSentences++] = sentence;
+                }
+
+                commonWords_[sentence] += Math.min(count, postingCounts_[i]);
+            }
+        }
+
+        return numberOfTouchedSentences;
+    }
+
+    /**
+     * @brief Returns a lower bound of twice the distance of a sentence from the hypothesis
+     *
+     * @param n
+     *     The length of the hypothesis
+     * @param m
+     *     The length of the sentence
+     * @param commonWords
+     *     The number of words in common
+     * @param commonTags
+     *     The number of tags in common or min(n, m) if not known
+     *
+     * @return The lower bound
+     */
+    private static int getLowerBound (int n, int m, int commonWords, int commonTags) {
+        return 2 * Math.max(n, m) - commonTags - commonWords;
+    }
+
+    /**
+     * @brief Maps the words of the hypothesis to ids
+     *        Words that are not in the corpus get negative ids that match nothing.
+     *
+     * @param words
+     *     The words of the hypothesis
+     *
+     * @return The ids of the words
+     */
+    private int[] toWordIds (List<String> words) {
+        SymbolTable wordTable = SymbolTable.getWordTable();
+
+        int[] wordIds = new int[words.size()];
+        for (int i = 0, n = wordIds.length; i < n; i++) {
+            int id = wordTable.getIdIfPresent(words.get(i));
+
+            wordIds[i] = id >= 0 && id < localIds_.length && localIds_[id] != - 1 ?
+                id : - 1 - i;
+        }
+
+        return wordIds;
+    }
+
+    /**
+     * @brief Widens the Tags ordinals of a POS pattern to ints
+     *
+     * @param pattern
+     *     The Tags ordinals of the POS pattern
+     *
+     * @return The Tags ordinals as ints
+     */
+    private static int[] toTagIds (byte[] pattern) {
+        int[] tagIds = new int[pattern.length];
+
+        for (int i = 0, n = pattern.length; i < n; i++) {
+            tagIds[i] = pattern[i];
+        }
+
+        return tagIds;
+    }
+
+    /**
+     * @brief Returns the index of the first occurrence of a value inside an array
+     *
+     * @param array
+     *     The array
+     * @param value
+     *     The value
+     *
+     * @return The index of the first occurrence or - 1 if the value is not found
+     */
+    private static int indexOf (int[] array, int value) {
+        for (int i = 0, n = array.length; i < n; i++) {
+            if (array[i] == value) {
+                return i;
+            }
+        }
+
+        return - 1;
+    }
+
+    /**
+     * @brief Returns the number of occurrences of a value inside an array
+     *
+     * @param array
+     *     The array
+     * @param value
+     *     The value
+     *
+     * @return The number of occurrences
+     */
+    private static int count (int[] array, int value) {
+        int count = 0;
+        for (int item : array) {
+            if (item == value) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * @class Search
+     * @brief Holds the state of a search for the sentence closest to a hypothesis
+     */
+    private final class Search {
+
+        /**
+         * @brief Constructor
+         *
+         * @param tagIds
+         *     The tag ordinals of the hypothesis
+         * @param wordIds
+         *     The word ids of the hypothesis
+         */
+        Search (int[] tagIds, int[] wordIds) {
+            tagIds_ = tagIds;
+            wordIds_ = wordIds;
+
+            tagCounts_ = new int[Tags.values().length];
+            sentenceTagCounts_ = new int[tagCounts_.length];
+            for (int tag : tagIds) {
+                tagCounts_[tag]++;
+            }
+        }
+
+        /**
+         * @brief Visits a sentence, keeping it if it is closer than the best sentence so far
+         *
+         * @param sentence
+         *     The sentence
+         * @param commonWords
+         *     The number of words the sentence has in common with the hypothesis
+         */
+        void visit (int sentence, int commonWords) {
+            numberOfVisits_++;
+
+            int[] tags = tags_[sentence];
+
+            // A sentence ranks before the best one if it is closer or as close but first
+            int maxDistance = sentence < bestSentence_ ? bestDistance_ : bestDistance_ - 1;
+
+            int commonTags = 0;
+            for (int tag : tags) {
+                if (++ sentenceTagCounts_[tag] <= tagCounts_[tag]) {
+                    commonTags++;
+                }
+            }
+            for (int tag : tags) {
+                sentenceTagCounts_[tag] = 0;
+            }
+
+            if (getLowerBound(tagIds_.length, tags.length, commonWords, commonTags) >
+                maxDistance) {
+                return;
+            }
+
+            numberOfComparisons_++;
+
+            int tagDistance = LevenshteinDistance.getDistance(tagIds_, tags, maxDistance);
+            if (tagDistance > maxDistance) {
+                return;
+            }
+
+            int wordDistance = LevenshteinDistance.getDistance(
+                wordIds_, words_[sentence], maxDistance - tagDistance
+            );
+            if (tagDistance + wordDistance > maxDistance) {
+                return;
+            }
+
+            bestDistance_ = tagDistance + wordDistance;
+            bestSentence_ = sentence;
+        }
+
+        private final int[] tagIds_; //!< The tag ordinals of the hypothesis
+        private final int[] wordIds_; //!< The word ids of the hypothesis
+        private final int[] tagCounts_; //!< The number of occurrences of each tag in the
+                                        //!< hypothesis
+        private final int[] sentenceTagCounts_; //!< The number of occurrences of each tag in
+                                                //!< the visited sentence, zero between visits
+
+        private int bestDistance_ = Integer.MAX_VALUE - 1; //!< Twice the distance of the best
+                                                           //!< sentence so far
+        private int bestSentence_ = - 1; //!< The best sentence so far or - 1
+
+        private int numberOfVisits_ = 0; //!< The number of sentences visited
+        private int numberOfComparisons_ = 0; //!< The number of sentences whose distances were
+                                              //!< calculated
+
+    }
+
+    private final List<byte[]> patterns_; //!< The POS pattern of each sentence
+    private final int[][] words_; //!< The word ids of each sentence
+    private final int[][] tags_; //!< The tag ordinals of each sentence
+
+    private final int[] lengthStarts_; //!< The start of each length inside sentencesByLength_
+                                       //!< followed by the number of sentences
+    private final int[] sentencesByLength_; //!< The sentences sorted by length and position
+
+    private final int[] localIds_; //!< The local id of each word id or - 1
+    private final int[] postingStarts_; //!< The start of the postings of each local word id
+    private final int[] postingSentences_; //!< The sentences of the postings
+    private final int[] postingCounts_; //!< The occurrences of the word in each posting sentence
+
+    private final int[] commonWords_; //!< The words each sentence has in common with the current
+                                      //!< hypothesis, zero outside of a search
+    private int[] touchedSentences_; //!< The sentences with a non zero commonWords_ entry
+
+}
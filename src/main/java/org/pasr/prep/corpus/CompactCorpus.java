@@ -0,0 +1,366 @@
+package org.pasr.prep.corpus;
+
+import org.pasr.utilities.SymbolTable;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+
+/**
+ * @class CompactCorpus
+ * @brief Implements an append-only List of WordSequence objects stored in a few arrays
+ *        The words of all the sentences are kept as ids of SymbolTable.getWordTable() in a single
+ *        int array, along with the offset of each sentence inside it and the index of the document
+ *        of each sentence. The id and the title of a document are kept once for all of its
+ *        consecutive sentences. A Corpus of a million words keeps a Word, a String and an
+ *        ArrayList slot for every word, while a CompactCorpus keeps 4 bytes plus the shared
+ *        vocabulary.
+ *
+ *        The WordSequence objects are created on demand by get and are not kept, so changing them
+ *        does not change this CompactCorpus. Use toCorpus to get an editable Corpus.
+ */
+public class CompactCorpus extends AbstractList<WordSequence> implements RandomAccess {
+
+    /**
+     * @brief Default Constructor
+     */
+    public CompactCorpus () {
+        this(null);
+    }
+
+    /**
+     * @brief Constructor
+     *
+     * @param wordSequenceList
+     *     The initial List of WordSequence objects for this CompactCorpus
+     */
+    public CompactCorpus (List<WordSequence> wordSequenceList) {
+        if (wordSequenceList != null) {
+            addAll(wordSequenceList);
+        }
+    }
+
+    /**
+     * @brief Appends a WordSequence to the end of this CompactCorpus
+     *
+     * @param wordSequence
+     *     The WordSequence to append
+     *
+     * @return True
+     */
+    @Override
+    public boolean add (WordSequence wordSequence) {
+        SymbolTable wordTable = SymbolTable.getWordTable();
+
+        int size = wordSequence.size();
+        if (numberOfWords_ + size > wordIds_.length) {
+            wordIds_ = Arrays.copyOf(
+                wordIds_, Math.max(numberOfWords_ + size, wordIds_.length * 2)
+            );
+        }
+        for (Word word : wordSequence) {
+            wordIds_[numberOfWords_++] = wordTable.getId(word.toString());
+        }
+
+        if (numberOfSentences_ + 1 == sentenceStarts_.length) {
+            sentenceStarts_ = Arrays.copyOf(sentenceStarts_, sentenceStarts_.length * 2);
+            sentenceDocuments_ = Arrays.copyOf(sentenceDocuments_, sentenceDocuments_.length * 2);
+        }
+        sentenceDocuments_[numberOfSentences_] = getDocumentIndex(
+            wordSequence.getDocumentId(), wordSequence.getDocumentTitle()
+        );
+        numberOfSentences_++;
+        sentenceStarts_[numberOfSentences_] = numberOfWords_;
+
+        modCount++;
+
+        return true;
+    }
+
+    /**
+     * @brief Returns the index of a document, adding the document if it is not the last one
+     *
+     * @param documentId
+     *     The id of the document
+     * @param documentTitle
+     *     The title of the document
+     *
+     * @return The index of the document
+     */
+    private int getDocumentIndex (long documentId, String documentTitle) {
+        int last = numberOfDocuments_ - 1;
+        if (last >= 0 && documentIds_[last] == documentId &&
+            Objects.equals(documentTitles_[last], documentTitle)) {
+            return last;
+        }
+
+        if (numberOfDocuments_ == documentIds_.length) {
+            documentIds_ = Arrays.copyOf(documentIds_, documentIds_.length * 2);
+            documentTitles_ = Arrays.copyOf(documentTitles_, documentTitles_.length * 2);
+        }
+        documentIds_[numberOfDocuments_] = documentId;
+        documentTitles_[numberOfDocuments_] = documentTitle;
+
+        return numberOfDocuments_++;
+    }
+
+    /**
+     * @brief Returns a WordSequence of this CompactCorpus
+     *        A new WordSequence is created on every call.
+     *
+     * @param index
+     *     The index of the WordSequence
+     *
+     * @return The WordSequence with the given index
+     */
+    @Override
+    public WordSequence get (int index) {
+        checkIndex(index);
+
+        int document = sentenceDocuments_[index];
+
+        return new WordSequence(wordIds_, sentenceStarts_[index], sentenceStarts_[index + 1],
+            documentIds_[document], documentTitles_[document]);
+    }
+
+    /**
+     * @brief Returns the number of WordSequence objects inside this CompactCorpus
+     *
+     * @return The number of WordSequence objects inside this CompactCorpus
+     */
+    @Override
+    public int size () {
+        return numberOfSentences_;
+    }
+
+    /**
+     * @brief Returns the number of words inside all the WordSequence objects of this CompactCorpus
+     *
+     * @return The number of words inside all the WordSequence objects of this CompactCorpus
+     */
+    public int getNumberOfWords () {
+        return numberOfWords_;
+    }
+
+    /**
+     * @brief Returns the number of words of a WordSequence
+     *
+     * @param index
+     *     The index of the WordSequence
+     *
+     * @return The number of words of the WordSequence
+     */
+    public int getSentenceSize (int index) {
+        checkIndex(index);
+
+        return sentenceStarts_[index + 1] - sentenceStarts_[index];
+    }
+
+    /**
+     * @brief Returns the id of a word of a WordSequence
+     *        The ids are those of SymbolTable.getWordTable(), as in WordSequence.getWordIds.
+     *
+     * @param index
+     *     The index of the WordSequence
+     * @param wordIndex
+     *     The index of the word inside the WordSequence
+     *
+     * @return The id of the word
+     */
+    public int getWordId (int index, int wordIndex) {
+        if (wordIndex < 0 || wordIndex >= getSentenceSize(index)) {
+            throw new IndexOutOfBoundsException("Word index: " + wordIndex);
+        }
+
+        return wordIds_[sentenceStarts_[index] + wordIndex];
+    }
+
+    /**
+     * @brief Returns the ids of the words of a WordSequence
+     *        The ids are those of SymbolTable.getWordTable(), as in WordSequence.getWordIds.
+     *
+     * @param index
+     *     The index of the WordSequence
+     *
+     * @return A copy of the ids of the words of the WordSequence
+     */
+    public int[] getWordIds (int index) {
+        checkIndex(index);
+
+        return Arrays.copyOfRange(wordIds_, sentenceStarts_[index], sentenceStarts_[index + 1]);
+    }
+
+    /**
+     * @brief Returns the id of the Document of a WordSequence
+     *
+     * @param index
+     *     The index of the WordSequence
+     *
+     * @return The id of the Document of the WordSequence
+     */
+    public long getDocumentId (int index) {
+        checkIndex(index);
+
+        return documentIds_[sentenceDocuments_[index]];
+    }
+
+    /**
+     * @brief Returns the title of the Document of a WordSequence
+     *
+     * @param index
+     *     The index of the WordSequence
+     *
+     * @return The title of the Document of the WordSequence
+     */
+    public String getDocumentTitle (int index) {
+        checkIndex(index);
+
+        return documentTitles_[sentenceDocuments_[index]];
+    }
+
+    /**
+     * @brief Returns true if the given phrase appears inside any WordSequence of this
+     *        CompactCorpus
+     *        The phrase is matched on whole words using the SuffixArray of this CompactCorpus. A phrase
+     *        without words appears inside every WordSequence, as with WordSequence.contains.
+     *
+     * @param string
+     *     The phrase
+     *
+     * @return True if the given phrase appears inside any WordSequence of this CompactCorpus
+     */
+    public boolean contains (String string) {
+        List<String> phrase = new WordSequence(string).getWordTextList();
+
+        if (phrase.isEmpty()) {
+            return ! isEmpty();
+        }
+
+        return getSuffixArray().contains(phrase);
+    }
+
+    /**
+     * @brief Returns the number of occurrences of the given phrase inside this CompactCorpus
+     *
+     * @param string
+     *     The phrase
+     *
+     * @return The number of occurrences of the given phrase inside this CompactCorpus
+     */
+    public int count (String string) {
+        return getSuffixArray().count(new WordSequence(string).getWordTextList());
+    }
+
+    /**
+     * @brief Returns the occurrences of the given phrase inside this CompactCorpus
+     *
+     * @param string
+     *     The phrase
+     *
+     * @return The occurrences of the given phrase sorted by WordSequence and position
+     */
+    public List<CorpusIndex.Span> getOccurrences (String string) {
+        return getSuffixArray().getOccurrences(new WordSequence(string).getWordTextList());
+    }
+
+    /**
+     * @brief Returns the SuffixArray of this CompactCorpus
+     *        The SuffixArray is built on the first call and built again after WordSequence objects
+     *        have been added.
+     *
+     * @return The SuffixArray of this CompactCorpus
+     */
+    public SuffixArray getSuffixArray () {
+        if (suffixArray_ == null || suffixArrayModCount_ != modCount) {
+            suffixArray_ = new SuffixArray(this);
+            suffixArrayModCount_ = modCount;
+        }
+
+        return suffixArray_;
+    }
+
+    /**
+     * @brief Sets the SuffixArray of this CompactCorpus
+     *        Used to avoid building the SuffixArray again when it has been saved along with this
+     *        CompactCorpus.
+     *
+     * @param suffixArray
+     *     The SuffixArray of the current WordSequence objects of this CompactCorpus
+     *
+     * @throws IllegalArgumentException If the SuffixArray does not have the sentences and words of
+     *                                  this CompactCorpus
+     */
+    public void setSuffixArray (SuffixArray suffixArray) {
+        if (suffixArray.getNumberOfSentences() != numberOfSentences_ ||
+            suffixArray.getNumberOfWords() != numberOfWords_) {
+            throw new IllegalArgumentException("The suffix array does not match this corpus.");
+        }
+
+        suffixArray_ = suffixArray;
+        suffixArrayModCount_ = modCount;
+    }
+
+    /**
+     * @brief Releases the unused capacity of the arrays of this CompactCorpus
+     */
+    public void trimToSize () {
+        wordIds_ = Arrays.copyOf(wordIds_, numberOfWords_);
+        sentenceStarts_ = Arrays.copyOf(sentenceStarts_, numberOfSentences_ + 1);
+        sentenceDocuments_ = Arrays.copyOf(sentenceDocuments_, numberOfSentences_ + 1);
+        documentIds_ = Arrays.copyOf(documentIds_, Math.max(1, numberOfDocuments_));
+        documentTitles_ = Arrays.copyOf(documentTitles_, Math.max(1, numberOfDocuments_));
+    }
+
+    /**
+     * @brief Returns a Corpus with the WordSequence objects of this CompactCorpus
+     *        The SuffixArray of this CompactCorpus, if it has been built, is shared with the
+     *        Corpus.
+     *
+     * @return A new Corpus with the WordSequence objects of this CompactCorpus
+     */
+    public Corpus toCorpus () {
+        Corpus corpus = new Corpus(this);
+
+        if (suffixArray_ != null && suffixArrayModCount_ == modCount) {
+            corpus.setSuffixArray(suffixArray_);
+        }
+
+        return corpus;
+    }
+
+    /**
+     * @brief Checks the index of a WordSequence
+     *
+     * @param index
+     *     The index of the WordSequence
+     *
+     * @throws IndexOutOfBoundsException If there is no WordSequence with the given index
+     */
+    private void checkIndex (int index) {
+        if (index < 0 || index >= numberOfSentences_) {
+            throw new IndexOutOfBoundsException(
+                "Index: " + index + ", Size: " + numberOfSentences_
+            );
+        }
+    }
+
+    private int[] wordIds_ = new int[16]; //!< The word ids of all the sentences
+    private int numberOfWords_ = 0; //!< The number of words of all the sentences
+
+    private int[] sentenceStarts_ = new int[16]; //!< The index of the first word of each sentence
+                                                 //!< inside wordIds_ followed by numberOfWords_
+    private int[] sentenceDocuments_ = new int[16]; //!< The document index of each sentence
+    private int numberOfSentences_ = 0; //!< The number of sentences
+
+    private long[] documentIds_ = new long[4]; //!< The id of each document
+    private String[] documentTitles_ = new String[4]; //!< The title of each document
+    private int numberOfDocuments_ = 0; //!< The number of documents
+
+    private SuffixArray suffixArray_ = null; //!< The SuffixArray of this CompactCorpus
+    private int suffixArrayModCount_; //!< The modCount of this CompactCorpus when suffixArray_
+                                      //!< was built
+
+}
@@ -1,12 +1,11 @@
 package org.pasr.prep.corpus;
 
 import org.pasr.asr.dictionary.Dictionary;
-import org.pasr.utilities.NumberSpeller;
 
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 
 /**
@@ -80,20 +79,16 @@ public class Corpus extends ArrayList<WordSequence> {
     }
 
     /**
-     * @brief Returns a Set of the unique Word objects inside this Corpus
+     * @brief Returns the unique words inside this Corpus
      *
-     * @return A Set of the unique Word objects inside this Corpus
+     * @return The unique words inside this Corpus sorted alphabetically
      */
-    private Set<String> getUniqueWords () {
-        HashSet<String> uniqueWords = new HashSet<>();
-
-        for (WordSequence wordSequence : this) {
-            uniqueWords.addAll(wordSequence.stream()
-                .map(Word:: toString)
-                .collect(Collectors.toSet()));
-        }
-
-        return uniqueWords;
+    private List<String> getUniqueWords () {
+        return parallelStream()
+            .flatMap(wordSequence -> wordSequence.getWordTextList().stream())
+            .distinct()
+            .sorted()
+            .collect(Collectors.toList());
     }
 
     /**
@@ -101,58 +96,90 @@ public class Corpus extends ArrayList<WordSequence> {
      *        The reduced Dictionary will contain only the Word objects that this Corpus contains.
      *        The progress of this process can be monitored using this Corpus Progress
      *
+     *        The documents are turned into WordSequence objects in parallel and the WordSequence
+     *        objects are added to this Corpus in the order of the documents. The entries of the
+     *        unique words are then looked up in parallel and put on the reduced Dictionary in
+     *        alphabetical order. Progress is reported about PROGRESS_UPDATES times for each stage.
+     *
      * @param dictionary
-     *     The Dictionary to process
+     *     The Dictionary to process. It must not be modified while it is processed
      *
-     * @return The reduced Dictionary
+     * @return The reduced Dictionary or an empty Dictionary if the process was canceled while the
+     *         documents were processed
      */
     public Dictionary process (Dictionary dictionary) {
         cancelProcess_ = false;
+        progressValue_ = 0;
 
-        if (documentList_ != null && documentList_.size() > 0) {
-            for (int i = 0, n = documentList_.size(); i < n; i++) {
-                if (cancelProcess_) {
-                    return new Dictionary();
-                }
+        List<Document> documentList = documentList_;
+        if (documentList != null && documentList.size() > 0) {
+            int n = documentList.size();
+            AtomicInteger processedDocuments = new AtomicInteger();
+
+            List<List<WordSequence>> wordSequenceLists = IntStream.range(0, n).parallel()
+                .mapToObj(i -> {
+                    if (cancelProcess_) {
+                        return Collections.<WordSequence>emptyList();
+                    }
+
+                    Document document = documentList.get(i);
+                    List<WordSequence> wordSequences = createWordSequences(
+                        document.getContent(), document.getId(), document.getTitle()
+                    );
 
-                String processedContent = processNumbers(documentList_.get(i).getContent());
-                addAll(createWordSequences(
-                    processedContent, documentList_.get(i).getId(), documentList_.get(i).getTitle())
-                );
+                    updateProgress(processedDocuments.incrementAndGet(), n, 0);
+
+                    return wordSequences;
+                })
+                .collect(Collectors.toList());
+
+            if (cancelProcess_) {
+                return new Dictionary();
+            }
 
-                progress_.setValue(((double) (i + 1)) / (2 * n));
+            for (List<WordSequence> wordSequences : wordSequenceLists) {
+                addAll(wordSequences);
             }
         }
         else {
-            progress_.setValue(0.50);
+            setProgress(0.50);
         }
 
-        Dictionary reducedDictionary = new Dictionary();
-
-        Set<String> uniqueWords = getUniqueWords();
+        List<String> uniqueWords = getUniqueWords();
         int n = uniqueWords.size();
-        int i = 0;
+        AtomicInteger processedWords = new AtomicInteger();
+
+        // There is no need to check if the dictionary contains as key uniqueword(i) because in
+        // order to contain such key, it has to also contain uniqueword as key. Null entries mark
+        // the unknown words.
+        List<Map<String, String>> entriesList = uniqueWords.parallelStream()
+            .map(uniqueWord -> {
+                if (cancelProcess_) {
+                    return null;
+                }
+
+                Map<String, String> entries = dictionary.getEntriesByKey(uniqueWord);
+
+                updateProgress(processedWords.incrementAndGet(), n, 0.5);
 
-        for (String uniqueWord : uniqueWords) {
+                return entries;
+            })
+            .collect(Collectors.toList());
+
+        Dictionary reducedDictionary = new Dictionary(n);
+
+        for (int i = 0; i < n; i++) {
             if (cancelProcess_) {
                 return reducedDictionary;
             }
 
-            // There is no need to check if the dictionary contains as key
-            // uniqueword(i) because in order to contain such key, it has
-            // to also contain uniqueword as key.
-            if (! dictionary.containsKey(uniqueWord)) {
-                reducedDictionary.addUnknownWord(uniqueWord);
+            Map<String, String> entries = entriesList.get(i);
+            if (entries == null) {
+                reducedDictionary.addUnknownWord(uniqueWords.get(i));
             }
             else {
-                Map<String, String> entries = dictionary.getEntriesByKey(uniqueWord);
-                if (entries != null) {
-                    reducedDictionary.putAll(entries);
-                }
+                reducedDictionary.putAll(entries);
             }
-
-            i++;
-            progress_.setValue(0.5 + ((double) (i + 1)) / (2 * n));
         }
 
         // Release the documents resources
@@ -162,85 +189,53 @@ public class Corpus extends ArrayList<WordSequence> {
     }
 
     /**
-     * @brief Cancels the processing of a Dictionary
+     * @brief Reports the progress of a stage of process
+     *        Only every (total / PROGRESS_UPDATES)-th item and the last one are reported.
+     *
+     * @param processed
+     *     The number of processed items of the stage
+     * @param total
+     *     The number of items of the stage
+     * @param start
+     *     The progress at the start of the stage. Each stage covers half of the progress
      */
-    public void cancelProcess () {
-        cancelProcess_ = true;
+    private void updateProgress (int processed, int total, double start) {
+        int batchSize = Math.max(1, total / PROGRESS_UPDATES);
+
+        if (processed % batchSize == 0 || processed == total) {
+            setProgress(start + ((double) processed) / (2 * total));
+        }
     }
 
     /**
-     * @brief Replaces any number inside this Corpus with its literal representation
-     *        There are two ways that a number is pronounced. The first is for dates (e.g. 1942 ->
-     *        nineteen forty two) and the second is for amounts (e.g. 1942 dollars -> one thousand
-     *        nine hundred forty two dollars).
+     * @brief Sets the value of the Progress of this Corpus
+     *        The items are processed in parallel, so a value that is not larger than the last one
+     *        is ignored.
+     *
+     * @param value
+     *     The new value
      */
-    private String processNumbers (String document) {
-        NumberSpeller speller = NumberSpeller.getInstance();
-
-        ArrayList<String> matches = new ArrayList<>();
-
-        Matcher matcher = Pattern.compile("([0-9]+) dollars").matcher(document);
-        while (matcher.find()) {
-            matches.add(matcher.group(1));
-        }
-        // Sort the matches by descending length so that longer numbers get spelled first. If the
-        // matches are sorted by ascending length, then a long number, say 1942 will be spelled as
-        // one nine four two instead of nineteen forty two.
-        Collections.sort(matches, (s1, s2) -> s2.length() - s1.length());
-        for (String match : matches) {
-            String spelled;
-            try {
-                spelled = speller.spell(Integer.valueOf(match));
-            } catch (NumberFormatException e) {
-                // TODO In the future, when name-entity recognition is embedded, {number} will
-                // TODO accept any number.
-                spelled = "number";
-            }
-            document = document.replaceAll(spelled + " dollars", " " + spelled + " dollars ");
-        }
-        matches.clear();
-
-        matcher = Pattern.compile("([0-9]+)\\$").matcher(document);
-        while (matcher.find()) {
-            matches.add(matcher.group(1));
-        }
-        Collections.sort(matches, (s1, s2) -> s2.length() - s1.length());
-        for (String match : matches) {
-            String spelled;
-            try {
-                spelled = speller.spell(Integer.valueOf(match));
-            } catch (NumberFormatException e) {
-                // TODO In the future, when name-entity recognition is embedded, {number} will
-                // TODO accept any number.
-                spelled = "number";
+    private void setProgress (double value) {
+        synchronized (progress_) {
+            if (value > progressValue_) {
+                progressValue_ = value;
+                progress_.setValue(value);
             }
-            document = document.replaceAll(match + "\\$", " " + spelled + " dollars ");
-        }
-        matches.clear();
-
-        matcher = Pattern.compile("([0-9]+)").matcher(document);
-        while (matcher.find()) {
-            matches.add(matcher.group(1));
-        }
-        Collections.sort(matches, (s1, s2) -> s2.length() - s1.length());
-        for (String match : matches) {
-            String spelled;
-            try {
-                spelled = speller.spell(Integer.valueOf(match), NumberSpeller.Types.NORMAL);
-            } catch (NumberFormatException e) {
-                // TODO In the future, when name-entity recognition is embedded, {number} will
-                // TODO accept any number.
-                spelled = "number";
-            }
-            document = document.replaceAll(match, " " + spelled + " ");
         }
+    }
 
-        return document;
+    /**
+     * @brief Cancels the processing of a Dictionary
+     */
+    public void cancelProcess () {
+        cancelProcess_ = true;
     }
 
     /**
      * @brief Creates WordSequence objects from a given Document
-     *        WordSequence objects are created by the sentences extracted from the give Document
+     *        WordSequence objects are created by the sentences extracted from the give Document by
+     *        a TextNormalizer. Long sentences are split into WordSequence objects of up to ten
+     *        words.
      *
      * @param document
      *     The String of the Document to create the WordSequence objects from
@@ -251,60 +246,39 @@ public class Corpus extends ArrayList<WordSequence> {
      *
      * @return A List of WordSequence objects created from the given Document
      */
-    private List<WordSequence> createWordSequences (String document, long documentID,
-                                                    String documentTitle) {
-        document = document.
-            // From https://docs.oracle.com/javase/8/docs/api/java/util/regex/Pattern.html
-            //  \p{Graph}  A visible character: [\p{Alnum}\p{Punct}]
-            //    \p{Alnum}  An alphanumeric character:[\p{Alpha}\p{Digit}]
-            //      \p{Alpha}  An alphabetic character:[\p{Lower}\p{Upper}]
-            //        \p{Lower}  A lower-case alphabetic character: [a-z]
-            //        \p{Upper}  An upper-case alphabetic character:[A-Z]
-            //      \p{Digit}  A decimal digit: [0-9]
-            //    \p{Punct} 	Punctuation: One of !"#$%&'()*+,-./:;<=>?@[\]^_`{|}~
-                replaceAll("[^\\p{Graph}]", " ").
-                replaceAll("[_\\-,:/\"<>|#@\\\\=+~*\\{}$%&`^]+", " ").
-                replaceAll("[\\(\\[]", " ").
-                replaceAll("[\\)\\]]", " . ").
-                replaceAll("[!?;]", ".").
-                replaceAll(" +", " ").
-                toLowerCase();
-
-        String[] wordSequenceTextArray = document.split(" ?\\. ?");
-
+    static List<WordSequence> createWordSequences (String document, long documentID,
+                                                   String documentTitle) {
         ArrayList<WordSequence> wordSequences = new ArrayList<>();
-        for (String wordSequenceText : wordSequenceTextArray) {
-            if (! wordSequenceText.isEmpty()) {
-                //noinspection MismatchedQueryAndUpdateOfCollection
-                WordSequence currentWordSequence = new WordSequence(
-                    wordSequenceText, documentID, documentTitle
-                );
-
-                int size = currentWordSequence.size();
-                if (size <= 10) {
-                    wordSequences.add(currentWordSequence);
-                }
-                else if (size <= 15) {
-                    int half = size / 2;
-                    wordSequences.add(currentWordSequence.subSequence(0, half));
-                    wordSequences.add(currentWordSequence.subSequence(half, size));
+        for (String wordSequenceText : TextNormalizer.getSentences(document)) {
+            //noinspection MismatchedQueryAndUpdateOfCollection
+            WordSequence currentWordSequence = new WordSequence(
+                wordSequenceText, documentID, documentTitle
+            );
+
+            int size = currentWordSequence.size();
+            if (size <= 10) {
+                wordSequences.add(currentWordSequence);
+            }
+            else if (size <= 15) {
+                int half = size / 2;
+                wordSequences.add(currentWordSequence.subSequence(0, half));
+                wordSequences.add(currentWordSequence.subSequence(half, size));
+            }
+            else {
+                int remainder = size % 10;
+                if (remainder > 0 && remainder <= 5) {
+                    wordSequences.add(currentWordSequence.subSequence(size - 6, size));
+                    size -= 6;
                 }
-                else {
-                    int remainder = size % 10;
-                    if (remainder > 0 && remainder <= 5) {
-                        wordSequences.add(currentWordSequence.subSequence(size - 6, size));
-                        size -= 6;
-                    }
 
-                    // Note that size is int so, if size == 99 then size / 10 * 10 = 90
-                    int n = size / 10 * 10;
-                    for (int i = 0; i < n; i += 10) {
-                        wordSequences.add(currentWordSequence.subSequence(i, i + 10));
-                    }
+                // Note that size is int so, if size == 99 then size / 10 * 10 = 90
+                int n = size / 10 * 10;
+                for (int i = 0; i < n; i += 10) {
+                    wordSequences.add(currentWordSequence.subSequence(i, i + 10));
+                }
 
-                    if (n < size) {
-                        wordSequences.add(currentWordSequence.subSequence(n, size));
-                    }
+                if (n < size) {
+                    wordSequences.add(currentWordSequence.subSequence(n, size));
                 }
             }
         }
@@ -367,14 +341,107 @@ public class Corpus extends ArrayList<WordSequence> {
         return toString().replaceAll("\\.", "\n");
     }
 
+    /**
+     * @brief Returns true if the given phrase appears inside any WordSequence of this Corpus
+     *        The phrase is matched on whole words using the SuffixArray of this Corpus. A phrase
+     *        without words appears inside every WordSequence, as with WordSequence.contains.
+     *
+     * @param string
+     *     The phrase
+     *
+     * @return True if the given phrase appears inside any WordSequence of this Corpus
+     */
     public boolean contains (String string) {
-        for (WordSequence wordSequence : this) {
-            if (wordSequence.contains(string)) {
-                return true;
-            }
+        List<String> phrase = new WordSequence(string).getWordTextList();
+
+        if (phrase.isEmpty()) {
+            return ! isEmpty();
         }
 
-        return false;
+        return getSuffixArray().contains(phrase);
+    }
+
+    /**
+     * @brief Returns the number of occurrences of the given phrase inside this Corpus
+     *
+     * @param string
+     *     The phrase
+     *
+     * @return The number of occurrences of the given phrase inside this Corpus
+     */
+    public int count (String string) {
+        return getSuffixArray().count(new WordSequence(string).getWordTextList());
+    }
+
+    /**
+     * @brief Returns the occurrences of the given phrase inside this Corpus
+     *
+     * @param string
+     *     The phrase
+     *
+     * @return The occurrences of the given phrase sorted by WordSequence and position
+     */
+    public List<CorpusIndex.Span> getOccurrences (String string) {
+        return getSuffixArray().getOccurrences(new WordSequence(string).getWordTextList());
+    }
+
+    /**
+     * @brief Returns the SuffixArray of this Corpus
+     *        The SuffixArray is built on the first call and built again after this Corpus has been
+     *        changed. The WordSequence objects of this Corpus must not be changed in place other
+     *        than through replaceWordText and removeWordByText.
+     *
+     * @return The SuffixArray of this Corpus
+     */
+    public SuffixArray getSuffixArray () {
+        if (suffixArray_ == null || suffixArrayModCount_ != modCount) {
+            suffixArray_ = new SuffixArray(this);
+            suffixArrayModCount_ = modCount;
+        }
+
+        return suffixArray_;
+    }
+
+    /**
+     * @brief Sets the SuffixArray of this Corpus
+     *        Used to avoid building the SuffixArray again when it has been saved along with this
+     *        Corpus.
+     *
+     * @param suffixArray
+     *     The SuffixArray of the current WordSequence objects of this Corpus
+     *
+     * @throws IllegalArgumentException If the SuffixArray does not have the sentences and words of
+     *                                  this Corpus
+     */
+    public void setSuffixArray (SuffixArray suffixArray) {
+        if (suffixArray.getNumberOfSentences() != size() ||
+            suffixArray.getNumberOfWords() != stream().mapToInt(WordSequence:: size).sum()) {
+            throw new IllegalArgumentException("The suffix array does not match this corpus.");
+        }
+
+        suffixArray_ = suffixArray;
+        suffixArrayModCount_ = modCount;
+    }
+
+    /**
+     * @brief Replaces the WordSequence at the given position of this Corpus
+     *        ArrayList.set is not a structural modification and does not change modCount, so the
+     *        SuffixArray is dropped here to be built again.
+     *
+     * @param index
+     *     The position of the WordSequence to replace
+     * @param wordSequence
+     *     The new WordSequence
+     *
+     * @return The replaced WordSequence
+     */
+    @Override
+    public WordSequence set (int index, WordSequence wordSequence) {
+        WordSequence previous = super.set(index, wordSequence);
+
+        suffixArray_ = null;
+
+        return previous;
     }
 
     /**
@@ -407,6 +474,8 @@ public class Corpus extends ArrayList<WordSequence> {
             for (WordSequence wordSequence : this) {
                 wordSequence.replaceWordText(oldText, newText);
             }
+
+            suffixArray_ = null;
         }
     }
 
@@ -428,6 +497,8 @@ public class Corpus extends ArrayList<WordSequence> {
         }
 
         emptyWordSequences.forEach(this :: remove);
+
+        suffixArray_ = null;
     }
 
     /**
@@ -465,8 +536,15 @@ public class Corpus extends ArrayList<WordSequence> {
     private int id_; //!< The id of this Corpus
     private String name_; //!< The name of this Corpus
 
+    private SuffixArray suffixArray_ = null; //!< The SuffixArray of this Corpus
+    private int suffixArrayModCount_; //!< The modCount of this Corpus when suffixArray_ was built
+
     private Progress progress_; //!< The Progress of this Corpus
+    private double progressValue_; //!< The last value of progress_, guarded by progress_
     private volatile boolean cancelProcess_; //!< A flag indicated whether processing of a
                                              //!< Dictionary has been canceled
 
+    private static final int PROGRESS_UPDATES = 100; //!< The number of times the progress of
+                                                     //!< each stage of process is reported
+
 }
@@ -0,0 +1,357 @@
+package org.pasr.prep.corpus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * @class CorpusIndex
+ * @brief Implements an inverted index over the sentences of a Corpus
+ *        Every word is mapped to an id and, for each id, the sorted list of the sentences that
+ *        contain it is kept (the postings of the word). A query for the spans between a left and
+ *        a right context first intersects the postings of the context words and then only scans
+ *        the sentences that contain all of them.
+ *
+ *        The index is a snapshot: it must be created again if the sentences change.
+ */
+public class CorpusIndex {
+
+    /**
+     * @brief Constructor
+     *
+     * @param sentences
+     *     The sentences to index
+     */
+    public CorpusIndex (List<WordSequence> sentences) {
+        int numberOfSentences = sentences.size();
+
+        sentences_ = new int[numberOfSentences][];
+        List<int[]> postingSizes = new ArrayList<>();
+
+        // Map the words to ids and count the sentences of each word
+        int[] lastSentence = new int[16];
+        for (int i = 0; i < numberOfSentences; i++) {
+            WordSequence wordSequence = sentences.get(i);
+            int[] sentence = new int[wordSequence.size()];
+
+            for (int j = 0, n = sentence.length; j < n; j++) {
+                String word = wordSequence.get(j).toString();
+
+                Integer id = wordIdMap_.get(word);
+                if (id == null) {
+                    id = wordIdMap_.size();
+                    wordIdMap_.put(word, id);
+                    postingSizes.add(new int[1]);
+
+                    if (id == lastSentence.length) {
+                        lastSentence = Arrays.copyOf(lastSentence, id * 2);
+                    }
+                    lastSentence[id] = - 1;
+                }
+
+                sentence[j] = id;
+
+                if (lastSentence[id] != i) {
+                    lastSentence[id] = i;
+                    postingSizes.get(id)[0]++;
+                }
+            }
+
+            sentences_[i] = sentence;
+        }
+
+        // Fill the postings
+        int numberOfWords = wordIdMap_.size();
+
+        postings_ = new int[numberOfWords][];
+        for (int id = 0; id < numberOfWords; id++) {
+            postings_[id] = new int[postingSizes.get(id)[0]];
+        }
+
+        int[] postingSizesSoFar = new int[numberOfWords];
+        Arrays.fill(lastSentence, - 1);
+        for (int i = 0; i < numberOfSentences; i++) {
+            for (int id : sentences_[i]) {
+                if (lastSentence[id] != i) {
+                    lastSentence[id] = i;
+                    postings_[id][postingSizesSoFar[id]++] = i;
+                }
+            }
+        }
+    }
+
+    /**
+     * @brief Finds the span of every sentence that lies between a left and a right context
+     *        For each sentence, the span starts right after the first occurrence of the left
+     *        context and ends right before the last occurrence of the right context that follows
+     *        it. Only non empty spans are returned.
+     *
+     *        A null context does not constrain its side: the span starts at the beginning (or ends
+     *        at the end) of the sentence. An empty context only requires at least one word on its
+     *        side: the span starts at the second word (or ends before the last word).
+     *
+     * @param onTheLeft
+     *     The words of the left context
+     * @param onTheRight
+     *     The words of the right context
+     *
+     * @return The spans in ascending sentence order
+     */
+    public List<Span> find (List<String> onTheLeft, List<String> onTheRight) {
+        List<Span> spanList = new ArrayList<>();
+
+        int[] left = onTheLeft == null ? null : getIds(onTheLeft);
+        int[] right = onTheRight == null ? null : getIds(onTheRight);
+
+        if ((left != null && left.length > 0 && left[0] == UNKNOWN_ID) ||
+            (right != null && right.length > 0 && right[0] == UNKNOWN_ID)) {
+            return spanList;
+        }
+
+        int[] candidateSentences = getCandidateSentences(left, right);
+
+        for (int sentenceIndex : candidateSentences) {
+            int[] sentence = sentences_[sentenceIndex];
+
+            int begin = left == null ? 0 : firstEnd(sentence, left);
+            int end = right == null ? sentence.length : lastStart(sentence, right);
+
+            if (begin >= 0 && begin < end) {
+                spanList.add(new Span(sentenceIndex, begin, end));
+            }
+        }
+
+        return spanList;
+    }
+
+    /**
+     * @brief Returns the number of indexed sentences
+     *
+     * @return The number of indexed sentences
+     */
+    public int size () {
+        return sentences_.length;
+    }
+
+    /**
+     * @brief Returns the ids of the given words
+     *
+     * @param words
+     *     The words
+     *
+     * @return The ids of the words or an array holding only UNKNOWN_ID if any of them is unknown
+     */
+    private int[] getIds (List<String> words) {
+        int[] ids = new int[words.size()];
+
+        for (int i = 0, n = ids.length; i < n; i++) {
+            Integer id = wordIdMap_.get(words.get(i));
+
+            if (id == null) {
+                return new int[] {UNKNOWN_ID};
+            }
+
+            ids[i] = id;
+        }
+
+        return ids;
+    }
+
+    /**
+     * @brief Returns the sentences that contain every word of both contexts
+     *        The postings are intersected starting from the shortest one.
+     *
+     * @param left
+     *     The ids of the left context (may be null)
+     * @param right
+     *     The ids of the right context (may be null)
+     *
+     * @return The sorted indices of the candidate sentences
+     */
+    private int[] getCandidateSentences (int[] left, int[] right) {
+        List<int[]> postingList = new ArrayList<>();
+        for (int[] context : Arrays.asList(left, right)) {
+            if (context != null) {
+                for (int id : context) {
+                    postingList.add(postings_[id]);
+                }
+            }
+        }
+
+        if (postingList.isEmpty()) {
+            int[] allSentences = new int[sentences_.length];
+            Arrays.setAll(allSentences, i -> i);
+
+            return allSentences;
+        }
+
+        postingList.sort(Comparator.comparingInt(posting -> posting.length));
+
+        int[] candidates = postingList.get(0);
+        for (int i = 1, n = postingList.size(); i < n && candidates.length > 0; i++) {
+            if (postingList.get(i) != postingList.get(i - 1)) {
+                candidates = intersect(candidates, postingList.get(i));
+            }
+        }
+
+        return candidates;
+    }
+
+    /**
+     * @brief Returns the index right after the first occurrence of a context inside a sentence
+     *
+     * @param sentence
+     *     The ids of the sentence
+     * @param context
+     *     The ids of the context. If empty, the first word is considered an occurrence
+     *
+     * @return The index right after the first occurrence or -1 if there is no occurrence
+     */
+    private static int firstEnd (int[] sentence, int[] context) {
+        if (context.length == 0) {
+            return sentence.length > 0 ? 1 : - 1;
+        }
+
+        for (int start = 0, last = sentence.length - context.length; start <= last; start++) {
+            if (occursAt(sentence, context, start)) {
+                return start + context.length;
+            }
+        }
+
+        return - 1;
+    }
+
+    /**
+     * @brief Returns the start of the last occurrence of a context inside a sentence
+     *        Occurrences at the first word are ignored since they can not follow any span.
+     *
+     * @param sentence
+     *     The ids of the sentence
+     * @param context
+     *     The ids of the context. If empty, the last word is considered an occurrence
+     *
+     * @return The start of the last occurrence or -1 if there is no occurrence
+     */
+    private static int lastStart (int[] sentence, int[] context) {
+        if (context.length == 0) {
+            return sentence.length > 1 ? sentence.length - 1 : - 1;
+        }
+
+        for (int start = sentence.length - context.length; start >= 1; start--) {
+            if (occursAt(sentence, context, start)) {
+                return start;
+            }
+        }
+
+        return - 1;
+    }
+
+    private static boolean occursAt (int[] sentence, int[] context, int start) {
+        for (int i = 0, n = context.length; i < n; i++) {
+            if (sentence[start + i] != context[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @brief Intersects two sorted arrays of distinct values
+     *
+     * @param array1
+     *     The first array
+     * @param array2
+     *     The second array
+     *
+     * @return The sorted values that exist in both arrays
+     */
+    private static int[] intersect (int[] array1, int[] array2) {
+        int[] result = new int[Math.min(array1.length, array2.length)];
+        int size = 0;
+
+        int i = 0;
+        int j = 0;
+        while (i < array1.length && j < array2.length) {
+            if (array1[i] < array2[j]) {
+                i++;
+            }
+            else if (array1[i] > array2[j]) {
+                j++;
+            }
+            else {
+                result[size++] = array1[i];
+                i++;
+                j++;
+            }
+        }
+
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * @class Span
+     * @brief Holds the location of a span of words inside an indexed sentence
+     */
+    public static final class Span {
+
+        /**
+         * @brief Constructor
+         *
+         * @param sentenceIndex
+         *     The index of the sentence
+         * @param begin
+         *     The index of the first word of the span
+         * @param end
+         *     The index right after the last word of the span
+         */
+        Span (int sentenceIndex, int begin, int end) {
+            sentenceIndex_ = sentenceIndex;
+            begin_ = begin;
+            end_ = end;
+        }
+
+        /**
+         * @brief Returns the index of the sentence
+         *
+         * @return The index of the sentence
+         */
+        public int getSentenceIndex () {
+            return sentenceIndex_;
+        }
+
+        /**
+         * @brief Returns the index of the first word of this Span
+         *
+         * @return The index of the first word of this Span
+         */
+        public int getBegin () {
+            return begin_;
+        }
+
+        /**
+         * @brief Returns the index right after the last word of this Span
+         *
+         * @return The index right after the last word of this Span
+         */
+        public int getEnd () {
+            return end_;
+        }
+
+        private final int sentenceIndex_; //!< The index of the sentence
+        private final int begin_; //!< The index of the first word
+        private final int end_; //!< The index right after the last word
+
+    }
+
+    private final Map<String, Integer> wordIdMap_ = new HashMap<>(); //!< Maps each word to its id
+    private final int[][] sentences_; //!< The word ids of each sentence
+    private final int[][] postings_; //!< The sorted sentence indices of each word id
+
+    private static final int UNKNOWN_ID = - 1; //!< The id of a word that is not indexed
+
+}
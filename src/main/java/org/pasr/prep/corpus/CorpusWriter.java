@@ -0,0 +1,245 @@
+package org.pasr.prep.corpus;
+
+import org.pasr.prep.email.fetchers.Email;
+import org.pasr.prep.email.fetchers.EmailFetcher;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Observable;
+import java.util.Observer;
+import java.util.Set;
+import java.util.logging.Logger;
+
+
+/**
+ * @class CorpusWriter
+ * @brief Appends documents to a Corpus directory on disk
+ *        Each Document is split into sentences as soon as it arrives and its sentences are
+ *        appended to the sentences.txt, document_ids.txt and document_titles.txt files of the
+ *        directory, which are the files a Corpus is loaded from. Nothing but the Document being
+ *        processed is kept in memory, so a Corpus can be built from any number of e-mails.
+ *
+ *        A CorpusWriter can observe an EmailFetcher, in which case every fetched Email is appended
+ *        as a Document and the files are flushed when fetching stops. An Email that is fetched
+ *        again, as the most recent e-mails of a folder are when the folder is fetched again, is
+ *        appended only once.
+ */
+public class CorpusWriter implements Observer, Closeable {
+
+    /**
+     * @brief Constructor
+     *        The files are created if they do not exist, otherwise the new documents are appended
+     *        to them.
+     *
+     * @param directory
+     *     The directory of the Corpus. It must exist
+     *
+     * @throws IOException If the files of the directory cannot be opened
+     */
+    public CorpusWriter (File directory) throws IOException {
+        if (! directory.isDirectory()) {
+            throw new IllegalArgumentException("Not a directory: " + directory.getPath());
+        }
+
+        sentencesWriter_ = openWriter(new File(directory, "sentences.txt"));
+        documentIdsWriter_ = openWriter(new File(directory, "document_ids.txt"));
+        documentTitlesWriter_ = openWriter(new File(directory, "document_titles.txt"));
+    }
+
+    /**
+     * @brief Opens a file for appending
+     *
+     * @param file
+     *     The file
+     *
+     * @return A buffered Writer appending to the file
+     *
+     * @throws IOException If the file cannot be opened
+     */
+    private static Writer openWriter (File file) throws IOException {
+        // The default charset is used, as when a Corpus is saved or loaded
+        return new BufferedWriter(new FileWriter(file, true), BUFFER_SIZE);
+    }
+
+    /**
+     * @brief Appends a Document
+     *        Documents that have no sentences are skipped.
+     *
+     * @param document
+     *     The Document to append
+     *
+     * @return The number of sentences that were appended
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public int append (Document document) throws IOException {
+        List<WordSequence> wordSequences = Corpus.createWordSequences(
+            document.getContent(), document.getId(), document.getTitle()
+        );
+
+        if (wordSequences.isEmpty()) {
+            return 0;
+        }
+
+        long documentId = document.getId();
+
+        synchronized (this) {
+            if (closed_) {
+                throw new IOException("CorpusWriter is closed");
+            }
+
+            for (WordSequence wordSequence : wordSequences) {
+                sentencesWriter_.write("<s> " + wordSequence + " </s>\n");
+                documentIdsWriter_.write(documentId + "\n");
+            }
+
+            // A title is a single line in document_titles.txt
+            documentTitlesWriter_.write(
+                documentId + " " + document.getTitle().replaceAll("[\r\n]+", " ") + "\n"
+            );
+
+            numberOfDocuments_++;
+            numberOfSentences_ += wordSequences.size();
+        }
+
+        return wordSequences.size();
+    }
+
+    /**
+     * @brief Appends every Email fetched by an observed EmailFetcher
+     *        An Email is identified by its id and its folder and is skipped if it has already been
+     *        appended. The files are flushed when the EmailFetcher stops fetching. Since this
+     *        method cannot throw checked exceptions, the first I/O error is logged and thrown
+     *        again by close.
+     *
+     * @param o
+     *     The observed EmailFetcher
+     * @param arg
+     *     The fetched Email or the new Stage of the EmailFetcher
+     */
+    @Override
+    public void update (Observable o, Object arg) {
+        if (error_ != null) {
+            return;
+        }
+
+        try {
+            if (arg instanceof Email) {
+                Email email = (Email) arg;
+
+                if (markAppended(email)) {
+                    append(new Document(email.getId(), email.getSubject(), email.getBody()));
+                }
+            }
+            else if (arg == EmailFetcher.Stage.STOPPED_FETCHING) {
+                flush();
+            }
+        } catch (IOException e) {
+            logger_.warning("Could not append e-mail to the corpus.\n" +
+                "Exception Message: " + e.getMessage());
+
+            error_ = e;
+        }
+    }
+
+    /**
+     * @brief Remembers that an Email is appended
+     *        Only the ids of the e-mails of each folder are kept, not the e-mails themselves.
+     *
+     * @param email
+     *     The Email
+     *
+     * @return True if the Email had not been appended before
+     */
+    private synchronized boolean markAppended (Email email) {
+        return appendedEmailIds_.computeIfAbsent(email.getPath(), path -> new HashSet<>())
+            .add(email.getId());
+    }
+
+    /**
+     * @brief Flushes the files
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public synchronized void flush () throws IOException {
+        sentencesWriter_.flush();
+        documentIdsWriter_.flush();
+        documentTitlesWriter_.flush();
+    }
+
+    /**
+     * @brief Returns the number of documents that were appended
+     *
+     * @return The number of documents that were appended
+     */
+    public synchronized int getNumberOfDocuments () {
+        return numberOfDocuments_;
+    }
+
+    /**
+     * @brief Returns the number of sentences that were appended
+     *
+     * @return The number of sentences that were appended
+     */
+    public synchronized long getNumberOfSentences () {
+        return numberOfSentences_;
+    }
+
+    /**
+     * @brief Closes the files
+     *
+     * @throws IOException If an I/O error occurs or if appending a fetched Email failed
+     */
+    @Override
+    public synchronized void close () throws IOException {
+        if (closed_) {
+            return;
+        }
+        closed_ = true;
+
+        IOException exception = error_;
+        for (Writer writer : new Writer[] {
+            sentencesWriter_, documentIdsWriter_, documentTitlesWriter_
+        }) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                if (exception == null) {
+                    exception = e;
+                }
+            }
+        }
+
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    private final Writer sentencesWriter_; //!< The Writer of sentences.txt
+    private final Writer documentIdsWriter_; //!< The Writer of document_ids.txt
+    private final Writer documentTitlesWriter_; //!< The Writer of document_titles.txt
+
+    private final Map<String, Set<Long>> appendedEmailIds_ = new HashMap<>(); //!< The ids of the
+                                                                              //!< appended e-mails
+                                                                              //!< of each folder
+
+    private int numberOfDocuments_ = 0; //!< The number of documents that were appended
+    private long numberOfSentences_ = 0; //!< The number of sentences that were appended
+    private boolean closed_ = false; //!< Whether this CorpusWriter is closed
+
+    private volatile IOException error_ = null; //!< The first error while appending a fetched
+                                                //!< Email
+
+    private static final int BUFFER_SIZE = 1 << 16; //!< The buffer size of each file in chars
+
+    private static final Logger logger_ = Logger.getLogger(CorpusWriter.class.getName());
+
+}
@@ -0,0 +1,251 @@
+package org.pasr.prep.corpus;
+
+import org.pasr.asr.dictionary.Dictionary;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * @class PhoneticIndex
+ * @brief Implements a phonetic index over the sentences of a Corpus
+ *        The phone ids of every sentence are looked up once and kept in a single array together
+ *        with the phone offset of each word. For each phone id, the sorted list of the
+ *        sentences that contain it, along with the number of times it appears inside them, is also
+ *        kept (the postings of the phone).
+ *
+ *        The span of words whose phones are closest to a query is found with a pruned search that
+ *        returns exactly what an exhaustive scan over every span of every sentence would:
+ *        - The postings of the query phones give, for every sentence, the number of query phones
+ *          that it can match at most. The phones that it can not match are a lower bound of the
+ *          distance of any of its spans, so a sentence is skipped if the bound is not smaller than
+ *          the best distance found so far.
+ *        - All the spans that start at the same word share their prefix, so their distances are
+ *          found with a single Levenshtein matrix that grows one column for each phone. The minimum
+ *          of a column never decreases, thus the spans are no longer extended once it reaches the
+ *          best distance found so far.
+ *
+ *        The index is a snapshot: it must be created again if the sentences or the Dictionary
+ *        change.
+ */
+public class PhoneticIndex {
+
+    /**
+     * @brief Constructor
+     *
+     * @param sentences
+     *     The sentences to index
+     * @param dictionary
+     *     The Dictionary that provides the phones of the words
+     */
+    public PhoneticIndex (List<WordSequence> sentences, Dictionary dictionary) {
+        int numberOfSentences = sentences.size();
+
+        sentenceStarts_ = new int[numberOfSentences + 1];
+        wordOffsets_ = new int[numberOfSentences][];
+
+        int[] phones = new int[1024];
+        int length = 0;
+        for (int i = 0; i < numberOfSentences; i++) {
+            List<int[]> wordPhoneList = dictionary.getPhoneIds(sentences.get(i));
+            int[] wordOffsets = new int[wordPhoneList.size() + 1];
+
+            sentenceStarts_[i] = length;
+            for (int j = 0, n = wordPhoneList.size(); j < n; j++) {
+                int[] wordPhones = wordPhoneList.get(j);
+
+                if (length + wordPhones.length > phones.length) {
+                    phones = Arrays.copyOf(phones, Math.max(phones.length * 2,
+                        length + wordPhones.length));
+                }
+
+                System.arraycopy(wordPhones, 0, phones, length, wordPhones.length);
+                length += wordPhones.length;
+
+                wordOffsets[j + 1] = length - sentenceStarts_[i];
+            }
+
+            wordOffsets_[i] = wordOffsets;
+        }
+        sentenceStarts_[numberOfSentences] = length;
+        phones_ = Arrays.copyOf(phones, length);
+
+        buildPostings();
+    }
+
+    /**
+     * @brief Builds the postings of every phone
+     */
+    private void buildPostings () {
+        int numberOfPhones = 0;
+        for (int phone : phones_) {
+            numberOfPhones = Math.max(numberOfPhones, phone + 1);
+        }
+
+        int numberOfSentences = wordOffsets_.length;
+
+        // Count the sentences of each phone
+        int[] lastSentence = new int[numberOfPhones];
+        Arrays.fill(lastSentence, - 1);
+        int[] postingSizes = new int[numberOfPhones];
+        for (int i = 0; i < numberOfSentences; i++) {
+            for (int k = sentenceStarts_[i], end = sentenceStarts_[i + 1]; k < end; k++) {
+                int phone = phones_[k];
+
+                if (lastSentence[phone] != i) {
+                    lastSentence[phone] = i;
+                    postingSizes[phone]++;
+                }
+            }
+        }
+
+        postings_ = new int[numberOfPhones][];
+        postingCounts_ = new int[numberOfPhones][];
+        for (int phone = 0; phone < numberOfPhones; phone++) {
+            postings_[phone] = new int[postingSizes[phone]];
+            postingCounts_[phone] = new int[postingSizes[phone]];
+        }
+
+        // Fill them
+        Arrays.fill(lastSentence, - 1);
+        Arrays.fill(postingSizes, 0);
+        for (int i = 0; i < numberOfSentences; i++) {
+            for (int k = sentenceStarts_[i], end = sentenceStarts_[i + 1]; k < end; k++) {
+                int phone = phones_[k];
+
+                if (lastSentence[phone] != i) {
+                    lastSentence[phone] = i;
+                    postings_[phone][postingSizes[phone]++] = i;
+                }
+                postingCounts_[phone][postingSizes[phone] - 1]++;
+            }
+        }
+    }
+
+    /**
+     * @brief Finds the span of words whose phones have the smallest Levenshtein distance from the
+     *        given phones
+     *        Ties are resolved in favor of the span found first when scanning the sentences in
+     *        order, the start of the span in ascending order and then its end in ascending order.
+     *
+     * @param query
+     *     The phone ids to match
+     *
+     * @return The closest span or null if there are no words inside the indexed sentences
+     */
+    public CorpusIndex.Span findClosest (int[] query) {
+        int queryLength = query.length;
+
+        int[] matchedPhones = getMaximumMatchedPhones(query);
+
+        int[] previousColumn = new int[queryLength + 1];
+        int[] currentColumn = new int[queryLength + 1];
+
+        int minDistance = Integer.MAX_VALUE;
+        CorpusIndex.Span bestMatch = null;
+        for (int s = 0, numberOfSentences = wordOffsets_.length; s < numberOfSentences; s++) {
+            if (queryLength - matchedPhones[s] >= minDistance) {
+                continue;
+            }
+
+            int sentenceStart = sentenceStarts_[s];
+            int[] wordOffsets = wordOffsets_[s];
+            int numberOfWords = wordOffsets.length - 1;
+
+            for (int i = 0; i < numberOfWords; i++) {
+                for (int r = 0; r <= queryLength; r++) {
+                    previousColumn[r] = r;
+                }
+
+                int position = sentenceStart + wordOffsets[i];
+                for (int j = i + 1; j <= numberOfWords; j++) {
+                    int columnMin = 0;
+
+                    for (int end = sentenceStart + wordOffsets[j]; position < end; position++) {
+                        int phone = phones_[position];
+
+                        currentColumn[0] = previousColumn[0] + 1;
+                        columnMin = currentColumn[0];
+                        for (int r = 1; r <= queryLength; r++) {
+                            int value = previousColumn[r - 1] + (query[r - 1] == phone ? 0 : 1);
+                            value = Math.min(value, previousColumn[r] + 1);
+                            value = Math.min(value, currentColumn[r - 1] + 1);
+
+                            currentColumn[r] = value;
+                            columnMin = Math.min(columnMin, value);
+                        }
+
+                        int[] temporary = previousColumn;
+                        previousColumn = currentColumn;
+                        currentColumn = temporary;
+                    }
+
+                    int distance = previousColumn[queryLength];
+                    if (distance < minDistance) {
+                        minDistance = distance;
+                        bestMatch = new CorpusIndex.Span(s, i, j);
+                    }
+
+                    // Longer spans can not be closer than the best one
+                    if (columnMin >= minDistance) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        return bestMatch;
+    }
+
+    /**
+     * @brief Returns the number of indexed sentences
+     *
+     * @return The number of indexed sentences
+     */
+    public int size () {
+        return wordOffsets_.length;
+    }
+
+    /**
+     * @brief Returns, for every sentence, the number of query phones that any of its spans can
+     *        match at most
+     *
+     * @param query
+     *     The phone ids of the query
+     *
+     * @return The maximum number of matched phones of every sentence
+     */
+    private int[] getMaximumMatchedPhones (int[] query) {
+        Map<Integer, Integer> queryCounts = new HashMap<>();
+        for (int phone : query) {
+            // Phones that do not appear inside the sentences can not be matched
+            if (phone < postings_.length) {
+                queryCounts.merge(phone, 1, Integer:: sum);
+            }
+        }
+
+        int[] matchedPhones = new int[wordOffsets_.length];
+        for (Map.Entry<Integer, Integer> entry : queryCounts.entrySet()) {
+            int[] posting = postings_[entry.getKey()];
+            int[] postingCounts = postingCounts_[entry.getKey()];
+            int queryCount = entry.getValue();
+
+            for (int k = 0, n = posting.length; k < n; k++) {
+                matchedPhones[posting[k]] += Math.min(queryCount, postingCounts[k]);
+            }
+        }
+
+        return matchedPhones;
+    }
+
+    private final int[] phones_; //!< The phone ids of all the sentences
+    private final int[] sentenceStarts_; //!< The position of each sentence inside phones_,
+                                         //!< followed by the length of phones_
+    private final int[][] wordOffsets_; //!< The phone offset of each word inside its sentence,
+                                        //!< followed by the number of phones of the sentence
+    private int[][] postings_; //!< The sorted sentence indices of each phone id
+    private int[][] postingCounts_; //!< The number of times each phone appears inside each
+                                    //!< sentence of its postings
+}
@@ -0,0 +1,409 @@
+package org.pasr.prep.corpus;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * @class SuffixArray
+ * @brief Implements a suffix array over the words of a list of sentences
+ *        The sentences are mapped to word ids and concatenated, each one followed by a separator,
+ *        so that a phrase can never be matched across two sentences. The suffixes that start at a
+ *        word are kept sorted, hence all the occurrences of a phrase are found with two binary
+ *        searches in O(m log N) time, where m is the length of the phrase and N the number of
+ *        words.
+ */
+public class SuffixArray {
+
+    /**
+     * @brief Constructor
+     *        The suffix array is built with prefix doubling and counting sort in O(N log N) time.
+     *
+     * @param sentences
+     *     The sentences to index
+     */
+    public SuffixArray (List<WordSequence> sentences) {
+        int numberOfSentences = sentences.size();
+
+        sentenceStarts_ = new int[numberOfSentences + 1];
+        int length = 0;
+        for (int i = 0; i < numberOfSentences; i++) {
+            sentenceStarts_[i] = length;
+            length += sentences.get(i).size() + 1;
+        }
+        sentenceStarts_[numberOfSentences] = length;
+
+        text_ = new int[length];
+        List<String> wordList = new ArrayList<>();
+        int position = 0;
+        for (WordSequence sentence : sentences) {
+            for (Word word : sentence) {
+                String text = word.toString();
+
+                Integer id = wordIdMap_.get(text);
+                if (id == null) {
+                    id = FIRST_WORD_ID + wordList.size();
+                    wordIdMap_.put(text, id);
+                    wordList.add(text);
+                }
+
+                text_[position++] = id;
+            }
+
+            text_[position++] = SEPARATOR_ID;
+        }
+        words_ = wordList.toArray(new String[wordList.size()]);
+
+        suffixArray_ = buildSuffixArray(text_, FIRST_WORD_ID + words_.length);
+    }
+
+    /**
+     * @brief Constructor used when reading a SuffixArray from a file
+     */
+    private SuffixArray (String[] words, int[] sentenceStarts, int[] text, int[] suffixArray) {
+        words_ = words;
+        sentenceStarts_ = sentenceStarts;
+        text_ = text;
+        suffixArray_ = suffixArray;
+
+        for (int i = 0; i < words.length; i++) {
+            wordIdMap_.put(words[i], FIRST_WORD_ID + i);
+        }
+    }
+
+    /**
+     * @brief Returns true if the given phrase appears inside any sentence
+     *
+     * @param phrase
+     *     The words of the phrase
+     *
+     * @return True if the given phrase appears inside any sentence
+     */
+    public boolean contains (List<String> phrase) {
+        return count(phrase) > 0;
+    }
+
+    /**
+     * @brief Returns the number of occurrences of the given phrase
+     *
+     * @param phrase
+     *     The words of the phrase
+     *
+     * @return The number of occurrences of the given phrase
+     */
+    public int count (List<String> phrase) {
+        int[] range = getRange(phrase);
+
+        return range[1] - range[0];
+    }
+
+    /**
+     * @brief Returns the occurrences of the given phrase
+     *
+     * @param phrase
+     *     The words of the phrase
+     *
+     * @return The occurrences of the given phrase sorted by sentence and position
+     */
+    public List<CorpusIndex.Span> getOccurrences (List<String> phrase) {
+        int[] range = getRange(phrase);
+
+        int[] positions = Arrays.copyOfRange(suffixArray_, range[0], range[1]);
+        Arrays.sort(positions);
+
+        List<CorpusIndex.Span> occurrenceList = new ArrayList<>(positions.length);
+        for (int position : positions) {
+            int sentence = Arrays.binarySearch(sentenceStarts_, position);
+            if (sentence < 0) {
+                sentence = - sentence - 2;
+            }
+
+            int begin = position - sentenceStarts_[sentence];
+            occurrenceList.add(new CorpusIndex.Span(sentence, begin, begin + phrase.size()));
+        }
+
+        return occurrenceList;
+    }
+
+    /**
+     * @brief Returns the number of indexed sentences
+     *
+     * @return The number of indexed sentences
+     */
+    public int getNumberOfSentences () {
+        return sentenceStarts_.length - 1;
+    }
+
+    /**
+     * @brief Returns the number of indexed words
+     *
+     * @return The number of indexed words
+     */
+    public int getNumberOfWords () {
+        return suffixArray_.length;
+    }
+
+    /**
+     * @brief Writes this SuffixArray to a file
+     *
+     * @param file
+     *     The file to create
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public void writeToFile (File file) throws IOException {
+        try (DataOutputStream outputStream = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+
+            outputStream.writeInt(MAGIC);
+            outputStream.writeInt(VERSION);
+
+            outputStream.writeInt(words_.length);
+            for (String word : words_) {
+                outputStream.writeUTF(word);
+            }
+
+            for (int[] array : Arrays.asList(sentenceStarts_, text_, suffixArray_)) {
+                outputStream.writeInt(array.length);
+                for (int value : array) {
+                    outputStream.writeInt(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * @brief Reads a SuffixArray from a file written by writeToFile
+     *
+     * @param file
+     *     The file to read
+     *
+     * @return The SuffixArray read
+     *
+     * @throws IOException If an I/O error occurs or the file is not a SuffixArray file
+     */
+    public static SuffixArray createFromFile (File file) throws IOException {
+        try (DataInputStream inputStream = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+
+            if (inputStream.readInt() != MAGIC || inputStream.readInt() != VERSION) {
+                throw new IOException("Not a suffix array file: " + file.getPath());
+            }
+
+            String[] words = new String[inputStream.readInt()];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = inputStream.readUTF();
+            }
+
+            int[][] arrays = new int[3][];
+            for (int i = 0; i < arrays.length; i++) {
+                arrays[i] = new int[inputStream.readInt()];
+                for (int j = 0; j < arrays[i].length; j++) {
+                    arrays[i][j] = inputStream.readInt();
+                }
+            }
+
+            return new SuffixArray(words, arrays[0], arrays[1], arrays[2]);
+        }
+    }
+
+    /**
+     * @brief Returns the range of the suffix array whose suffixes start with the given phrase
+     *
+     * @param phrase
+     *     The words of the phrase
+     *
+     * @return The range as {begin inclusive, end exclusive}
+     */
+    private int[] getRange (List<String> phrase) {
+        int size = phrase.size();
+        if (size == 0) {
+            return new int[] {0, 0};
+        }
+
+        int[] ids = new int[size];
+        for (int i = 0; i < size; i++) {
+            Integer id = wordIdMap_.get(phrase.get(i));
+
+            if (id == null) {
+                return new int[] {0, 0};
+            }
+
+            ids[i] = id;
+        }
+
+        // First suffix that is not smaller than the phrase
+        int low = 0;
+        int high = suffixArray_.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (compare(suffixArray_[middle], ids) < 0) {
+                low = middle + 1;
+            }
+            else {
+                high = middle;
+            }
+        }
+        int begin = low;
+
+        // First suffix that is greater than the phrase and does not start with it
+        high = suffixArray_.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (compare(suffixArray_[middle], ids) <= 0) {
+                low = middle + 1;
+            }
+            else {
+                high = middle;
+            }
+        }
+
+        return new int[] {begin, low};
+    }
+
+    /**
+     * @brief Compares the suffix starting at a position with a phrase
+     *
+     * @param position
+     *     The position of the suffix
+     * @param phrase
+     *     The ids of the phrase
+     *
+     * @return A negative value, zero or a positive value if the suffix is smaller than, starts
+     *         with or is greater than the phrase
+     */
+    private int compare (int position, int[] phrase) {
+        for (int i = 0, m = phrase.length; i < m; i++) {
+            int word = text_[position + i];
+
+            if (word != phrase[i]) {
+                return word < phrase[i] ? - 1 : 1;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * @brief Builds the sorted suffixes of a text that start at a word
+     *        The text, followed by a unique terminal symbol, is sorted by prefix doubling: at step
+     *        h the suffixes are sorted by their first 2^h symbols, reusing the order of the
+     *        previous step as the order of the second half.
+     *
+     * @param text
+     *     The text. Every sentence must end with SEPARATOR_ID
+     * @param alphabetSize
+     *     The number of distinct symbols in the text
+     *
+     * @return The positions of the suffixes that start at a word, in ascending suffix order
+     */
+    private static int[] buildSuffixArray (int[] text, int alphabetSize) {
+        int n = text.length + 1;
+
+        int[] symbols = new int[n];
+        for (int i = 0; i < n - 1; i++) {
+            symbols[i] = text[i] + 1;
+        }
+        symbols[n - 1] = 0;
+
+        int[] order = new int[n];
+        int[] classes = new int[n];
+        int[] count = new int[Math.max(alphabetSize + 1, n)];
+
+        for (int symbol : symbols) {
+            count[symbol]++;
+        }
+        for (int i = 1; i <= alphabetSize; i++) {
+            count[i] += count[i - 1];
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            order[-- count[symbols[i]]] = i;
+        }
+
+        int numberOfClasses = 1;
+        classes[order[0]] = 0;
+        for (int i = 1; i < n; i++) {
+            if (symbols[order[i]] != symbols[order[i - 1]]) {
+                numberOfClasses++;
+            }
+            classes[order[i]] = numberOfClasses - 1;
+        }
+
+        int[] newOrder = new int[n];
+        int[] newClasses = new int[n];
+        for (int half = 1; half < n && numberOfClasses < n; half <<= 1) {
+            for (int i = 0; i < n; i++) {
+                newOrder[i] = order[i] - half;
+                if (newOrder[i] < 0) {
+                    newOrder[i] += n;
+                }
+            }
+
+            Arrays.fill(count, 0, numberOfClasses, 0);
+            for (int i = 0; i < n; i++) {
+                count[classes[newOrder[i]]]++;
+            }
+            for (int i = 1; i < numberOfClasses; i++) {
+                count[i] += count[i - 1];
+            }
+            for (int i = n - 1; i >= 0; i--) {
+                order[-- count[classes[newOrder[i]]]] = newOrder[i];
+            }
+
+            numberOfClasses = 1;
+            newClasses[order[0]] = 0;
+            for (int i = 1; i < n; i++) {
+                int current = order[i];
+                int previous = order[i - 1];
+
+                if (classes[current] != classes[previous] ||
+                    classes[(current + half) % n] != classes[(previous + half) % n]) {
+                    numberOfClasses++;
+                }
+                newClasses[current] = numberOfClasses - 1;
+            }
+
+            int[] temporary = classes;
+            classes = newClasses;
+            newClasses = temporary;
+        }
+
+        // Keep only the suffixes that start at a word
+        int[] suffixArray = new int[n];
+        int size = 0;
+        for (int position : order) {
+            if (position < n - 1 && text[position] != SEPARATOR_ID) {
+                suffixArray[size++] = position;
+            }
+        }
+
+        return Arrays.copyOf(suffixArray, size);
+    }
+
+    private final Map<String, Integer> wordIdMap_ = new HashMap<>(); //!< Maps each word to its id
+    private final String[] words_; //!< The word of each id, starting from FIRST_WORD_ID
+    private final int[] sentenceStarts_; //!< The position of each sentence inside the text,
+                                         //!< followed by the length of the text
+    private final int[] text_; //!< The word ids of all the sentences, each followed by a separator
+    private final int[] suffixArray_; //!< The sorted positions of the suffixes starting at a word
+
+    private static final int SEPARATOR_ID = 0; //!< The id that ends every sentence
+    private static final int FIRST_WORD_ID = 1; //!< The id of the first word
+
+    private static final int MAGIC = 0x50535341; //!< The first bytes of a suffix array file ("PSSA")
+    private static final int VERSION = 1; //!< The version of the suffix array file format
+
+}
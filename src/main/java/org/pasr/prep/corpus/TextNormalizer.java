@@ -0,0 +1,248 @@
+package org.pasr.prep.corpus;
+
+import org.pasr.utilities.NumberSpeller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * @class TextNormalizer
+ * @brief Turns the text of a Document into the texts of its sentences
+ *        The numbers are spelled, the punctuation is mapped to spaces or sentence separators, the
+ *        text is lowercased and split into sentences in a single scan over its characters. The
+ *        result is the same as the one of the regular expressions that were used before:
+ *        - Every number followed by "$" is replaced by " <spelled number> dollars " and every
+ *          other number by " <spelled number> ".
+ *        - Every character that is not a visible ASCII character and every character of
+ *          _-,:/"<>|#@\=+~*{}$%&`^([ becomes a space, ")" and "]" become " . " and "!", "?", ";"
+ *          become ".".
+ *        - Consecutive spaces are collapsed into one and the text is split on "." along with a
+ *          single space on each side of it.
+ */
+class TextNormalizer {
+
+    /**
+     * @brief Default Constructor
+     *        private so that this class cannot be instantiated
+     */
+    private TextNormalizer () {
+    }
+
+    /**
+     * @brief Returns the texts of the sentences of a Document
+     *
+     * @param document
+     *     The text of the Document
+     *
+     * @return The non empty texts of the sentences in the order they appear
+     */
+    static List<String> getSentences (String document) {
+        document = padDollarAmounts(document);
+
+        SentenceBuilder sentenceBuilder = new SentenceBuilder();
+
+        int length = document.length();
+        int index = 0;
+        while (index < length) {
+            char character = document.charAt(index);
+
+            if (character >= '0' && character <= '9') {
+                int end = index + 1;
+                while (end < length && document.charAt(end) >= '0' && document.charAt(end) <= '9') {
+                    end++;
+                }
+
+                sentenceBuilder.appendMapped(' ');
+                sentenceBuilder.appendMapped(spell(document.substring(index, end)));
+
+                if (end < length && document.charAt(end) == '$') {
+                    sentenceBuilder.appendMapped(" dollars");
+                    end++;
+                }
+                sentenceBuilder.appendMapped(' ');
+
+                index = end;
+            }
+            else {
+                int codePoint = document.codePointAt(index);
+
+                sentenceBuilder.appendMapped(codePoint);
+                index += Character.charCount(codePoint);
+            }
+        }
+
+        return sentenceBuilder.getSentences();
+    }
+
+    /**
+     * @brief Surrounds with spaces the already spelled amounts of dollars
+     *        For every number followed by " dollars", the occurrences of its spelled form
+     *        followed by " dollars" are surrounded with spaces, starting from the longest number.
+     *        This rarely changes anything, since the spelled forms are seldom part of the text.
+     *
+     * @param document
+     *     The text of the Document
+     *
+     * @return The padded text
+     */
+    private static String padDollarAmounts (String document) {
+        Matcher matcher = DOLLAR_AMOUNT_PATTERN.matcher(document);
+        if (! matcher.find()) {
+            return document;
+        }
+
+        List<String> amounts = new ArrayList<>();
+        do {
+            amounts.add(matcher.group(1));
+        } while (matcher.find());
+
+        amounts.sort((amount1, amount2) -> amount2.length() - amount1.length());
+
+        for (String amount : amounts) {
+            String phrase = spell(amount) + " dollars";
+
+            if (document.contains(phrase)) {
+                document = document.replace(phrase, " " + phrase + " ");
+            }
+        }
+
+        return document;
+    }
+
+    /**
+     * @brief Spells a number
+     *
+     * @param digits
+     *     The digits of the number
+     *
+     * @return The spelled number or "number" if the number is too large
+     */
+    private static String spell (String digits) {
+        try {
+            return NumberSpeller.getInstance().spell(Integer.valueOf(digits));
+        } catch (NumberFormatException e) {
+            // TODO In the future, when name-entity recognition is embedded, {number} will
+            // TODO accept any number.
+            return "number";
+        }
+    }
+
+    /**
+     * @class SentenceBuilder
+     * @brief Maps characters and collects the sentences that they form
+     */
+    private static final class SentenceBuilder {
+
+        /**
+         * @brief Maps and appends every character of a String
+         *
+         * @param string
+         *     The String
+         */
+        void appendMapped (String string) {
+            for (int i = 0, n = string.length(); i < n; ) {
+                int codePoint = string.codePointAt(i);
+
+                appendMapped(codePoint);
+                i += Character.charCount(codePoint);
+            }
+        }
+
+        /**
+         * @brief Maps and appends a character
+         *
+         * @param codePoint
+         *     The code point of the character
+         */
+        void appendMapped (int codePoint) {
+            if (codePoint < '!' || codePoint > '~' || SPACE_CHARACTERS.indexOf(codePoint) >= 0) {
+                append(' ');
+            }
+            else if (codePoint == ')' || codePoint == ']') {
+                append(' ');
+                append('.');
+                append(' ');
+            }
+            else if (codePoint == '.' || codePoint == '!' || codePoint == '?' ||
+                codePoint == ';') {
+                append('.');
+            }
+            else if (codePoint >= 'A' && codePoint <= 'Z') {
+                append((char) (codePoint - 'A' + 'a'));
+            }
+            else {
+                append((char) codePoint);
+            }
+        }
+
+        /**
+         * @brief Appends a mapped character
+         *        Consecutive spaces are collapsed. A "." ends the current sentence and the single
+         *        spaces on each side of it are dropped.
+         *
+         * @param character
+         *     The mapped character
+         */
+        private void append (char character) {
+            if (character == ' ') {
+                if (previous_ == ' ') {
+                    return;
+                }
+
+                if (! afterSeparator_) {
+                    sentence_.append(' ');
+                }
+            }
+            else if (character == '.') {
+                int length = sentence_.length();
+                if (length > 0 && sentence_.charAt(length - 1) == ' ') {
+                    sentence_.setLength(length - 1);
+                }
+
+                endSentence();
+            }
+            else {
+                sentence_.append(character);
+            }
+
+            previous_ = character;
+            afterSeparator_ = character == '.';
+        }
+
+        /**
+         * @brief Ends the current sentence
+         */
+        private void endSentence () {
+            if (sentence_.length() > 0) {
+                sentences_.add(sentence_.toString());
+                sentence_.setLength(0);
+            }
+        }
+
+        /**
+         * @brief Returns the collected sentences
+         *
+         * @return The non empty sentences
+         */
+        List<String> getSentences () {
+            endSentence();
+
+            return sentences_;
+        }
+
+        private final List<String> sentences_ = new ArrayList<>(); //!< The finished sentences
+        private final StringBuilder sentence_ = new StringBuilder(); //!< The current sentence
+        private char previous_ = 0; //!< The last mapped character
+        private boolean afterSeparator_ = false; //!< Whether the last mapped character was "."
+
+    }
+
+    private static final Pattern DOLLAR_AMOUNT_PATTERN = Pattern.compile("([0-9]+) dollars");
+
+    private static final String SPACE_CHARACTERS = "_-,:/\"<>|#@\\=+~*{}$%&`^(["; //!< The
+                                                   //!< visible characters that become spaces
+
+}
@@ -18,7 +18,22 @@ public class Word {
      *     The index of this Word inside the WordSequence
      */
     public Word (String text, WordSequence wordSequence, int index) {
-        text_ = escape(text);
+        this(wordSequence, index, escape(text));
+    }
+
+    /**
+     * @brief Constructor
+     *        Used for Strings that are already escaped, like the words of a CompactCorpus.
+     *
+     * @param wordSequence
+     *     The WordSequence containing this Word
+     * @param index
+     *     The index of this Word inside the WordSequence
+     * @param text
+     *     The escaped String of this Word
+     */
+    Word (WordSequence wordSequence, int index, String text) {
+        text_ = text;
         parent_ = wordSequence;
         index_ = index;
     }
@@ -33,7 +48,7 @@ public class Word {
      *
      * @return The escaped String
      */
-    private String escape (String text) {
+    private static String escape (String text) {
         return text.toLowerCase().replaceAll(" {2,}", " ").trim();
     }
 
@@ -1,6 +1,9 @@
 package org.pasr.prep.corpus;
 
+import org.pasr.utilities.SymbolTable;
+
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 import java.util.stream.Collectors;
@@ -65,6 +68,35 @@ public class WordSequence extends ArrayList<Word> {
         addAll(words);
     }
 
+    /**
+     * @brief Constructor
+     *        Used to create a view of a sentence of a CompactCorpus. The words are not escaped
+     *        again.
+     *
+     * @param wordIds
+     *     The ids of SymbolTable.getWordTable() of the words of the sentence
+     * @param beginIndex
+     *     The index of the first word of the sentence inside wordIds (inclusive)
+     * @param endIndex
+     *     The index after the last word of the sentence inside wordIds (exclusive)
+     * @param documentID
+     *     The id of the Document that this WordSequence belongs to
+     * @param documentTitle
+     *     The title of the Document that this WordSequence belongs to
+     */
+    WordSequence (int[] wordIds, int beginIndex, int endIndex, long documentID,
+                  String documentTitle) {
+        super(endIndex - beginIndex);
+
+        documentID_ = documentID;
+        documentTitle_ = documentTitle;
+
+        SymbolTable wordTable = SymbolTable.getWordTable();
+        for (int i = beginIndex; i < endIndex; i++) {
+            add(new Word(this, i - beginIndex, wordTable.getSymbol(wordIds[i])));
+        }
+    }
+
     /**
      * @brief Escapes a String
      *        Escaping is done to ensure that all characters are in lower case in order to be
@@ -125,15 +157,35 @@ public class WordSequence extends ArrayList<Word> {
     }
 
     /**
-     * @brief Returns true if and only if the String of this WordSequence contains the given String
+     * @brief Returns the ids of the words of this WordSequence
+     *        The ids are those of SymbolTable.getWordTable().
+     *
+     * @return The ids of the words of this WordSequence
+     */
+    public int[] getWordIds () {
+        SymbolTable wordTable = SymbolTable.getWordTable();
+
+        int[] wordIds = new int[size()];
+        for (int i = 0, n = wordIds.length; i < n; i++) {
+            wordIds[i] = wordTable.getId(get(i).toString());
+        }
+
+        return wordIds;
+    }
+
+    /**
+     * @brief Returns true if and only if this WordSequence contains the words of the given String
+     *        The words are matched as a whole, in the same order.
      *
      * @param string
      *     The String to test whether or not this WordSequence contains
      *
-     * @return True if and only if the String of this WordSequence contains the given String
+     * @return True if and only if this WordSequence contains the words of the given String
      */
     public boolean contains (String string) {
-        return toString().contains(string);
+        return Collections.indexOfSubList(
+            getWordTextList(), new WordSequence(string).getWordTextList()
+        ) != - 1;
     }
 
     /**
@@ -0,0 +1,131 @@
+package org.pasr.utilities;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+
+/**
+ * @class LRUCache
+ * @brief Implements a bounded cache that evicts the least recently used entry when full
+ *        The number of hits and misses is counted. Values are loaded outside of the lock, so a
+ *        slow load does not block the other threads, and a value loaded while the cache was being
+ *        cleared is not stored.
+ *
+ *        This class is thread safe.
+ *
+ * @param <K>
+ *     The type of the keys
+ * @param <V>
+ *     The type of the values
+ */
+public class LRUCache<K, V> {
+
+    /**
+     * @brief Constructor
+     *
+     * @param capacity
+     *     The maximum number of entries
+     */
+    public LRUCache (int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive!");
+        }
+
+        capacity_ = capacity;
+        map_ = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry (Map.Entry<K, V> eldest) {
+                return size() > capacity_;
+            }
+        };
+    }
+
+    /**
+     * @brief Returns the value of a key, loading and storing it if it is not cached
+     *
+     * @param key
+     *     The key
+     * @param loader
+     *     The Function that loads the value of a key. Must not return null
+     *
+     * @return The value of the key
+     */
+    public V get (K key, Function<K, V> loader) {
+        long generation;
+
+        synchronized (this) {
+            V value = map_.get(key);
+
+            if (value != null) {
+                hitCount_++;
+                return value;
+            }
+
+            missCount_++;
+            generation = generation_;
+        }
+
+        V value = loader.apply(key);
+
+        synchronized (this) {
+            if (generation == generation_) {
+                map_.put(key, value);
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * @brief Removes all the entries of this cache
+     */
+    public synchronized void clear () {
+        map_.clear();
+        generation_++;
+    }
+
+    /**
+     * @brief Returns the number of cached entries
+     *
+     * @return The number of cached entries
+     */
+    public synchronized int size () {
+        return map_.size();
+    }
+
+    /**
+     * @brief Returns the maximum number of entries
+     *
+     * @return The maximum number of entries
+     */
+    public int getCapacity () {
+        return capacity_;
+    }
+
+    /**
+     * @brief Returns the number of times a value was found in this cache
+     *
+     * @return The number of hits
+     */
+    public synchronized long getHitCount () {
+        return hitCount_;
+    }
+
+    /**
+     * @brief Returns the number of times a value had to be loaded
+     *
+     * @return The number of misses
+     */
+    public synchronized long getMissCount () {
+        return missCount_;
+    }
+
+    private final int capacity_; //!< The maximum number of entries
+    private final Map<K, V> map_; //!< The entries in access order
+
+    private long generation_ = 0; //!< Incremented every time the cache is cleared
+    private long hitCount_ = 0; //!< The number of hits
+    private long missCount_ = 0; //!< The number of misses
+
+}
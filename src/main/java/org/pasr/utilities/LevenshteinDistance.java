@@ -0,0 +1,297 @@
+package org.pasr.utilities;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * @class LevenshteinDistance
+ * @brief Implements fast calculations of the Levenshtein Distance between two sequences
+ *        Unlike LevenshteinMatrix, only the distance is calculated and the sequences are compared
+ *        as int arrays:
+ *        - If the shorter sequence has at most 64 symbols, Myers' bit-parallel algorithm is used,
+ *          which processes a whole column of the matrix with a few operations on a long.
+ *        - Otherwise, the matrix is calculated one row at a time keeping only two rows in memory.
+ *        - If a maximum distance k is given, only the diagonal band of width 2k + 1 is calculated
+ *          (Ukkonen) and the calculation stops as soon as a whole row exceeds k.
+ *
+ *        Use LevenshteinMatrix when the change path is also needed.
+ */
+public class LevenshteinDistance {
+
+    /**
+     * @brief Default Constructor
+     *        private so that this class cannot be instantiated
+     */
+    private LevenshteinDistance () {
+    }
+
+    /**
+     * @brief Returns the Levenshtein Distance between two sequences
+     *
+     * @param source
+     *     The first sequence
+     * @param destination
+     *     The second sequence
+     *
+     * @return The Levenshtein Distance
+     */
+    public static int getDistance (int[] source, int[] destination) {
+        if (source.length < destination.length) {
+            int[] temporary = source;
+            source = destination;
+            destination = temporary;
+        }
+
+        if (destination.length == 0) {
+            return source.length;
+        }
+
+        if (destination.length <= Long.SIZE) {
+            return getBitParallelDistance(source, destination);
+        }
+
+        return getBandedDistance(source, destination, source.length);
+    }
+
+    /**
+     * @brief Returns the Levenshtein Distance between two sequences if it does not exceed a maximum
+     *
+     * @param source
+     *     The first sequence
+     * @param destination
+     *     The second sequence
+     * @param maxDistance
+     *     The maximum distance of interest. Must not be negative
+     *
+     * @return The Levenshtein Distance or maxDistance + 1 if the distance exceeds maxDistance
+     */
+    public static int getDistance (int[] source, int[] destination, int maxDistance) {
+        if (maxDistance < 0) {
+            throw new IllegalArgumentException("maxDistance must not be negative!");
+        }
+
+        if (source.length < destination.length) {
+            int[] temporary = source;
+            source = destination;
+            destination = temporary;
+        }
+
+        if (source.length - destination.length > maxDistance) {
+            return maxDistance + 1;
+        }
+
+        // The distance never exceeds the length of the longer sequence
+        maxDistance = Math.min(maxDistance, source.length);
+
+        if (destination.length == 0) {
+            return source.length;
+        }
+
+        if (destination.length <= Long.SIZE && maxDistance >= destination.length / 2) {
+            // The band would be about as wide as the bit vector
+            return Math.min(getBitParallelDistance(source, destination), maxDistance + 1);
+        }
+
+        return getBandedDistance(source, destination, maxDistance);
+    }
+
+    /**
+     * @brief Returns the Levenshtein Distance between two Lists
+     *        The items are compared with equals.
+     *
+     * @param source
+     *     The first List
+     * @param destination
+     *     The second List
+     *
+     * @param <T>
+     *     The type of the items
+     *
+     * @return The Levenshtein Distance
+     */
+    public static <T> int getDistance (List<T> source, List<T> destination) {
+        Map<T, Integer> idMap = new HashMap<>();
+
+        return getDistance(toIds(source, idMap), toIds(destination, idMap));
+    }
+
+    /**
+     * @brief Returns the Levenshtein Distance between two Lists if it does not exceed a maximum
+     *        The items are compared with equals.
+     *
+     * @param source
+     *     The first List
+     * @param destination
+     *     The second List
+     * @param maxDistance
+     *     The maximum distance of interest. Must not be negative
+     *
+     * @param <T>
+     *     The type of the items
+     *
+     * @return The Levenshtein Distance or maxDistance + 1 if the distance exceeds maxDistance
+     */
+    public static <T> int getDistance (List<T> source, List<T> destination, int maxDistance) {
+        Map<T, Integer> idMap = new HashMap<>();
+
+        return getDistance(toIds(source, idMap), toIds(destination, idMap), maxDistance);
+    }
+
+    /**
+     * @brief Maps the items of a List to ids
+     *
+     * @param list
+     *     The List
+     * @param idMap
+     *     The ids of the items mapped so far
+     *
+     * @param <T>
+     *     The type of the items
+     *
+     * @return The ids of the items
+     */
+    private static <T> int[] toIds (List<T> list, Map<T, Integer> idMap) {
+        int[] ids = new int[list.size()];
+
+        int index = 0;
+        for (T item : list) {
+            Integer id = idMap.get(item);
+            if (id == null) {
+                id = idMap.size();
+                idMap.put(item, id);
+            }
+
+            ids[index++] = id;
+        }
+
+        return ids;
+    }
+
+    /**
+     * @brief Calculates the Levenshtein Distance with Myers' bit-parallel algorithm
+     *        The columns of the matrix are encoded as bit vectors of the vertical differences
+     *        between consecutive cells, as formulated by Hyyro for the edit distance.
+     *
+     * @param text
+     *     The longer sequence
+     * @param pattern
+     *     The shorter sequence. Must have between 1 and 64 symbols
+     *
+     * @return The Levenshtein Distance
+     */
+    private static int getBitParallelDistance (int[] text, int[] pattern) {
+        int m = pattern.length;
+
+        // The match bit vector of every distinct symbol of the pattern
+        int[] symbols = Arrays.copyOf(pattern, m);
+        Arrays.sort(symbols);
+        int numberOfSymbols = 0;
+        for (int i = 0; i < m; i++) {
+            if (i == 0 || symbols[i] != symbols[i - 1]) {
+                symbols[numberOfSymbols++] = symbols[i];
+            }
+        }
+
+        long[] matches = new long[numberOfSymbols];
+        for (int i = 0; i < m; i++) {
+            matches[Arrays.binarySearch(symbols, 0, numberOfSymbols, pattern[i])] |= 1L << i;
+        }
+
+        long lastBit = 1L << (m - 1);
+        long positiveVertical = m == Long.SIZE ? - 1L : (1L << m) - 1;
+        long negativeVertical = 0;
+        int distance = m;
+
+        for (int symbol : text) {
+            int index = Arrays.binarySearch(symbols, 0, numberOfSymbols, symbol);
+            long match = index < 0 ? 0 : matches[index];
+
+            long xVertical = match | negativeVertical;
+            long xHorizontal = (((match & positiveVertical) + positiveVertical) ^
+                positiveVertical) | match;
+
+            long positiveHorizontal = negativeVertical | ~ (xHorizontal | positiveVertical);
+            long negativeHorizontal = positiveVertical & xHorizontal;
+
+            if ((positiveHorizontal & lastBit) != 0) {
+                distance++;
+            }
+            else if ((negativeHorizontal & lastBit) != 0) {
+                distance--;
+            }
+
+            // The first row of the matrix grows by one in each column
+            positiveHorizontal = (positiveHorizontal << 1) | 1;
+            negativeHorizontal <<= 1;
+
+            positiveVertical = negativeHorizontal | ~ (xVertical | positiveHorizontal);
+            negativeVertical = positiveHorizontal & xVertical;
+        }
+
+        return distance;
+    }
+
+    /**
+     * @brief Calculates the Levenshtein Distance inside a diagonal band of the matrix
+     *        Only the cells whose row and column differ by at most maxDistance are calculated, two
+     *        rows at a time. The values are capped at maxDistance + 1.
+     *
+     * @param source
+     *     The longer sequence
+     * @param destination
+     *     The shorter sequence
+     * @param maxDistance
+     *     The maximum distance of interest. Must not be less than the difference of the lengths
+     *
+     * @return The Levenshtein Distance or maxDistance + 1 if the distance exceeds maxDistance
+     */
+    private static int getBandedDistance (int[] source, int[] destination, int maxDistance) {
+        int n = source.length;
+        int m = destination.length;
+        int outside = maxDistance + 1;
+
+        int[] previousRow = new int[m + 1];
+        int[] currentRow = new int[m + 1];
+
+        for (int j = 0; j <= m; j++) {
+            previousRow[j] = Math.min(j, outside);
+        }
+
+        for (int i = 1; i <= n; i++) {
+            int low = Math.max(1, i - maxDistance);
+            int high = Math.min(m, i + maxDistance);
+
+            currentRow[low - 1] = low == 1 ? Math.min(i, outside) : outside;
+            int rowMin = currentRow[low - 1];
+
+            int symbol = source[i - 1];
+            for (int j = low; j <= high; j++) {
+                int value = previousRow[j - 1] + (destination[j - 1] == symbol ? 0 : 1);
+                value = Math.min(value, previousRow[j] + 1);
+                value = Math.min(value, currentRow[j - 1] + 1);
+                value = Math.min(value, outside);
+
+                currentRow[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+
+            if (high < m) {
+                currentRow[high + 1] = outside;
+            }
+
+            if (rowMin > maxDistance) {
+                return outside;
+            }
+
+            int[] temporary = previousRow;
+            previousRow = currentRow;
+            currentRow = temporary;
+        }
+
+        return previousRow[m];
+    }
+
+}
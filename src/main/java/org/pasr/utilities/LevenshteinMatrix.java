@@ -169,6 +169,7 @@ public class LevenshteinMatrix<T extends Comparable<T>> {
 
     /**
      * @brief Returns the Levenshtein Distance between two Comparable sequences
+     *        The matrix is not kept, hence the distance is calculated by LevenshteinDistance.
      *
      * @param source
      *     The first List
@@ -181,7 +182,25 @@ public class LevenshteinMatrix<T extends Comparable<T>> {
      * @return The Levenshtein Distance
      */
     public static <T extends Comparable<T>> int getDistance (List<T> source, List<T> destination) {
-        return new LevenshteinMatrix<>(source, destination).getDistance();
+        return LevenshteinDistance.getDistance(source, destination);
+    }
+
+    /**
+     * @brief Returns the change path that should be applied so that source matches destination
+     *
+     * @param source
+     *     The first List
+     * @param destination
+     *     The second List
+     *
+     * @param <T>
+     *     The type of the Comparable used as an individual symbol
+     *
+     * @return The change path that should be applied so that source matches destination
+     */
+    public static <T extends Comparable<T>> int[][] getPath (List<T> source,
+                                                             List<T> destination) {
+        return new LevenshteinMatrix<>(source, destination).getPath();
     }
 
     /**
@@ -0,0 +1,286 @@
+package org.pasr.utilities;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * @class LongIntHashMap
+ * @brief Implements a hash map from primitive long keys to primitive int values
+ *        Open addressing with linear probing is used so that no object is created per entry.
+ *        Entries with a value of zero are never stored: adding to a key until its value becomes
+ *        zero removes it. This makes the map a natural fit for counting.
+ */
+public class LongIntHashMap {
+
+    /**
+     * @brief Default Constructor
+     */
+    public LongIntHashMap () {
+        this(16);
+    }
+
+    /**
+     * @brief Constructor
+     *
+     * @param expectedSize
+     *     The expected number of entries, used to pre-size the storage
+     */
+    public LongIntHashMap (int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) * 2 - 1) << 1;
+
+        keys_ = new long[capacity];
+        values_ = new int[capacity];
+    }
+
+    /**
+     * @brief Returns the value of a key
+     *
+     * @param key
+     *     The key
+     *
+     * @return The value of the key or zero if the key does not exist
+     */
+    public int get (long key) {
+        int mask = keys_.length - 1;
+        int slot = hash(key, seed_) & mask;
+
+        while (values_[slot] != 0) {
+            if (keys_[slot] == key) {
+                return values_[slot];
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        return 0;
+    }
+
+    /**
+     * @brief Returns true if this map contains the given key
+     *
+     * @param key
+     *     The key
+     *
+     * @return True if this map contains the given key
+     */
+    public boolean containsKey (long key) {
+        return get(key) != 0;
+    }
+
+    /**
+     * @brief Adds a value to the value of a key
+     *        If the key does not exist, it is added with the given value. If the resulting value is
+     *        zero, the key is removed.
+     *
+     * @param key
+     *     The key
+     * @param delta
+     *     The value to add
+     *
+     * @return The new value of the key
+     */
+    public int add (long key, int delta) {
+        if (delta == 0) {
+            return get(key);
+        }
+
+        int mask = keys_.length - 1;
+        int slot = hash(key, seed_) & mask;
+
+        while (values_[slot] != 0) {
+            if (keys_[slot] == key) {
+                int value = values_[slot] + delta;
+
+                if (value == 0) {
+                    removeSlot(slot);
+                }
+                else {
+                    values_[slot] = value;
+                }
+
+                return value;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        keys_[slot] = key;
+        values_[slot] = delta;
+        size_++;
+
+        if (size_ * 4 > keys_.length * 3) {
+            resize(keys_.length * 2);
+        }
+
+        return delta;
+    }
+
+    /**
+     * @brief Sets the value of a key
+     *        Setting a value of zero removes the key.
+     *
+     * @param key
+     *     The key
+     * @param value
+     *     The new value
+     */
+    public void put (long key, int value) {
+        add(key, value - get(key));
+    }
+
+    /**
+     * @brief Adds every entry of the given map to this map
+     *
+     * @param other
+     *     The map to add
+     */
+    public void addAll (LongIntHashMap other) {
+        for (int slot = 0, n = other.keys_.length; slot < n; slot++) {
+            if (other.values_[slot] != 0) {
+                add(other.keys_[slot], other.values_[slot]);
+            }
+        }
+    }
+
+    /**
+     * @brief Calls the given Visitor for every entry of this map
+     *        The map must not be modified during the visit.
+     *
+     * @param visitor
+     *     The Visitor
+     */
+    public void forEach (Visitor visitor) {
+        for (int slot = 0, n = keys_.length; slot < n; slot++) {
+            if (values_[slot] != 0) {
+                visitor.visit(keys_[slot], values_[slot]);
+            }
+        }
+    }
+
+    /**
+     * @brief Returns the keys of this map in ascending order
+     *
+     * @return The keys of this map in ascending order
+     */
+    public long[] sortedKeys () {
+        long[] keys = new long[size_];
+
+        int index = 0;
+        for (int slot = 0, n = keys_.length; slot < n; slot++) {
+            if (values_[slot] != 0) {
+                keys[index++] = keys_[slot];
+            }
+        }
+
+        Arrays.sort(keys);
+
+        return keys;
+    }
+
+    /**
+     * @brief Returns the number of entries in this map
+     *
+     * @return The number of entries in this map
+     */
+    public int size () {
+        return size_;
+    }
+
+    /**
+     * @brief Removes the entry of a slot shifting back the entries of its probe chain
+     *
+     * @param slot
+     *     The slot to remove
+     */
+    private void removeSlot (int slot) {
+        int mask = keys_.length - 1;
+
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (values_[next] != 0) {
+            int home = hash(keys_[next], seed_) & mask;
+
+            // Move the entry into the hole if its home slot is not between the hole and itself
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys_[hole] = keys_[next];
+                values_[hole] = values_[next];
+                hole = next;
+            }
+
+            next = (next + 1) & mask;
+        }
+
+        keys_[hole] = 0;
+        values_[hole] = 0;
+        size_--;
+    }
+
+    private void resize (int capacity) {
+        long[] oldKeys = keys_;
+        int[] oldValues = values_;
+
+        keys_ = new long[capacity];
+        values_ = new int[capacity];
+
+        int mask = capacity - 1;
+        for (int i = 0, n = oldKeys.length; i < n; i++) {
+            if (oldValues[i] != 0) {
+                int slot = hash(oldKeys[i], seed_) & mask;
+
+                while (values_[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+
+                keys_[slot] = oldKeys[i];
+                values_[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * @brief Returns the hash of a key
+     *        Every map uses its own seed. Otherwise, copying a map into a smaller one in slot order
+     *        (as addAll does) would insert the keys in hash order and build long probe chains.
+     *
+     * @param key
+     *     The key
+     * @param seed
+     *     The seed of the map
+     *
+     * @return The hash of the key
+     */
+    private static int hash (long key, long seed) {
+        key = (key ^ seed) * 0xBF58476D1CE4E5B9L;
+        key = (key ^ (key >>> 31)) * 0x94D049BB133111EBL;
+
+        return (int) (key ^ (key >>> 32));
+    }
+
+    /**
+     * @interface Visitor
+     * @brief Defines the API of a callback for every entry of a LongIntHashMap
+     */
+    public interface Visitor {
+
+        /**
+         * @brief Visits an entry
+         *
+         * @param key
+         *     The key of the entry
+         * @param value
+         *     The value of the entry
+         */
+        void visit (long key, int value);
+
+    }
+
+    private long[] keys_; //!< The keys of each slot
+    private int[] values_; //!< The values of each slot. Zero denotes an empty slot
+    private int size_ = 0; //!< The number of entries
+
+    private final long seed_ = SEED_SEQUENCE.getAndAdd(0x9E3779B97F4A7C15L); //!< The hash seed
+
+    private static final AtomicLong SEED_SEQUENCE = new AtomicLong(); //!< Generates the hash seeds
+
+}
@@ -0,0 +1,156 @@
+package org.pasr.utilities;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * @class SymbolTable
+ * @brief Implements a table that interns Strings into dense int ids
+ *        Symbols get the ids 0, 1, 2, ... in the order they are first seen and keep them for the
+ *        lifetime of the table, so that sequences of symbols can be stored and compared as int
+ *        arrays. Two tables are shared by the whole application, one for the phones and one for
+ *        the words.
+ *
+ *        This class is thread safe.
+ */
+public class SymbolTable {
+
+    /**
+     * @brief Default Constructor
+     */
+    public SymbolTable () {
+    }
+
+    /**
+     * @brief Returns the SymbolTable of the phones
+     *
+     * @return The SymbolTable of the phones
+     */
+    public static SymbolTable getPhoneTable () {
+        return PHONE_TABLE;
+    }
+
+    /**
+     * @brief Returns the SymbolTable of the words
+     *
+     * @return The SymbolTable of the words
+     */
+    public static SymbolTable getWordTable () {
+        return WORD_TABLE;
+    }
+
+    /**
+     * @brief Returns the id of a symbol, adding the symbol to this table if needed
+     *
+     * @param symbol
+     *     The symbol
+     *
+     * @return The id of the symbol
+     */
+    public int getId (String symbol) {
+        Integer id = idMap_.get(symbol);
+
+        return id != null ? id : add(symbol);
+    }
+
+    /**
+     * @brief Returns the ids of a List of symbols, adding the symbols to this table if needed
+     *
+     * @param symbols
+     *     The symbols
+     *
+     * @return The ids of the symbols
+     */
+    public int[] getIds (List<String> symbols) {
+        int[] ids = new int[symbols.size()];
+
+        int index = 0;
+        for (String symbol : symbols) {
+            ids[index++] = getId(symbol);
+        }
+
+        return ids;
+    }
+
+    /**
+     * @brief Returns the id of a symbol without adding it to this table
+     *
+     * @param symbol
+     *     The symbol
+     *
+     * @return The id of the symbol or NOT_FOUND if the symbol is not in this table
+     */
+    public int getIdIfPresent (String symbol) {
+        Integer id = idMap_.get(symbol);
+
+        return id != null ? id : NOT_FOUND;
+    }
+
+    /**
+     * @brief Returns the symbol of an id
+     *
+     * @param id
+     *     The id
+     *
+     * @return The symbol of the id
+     */
+    public String getSymbol (int id) {
+        // size_ is read first, so symbols_ is at least as recent as the ids it covers
+        if (id < 0 || id >= size_) {
+            throw new IllegalArgumentException("Unknown symbol id: " + id);
+        }
+
+        return symbols_[id];
+    }
+
+    /**
+     * @brief Returns the number of symbols inside this table
+     *
+     * @return The number of symbols inside this table
+     */
+    public int size () {
+        return size_;
+    }
+
+    /**
+     * @brief Adds a symbol to this table
+     *
+     * @param symbol
+     *     The symbol
+     *
+     * @return The id of the symbol
+     */
+    private synchronized int add (String symbol) {
+        Integer id = idMap_.get(symbol);
+        if (id != null) {
+            return id;
+        }
+
+        String[] symbols = symbols_;
+        if (size_ == symbols.length) {
+            symbols = Arrays.copyOf(symbols, symbols.length * 2);
+        }
+        symbols[size_] = symbol;
+        symbols_ = symbols;
+
+        // The symbol must be readable by its id before the id is published through the map
+        int newId = size_;
+        size_ = newId + 1;
+        idMap_.put(symbol, newId);
+
+        return newId;
+    }
+
+    private final Map<String, Integer> idMap_ = new ConcurrentHashMap<>(); //!< Symbol to id map
+    private volatile String[] symbols_ = new String[64]; //!< The symbol of each id
+    private volatile int size_ = 0; //!< The number of symbols
+
+    public static final int NOT_FOUND = - 1; //!< The id returned for a symbol that is not found
+
+    private static final SymbolTable PHONE_TABLE = new SymbolTable(); //!< The table of the phones
+    private static final SymbolTable WORD_TABLE = new SymbolTable(); //!< The table of the words
+
+}
@@ -0,0 +1,259 @@
+package org.pasr.asr.dictionary;
+
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pasr.prep.corpus.WordSequence;
+import org.pasr.utilities.SymbolTable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class DictionaryTest {
+    private Dictionary dictionary_;
+
+    @Before
+    public void setUp(){
+        dictionary_ = new Dictionary();
+
+        dictionary_.put("the", "DH AH");
+        dictionary_.put("the", "DH IY");
+        dictionary_.put("cat", "K AE T ");
+    }
+
+    @Test
+    public void testGetPhoneIds(){
+        assertArrayEquals(getIds("DH", "AH"), dictionary_.getPhoneIds("the"));
+        assertArrayEquals(getIds("DH", "IY"), dictionary_.getPhoneIds("the(2)"));
+        assertArrayEquals(getIds("K", "AE", "T"), dictionary_.getPhoneIds("cat"));
+        assertArrayEquals(getIds("D", "O", "G"), dictionary_.getPhoneIds("dog"));
+
+        WordSequence wordSequence = new WordSequence("the cat");
+        assertArrayEquals(getIds("DH", "AH", "K", "AE", "T"),
+            dictionary_.getPhoneIdsInLine(wordSequence));
+        assertEquals(Arrays.asList("DH", "AH", "K", "AE", "T"),
+            dictionary_.getPhonesInLine(wordSequence));
+    }
+
+    @Test
+    public void testModification(){
+        dictionary_.remove("the");
+        assertArrayEquals(getIds("T", "H", "E"), dictionary_.getPhoneIds("the"));
+        assertArrayEquals(getIds("T", "H", "E", "(", "2", ")"),
+            dictionary_.getPhoneIds("the(2)"));
+
+        dictionary_.putAll(Collections.singletonMap("cat", "K AA T"));
+        assertArrayEquals(getIds("K", "AA", "T"), dictionary_.getPhoneIds("cat"));
+        assertEquals(1, dictionary_.size());
+
+        dictionary_.clear();
+        assertArrayEquals(getIds("C", "A", "T"), dictionary_.getPhoneIds("cat"));
+    }
+
+    @Test
+    public void testAlternates(){
+        dictionary_.put("the", "DH AH");
+        dictionary_.put("the", "DH IY");
+        dictionary_.put("the", "TH IY");
+        dictionary_.put("a(1)", "AH");
+
+        Map<String, String> expected = new LinkedHashMap<>();
+        expected.put("the", "DH AH");
+        expected.put("the(2)", "DH IY");
+        expected.put("the(3)", "DH AH");
+        expected.put("the(4)", "TH IY");
+        assertEquals(expected, dictionary_.getEntriesByKey("the"));
+        assertArrayEquals(getIds("TH", "IY"), dictionary_.getPhoneIds("the(4)"));
+        assertArrayEquals(getIds("AH"), dictionary_.getPhoneIds("a(1)"));
+        assertNull(dictionary_.getEntriesByKey("dog"));
+
+        dictionary_.remove("the(3)");
+        expected.remove("the(3)");
+        expected.remove("the(4)");
+        assertEquals(expected, dictionary_.getEntriesByKey("the"));
+
+        dictionary_.put("the", "TH AH");
+        assertEquals("TH AH", dictionary_.get("the(3)"));
+
+        dictionary_.remove("the");
+        assertNull(dictionary_.getEntriesByKey("the"));
+        assertEquals(new HashSet<>(Arrays.asList("cat", "a(1)")),
+            dictionary_.keySet());
+    }
+
+    @Test
+    public void testExportToStream(){
+        dictionary_.put("a", "AH");
+        dictionary_.put("cats", "K AE T S");
+        dictionary_.put("a", "EY");
+        dictionary_.put("dog", "D AO G");
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        dictionary_.exportToStream(outputStream);
+
+        assertEquals("a AH\nthe DH AH\ncat K AE T \ndog D AO G\ncats K AE T S\na(2) EY\n" +
+            "the(2) DH IY\n", outputStream.toString());
+
+        Dictionary dictionary = Dictionary.createFromStream(
+            new ByteArrayInputStream(outputStream.toByteArray())
+        );
+        assertEquals(dictionary_, dictionary);
+        assertArrayEquals(getIds("EY"), dictionary.getPhoneIds("a(2)"));
+    }
+
+    @Test
+    public void testCache(){
+        WordSequence wordSequence = new WordSequence("the dog");
+
+        long hitCount = dictionary_.getCacheHitCount();
+        long missCount = dictionary_.getCacheMissCount();
+
+        int[] phoneIds = dictionary_.getPhoneIdsInLine(wordSequence);
+        assertArrayEquals(getIds("DH", "AH", "D", "O", "G"), phoneIds);
+        assertEquals(missCount + 2, dictionary_.getCacheMissCount());
+
+        assertSame(phoneIds, dictionary_.getPhoneIdsInLine(new WordSequence("the dog")));
+        assertEquals(hitCount + 1, dictionary_.getCacheHitCount());
+
+        // Modifications must not leave stale phones behind
+        dictionary_.put("dog", "D AO G");
+        assertArrayEquals(getIds("DH", "AH", "D", "AO", "G"),
+            dictionary_.getPhoneIdsInLine(wordSequence));
+
+        dictionary_.remove("the");
+        assertArrayEquals(getIds("T", "H", "E", "D", "AO", "G"),
+            dictionary_.getPhoneIdsInLine(wordSequence));
+
+        assertEquals(missCount + 5, dictionary_.getCacheMissCount());
+
+        dictionary_.addUnknownWord("dog");
+        dictionary_.getPhoneIdsInLine(wordSequence);
+        assertEquals(missCount + 7, dictionary_.getCacheMissCount());
+    }
+
+    @Test
+    public void testCacheConcurrency() throws InterruptedException, ExecutionException {
+        List<Callable<Boolean>> taskList = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            taskList.add(() -> {
+                for (int j = 0; j < 10000; j++) {
+                    WordSequence wordSequence = new WordSequence("the cat w" + (j % 5000));
+
+                    if (dictionary_.getPhoneIdsInLine(wordSequence).length !=
+                        5 + wordSequence.get(2).toString().length()) {
+                        return false;
+                    }
+                }
+                return true;
+            });
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            for (Future<Boolean> future : executorService.invokeAll(taskList)) {
+                assertTrue(future.get());
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void testCreateFromFile() throws IOException {
+        // Large enough to be split into several chunks
+        Dictionary expected = new Dictionary();
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            String word = "w" + (i % 15000);
+            String value = "P" + (i % 7) + " P" + (i % 11);
+
+            expected.put(word, value);
+            stringBuilder.append(word).append(" ").append(value).append(i % 2 == 0 ? "\n" : "\r\n");
+        }
+        stringBuilder.append("\n");
+
+        File file = File.createTempFile("dictionary", ".dict");
+        file.deleteOnExit();
+        Files.write(file.toPath(), stringBuilder.toString().getBytes(StandardCharsets.UTF_8));
+
+        Dictionary dictionary = Dictionary.createFromFile(file);
+        assertEquals(expected, dictionary);
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(dictionary.keySet()));
+        assertArrayEquals(getIds("P2", "P10"), dictionary.getPhoneIds("w3(2)"));
+    }
+
+    @Test
+    public void testBinaryFile() throws IOException {
+        dictionary_.put("a", "AH");
+        dictionary_.put("a", "EY");
+
+        File binaryFile = File.createTempFile("dictionary", ".bin");
+        binaryFile.deleteOnExit();
+
+        dictionary_.exportToBinaryFile(binaryFile);
+        Dictionary dictionary = Dictionary.createFromBinaryFile(binaryFile);
+
+        assertEquals(dictionary_, dictionary);
+        assertEquals(new ArrayList<>(dictionary_.keySet()), new ArrayList<>(dictionary.keySet()));
+        assertArrayEquals(getIds("K", "AE", "T"), dictionary.getPhoneIds("cat"));
+        assertArrayEquals(getIds("EY"), dictionary.getPhoneIds("a(2)"));
+        assertEquals(Arrays.asList("the", "a", "cat"), dictionary.fuzzyMatch("the"));
+    }
+
+    @Test
+    public void testBinaryFileSource() throws IOException {
+        File source = File.createTempFile("dictionary", ".dict");
+        source.deleteOnExit();
+        Files.write(source.toPath(), "cat K AE T\n".getBytes(StandardCharsets.UTF_8));
+        assertTrue(source.setLastModified(1000000000000L));
+
+        File binaryFile = File.createTempFile("dictionary", ".bin");
+        binaryFile.deleteOnExit();
+
+        Dictionary.createFromFile(source).exportToBinaryFile(binaryFile, source);
+        assertEquals(1, Dictionary.createFromBinaryFile(binaryFile, source).size());
+
+        // A replaced dictionary file is detected even if it is older than the snapshot
+        Files.write(source.toPath(), "dog D AO G\n".getBytes(StandardCharsets.UTF_8));
+        assertTrue(source.setLastModified(999999999000L));
+        try {
+            Dictionary.createFromBinaryFile(binaryFile, source);
+            fail("A stale snapshot was loaded");
+        } catch (IOException e) {
+            // expected
+        }
+
+        // Without a source any snapshot is accepted
+        assertEquals(1, Dictionary.createFromBinaryFile(binaryFile).size());
+    }
+
+    private static int[] getIds(String... phones){
+        List<String> phoneList = Arrays.asList(phones);
+
+        return SymbolTable.getPhoneTable().getIds(phoneList);
+    }
+}
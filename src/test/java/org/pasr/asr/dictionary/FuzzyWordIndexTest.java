@@ -0,0 +1,79 @@
+package org.pasr.asr.dictionary;
+
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.apache.commons.lang3.StringUtils.getLevenshteinDistance;
+import static org.junit.Assert.assertEquals;
+
+
+public class FuzzyWordIndexTest {
+
+    @Test
+    public void testGetClosest(){
+        Random random = new Random(5);
+
+        Set<String> words = new HashSet<>();
+        for (int i = 0; i < 3000; i++) {
+            words.add(randomWord(random));
+        }
+
+        FuzzyWordIndex fuzzyWordIndex = new FuzzyWordIndex(words);
+        assertEquals(words.size(), fuzzyWordIndex.size());
+
+        for (int i = 0; i < 300; i++) {
+            String query = randomWord(random);
+            int count = 1 + random.nextInt(8);
+
+            Comparator<String> byDistance = Comparator.comparingInt(
+                word -> getLevenshteinDistance(query, word)
+            );
+
+            List<String> expected = words.stream()
+                .sorted(byDistance.thenComparing(Comparator.naturalOrder()))
+                .limit(count)
+                .collect(Collectors.toList());
+
+            assertEquals(query, expected, fuzzyWordIndex.getClosest(query, count));
+        }
+    }
+
+    @Test
+    public void testFuzzyMatch(){
+        Dictionary dictionary = new Dictionary();
+        dictionary.put("cat", "K AE T");
+        dictionary.put("cut", "K AH T");
+        dictionary.put("cart", "K AA R T");
+        dictionary.put("cat", "K AA T");
+
+        assertEquals(Arrays.asList("cat", "cart", "cut"), dictionary.fuzzyMatch("cat"));
+
+        // The index follows the modifications of the dictionary
+        dictionary.put("bat", "B AE T");
+        assertEquals(Arrays.asList("bat", "cat", "cart", "cut"), dictionary.fuzzyMatch("bat"));
+
+        dictionary.remove("bat");
+        assertEquals(Arrays.asList("cat", "cart", "cut"), dictionary.fuzzyMatch("bat"));
+
+        assertEquals(new ArrayList<>(), new FuzzyWordIndex(new HashSet<>()).getClosest("a", 3));
+    }
+
+    private static String randomWord(Random random){
+        StringBuilder stringBuilder = new StringBuilder();
+
+        for (int i = 0, n = 2 + random.nextInt(8); i < n; i++) {
+            stringBuilder.append((char) ('a' + random.nextInt(6)));
+        }
+
+        return stringBuilder.toString();
+    }
+}
@@ -0,0 +1,202 @@
+package org.pasr.asr.language;
+
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pasr.prep.corpus.WordSequence;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class LanguageModelBuilderTest {
+    private List<WordSequence> sentences_;
+    private NGramCounts nGramCounts_;
+
+    @Before
+    public void setUp(){
+        sentences_ = new ArrayList<>();
+        for (String text : Arrays.asList(
+            "the cat sat on the mat", "the dog sat on the log", "a cat and a dog",
+            "the cat ate", "the dog ate the cat", "on the mat sat a dog")) {
+
+            sentences_.add(new WordSequence(text));
+        }
+
+        nGramCounts_ = NGramCounts.count(sentences_);
+    }
+
+    @Test
+    public void testCount(){
+        assertEquals(6, nGramCounts_.getNumberOfSentences());
+        assertEquals(8, nGramCounts_.getCount("the"));
+        assertEquals(4, nGramCounts_.getCount("<s>", "the"));
+        assertEquals(2, nGramCounts_.getCount("sat", "on", "the"));
+        assertEquals(0, nGramCounts_.getCount("cat", "cat"));
+        assertEquals(0, nGramCounts_.getCount("unknown"));
+
+        nGramCounts_.remove(Arrays.asList("the", "cat", "ate"));
+        assertEquals(7, nGramCounts_.getCount("the"));
+        assertEquals(0, nGramCounts_.getCount("cat", "ate"));
+        assertEquals(1, nGramCounts_.getCount("dog", "ate"));
+        assertEquals(5, nGramCounts_.getNumberOfSentences());
+    }
+
+    @Test
+    public void testNormalization(){
+        LanguageModel languageModel = new LanguageModelBuilder(nGramCounts_).build();
+        Vocabulary vocabulary = nGramCounts_.getVocabulary();
+
+        for (String history : Arrays.asList("<s> the", "sat on", "the cat", "a dog", "mat sat")) {
+            double sum = 0;
+            for (int id = 0; id < vocabulary.size(); id++) {
+                String word = vocabulary.getWord(id);
+
+                if (! word.equals(NGramCounts.SENTENCE_START)) {
+                    sum += languageModel.getProbability(new WordSequence(history + " " + word));
+                }
+            }
+
+            assertEquals(1, sum, 1e-09);
+        }
+    }
+
+    @Test
+    public void testArpaRoundTrip() throws IOException {
+        LanguageModelBuilder languageModelBuilder = new LanguageModelBuilder(nGramCounts_);
+
+        StringWriter stringWriter = new StringWriter();
+        languageModelBuilder.writeArpa(stringWriter);
+
+        LanguageModel arpaLanguageModel = LanguageModel.createFromInputStream(
+            new ByteArrayInputStream(stringWriter.toString().getBytes(StandardCharsets.UTF_8))
+        );
+        LanguageModel languageModel = languageModelBuilder.build();
+
+        for (String text : Arrays.asList("the cat", "sat on the", "the log ate", "dog mat cat")) {
+            WordSequence wordSequence = new WordSequence(text);
+
+            assertEquals(languageModel.getLogProbability(wordSequence),
+                arpaLanguageModel.getLogProbability(wordSequence), 3e-04);
+        }
+    }
+
+    @Test
+    public void testUpdate() throws IOException {
+        List<WordSequence> editedSentences = new ArrayList<>();
+        for (String text : Arrays.asList(
+            "the cat sat on the mat", "the dog sat on the rug", "a cat and a dog",
+            "the cat ate", "on the mat sat a dog", "a bird sat on the cat")) {
+
+            editedSentences.add(new WordSequence(text));
+        }
+
+        File countsFile = File.createTempFile("ngram_counts", ".bin");
+        countsFile.deleteOnExit();
+
+        nGramCounts_.writeToFile(countsFile);
+        NGramCounts nGramCounts = NGramCounts.createFromFile(countsFile);
+
+        assertEquals(4, nGramCounts.update(sentences_, editedSentences));
+
+        LanguageModel updatedLanguageModel = new LanguageModelBuilder(nGramCounts).build();
+        LanguageModel languageModel = new LanguageModelBuilder(
+            NGramCounts.count(editedSentences)
+        ).build();
+
+        assertEquals(editedSentences.size(), nGramCounts.getNumberOfSentences());
+        for (String text : Arrays.asList(
+            "the rug", "sat on the", "a bird", "the log", "dog ate", "cat sat on the mat")) {
+
+            WordSequence wordSequence = new WordSequence(text);
+
+            assertEquals(languageModel.getLogProbability(wordSequence),
+                updatedLanguageModel.getLogProbability(wordSequence), 1e-09);
+        }
+    }
+
+    @Test
+    public void testIncrementalUpdate() throws IOException {
+        Random random = new Random(42);
+
+        List<WordSequence> sentences = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int j = 0, n = 3 + random.nextInt(10); j < n; j++) {
+                // Skewed towards the first words as in natural text
+                text.append(" w").append((int) (1000 * Math.pow(random.nextDouble(), 3)));
+            }
+
+            sentences.add(new WordSequence(text.toString().trim()));
+        }
+
+        File countsFile = File.createTempFile("ngram_counts", ".bin");
+        countsFile.deleteOnExit();
+        File estimateFile = File.createTempFile("language_model_estimate", ".bin");
+        estimateFile.deleteOnExit();
+
+        NGramCounts nGramCounts = NGramCounts.count(sentences);
+        nGramCounts.writeToFile(countsFile);
+        new LanguageModelBuilder(nGramCounts).writeToFile(estimateFile);
+
+        nGramCounts = NGramCounts.createFromFile(countsFile);
+        LanguageModelBuilder languageModelBuilder = LanguageModelBuilder.createFromFile(
+            nGramCounts, estimateFile
+        );
+        assertFalse(nGramCounts.hasChanges());
+
+        List<WordSequence> editedSentences = new ArrayList<>(sentences);
+        editedSentences.set(7, new WordSequence(
+            sentences.get(7).toString().replaceFirst("w\\d+", "unknown")
+        ));
+        editedSentences.remove(11);
+
+        assertEquals(3, nGramCounts.update(sentences, editedSentences));
+        assertTrue(nGramCounts.hasChanges());
+
+        LanguageModel updatedLanguageModel = languageModelBuilder.build();
+        NGramStore nGramStore = languageModelBuilder.getNGramStore();
+
+        assertFalse(nGramCounts.hasChanges());
+        assertTrue(languageModelBuilder.getNumberOfEstimatedNGrams() * 20 <
+            nGramStore.getUnigramCount() + nGramStore.getBigramCount() +
+                nGramStore.getTrigramCount());
+
+        LanguageModel languageModel = new LanguageModelBuilder(
+            NGramCounts.count(editedSentences)
+        ).build();
+
+        for (WordSequence sentence : editedSentences.subList(0, 500)) {
+            for (int order = 1; order <= 3; order++) {
+                for (int i = 0; i + order <= sentence.getWordTextList().size(); i++) {
+                    WordSequence wordSequence = sentence.subSequence(i, i + order);
+
+                    assertEquals(languageModel.getLogProbability(wordSequence),
+                        updatedLanguageModel.getLogProbability(wordSequence), 1e-03);
+                }
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testCreateFromFileMismatch() throws IOException {
+        File estimateFile = File.createTempFile("language_model_estimate", ".bin");
+        estimateFile.deleteOnExit();
+
+        new LanguageModelBuilder(nGramCounts_).writeToFile(estimateFile);
+        nGramCounts_.add(Arrays.asList("a", "bird", "sat"));
+
+        LanguageModelBuilder.createFromFile(nGramCounts_, estimateFile);
+    }
+}
@@ -5,9 +5,13 @@ import org.junit.Before;
 import org.junit.Test;
 import org.pasr.prep.corpus.WordSequence;
 
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Arrays;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.pasr.utilities.Utilities.getResourceStream;
 
 
@@ -87,4 +91,88 @@ public class LanguageModelTest {
         assertEquals(0, languageModel_.getProbability(new WordSequence(
             "word10 word11 word12 word13 word14 word15")), 1e-06);
     }
+
+    @Test
+    public void testBinaryRoundTrip() throws IOException {
+        File binaryFile = File.createTempFile("language_model", ".bin");
+        binaryFile.deleteOnExit();
+
+        languageModel_.exportToBinaryFile(binaryFile);
+        LanguageModel binaryLanguageModel = LanguageModel.createFromBinaryFile(binaryFile);
+
+        // The binary model gives the same probabilities as the ARPA model it was created from
+        for(String sequence : Arrays.asList(
+            "word1", "word6", "word15", "word1 word2", "word12 word14", "word13 word15",
+            "word1 word2 word3", "word15 word14 word13", "word2 word3 word4",
+            "word1 word2 word4", "word1 word2 word3 word4",
+            "word10 word11 word12 word13 word14 word15", "word3 word5 word6 word1 word2 word4"
+        )){
+            WordSequence wordSequence = new WordSequence(sequence);
+
+            assertEquals(sequence, languageModel_.getProbability(wordSequence),
+                binaryLanguageModel.getProbability(wordSequence), 1e-06);
+            assertEquals(sequence, languageModel_.getLogProbability(wordSequence),
+                binaryLanguageModel.getLogProbability(wordSequence), 1e-06);
+        }
+
+        assertEquals(0.3168, binaryLanguageModel.getProbability(new WordSequence(
+            "word1 word2 word4")), 1e-04);
+        assertEquals(Double.NEGATIVE_INFINITY, binaryLanguageModel.getLogProbability(
+            new WordSequence("word1 unknown")), 0);
+    }
+
+    @Test
+    public void testGetLogProbability(){
+        assertEquals(-1, languageModel_.getLogProbability(new WordSequence("word1")), 1e-04);
+        assertEquals(-0.3565, languageModel_.getLogProbability(new WordSequence("word1 word2")),
+            1e-04);
+        assertEquals(Math.log10(0.001056), languageModel_.getLogProbability(new WordSequence(
+            "word1 word2 word3 word4")), 1e-03);
+
+        // Unknown words have zero probability
+        assertEquals(Double.NEGATIVE_INFINITY, languageModel_.getLogProbability(new WordSequence(
+            "word1 unknown")), 0);
+
+        // A long sequence underflows in the linear domain but not in the log domain
+        StringBuilder stringBuilder = new StringBuilder();
+        for(int i = 0;i < 300;i++){
+            stringBuilder.append("word1 word2 word3 ");
+        }
+        WordSequence longSequence = new WordSequence(stringBuilder.toString());
+
+        assertEquals(0, languageModel_.getProbability(longSequence), 0);
+
+        double logProbability = languageModel_.getLogProbability(longSequence);
+        assertTrue(logProbability < -400 && ! Double.isInfinite(logProbability));
+
+        double sum = 0;
+        for(double score : languageModel_.getWordLogProbabilities(longSequence)){
+            sum += score;
+        }
+        assertEquals(logProbability, sum, 1e-06);
+    }
+
+    @Test
+    public void testIncrementalScoring(){
+        WordSequence context = new WordSequence("word1 word2");
+        LanguageModel.State state = languageModel_.getState(context);
+
+        assertEquals(2, state.getLength());
+        assertEquals(-1 - 0.3565, state.getTotalLogProbability(), 1e-04);
+
+        state = languageModel_.append(state, "word3");
+        assertEquals(-0.6989, state.getLogProbability(), 1e-04);
+
+        state = languageModel_.append(state, languageModel_.getWordId("word4"));
+        assertEquals(languageModel_.getLogProbability(new WordSequence(
+            "word1 word2 word3 word4")), state.getTotalLogProbability(), 1e-06);
+
+        double[] scores = languageModel_.getLogProbabilities(context, Arrays.asList(
+            new WordSequence("word3 word4"), new WordSequence("word4"), new WordSequence("")
+        ));
+
+        assertEquals(-0.6989 + Math.log10(0.12), scores[0], 1e-03);
+        assertEquals(Math.log10(0.3168), scores[1], 1e-03);
+        assertEquals(0, scores[2], 0);
+    }
 }
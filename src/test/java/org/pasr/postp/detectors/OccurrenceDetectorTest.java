@@ -0,0 +1,107 @@
+package org.pasr.postp.detectors;
+
+
+import org.junit.Test;
+import org.pasr.prep.corpus.Word;
+import org.pasr.prep.corpus.WordSequence;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class OccurrenceDetectorTest {
+
+    @Test
+    public void testDetect(){
+        Random random = new Random(3);
+
+        List<WordSequence> sentences = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            sentences.add(randomSentence(random, 12, 100));
+        }
+
+        OccurrenceDetector occurrenceDetector = new OccurrenceDetector(sentences);
+        OccurrenceMatrix occurrenceMatrix = new OccurrenceMatrix(sentences, 10);
+
+        for (int i = 0; i < 500; i++) {
+            // Words up to w119 include some that are not in the corpus
+            WordSequence wordSequence = randomSentence(random, 20, 120);
+
+            List<Word> errorWords = occurrenceDetector.detect(wordSequence);
+            for (Word word : errorWords) {
+                assertEquals(wordSequence.get(word.getIndex()), word);
+            }
+
+            assertEquals(wordSequence.toString(),
+                getLegacyErrorWords(wordSequence, occurrenceMatrix, 0.10),
+                errorWords.stream().map(Word:: toString).collect(Collectors.toList()));
+        }
+    }
+
+    private static WordSequence randomSentence(Random random, int maximumSize, int numberOfWords){
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int j = 0, n = 1 + random.nextInt(maximumSize); j < n; j++) {
+            stringBuilder.append("w").append(random.nextInt(1 + random.nextInt(numberOfWords)))
+                .append(" ");
+        }
+
+        return new WordSequence(stringBuilder.toString());
+    }
+
+    /**
+     * The scoring that OccurrenceDetector.detect did on List objects
+     */
+    private static List<String> getLegacyErrorWords(WordSequence wordSequence,
+                                                    OccurrenceMatrix occurrenceMatrix,
+                                                    double threshold){
+        List<String> wordList = wordSequence.getWordTextList();
+        int numberOfWords = wordList.size();
+
+        double[][] scoreBoard = new double[numberOfWords][numberOfWords];
+        for (int i = 0; i < numberOfWords; i++) {
+            for (int j = i; j < numberOfWords; j++) {
+                if (i != j) {
+                    List<String> list1 = Arrays.asList(occurrenceMatrix.getList(wordList.get(i)));
+                    List<String> list2 = Arrays.asList(occurrenceMatrix.getList(wordList.get(j)));
+
+                    int intersectionSize = 0;
+                    for (String word : list1) {
+                        if (list2.contains(word)) {
+                            intersectionSize++;
+                        }
+                    }
+
+                    int maximumSize = Math.max(list1.size(), list2.size());
+                    scoreBoard[i][j] = maximumSize == 0 ? 0 :
+                        ((double) intersectionSize) / maximumSize;
+                    scoreBoard[j][i] = scoreBoard[i][j];
+                }
+                else {
+                    scoreBoard[i][j] = 1;
+                }
+            }
+        }
+
+        List<String> errorCandidateList = new ArrayList<>();
+        for (int i = 0; i < numberOfWords; i++) {
+            double score = 0;
+            for (int j = 0; j < numberOfWords; j++) {
+                score += scoreBoard[i][j];
+            }
+            score /= numberOfWords;
+
+            if (score < threshold) {
+                errorCandidateList.add(wordList.get(i));
+            }
+        }
+
+        return wordList.stream()
+            .filter(errorCandidateList:: contains)
+            .collect(Collectors.toList());
+    }
+}
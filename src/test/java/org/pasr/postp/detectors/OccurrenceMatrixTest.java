@@ -0,0 +1,116 @@
+package org.pasr.postp.detectors;
+
+
+import org.junit.Test;
+import org.pasr.prep.corpus.CompactCorpus;
+import org.pasr.prep.corpus.WordSequence;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+
+public class OccurrenceMatrixTest {
+
+    @Test
+    public void testGetList(){
+        List<WordSequence> sentences = Arrays.asList(
+            new WordSequence("the cat sat on the mat"),
+            new WordSequence("the dog sat"),
+            new WordSequence("a cat")
+        );
+
+        OccurrenceMatrix occurrenceMatrix = new OccurrenceMatrix(sentences, 3);
+
+        // "the" co-occurs three times with "sat" and twice with "cat", "mat", "on" and itself
+        assertEquals(sorted("sat", "cat", "the"), sorted(occurrenceMatrix.getList("the")));
+        assertEquals(sorted("the", "a", "cat"), sorted(occurrenceMatrix.getList("cat")));
+        assertArrayEquals(new String[0], occurrenceMatrix.getList("bird"));
+
+        assertEquals(OccurrenceMatrix.NOT_FOUND, occurrenceMatrix.getRow("bird"));
+        assertEquals(3, occurrenceMatrix.intersectionSize(
+            occurrenceMatrix.getRow("the"), occurrenceMatrix.getRow("sat")
+        ));
+    }
+
+    @Test
+    public void testRandomCorpus(){
+        Random random = new Random(5);
+
+        List<WordSequence> sentences = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            StringBuilder stringBuilder = new StringBuilder();
+            for (int j = 0, n = random.nextInt(12); j < n; j++) {
+                stringBuilder.append("w").append(random.nextInt(200) % (1 + random.nextInt(200)))
+                    .append(" ");
+            }
+            sentences.add(new WordSequence(stringBuilder.toString()));
+        }
+
+        Map<String, List<String>> expected = getLists(sentences, 10);
+
+        for (OccurrenceMatrix occurrenceMatrix : Arrays.asList(
+            new OccurrenceMatrix(sentences, 10),
+            new OccurrenceMatrix(new CompactCorpus(sentences), 10))) {
+
+            for (Map.Entry<String, List<String>> entry : expected.entrySet()) {
+                assertEquals(entry.getKey(), sorted(entry.getValue().toArray(new String[0])),
+                    sorted(occurrenceMatrix.getList(entry.getKey())));
+            }
+        }
+    }
+
+    private static List<String> sorted(String... words){
+        List<String> list = new ArrayList<>(Arrays.asList(words));
+        Collections.sort(list);
+
+        return list;
+    }
+
+    /**
+     * The lists that OccurrenceDetector built before OccurrenceMatrix, with ties broken by text
+     */
+    private static Map<String, List<String>> getLists(List<WordSequence> sentences,
+                                                      int listSize){
+        Map<String, Map<String, Integer>> counts = new HashMap<>();
+
+        for (WordSequence sentence : sentences) {
+            List<String> words = sentence.getWordTextList();
+
+            for (int i = 0, n = words.size(); i < n; i++) {
+                counts.computeIfAbsent(words.get(i), word -> new HashMap<>());
+
+                for (int j = i + 1; j < n; j++) {
+                    counts.computeIfAbsent(words.get(j), word -> new HashMap<>());
+
+                    counts.get(words.get(i)).merge(words.get(j), 1, Integer:: sum);
+                    counts.get(words.get(j)).merge(words.get(i), 1, Integer:: sum);
+                }
+            }
+        }
+
+        Map<String, List<String>> lists = new HashMap<>();
+        for (Map.Entry<String, Map<String, Integer>> entry : counts.entrySet()) {
+            List<Map.Entry<String, Integer>> row = new ArrayList<>(entry.getValue().entrySet());
+            row.sort((entry1, entry2) -> entry1.getValue().equals(entry2.getValue()) ?
+                entry1.getKey().compareTo(entry2.getKey()) : entry2.getValue() - entry1.getValue());
+
+            List<String> list = new ArrayList<>();
+            for (int i = 0; i < Math.min(listSize - 1, row.size()); i++) {
+                list.add(row.get(i).getKey());
+            }
+            list.add(entry.getKey());
+
+            lists.put(entry.getKey(), list);
+        }
+
+        return lists;
+    }
+}
@@ -0,0 +1,148 @@
+package org.pasr.postp.detectors;
+
+
+import opennlp.tools.postag.POSModel;
+import opennlp.tools.postag.POSTaggerME;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pasr.postp.detectors.POSDetector.Tags;
+import org.pasr.prep.corpus.Word;
+import org.pasr.prep.corpus.WordSequence;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.pasr.utilities.Utilities.getResourceStream;
+
+
+public class POSDetectorTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testTag() throws IOException{
+        List<List<String>> sentences = randomSentences(new Random(7), 500);
+
+        POSModel model = loadModel();
+        byte[][] tags = POSDetector.tag(sentences, model);
+
+        POSTaggerME tagger = new POSTaggerME(model);
+        for (int i = 0, n = sentences.size(); i < n; i++) {
+            List<String> sentence = sentences.get(i);
+
+            assertArrayEquals(
+                Tags.toOrdinals(tagger.tag(sentence.toArray(new String[sentence.size()]))),
+                tags[i]);
+        }
+    }
+
+    @Test
+    public void testReadTags() throws IOException{
+        List<List<String>> sentences = randomSentences(new Random(8), 300);
+        long fingerprint = POSDetector.getFingerprint(sentences);
+
+        byte[][] tags = POSDetector.tag(sentences, loadModel());
+
+        File file = temporaryFolder.newFile();
+        POSDetector.writeTags(file, tags, fingerprint);
+
+        byte[][] readTags = POSDetector.readTags(file, sentences, fingerprint);
+        assertEquals(tags.length, readTags.length);
+        for (int i = 0; i < tags.length; i++) {
+            assertArrayEquals(tags[i], readTags[i]);
+        }
+
+        // The tags of other sentences are not used
+        List<List<String>> otherSentences = new ArrayList<>(sentences);
+        otherSentences.set(0, Arrays.asList("another", "sentence"));
+        assertNull(POSDetector.readTags(
+            file, otherSentences, POSDetector.getFingerprint(otherSentences)
+        ));
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadTagsMalformed() throws IOException{
+        List<List<String>> sentences = Arrays.asList(Arrays.asList("a", "b"));
+
+        File file = temporaryFolder.newFile();
+        try (FileOutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(new byte[] {1, 2, 3});
+        }
+
+        POSDetector.readTags(file, sentences, POSDetector.getFingerprint(sentences));
+    }
+
+    @Test
+    public void testTagsFile() throws IOException{
+        List<WordSequence> corpus = randomSentences(new Random(9), 200).stream()
+            .map(sentence -> new WordSequence(String.join(" ", sentence)))
+            .collect(Collectors.toList());
+
+        File file = new File(temporaryFolder.getRoot(), "pos_tags.bin");
+
+        POSDetector detector = new POSDetector(corpus, file);
+        assertTrue(file.isFile());
+
+        // The file is read, not written again
+        assertTrue(file.setLastModified(0));
+        POSDetector cachedDetector = new POSDetector(corpus, file);
+        assertEquals(0, file.lastModified());
+
+        int numberOfErrorWords = 0;
+        for (List<String> sentence : randomSentences(new Random(10), 50)) {
+            // Words that are not in the corpus change the POS pattern of the hypothesis
+            sentence.add(sentence.size() / 2, "yesterday");
+            WordSequence wordSequence = new WordSequence(String.join(" ", sentence));
+
+            List<Integer> errorWords = getIndices(detector.detect(wordSequence));
+            assertEquals(errorWords, getIndices(cachedDetector.detect(wordSequence)));
+
+            numberOfErrorWords += errorWords.size();
+        }
+        assertTrue(numberOfErrorWords > 0);
+    }
+
+    private static List<Integer> getIndices(List<Word> words){
+        return words.stream().map(Word:: getIndex).collect(Collectors.toList());
+    }
+
+    private static POSModel loadModel() throws IOException{
+        try (InputStream inputStream = getResourceStream(
+            "/detectors/pos/en-pos-perceptron.bin")) {
+            return new POSModel(inputStream);
+        }
+    }
+
+    private static List<List<String>> randomSentences(Random random, int numberOfSentences){
+        List<List<String>> sentences = new ArrayList<>();
+        for (int i = 0; i < numberOfSentences; i++) {
+            List<String> sentence = new ArrayList<>();
+            for (int j = 0, n = 1 + random.nextInt(12); j < n; j++) {
+                sentence.add(WORDS[random.nextInt(WORDS.length)]);
+            }
+
+            sentences.add(sentence);
+        }
+
+        return sentences;
+    }
+
+    private static final String[] WORDS = {
+        "the", "a", "cat", "dog", "sat", "runs", "on", "mat", "quickly", "is", "happy", "i",
+        "we", "send", "email", "tomorrow", "meeting", "and", "but", "what", "his", "their"
+    };
+
+}
@@ -0,0 +1,169 @@
+package org.pasr.postp.detectors;
+
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.apache.commons.collections4.ListUtils.longestCommonSubsequence;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class PatternAlignerTest {
+
+    @Test
+    public void testFindUnmatched(){
+        assertUnmatched(new int[] {}, new byte[] {1, 2, 3}, new byte[] {1, 2, 3});
+        assertUnmatched(new int[] {0, 1}, new byte[] {}, new byte[] {1, 2});
+        assertUnmatched(new int[] {}, new byte[] {1, 2}, new byte[] {});
+        assertUnmatched(new int[] {1, 3}, new byte[] {1, 2, 3}, new byte[] {1, 4, 2, 5});
+
+        // The earliest tags of the hypothesis are matched
+        assertUnmatched(new int[] {1}, new byte[] {1}, new byte[] {1, 1});
+        assertUnmatched(new int[] {2}, new byte[] {1, 2}, new byte[] {1, 2, 2});
+        assertUnmatched(new int[] {0}, new byte[] {1, 2}, new byte[] {2, 1, 2});
+    }
+
+    @Test
+    public void testFindUnmatchedRandom(){
+        Random random = new Random(17);
+        PatternAligner patternAligner = new PatternAligner();
+
+        for (int i = 0; i < 3000; i++) {
+            // References longer than 64 tags are aligned with dynamic programming
+            byte[] reference = randomPattern(random, random.nextInt(i % 2 == 0 ? 64 : 100));
+            byte[] hypothesis = randomPattern(random, random.nextInt(12));
+
+            int[] unmatched = new int[hypothesis.length];
+            int numberOfUnmatched = patternAligner.findUnmatched(reference, hypothesis, unmatched);
+
+            assertArrayEquals(Arrays.toString(reference) + Arrays.toString(hypothesis),
+                getBruteForceUnmatched(reference, hypothesis),
+                Arrays.copyOf(unmatched, numberOfUnmatched));
+
+            // A longest common subsequence never leaves more tags unmatched than the alignment of
+            // ListUtils did
+            assertTrue(numberOfUnmatched <= getLegacyNumberOfUnmatched(reference, hypothesis));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFindUnmatchedSmallBuffer(){
+        new PatternAligner().findUnmatched(new byte[] {1}, new byte[] {1, 2}, new int[1]);
+    }
+
+    private static void assertUnmatched(int[] expected, byte[] reference, byte[] hypothesis){
+        int[] unmatched = new int[hypothesis.length];
+        int numberOfUnmatched = new PatternAligner().findUnmatched(
+            reference, hypothesis, unmatched
+        );
+
+        assertArrayEquals(expected, Arrays.copyOf(unmatched, numberOfUnmatched));
+    }
+
+    private static byte[] randomPattern(Random random, int size){
+        byte[] pattern = new byte[size];
+        for (int i = 0; i < size; i++) {
+            pattern[i] = (byte) random.nextInt(4);
+        }
+
+        return pattern;
+    }
+
+    /**
+     * Tries every subset of the hypothesis and keeps the largest one that is a subsequence of the
+     * reference, the lexicographically smallest among equal sizes
+     */
+    private static int[] getBruteForceUnmatched(byte[] reference, byte[] hypothesis){
+        int m = hypothesis.length;
+
+        int[] best = null;
+        for (int subset = 0; subset < 1 << m; subset++) {
+            int[] matched = new int[Integer.bitCount(subset)];
+            for (int j = 0, k = 0; j < m; j++) {
+                if ((subset & (1 << j)) != 0) {
+                    matched[k++] = j;
+                }
+            }
+
+            if (isSubsequence(matched, hypothesis, reference) && (best == null ||
+                matched.length > best.length ||
+                (matched.length == best.length && isBefore(matched, best)))) {
+                best = matched;
+            }
+        }
+
+        List<Integer> unmatched = new ArrayList<>();
+        for (int j = 0, k = 0; j < m; j++) {
+            if (k < best.length && best[k] == j) {
+                k++;
+            }
+            else {
+                unmatched.add(j);
+            }
+        }
+
+        return unmatched.stream().mapToInt(Integer:: intValue).toArray();
+    }
+
+    private static boolean isSubsequence(int[] matched, byte[] hypothesis, byte[] reference){
+        int i = 0;
+        for (int j : matched) {
+            while (i < reference.length && reference[i] != hypothesis[j]) {
+                i++;
+            }
+
+            if (i == reference.length) {
+                return false;
+            }
+            i++;
+        }
+
+        return true;
+    }
+
+    private static boolean isBefore(int[] array1, int[] array2){
+        for (int i = 0; i < array1.length; i++) {
+            if (array1[i] != array2[i]) {
+                return array1[i] < array2[i];
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * The number of error words that POSDetector.findErrorWords found before PatternAligner
+     */
+    private static int getLegacyNumberOfUnmatched(byte[] reference, byte[] hypothesis){
+        List<Byte> referenceList = new ArrayList<>();
+        for (byte tag : reference) {
+            referenceList.add(tag);
+        }
+        List<Byte> hypothesisList = new ArrayList<>();
+        for (byte tag : hypothesis) {
+            hypothesisList.add(tag);
+        }
+
+        List<Byte> matchingTags = longestCommonSubsequence(referenceList, hypothesisList);
+
+        int numberOfUnmatched = 0;
+        int matchingTagsIndex = 0;
+        for (byte tag : hypothesis) {
+            if (matchingTagsIndex < matchingTags.size() &&
+                tag == matchingTags.get(matchingTagsIndex)) {
+                matchingTagsIndex++;
+            }
+            else {
+                numberOfUnmatched++;
+            }
+        }
+
+        return numberOfUnmatched;
+    }
+
+}
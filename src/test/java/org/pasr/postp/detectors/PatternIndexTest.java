@@ -0,0 +1,155 @@
+package org.pasr.postp.detectors;
+
+
+import org.junit.Test;
+import org.pasr.postp.detectors.POSDetector.Tags;
+import org.pasr.utilities.LevenshteinDistance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+
+public class PatternIndexTest {
+
+    @Test
+    public void testGetBestPattern(){
+        Random random = new Random(5);
+
+        List<List<String>> sentences = new ArrayList<>();
+        List<List<Tags>> patterns = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            int size = random.nextInt(15);
+            sentences.add(randomWords(random, size, 200));
+            patterns.add(randomTags(random, size, 6));
+        }
+
+        List<byte[]> ordinals = patterns.stream()
+            .map(PatternIndexTest:: toOrdinals)
+            .collect(Collectors.toList());
+        PatternIndex patternIndex = new PatternIndex(sentences, ordinals);
+
+        for (int i = 0; i < 300; i++) {
+            List<String> words;
+            List<Tags> pattern;
+            if (i % 10 == 0) {
+                // A sentence of the corpus itself
+                int sentence = random.nextInt(sentences.size());
+
+                words = sentences.get(sentence);
+                pattern = patterns.get(sentence);
+            }
+            else {
+                // Words up to w239 include some that are not in the corpus
+                int size = random.nextInt(18);
+
+                words = randomWords(random, size, 240);
+                pattern = randomTags(random, size, 6);
+            }
+
+            POSDetector.SearchStatistics statistics = new POSDetector.SearchStatistics();
+
+            int bestSentence = getLegacyBestSentence(words, pattern, sentences, patterns);
+
+            assertSame(words.toString(), ordinals.get(bestSentence),
+                patternIndex.getBestPattern(words, toOrdinals(pattern), statistics));
+
+            assertEquals(sentences.size(), statistics.getNumberOfPatterns());
+            assertTrue(statistics.getNumberOfCandidates() <= statistics.getNumberOfPatterns());
+            assertTrue(statistics.getNumberOfComparisons() <= statistics.getNumberOfVisits());
+            assertTrue(statistics.getNumberOfVisits() <= statistics.getNumberOfPatterns());
+            assertEquals(statistics.getNumberOfPatterns() - statistics.getNumberOfComparisons(),
+                statistics.getNumberOfPrunedPatterns());
+        }
+    }
+
+    @Test
+    public void testGetBestPatternTies(){
+        List<List<String>> sentences = Arrays.asList(
+            Arrays.asList("a", "b"), Arrays.asList("a", "c"), Arrays.asList("a", "b")
+        );
+        byte[] pattern = toOrdinals(Arrays.asList(Tags.DT, Tags.NN));
+        List<byte[]> patterns = Arrays.asList(pattern.clone(), pattern.clone(), pattern.clone());
+
+        PatternIndex patternIndex = new PatternIndex(sentences, patterns);
+
+        // The first of the sentences with the same distance wins
+        assertSame(patterns.get(0), patternIndex.getBestPattern(
+            Arrays.asList("a", "d"), pattern, null));
+        assertSame(patterns.get(1), patternIndex.getBestPattern(
+            Arrays.asList("x", "c"), pattern, null));
+        assertSame(patterns.get(0), patternIndex.getBestPattern(
+            Collections.emptyList(), new byte[0], null));
+    }
+
+    @Test
+    public void testGetBestPatternEmpty(){
+        PatternIndex patternIndex = new PatternIndex(
+            Collections.emptyList(), Collections.emptyList()
+        );
+
+        POSDetector.SearchStatistics statistics = new POSDetector.SearchStatistics();
+
+        assertNull(patternIndex.getBestPattern(
+            Arrays.asList("a"), new byte[] {(byte) Tags.DT.ordinal()}, statistics));
+        assertEquals(0, statistics.getNumberOfPatterns());
+    }
+
+    private static List<String> randomWords(Random random, int size, int numberOfWords){
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            words.add("w" + random.nextInt(1 + random.nextInt(numberOfWords)));
+        }
+
+        return words;
+    }
+
+    private static List<Tags> randomTags(Random random, int size, int numberOfTags){
+        List<Tags> tags = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            tags.add(Tags.values()[random.nextInt(numberOfTags)]);
+        }
+
+        return tags;
+    }
+
+    private static byte[] toOrdinals(List<Tags> pattern){
+        byte[] ordinals = new byte[pattern.size()];
+        for (int i = 0; i < ordinals.length; i++) {
+            ordinals[i] = (byte) pattern.get(i).ordinal();
+        }
+
+        return ordinals;
+    }
+
+    /**
+     * The linear scan that POSDetector.getBestPattern did before PatternIndex
+     */
+    private static int getLegacyBestSentence(List<String> words, List<Tags> pattern,
+                                             List<List<String>> sentences,
+                                             List<List<Tags>> patterns){
+        double minDistance = Double.POSITIVE_INFINITY;
+        int bestSentence = - 1;
+
+        for (int i = 0, n = sentences.size(); i < n; i++) {
+            double distance = 0.5 * LevenshteinDistance.getDistance(pattern, patterns.get(i)) +
+                0.5 * LevenshteinDistance.getDistance(words, sentences.get(i));
+
+            if (distance < minDistance) {
+                minDistance = distance;
+                bestSentence = i;
+            }
+        }
+
+        return bestSentence;
+    }
+
+}
@@ -0,0 +1,87 @@
+package org.pasr.prep.corpus;
+
+
+import org.junit.Test;
+import org.pasr.utilities.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class CompactCorpusTest {
+
+    @Test
+    public void testGet(){
+        List<WordSequence> sentences = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            StringBuilder text = new StringBuilder("The Cat ");
+            for (int j = 0; j < i % 7; j++) {
+                text.append("sat ");
+            }
+
+            sentences.add(new WordSequence(text + "word" + i, i / 3, "title " + i / 3));
+        }
+        sentences.add(new WordSequence("", 100, "empty"));
+
+        CompactCorpus compactCorpus = new CompactCorpus(sentences);
+        assertEquals(sentences.size(), compactCorpus.size());
+        assertEquals(sentences.stream().mapToInt(WordSequence:: size).sum(),
+            compactCorpus.getNumberOfWords());
+
+        for (int i = 0, n = sentences.size(); i < n; i++) {
+            WordSequence expected = sentences.get(i);
+            WordSequence actual = compactCorpus.get(i);
+
+            assertEquals(expected.getWordTextList(), actual.getWordTextList());
+            assertEquals(expected.getDocumentId(), actual.getDocumentId());
+            assertEquals(expected.getDocumentTitle(), actual.getDocumentTitle());
+            assertEquals(expected.getDocumentId(), compactCorpus.getDocumentId(i));
+            assertEquals(expected.getDocumentTitle(), compactCorpus.getDocumentTitle(i));
+            assertEquals(expected.size(), compactCorpus.getSentenceSize(i));
+            assertArrayEquals(expected.getWordIds(), compactCorpus.getWordIds(i));
+
+            for (int j = 0; j < actual.size(); j++) {
+                assertEquals(j, actual.get(j).getIndex());
+            }
+        }
+
+        assertEquals(SymbolTable.getWordTable().getId("cat"), compactCorpus.getWordId(5, 1));
+    }
+
+    @Test
+    public void testSuffixArray(){
+        CompactCorpus compactCorpus = new CompactCorpus(Arrays.asList(
+            new WordSequence("the cat sat", 1, "a"),
+            new WordSequence("the dog sat", 1, "a"),
+            new WordSequence("a cat", 2, "b")
+        ));
+
+        assertTrue(compactCorpus.contains("cat sat"));
+        assertFalse(compactCorpus.contains("sat the"));
+        assertEquals(2, compactCorpus.count("cat"));
+
+        compactCorpus.add(new WordSequence("cat", 3, "c"));
+        assertEquals(3, compactCorpus.count("cat"));
+
+        // Whole words only, never across words or sentences
+        assertTrue(compactCorpus.contains("a cat"));
+        assertFalse(compactCorpus.contains("at"));
+        assertFalse(compactCorpus.contains("t sa"));
+        assertFalse(compactCorpus.contains("sat a"));
+
+        // A phrase without words is contained unless the CompactCorpus is empty
+        assertTrue(compactCorpus.contains(""));
+        assertFalse(new CompactCorpus().contains(""));
+
+        Corpus corpus = compactCorpus.toCorpus();
+        assertEquals(4, corpus.size());
+        assertEquals("the dog sat", corpus.get(1).toString());
+        assertEquals(3, corpus.count("cat"));
+    }
+}
@@ -0,0 +1,100 @@
+package org.pasr.prep.corpus;
+
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class CorpusIndexTest {
+    private List<WordSequence> sentences_;
+    private CorpusIndex corpusIndex_;
+    private Random random_;
+
+    @Before
+    public void setUp(){
+        random_ = new Random(42);
+
+        // Single letter words so that a context can only be matched on whole words by the
+        // regular expressions as well
+        sentences_ = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            sentences_.add(new WordSequence(randomWords(1 + random_.nextInt(12))));
+        }
+
+        corpusIndex_ = new CorpusIndex(sentences_);
+    }
+
+    @Test
+    public void testFind(){
+        for (int i = 0; i < 300; i++) {
+            List<String> left = randomContext();
+            List<String> right = randomContext();
+            String leftText = String.join(" ", left);
+            String rightText = String.join(" ", right);
+
+            if (! left.isEmpty()) {
+                assertFind(left, null, "(?<=" + leftText + " )(.*)");
+            }
+
+            if (! right.isEmpty()) {
+                assertFind(null, right, "(.*)(?= " + rightText + ")");
+            }
+
+            if (! left.isEmpty() || ! right.isEmpty()) {
+                assertFind(left, right, "(?<=" + leftText + " )(.*)(?= " + rightText + ")");
+            }
+        }
+    }
+
+    @Test
+    public void testFindUnknownWord(){
+        assertEquals(0, corpusIndex_.find(Arrays.asList("a", "unknown"), null).size());
+        assertEquals(0, corpusIndex_.find(null, Arrays.asList("unknown")).size());
+    }
+
+    private void assertFind(List<String> left, List<String> right, String regExp){
+        List<String> expected = new ArrayList<>();
+        for (WordSequence sentence : sentences_) {
+            Matcher matcher = Pattern.compile(regExp).matcher(sentence.toString());
+
+            while (matcher.find()) {
+                if (! matcher.group().isEmpty()) {
+                    expected.add(matcher.group());
+                }
+            }
+        }
+
+        List<String> actual = new ArrayList<>();
+        for (CorpusIndex.Span span : corpusIndex_.find(left, right)) {
+            actual.add(sentences_.get(span.getSentenceIndex())
+                .subSequence(span.getBegin(), span.getEnd()).toString());
+        }
+
+        assertEquals(regExp, expected, actual);
+    }
+
+    private List<String> randomContext(){
+        int size = random_.nextInt(3);
+
+        return size == 0 ? new ArrayList<>() : Arrays.asList(randomWords(size).split(" "));
+    }
+
+    private String randomWords(int count){
+        StringBuilder stringBuilder = new StringBuilder();
+
+        for (int i = 0; i < count; i++) {
+            stringBuilder.append((char) ('a' + random_.nextInt(4))).append(' ');
+        }
+
+        return stringBuilder.toString().trim();
+    }
+}
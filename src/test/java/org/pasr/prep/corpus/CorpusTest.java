@@ -0,0 +1,132 @@
+package org.pasr.prep.corpus;
+
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pasr.asr.dictionary.Dictionary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class CorpusTest {
+    private Dictionary dictionary_;
+
+    @Before
+    public void setUp(){
+        dictionary_ = new Dictionary();
+
+        dictionary_.put("the", "DH AH");
+        dictionary_.put("the", "DH IY");
+        dictionary_.put("cat", "K AE T");
+        dictionary_.put("dog", "D AO G");
+        dictionary_.put("ten", "T EH N");
+    }
+
+    @Test
+    public void testProcess(){
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            documents.add(new Document(i, "title " + i, "The cat. The dog " + (i % 3 + 9) +
+                "! Item " + i + ". (dog)"));
+        }
+
+        Corpus corpus = new Corpus();
+        corpus.setDocuments(documents);
+
+        List<Double> progress = new ArrayList<>();
+        corpus.getProgress().addObserver((observable, value) -> progress.add((Double) value));
+
+        Dictionary reducedDictionary = corpus.process(dictionary_);
+
+        // The WordSequence objects keep the order of the documents
+        assertEquals(2000, corpus.size());
+        for (int i = 0; i < 500; i++) {
+            for (int j = 0; j < 4; j++) {
+                assertEquals(i, corpus.get(4 * i + j).getDocumentId());
+            }
+
+            assertEquals("the cat", corpus.get(4 * i).toString());
+            assertTrue(corpus.get(4 * i + 2).toString().startsWith("item "));
+            assertEquals("dog", corpus.get(4 * i + 3).toString());
+        }
+        assertEquals("the dog nine", corpus.get(1).toString());
+        assertEquals("the dog ten", corpus.get(5).toString());
+
+        assertEquals(Arrays.asList("cat", "dog", "ten", "the", "the(2)"),
+            new ArrayList<>(reducedDictionary.keySet()));
+        assertTrue(reducedDictionary.getUnknownWords().contains("item"));
+        assertTrue(reducedDictionary.getUnknownWords().contains("nine"));
+
+        // The progress is batched, increasing and complete
+        assertTrue(progress.size() <= 2 * 100 + 2);
+        for (int i = 1; i < progress.size(); i++) {
+            assertTrue(progress.get(i) > progress.get(i - 1));
+        }
+        assertEquals(1.0, progress.get(progress.size() - 1), 1e-9);
+    }
+
+    @Test
+    public void testCancelProcess(){
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            documents.add(new Document(i, "title", "The cat"));
+        }
+
+        Corpus corpus = new Corpus();
+        corpus.setDocuments(documents);
+        corpus.getProgress().addObserver((observable, value) -> corpus.cancelProcess());
+
+        Dictionary reducedDictionary = corpus.process(dictionary_);
+
+        assertEquals(0, corpus.size());
+        assertEquals(0, reducedDictionary.size());
+        assertEquals(0, reducedDictionary.getUnknownWords().size());
+    }
+
+    @Test
+    public void testContains(){
+        Corpus corpus = new Corpus(Arrays.asList(
+            new WordSequence("the cat sat"), new WordSequence("on the mat")
+        ));
+
+        // Whole words only
+        assertTrue(corpus.contains("cat"));
+        assertTrue(corpus.contains("cat sat"));
+        assertFalse(corpus.contains("at"));
+        assertFalse(corpus.contains("the ca"));
+
+        // Phrases never cross a word or a sentence boundary
+        assertFalse(corpus.contains("t s"));
+        assertFalse(corpus.contains("sat on"));
+
+        // A phrase without words is contained unless the Corpus is empty
+        assertTrue(corpus.contains(""));
+        assertTrue(corpus.contains("  "));
+        assertFalse(new Corpus().contains(""));
+
+        WordSequence wordSequence = new WordSequence("the cat sat");
+        assertTrue(wordSequence.contains("cat sat"));
+        assertFalse(wordSequence.contains("at sa"));
+        assertFalse(wordSequence.contains("sat cat"));
+        assertTrue(wordSequence.contains(""));
+    }
+
+    @Test
+    public void testSetUpdatesSuffixArray(){
+        Corpus corpus = new Corpus(Arrays.asList(
+            new WordSequence("the cat sat"), new WordSequence("on the mat")
+        ));
+        assertTrue(corpus.contains("the mat"));
+
+        corpus.set(1, new WordSequence("on the rug"));
+
+        assertFalse(corpus.contains("the mat"));
+        assertTrue(corpus.contains("the rug"));
+    }
+}
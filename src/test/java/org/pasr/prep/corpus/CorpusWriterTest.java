@@ -0,0 +1,90 @@
+package org.pasr.prep.corpus;
+
+
+import org.junit.Test;
+import org.pasr.prep.email.fetchers.Email;
+import org.pasr.prep.email.fetchers.EmailFetcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class CorpusWriterTest {
+
+    @Test
+    public void testAppend() throws IOException{
+        File directory = Files.createTempDirectory("corpus").toFile();
+        directory.deleteOnExit();
+
+        CorpusWriter corpusWriter = new CorpusWriter(directory);
+        assertEquals(2, corpusWriter.append(new Document(1, "First", "Hello world. Paid 5$!")));
+        assertEquals(0, corpusWriter.append(new Document(2, "Empty", " ... ")));
+        corpusWriter.close();
+
+        // Appending to an existing directory keeps what was written before
+        corpusWriter = new CorpusWriter(directory);
+        assertEquals(1, corpusWriter.append(new Document(3, "Multi\r\nline", "One more")));
+        assertEquals(1, corpusWriter.getNumberOfDocuments());
+        assertEquals(1, corpusWriter.getNumberOfSentences());
+        corpusWriter.close();
+
+        assertEquals(Arrays.asList("<s> hello world </s>", "<s> paid five dollars </s>",
+            "<s> one more </s>"), readLines(directory, "sentences.txt"));
+        assertEquals(Arrays.asList("1", "1", "3"), readLines(directory, "document_ids.txt"));
+        assertEquals(Arrays.asList("1 First", "3 Multi line"),
+            readLines(directory, "document_titles.txt"));
+    }
+
+    @Test
+    public void testUpdate() throws Exception{
+        File directory = Files.createTempDirectory("corpus").toFile();
+        directory.deleteOnExit();
+
+        CorpusWriter corpusWriter = new CorpusWriter(directory);
+
+        corpusWriter.update(null, EmailFetcher.Stage.STARTED_FETCHING);
+        corpusWriter.update(null, newEmail(1, "First", "Hello world", "INBOX"));
+        corpusWriter.update(null, newEmail(2, "Second", "Good morning", "INBOX"));
+        corpusWriter.update(null, EmailFetcher.Stage.STOPPED_FETCHING);
+
+        // Fetching the folder again sends its most recent e-mails again
+        corpusWriter.update(null, EmailFetcher.Stage.STARTED_FETCHING);
+        corpusWriter.update(null, newEmail(2, "Second", "Good morning", "INBOX"));
+        corpusWriter.update(null, newEmail(3, "Third", "Good night", "INBOX"));
+        corpusWriter.update(null, newEmail(2, "Second", "Good morning", "Sent"));
+        corpusWriter.update(null, EmailFetcher.Stage.STOPPED_FETCHING);
+
+        assertEquals(4, corpusWriter.getNumberOfDocuments());
+        corpusWriter.close();
+
+        assertEquals(Arrays.asList("<s> hello world </s>", "<s> good morning </s>",
+            "<s> good night </s>", "<s> good morning </s>"), readLines(directory, "sentences.txt"));
+        assertEquals(Arrays.asList("1", "2", "3", "2"), readLines(directory, "document_ids.txt"));
+    }
+
+    private static Email newEmail(long id, String subject, String body, String path)
+        throws ReflectiveOperationException{
+        // The constructor of Email is only visible to the fetchers
+        Constructor<Email> constructor = Email.class.getDeclaredConstructor(
+            String[].class, String[].class, String[].class, String[].class, long.class,
+            String.class, String.class, String.class
+        );
+        constructor.setAccessible(true);
+
+        return constructor.newInstance(null, null, null, null, id, subject, body, path);
+    }
+
+    private static List<String> readLines(File directory, String name)
+        throws IOException{
+        File file = new File(directory, name);
+        file.deleteOnExit();
+
+        return Files.readAllLines(file.toPath());
+    }
+}
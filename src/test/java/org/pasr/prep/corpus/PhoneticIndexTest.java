@@ -0,0 +1,108 @@
+package org.pasr.prep.corpus;
+
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pasr.asr.dictionary.Dictionary;
+import org.pasr.utilities.LevenshteinMatrix;
+import org.pasr.utilities.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+
+public class PhoneticIndexTest {
+    private List<WordSequence> sentences_;
+    private Dictionary dictionary_;
+    private PhoneticIndex phoneticIndex_;
+    private Random random_;
+
+    @Before
+    public void setUp(){
+        random_ = new Random(3);
+
+        // Words w6 and w7 are not in the dictionary and are pronounced automatically
+        dictionary_ = new Dictionary();
+        for (int i = 0; i < 6; i++) {
+            dictionary_.put("w" + i, String.join(" ", randomPhones(1 + random_.nextInt(4))));
+        }
+
+        sentences_ = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            sentences_.add(new WordSequence(randomWords(1 + random_.nextInt(10))));
+        }
+
+        phoneticIndex_ = new PhoneticIndex(sentences_, dictionary_);
+    }
+
+    @Test
+    public void testFindClosest(){
+        for (int i = 0; i < 200; i++) {
+            List<String> phones = random_.nextBoolean() ?
+                randomPhones(1 + random_.nextInt(12)) :
+                dictionary_.getPhonesInLine(new WordSequence(randomWords(1 + random_.nextInt(4))));
+
+            CorpusIndex.Span span = phoneticIndex_.findClosest(
+                SymbolTable.getPhoneTable().getIds(phones)
+            );
+
+            assertEquals(findClosestExhaustively(phones), sentences_.get(span.getSentenceIndex())
+                .subSequence(span.getBegin(), span.getEnd()).toString());
+        }
+    }
+
+    @Test
+    public void testFindClosestEmpty(){
+        PhoneticIndex phoneticIndex = new PhoneticIndex(new ArrayList<>(), dictionary_);
+
+        assertNull(phoneticIndex.findClosest(new int[] {0}));
+    }
+
+    private String findClosestExhaustively(List<String> phones){
+        int minDistance = Integer.MAX_VALUE;
+        String bestMatch = null;
+
+        for (WordSequence sentence : sentences_) {
+            List<List<String>> wordPhoneList = dictionary_.getPhones(sentence);
+
+            for (int i = 0, n = wordPhoneList.size(); i < n; i++) {
+                for (int j = i + 1; j <= n; j++) {
+                    List<String> candidate = new ArrayList<>();
+                    wordPhoneList.subList(i, j).forEach(candidate:: addAll);
+
+                    int distance = LevenshteinMatrix.getDistance(phones, candidate);
+                    if (distance < minDistance) {
+                        minDistance = distance;
+                        bestMatch = sentence.subSequence(i, j).toString();
+                    }
+                }
+            }
+        }
+
+        return bestMatch;
+    }
+
+    private List<String> randomPhones(int count){
+        List<String> phones = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            phones.add(String.valueOf((char) ('A' + random_.nextInt(8))));
+        }
+
+        return phones;
+    }
+
+    private String randomWords(int count){
+        StringBuilder stringBuilder = new StringBuilder();
+
+        for (int i = 0; i < count; i++) {
+            stringBuilder.append('w').append(random_.nextInt(8)).append(' ');
+        }
+
+        return stringBuilder.toString().trim();
+    }
+}
@@ -0,0 +1,110 @@
+package org.pasr.prep.corpus;
+
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class SuffixArrayTest {
+    private Corpus corpus_;
+    private Random random_;
+
+    @Before
+    public void setUp(){
+        random_ = new Random(7);
+
+        List<WordSequence> sentences = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            sentences.add(new WordSequence(randomWords(1 + random_.nextInt(10))));
+        }
+
+        corpus_ = new Corpus(sentences);
+    }
+
+    @Test
+    public void testGetOccurrences(){
+        SuffixArray suffixArray = corpus_.getSuffixArray();
+
+        for (int i = 0; i < 200; i++) {
+            List<String> phrase = Arrays.asList(randomWords(1 + random_.nextInt(3)).split(" "));
+
+            List<String> expected = new ArrayList<>();
+            for (int j = 0, n = corpus_.size(); j < n; j++) {
+                List<String> words = corpus_.get(j).getWordTextList();
+
+                for (int k = 0; k + phrase.size() <= words.size(); k++) {
+                    if (words.subList(k, k + phrase.size()).equals(phrase)) {
+                        expected.add(j + ":" + k);
+                    }
+                }
+            }
+
+            List<String> actual = new ArrayList<>();
+            for (CorpusIndex.Span span : suffixArray.getOccurrences(phrase)) {
+                actual.add(span.getSentenceIndex() + ":" + span.getBegin());
+            }
+
+            assertEquals(expected, actual);
+            assertEquals(expected.size(), suffixArray.count(phrase));
+            assertEquals(! expected.isEmpty(), corpus_.contains(String.join(" ", phrase)));
+        }
+    }
+
+    @Test
+    public void testContains(){
+        corpus_.add(new WordSequence("the cat sat on the mat"));
+
+        assertTrue(corpus_.contains("cat sat"));
+        assertTrue(corpus_.contains("the mat"));
+        assertFalse(corpus_.contains("at sat"));
+        assertFalse(corpus_.contains("mat the"));
+        assertFalse(corpus_.contains("unknown"));
+        assertEquals(2, corpus_.count("the"));
+
+        corpus_.replaceWordText("mat", "rug");
+        assertFalse(corpus_.contains("the mat"));
+        assertTrue(corpus_.contains("on the rug"));
+    }
+
+    @Test
+    public void testFileRoundTrip() throws IOException {
+        File file = File.createTempFile("suffix_array", ".bin");
+        file.deleteOnExit();
+
+        corpus_.getSuffixArray().writeToFile(file);
+
+        SuffixArray suffixArray = SuffixArray.createFromFile(file);
+        Corpus corpus = new Corpus(corpus_);
+        corpus.setSuffixArray(suffixArray);
+
+        for (int i = 0; i < 50; i++) {
+            List<String> phrase = Arrays.asList(randomWords(1 + random_.nextInt(2)).split(" "));
+
+            assertEquals(corpus_.getSuffixArray().count(phrase), suffixArray.count(phrase));
+        }
+        assertEquals(Collections.emptyList(),
+            suffixArray.getOccurrences(Collections.singletonList("unknown")));
+    }
+
+    private String randomWords(int count){
+        StringBuilder stringBuilder = new StringBuilder();
+
+        for (int i = 0; i < count; i++) {
+            stringBuilder.append('w').append(random_.nextInt(6)).append(' ');
+        }
+
+        return stringBuilder.toString().trim();
+    }
+}
@@ -0,0 +1,163 @@
+package org.pasr.prep.corpus;
+
+
+import org.junit.Test;
+import org.pasr.utilities.NumberSpeller;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class TextNormalizerTest {
+
+    @Test
+    public void testGetSentences(){
+        assertEquals(Arrays.asList("i paid twenty five dollars for it", "no way", "really"),
+            TextNormalizer.getSentences("I paid 25$ (for it)! No way... [Really]"));
+        assertEquals(Arrays.asList("call me at one two "), TextNormalizer.getSentences(
+            "Call me at 1:2"));
+    }
+
+    @Test
+    public void testDifferential(){
+        Random random = new Random(11);
+
+        for (int i = 0; i < 3000; i++) {
+            String document = randomDocument(random);
+
+            assertEquals(document, getLegacySentences(document),
+                TextNormalizer.getSentences(document));
+        }
+    }
+
+    private static String randomDocument(Random random){
+        StringBuilder stringBuilder = new StringBuilder();
+
+        for (int i = 0, n = random.nextInt(40); i < n; i++) {
+            switch (random.nextInt(10)) {
+                case 0:
+                    stringBuilder.append(random.nextInt(random.nextBoolean() ? 30 : 100000));
+                    break;
+                case 1:
+                    stringBuilder.append(random.nextInt(2000)).append(
+                        random.nextBoolean() ? "$" : " dollars");
+                    break;
+                case 2:
+                    stringBuilder.append(PHRASES[random.nextInt(PHRASES.length)]);
+                    break;
+                case 3:
+                    // Leading zeros and numbers that do not fit in an int
+                    stringBuilder.append("00").append(random.nextInt(10))
+                        .append(random.nextBoolean() ? "" : "12345678901");
+                    break;
+                case 4:
+                    stringBuilder.append((char) random.nextInt(128));
+                    break;
+                case 5:
+                    stringBuilder.append(UNICODE[random.nextInt(UNICODE.length)]);
+                    break;
+                default:
+                    stringBuilder.append(WORDS[random.nextInt(WORDS.length)]);
+                    break;
+            }
+
+            if (random.nextBoolean()) {
+                stringBuilder.append(" ");
+            }
+        }
+
+        return stringBuilder.toString();
+    }
+
+    /**
+     * The regular expressions that Corpus used before TextNormalizer
+     */
+    private static List<String> getLegacySentences(String document){
+        document = legacyProcessNumbers(document);
+
+        document = document.
+            replaceAll("[^\\p{Graph}]", " ").
+            replaceAll("[_\\-,:/\"<>|#@\\\\=+~*\\{}$%&`^]+", " ").
+            replaceAll("[\\(\\[]", " ").
+            replaceAll("[\\)\\]]", " . ").
+            replaceAll("[!?;]", ".").
+            replaceAll(" +", " ").
+            toLowerCase();
+
+        List<String> sentences = new ArrayList<>();
+        for (String sentence : document.split(" ?\\. ?")) {
+            if (! sentence.isEmpty()) {
+                sentences.add(sentence);
+            }
+        }
+
+        return sentences;
+    }
+
+    private static String legacyProcessNumbers(String document){
+        ArrayList<String> matches = new ArrayList<>();
+
+        Matcher matcher = Pattern.compile("([0-9]+) dollars").matcher(document);
+        while (matcher.find()) {
+            matches.add(matcher.group(1));
+        }
+        Collections.sort(matches, (s1, s2) -> s2.length() - s1.length());
+        for (String match : matches) {
+            String spelled = legacySpell(match);
+            document = document.replaceAll(spelled + " dollars", " " + spelled + " dollars ");
+        }
+        matches.clear();
+
+        matcher = Pattern.compile("([0-9]+)\\$").matcher(document);
+        while (matcher.find()) {
+            matches.add(matcher.group(1));
+        }
+        Collections.sort(matches, (s1, s2) -> s2.length() - s1.length());
+        for (String match : matches) {
+            String spelled = legacySpell(match);
+            document = document.replaceAll(match + "\\$", " " + spelled + " dollars ");
+        }
+        matches.clear();
+
+        matcher = Pattern.compile("([0-9]+)").matcher(document);
+        while (matcher.find()) {
+            matches.add(matcher.group(1));
+        }
+        Collections.sort(matches, (s1, s2) -> s2.length() - s1.length());
+        for (String match : matches) {
+            document = document.replaceAll(match, " " + legacySpell(match) + " ");
+        }
+
+        return document;
+    }
+
+    private static String legacySpell(String match){
+        try {
+            return NumberSpeller.getInstance().spell(Integer.valueOf(match));
+        } catch (NumberFormatException e) {
+            return "number";
+        }
+    }
+
+    private static final String[] WORDS = {
+        "Hello", "world", "e-mail", "it's", "A.B.", "(note)", "[x]", "a", "THE", "x_y", "...",
+        "!?", ";", "#tag", "@me", "a/b", "\"quoted\"", "{}", "~", "`", "^", "\t", "\n", "\r\n",
+        "  ", ".", ". .", " . ", "dollars", "$"
+    };
+
+    private static final String[] PHRASES = {
+        "five dollars", "twenty five dollars", "xfive dollarsx", "one hundred dollars",
+        "number dollars", "seven dollars."
+    };
+
+    private static final String[] UNICODE = {
+        "\u00e9", "\u00a0", "\u2003", "\ud83d\ude00", "\ud83d", "\u0130"
+    };
+}
@@ -0,0 +1,113 @@
+package org.pasr.utilities;
+
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class LevenshteinDistanceTest {
+
+    @Test
+    public void testGetDistance(){
+        assertEquals(0, LevenshteinDistance.getDistance(new int[0], new int[0]));
+        assertEquals(3, LevenshteinDistance.getDistance(new int[] {1, 2, 3}, new int[0]));
+        assertEquals(2, LevenshteinDistance.getDistance(
+            Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9),
+            Arrays.asList(0, 1, 2, 3, 3, 4, 5, 6, 7, 8)
+        ));
+        assertEquals(1, LevenshteinDistance.getDistance(
+            Arrays.asList("Hello", "W0r1d"),
+            Arrays.asList("Hello", "World")
+        ));
+
+        // Lengths around the size of the bit vector, small and large alphabets
+        Random random = new Random(11);
+        for (int i = 0; i < 3000; i++) {
+            int alphabetSize = random.nextBoolean() ? 3 : 1000;
+            int[] source = randomSequence(random, random.nextInt(150), alphabetSize);
+            int[] destination = randomSequence(random, random.nextInt(150), alphabetSize);
+
+            int expected = getMatrixDistance(source, destination);
+
+            assertEquals(expected, LevenshteinDistance.getDistance(source, destination));
+            assertEquals(expected, LevenshteinDistance.getDistance(destination, source));
+        }
+    }
+
+    @Test
+    public void testGetBoundedDistance(){
+        Random random = new Random(13);
+        for (int i = 0; i < 3000; i++) {
+            int length = random.nextInt(100);
+            int[] source = randomSequence(random, length, 4);
+            int[] destination = mutate(random, source, random.nextInt(20), 4);
+
+            int expected = getMatrixDistance(source, destination);
+            int maxDistance = random.nextInt(25);
+
+            assertEquals(Math.min(expected, maxDistance + 1),
+                LevenshteinDistance.getDistance(source, destination, maxDistance));
+        }
+
+        assertEquals(1, LevenshteinDistance.getDistance(new int[] {1}, new int[] {2}, 0));
+        assertEquals(0, LevenshteinDistance.getDistance(new int[] {1}, new int[] {1}, 0));
+        assertEquals(3, LevenshteinDistance.getDistance(
+            new int[] {1, 2, 3}, new int[0], Integer.MAX_VALUE
+        ));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetDistanceNegativeMaximum(){
+        LevenshteinDistance.getDistance(new int[] {1}, new int[] {2}, - 1);
+    }
+
+    private static int getMatrixDistance(int[] source, int[] destination){
+        List<Integer> sourceList = Arrays.asList(ArrayUtils.toObject(source));
+        List<Integer> destinationList = Arrays.asList(ArrayUtils.toObject(destination));
+
+        return new LevenshteinMatrix<>(sourceList, destinationList).getDistance();
+    }
+
+    private static int[] randomSequence(Random random, int length, int alphabetSize){
+        int[] sequence = new int[length];
+
+        for (int i = 0; i < length; i++) {
+            sequence[i] = random.nextInt(alphabetSize);
+        }
+
+        return sequence;
+    }
+
+    private static int[] mutate(Random random, int[] sequence, int changes, int alphabetSize){
+        int[] mutated = sequence;
+
+        for (int i = 0; i < changes; i++) {
+            int position = random.nextInt(mutated.length + 1);
+
+            switch (random.nextInt(3)) {
+                case 0:
+                    mutated = ArrayUtils.add(mutated, position, random.nextInt(alphabetSize));
+                    break;
+                case 1:
+                    if (position < mutated.length) {
+                        mutated = ArrayUtils.remove(mutated, position);
+                    }
+                    break;
+                default:
+                    if (position < mutated.length) {
+                        mutated = mutated.clone();
+                        mutated[position] = random.nextInt(alphabetSize);
+                    }
+                    break;
+            }
+        }
+
+        return mutated;
+    }
+}